@@ -0,0 +1,238 @@
+/* BoxCache.java
+ * =========================================================================
+ * This file is part of the JMathTeX Library - http://jmathtex.sourceforge.net
+ *
+ * Copyright (C) 2004-2007 Universiteit Gent
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ */
+
+package be.ugent.caagt.jmathtex;
+
+import be.ugent.caagt.jmathtex.atom.Atom;
+import be.ugent.caagt.jmathtex.box.Box;
+import be.ugent.caagt.jmathtex.box.SharedBox;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 盒子缓存: 从(atom 子树的结构, 样式, 字体尺寸)到为其创建的 (不可改变的) 盒子.
+ * A size-bounded cache of laid out sub-expressions: maps the structure of an atom
+ * (sub)tree (see {@link Atom#structuralHash()} and {@link Atom#structurallyEquals(Atom)}),
+ * the style, the font (class and size) and the last font used before it, to the box
+ * that was created for it. When the cache is full, the least recently used box is
+ * removed. Documents that repeat the same sub-expressions (\frac{1}{2}, x_i, (a+b)^2, ...)
+ * only lay them out once.
+ * <p>
+ * The cache is disabled by default, it can be enabled using
+ * {@link TeXFormula#setBoxCache(BoxCache)}. It's used by the atoms that are most often
+ * repeated and costly to lay out: fractions, scripts, fenced atoms and rows (see
+ * {@link be.ugent.caagt.jmathtex.atom.CacheableAtom}). Cached
+ * boxes are never changed: every atom gets a new {@link SharedBox} that shows the
+ * cached box, so the parent can shift it and change its dimensions or colors. Boxes
+ * are only cached if no colors are set in the environment. All methods of this class
+ * are thread-safe.
+ */
+public class BoxCache {
+    
+    /** the maximum number of boxes in the cache */
+    private final int capacity;
+    
+    /** the cached boxes, in access order (least recently used first) */
+    private final LinkedHashMap<Key, Box> cache;
+    
+    // statistics
+    private long hits = 0, misses = 0, evictions = 0;
+    
+    /**
+     * 盒子的键.
+     * The key of a box: the structure of the atom and everything of the environment
+     * the box depends on. Created once per layout of an atom (see
+     * {@link #keyOf(Atom, TeXEnvironment)}), to look up its box and to cache it.
+     */
+    public static final class Key {
+        
+        private final Atom atom;
+        private final int style;
+        private final Class<?> font;
+        private final float size;
+        private final int lastFontId;
+        private final int hash;
+        
+        private Key(Atom atom, TeXEnvironment env) {
+            this.atom = atom;
+            style = env.getStyle();
+            TeXFont tf = env.getTeXFont();
+            font = tf.getClass();
+            size = tf.getSize();
+            lastFontId = env.getLastFontId();
+            hash = 31 * (31 * (31 * atom.structuralHash() + style) + Float.floatToIntBits(size))
+                    + lastFontId;
+        }
+        
+        public int hashCode() {
+            return hash;
+        }
+        
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return hash == k.hash && style == k.style && size == k.size
+                    && lastFontId == k.lastFontId && font == k.font
+                    && atom.structurallyEquals(k.atom);
+        }
+    }
+    
+    /**
+     * 构造新的缓存, 最多保存 capacity 个盒子.
+     * Creates a new, empty cache that can contain the given number of boxes.
+     * 
+     * @param capacity the maximum number of boxes in the cache
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public BoxCache(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("The capacity of a BoxCache must be positive!");
+        this.capacity = capacity;
+        cache = new LinkedHashMap<Key, Box>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            
+            protected boolean removeEldestEntry(Map.Entry<Key, Box> eldest) {
+                if (size() > BoxCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    /**
+     * 得到 atom 在给定环境中的盒子的键.
+     * Creates the key of the box of the given atom in the given environment.
+     * 
+     * @param atom the atom
+     * @param env the current environment settings
+     * @return the key, or null if the environment has colors (such boxes aren't cached)
+     */
+    public Key keyOf(Atom atom, TeXEnvironment env) {
+        if (env.getColor() != null || env.getBackground() != null)
+            return null;
+        return new Key(atom, env);
+    }
+    
+    /**
+     * 查找缓存的盒子.
+     * Takes the cached box of a structurally equal atom in the same environment. Counts
+     * as a hit or a miss.
+     * 
+     * @param key the key of the box (see {@link #keyOf(Atom, TeXEnvironment)})
+     * @return a new SharedBox showing the cached box, or null if there's none
+     */
+    public Box get(Key key) {
+        Box b;
+        synchronized (this) {
+            b = cache.get(key);
+            if (b == null)
+                misses++;
+            else
+                hits++;
+        }
+        return b == null ? null : new SharedBox(b);
+    }
+    
+    /**
+     * 缓存新创建的盒子.
+     * Caches the box just laid out for the atom of the given key. The cache isn't
+     * locked while laying out, so two threads can lay out the same atom at the same
+     * time: they create equal boxes.
+     * 
+     * @param key the key of the box (see {@link #keyOf(Atom, TeXEnvironment)})
+     * @param b the box of the atom (it mustn't be changed anymore)
+     * @return the box to use: a new SharedBox showing the cached box
+     */
+    public Box put(Key key, Box b) {
+        synchronized (this) {
+            cache.put(key, b);
+        }
+        return new SharedBox(b);
+    }
+    
+    /**
+     * @return the maximum number of boxes in the cache
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * @return the number of boxes currently in the cache
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+    
+    /**
+     * @return how many times a box was found in the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+    
+    /**
+     * @return how many times a box was not found in the cache (and had to be created)
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+    
+    /**
+     * @return the fraction of the lookups that were hits (0 if there were none)
+     */
+    public synchronized double getHitRate() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+    
+    /**
+     * @return how many boxes were removed from the cache because it was full
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+    
+    /**
+     * 清空缓存和统计数据.
+     * Removes all the boxes from the cache and resets the statistics.
+     */
+    public synchronized void clear() {
+        cache.clear();
+        hits = misses = evictions = 0;
+    }
+    
+    public synchronized String toString() {
+        return "BoxCache{size=" + cache.size() + ", capacity=" + capacity + ", hits=" + hits
+                + ", misses=" + misses + ", evictions=" + evictions + "}";
+    }
+}
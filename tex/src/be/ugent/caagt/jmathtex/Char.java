@@ -44,7 +44,9 @@ public class Char {
 
    private final char c; // 代表的字符(实际是位置)
 
-   private final Font font; // 系统字体(物理字体)
+   private final Font font; // 系统字体(物理字体), null: 绘制时才由 fontCode 和 size 得到.
+
+   private final float size; // 字体的(导出)尺寸
 
    private final Metrics m; // 该字符的尺寸信息.
 
@@ -55,6 +57,9 @@ public class Char {
     */
    private final int fontCode;
 
+   // the same character and font id, shared
+   private final CharFont cf;
+
    /**
     * 使用指定参数构造 Char 的新实例.
     * @param c - 字符(实际是在 font 中的位置)
@@ -64,21 +69,66 @@ public class Char {
     */
    public Char(char c, Font f, int fc, Metrics m) {
       font = f;
+      size = f.getSize2D();
       fontCode = fc;
       this.c = c;
       this.m = m;
+      cf = new CharFont(c, fc);
    }
 
+   /**
+    * 只含尺寸信息的 Char (布局时不需要 java.awt.Font).
+    * Creates a Char with only metric information: the font is only resolved when
+    * it's needed for painting, as the font with id fc of DefaultTeXFont, derived
+    * for the given size.
+    * 
+    * @param c the character
+    * @param fc the font id
+    * @param size the size of the derived font
+    * @param m the metrics of the character
+    */
+   public Char(char c, int fc, float size, Metrics m) {
+      font = null;
+      this.size = size;
+      fontCode = fc;
+      this.c = c;
+      this.m = m;
+      cf = new CharFont(c, fc);
+   }
+
+   /**
+    * @return the character and font id (a shared object: don't change it!)
+    */
    public CharFont getCharFont() {
-      return new CharFont(c, fontCode);
+      return cf;
    }
 
    public char getChar() {
       return c;
    }
 
+   /**
+    * @return the font to paint this character with (loaded on the first call if
+    *         this Char only contains metric information)
+    */
    public Font getFont() {
-      return font;
+      return font != null ? font : DefaultTeXFont.getFont(fontCode, size);
+   }
+
+   /**
+    * @return whether this Char only contains metric information, so that its font is
+    *         the font of the FontRegistry with its font id (otherwise it has its own
+    *         font, given to the constructor)
+    */
+   boolean hasRegistryFont() {
+      return font == null;
+   }
+
+   /**
+    * @return the size of the (derived) font
+    */
+   public float getSize() {
+      return size;
    }
 
    /**
@@ -0,0 +1,121 @@
+/* CharTable.java
+ * =========================================================================
+ * This file is part of the JMathTeX Library - http://jmathtex.sourceforge.net
+ *
+ * Copyright (C) 2004-2007 Universiteit Gent
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ */
+
+package be.ugent.caagt.jmathtex;
+
+import java.util.Arrays;
+
+/**
+ * 稀疏的 字符 => 对象 映射表 (两级表, 取代按字符编码索引的大数组).
+ * A sparse map from characters to objects, for fonts with thousands of code points
+ * spread over the whole of Unicode. It's a two-level table: the high byte of a
+ * character selects a page of 256 entries, indexed by the low byte. A page is only
+ * allocated when it contains an entry, and the table of pages only grows up to the
+ * highest page used, so a font with the characters 0 .. 255 costs the same as a
+ * plain array of 256 entries. A lookup is two array reads, without hashing.
+ * <p>
+ * A CharTable is not thread-safe: fill it before it's shared, it can be read by any
+ * number of threads afterwards.
+ * 
+ * @param <V> the type of the values
+ */
+final class CharTable<V> {
+    
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    
+    private static final Object[][] NO_PAGES = new Object[0][];
+    
+    // the pages, indexed by the high byte of a character (null: no entries)
+    private Object[][] pages = NO_PAGES;
+    
+    private int size = 0;
+    
+    /**
+     * @return the value for the given character, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(char c) {
+        int p = c >>> PAGE_BITS;
+        if (p >= pages.length)
+            return null;
+        Object[] page = pages[p];
+        return page == null ? null : (V) page[c & PAGE_MASK];
+    }
+    
+    /**
+     * Sets the value for the given character (null removes the entry).
+     */
+    public void put(char c, V value) {
+        int p = c >>> PAGE_BITS;
+        if (p >= pages.length) {
+            if (value == null)
+                return;
+            pages = Arrays.copyOf(pages, p + 1);
+        }
+        Object[] page = pages[p];
+        if (page == null) {
+            if (value == null)
+                return;
+            page = pages[p] = new Object[PAGE_SIZE];
+        }
+        Object old = page[c & PAGE_MASK];
+        page[c & PAGE_MASK] = value;
+        if (old == null && value != null)
+            size++;
+        else if (old != null && value == null)
+            size--;
+    }
+    
+    /**
+     * Returns the first character, not smaller than the given one, that has a value.
+     * All the entries can be visited with
+     * <code>for (int c = t.next(0); c >= 0; c = t.next(c + 1))</code>.
+     * 
+     * @param from the first character to look at
+     * @return a character, or -1 if there are no more entries
+     */
+    public int next(int from) {
+        for (int p = from >>> PAGE_BITS; p < pages.length; p++) {
+            Object[] page = pages[p];
+            if (page != null)
+                for (int i = (p == from >>> PAGE_BITS ? from & PAGE_MASK : 0); i < PAGE_SIZE; i++)
+                    if (page[i] != null)
+                        return (p << PAGE_BITS) | i;
+        }
+        return -1;
+    }
+    
+    /**
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+}
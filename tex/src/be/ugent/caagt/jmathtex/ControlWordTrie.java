@@ -0,0 +1,156 @@
+/* ControlWordTrie.java
+ * =========================================================================
+ * This file is part of the JMathTeX Library - http://jmathtex.sourceforge.net
+ *
+ * Copyright (C) 2004-2007 Universiteit Gent
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ */
+
+package be.ugent.caagt.jmathtex;
+
+import be.ugent.caagt.jmathtex.atom.Atom;
+import be.ugent.caagt.jmathtex.atom.SymbolAtom;
+import java.util.Arrays;
+
+/**
+ * A character trie containing all the names that can follow the escape character
+ * in a parse string: symbol names, predefined TeXFormula names, text styles and
+ * commands. It is built once (when the class TeXFormula is initialized) and lets
+ * the parser find the longest matching control word in one forward scan, without
+ * any failing hash table lookups or exceptions.
+ */
+final class ControlWordTrie {
+    
+    // kinds of names, can be combined in one node
+    static final int SYMBOL = 1;
+    static final int PREDEFINED_FORMULA = 2;
+    static final int TEXT_STYLE = 4;
+    static final int COMMAND = 8;
+    
+    private static final Node[] NO_NODES = new Node[0];
+    
+    /**
+     * A node of the trie. The path from the root to this node spells a prefix of
+     * one or more control words. If that prefix is a control word itself,
+     * {@link #kinds} is not 0 and {@link #name} contains it.
+     */
+    static final class Node {
+        
+        // the child nodes, indexed by character minus first (null for characters
+        // that don't continue a control word): a direct lookup instead of a search
+        private char first = 0;
+        private Node[] children = NO_NODES;
+        
+        /** the kinds of names ending in this node (0 if none) */
+        int kinds = 0;
+        
+        /** the name ending in this node (or null) */
+        String name = null;
+        
+        /** the symbol with this name (or null) */
+        SymbolAtom symbol = null;
+        
+        /** the (shared) root of the predefined TeXFormula with this name (or null) */
+        Atom formula = null;
+        
+        /**
+         * Get the child node reached with the given character.
+         * 
+         * @param ch the next character
+         * @return the child node, or null if no control word continues with ch
+         */
+        Node next(char ch) {
+            int i = ch - first;
+            return (i >= 0 && i < children.length ? children[i] : null);
+        }
+        
+        boolean is(int kind) {
+            return (kinds & kind) != 0;
+        }
+        
+        private Node getOrAdd(char ch) {
+            Node n = next(ch);
+            if (n == null) {
+                // widen the range of characters if needed
+                if (children.length == 0) {
+                    first = ch;
+                    children = new Node[1];
+                } else if (ch < first) {
+                    Node[] newChildren = new Node[children.length + first - ch];
+                    System.arraycopy(children, 0, newChildren, first - ch, children.length);
+                    first = ch;
+                    children = newChildren;
+                } else if (ch - first >= children.length)
+                    children = Arrays.copyOf(children, ch - first + 1);
+                n = new Node();
+                children[ch - first] = n;
+            }
+            return n;
+        }
+    }
+    
+    private final Node root = new Node();
+    
+    /**
+     * @return the root node, representing the empty prefix
+     */
+    Node getRoot() {
+        return root;
+    }
+    
+    /**
+     * Adds a name of the given kind (a symbol name or a text style or a command)
+     * to the trie.
+     * 
+     * @param name the control word (without the escape character)
+     * @param kind one of the kind constants of this class
+     * @return the node in which the name ends
+     */
+    Node add(String name, int kind) {
+        Node n = root;
+        for (int i = 0; i < name.length(); i++)
+            n = n.getOrAdd(name.charAt(i));
+        n.kinds |= kind;
+        n.name = name;
+        return n;
+    }
+    
+    /**
+     * Adds a symbol to the trie (under its symbol name).
+     * 
+     * @param s the symbol
+     */
+    void add(SymbolAtom s) {
+        add(s.getName(), SYMBOL).symbol = s;
+    }
+    
+    /**
+     * Adds a predefined TeXFormula to the trie.
+     * 
+     * @param name the name of the predefined TeXFormula
+     * @param root the (immutable) root atom of the predefined TeXFormula
+     */
+    void add(String name, Atom root) {
+        add(name, PREDEFINED_FORMULA).formula = root;
+    }
+}
@@ -74,12 +74,6 @@ public class DefaultTeXFont implements TeXFont {
      */
     private static Map<String, CharFont>  symbolMappings;
     
-    /**
-     * 每个字体一个 FontInfo, 存放所有字体的信息. 当前有 cmmi10, cmr10, cmex10, cmsy10
-     * 都是 ttf 字体.
-     */
-    private static FontInfo[] fontInfo;
-    
     /**
      * 在 TeX 算法中使用的通用参数, 特定为 cm 字体族. 
      * 在配置文件 DefaultTeXFont.xml 中 <Parameters> 中配置, 当前有:<pre>
@@ -119,33 +113,85 @@ public class DefaultTeXFont implements TeXFont {
      */
     private static Map<String, Number> generalSettings;
     
+    // indices of the general parameters in the vectors of styleParameters
+    private static final int AXIS_HEIGHT = 0;
+    private static final int BIG_OP_SPACING1 = 1;
+    private static final int BIG_OP_SPACING2 = 2;
+    private static final int BIG_OP_SPACING3 = 3;
+    private static final int BIG_OP_SPACING4 = 4;
+    private static final int BIG_OP_SPACING5 = 5;
+    private static final int DEFAULT_RULE_THICKNESS = 6;
+    private static final int DENOM1 = 7;
+    private static final int DENOM2 = 8;
+    private static final int NUM1 = 9;
+    private static final int NUM2 = 10;
+    private static final int NUM3 = 11;
+    private static final int SUB1 = 12;
+    private static final int SUB2 = 13;
+    private static final int SUB_DROP = 14;
+    private static final int SUP1 = 15;
+    private static final int SUP2 = 16;
+    private static final int SUP3 = 17;
+    private static final int SUP_DROP = 18;
+    
+    // names of the general parameters, in the same order
+    private static final String[] PARAMETER_NAMES = { "axisheight", "bigopspacing1", "bigopspacing2", "bigopspacing3", "bigopspacing4", "bigopspacing5",
+            "defaultrulethickness", "denom1", "denom2", "num1", "num2", "num3", "sub1",
+            "sub2", "subdrop", "sup1", "sup2", "sup3", "supdrop" };
+    
+    /**
+     * 每种显示样式(8 种)一个向量, 包含所有的一般参数, 已乘以该样式的大小比例和 PIXELS_PER_POINT. 
+     * getNum1() 等直接读数组, 不再查 Map.
+     * 
+     * for every style, the values of all general parameters (see PARAMETER_NAMES),
+     * already multiplied by the size factor of the style and PIXELS_PER_POINT
+     */
+    private static float[][] styleParameters;
+    
+    /** 3 种尺寸类的大小比例 (1, scriptfactor, scriptscriptfactor), 见 getSizeClass(). */
+    private static float[] sizeFactors;
+    
+    // general settings: the font ids of the space and the mu
+    private static int spaceFontId, muFontId;
+    
     protected static final int TOP = 0, MID = 1, REP = 2, BOT = 3;
     
     protected static final int WIDTH = 0, HEIGHT = 1, DEPTH = 2, IT = 3;
     
     static {
-        DefaultTeXFontParser parser = new DefaultTeXFontParser();
+        // the information from DefaultTeXFont.xml, its fonts are registered in FontRegistry
+        // (每个字体 (FontInfo) 在第一次使用时才加载, 见 getFontInfo)
+        FontMetricsSnapshot snapshot = FontRegistry.getDefaultFonts();
         // general font parameters; 节点 <Parameters>
-        parameters = parser.parseParameters();
+        parameters = snapshot.getParameters();
         // general settings; 节点 <GeneralSettings>
-        generalSettings = parser.parseGeneralSettings();
-        // text style mappings; 节点 <TextStyleMappings>, 在构造的时候已经加载了, 其实可以放在这里加载??
-        textStyleMappings = parser.parseTextStyleMappings();
+        generalSettings = snapshot.getGeneralSettings();
+        // text style mappings; 节点 <TextStyleMappings>
+        textStyleMappings = snapshot.getTextStyleMappings();
         // default text style : style mappings; 节点 <DefaultTextStyleMapping>
-        defaultTextStyleMappings = parser.parseDefaultTextStyleMappings();
+        defaultTextStyleMappings = snapshot.getDefaultTextStyleMappings();
         // symbol mappings; 节点 <SymbolMappings> 
-        symbolMappings = parser.parseSymbolMappings();
-        // fonts + font descriptions; 节点 <FontDescriptions>, 内含几个 <Font> 节点.
-        fontInfo = parser.parseFontDescriptions();
+        symbolMappings = snapshot.getSymbolMappings();
+        
+        sizeFactors = new float[] { 1, generalSettings.get("scriptfactor").floatValue(),
+                generalSettings.get("scriptscriptfactor").floatValue() };
+        spaceFontId = generalSettings.get(DefaultTeXFontParser.SPACEFONTID_ATTR).intValue();
         
         // check if mufontid exists
-        int muFontId = generalSettings.get(DefaultTeXFontParser.MUFONTID_ATTR).intValue();
-        if (muFontId < 0 || muFontId >= fontInfo.length || fontInfo[muFontId] == null)
+        muFontId = generalSettings.get(DefaultTeXFontParser.MUFONTID_ATTR).intValue();
+        if (!snapshot.hasFont(muFontId))
             throw new XMLResourceParseException(
                     DefaultTeXFontParser.RESOURCE_NAME,
                     DefaultTeXFontParser.GEN_SET_EL,
                     DefaultTeXFontParser.MUFONTID_ATTR,
                     "contains an unknown font id!");
+        
+        // the general parameters for every style (the 8 styles are 0 .. 7)
+        styleParameters = new float[8][PARAMETER_NAMES.length];
+        for (int style = 0; style < styleParameters.length; style++)
+            for (int i = 0; i < PARAMETER_NAMES.length; i++)
+                styleParameters[style][i] = getParameter(PARAMETER_NAMES[i])
+                        * getSizeFactor(style) * PIXELS_PER_POINT;
     }
     
     /**
@@ -166,8 +212,7 @@ public class DefaultTeXFont implements TeXFont {
      * @param style - display style 显示形式. 根据配置, 以及 style 对应的比例
      */
     public float getAxisHeight(int style) {
-        return getParameter("axisheight") * getSizeFactor(style)
-        		* PIXELS_PER_POINT;
+        return styleParameters[style][AXIS_HEIGHT];
     }
     
     
@@ -179,28 +224,23 @@ public class DefaultTeXFont implements TeXFont {
      * 另外就是都乘上了 factor, ppp. 也就是按(字体)比例的.
      */
     public float getBigOpSpacing1(int style) {
-        return getParameter("bigopspacing1") * getSizeFactor(style)
-        		* PIXELS_PER_POINT;
+        return styleParameters[style][BIG_OP_SPACING1];
     }
     
     public float getBigOpSpacing2(int style) {
-        return getParameter("bigopspacing2") * getSizeFactor(style)
-        * PIXELS_PER_POINT;
+        return styleParameters[style][BIG_OP_SPACING2];
     }
     
     public float getBigOpSpacing3(int style) {
-        return getParameter("bigopspacing3") * getSizeFactor(style)
-        * PIXELS_PER_POINT;
+        return styleParameters[style][BIG_OP_SPACING3];
     }
     
     public float getBigOpSpacing4(int style) {
-        return getParameter("bigopspacing4") * getSizeFactor(style)
-        * PIXELS_PER_POINT;
+        return styleParameters[style][BIG_OP_SPACING4];
     }
     
     public float getBigOpSpacing5(int style) {
-        return getParameter("bigopspacing5") * getSizeFactor(style)
-        * PIXELS_PER_POINT;
+        return styleParameters[style][BIG_OP_SPACING5];
     }
     
     /*
@@ -234,9 +274,16 @@ public class DefaultTeXFont implements TeXFont {
      * 
      */
     public Char getChar3(char c, String textStyle_name, int style) throws TextStyleMappingNotFoundException {
+        Char ch = tryGetChar3(c, textStyle_name, style);
+        if (ch == null) // text style mapping not found
+            throw new TextStyleMappingNotFoundException(textStyle_name);
+        return ch;
+    }
+    
+    public Char tryGetChar3(char c, String textStyle_name, int style) {
         CharFont[] mapping = textStyleMappings.get(textStyle_name);
         if (mapping == null) // text style mapping not found
-            throw new TextStyleMappingNotFoundException(textStyle_name);
+            return null;
         
         // 调入 getChar() 的另一个重载版本.
         return getChar_internal(c, mapping, style);
@@ -252,27 +299,25 @@ public class DefaultTeXFont implements TeXFont {
      * 然后合成为 Char 对象. 
      */
     public Char getChar2(CharFont cf, int style) {
-    	// 字尺寸信息, 根据 display style 得到. (比例因子为 1, 0.7, 0.5 几种)
-        float size = getSizeFactor(style);
-        // cf.fontId 为指向 fontInfo[] 的索引.
-        FontInfo info = fontInfo[cf.fontId];
-        Font font = info.getFont();
-        
         // 这里给出的 Char 里面的 fontCode 就是 CharFont(cf) 里面的 fontId. 为什么不用相同的名字呢???
-        return new Char(cf.c, font.deriveFont(size), cf.fontId,
-        		getMetrics(cf, size));
+        // cf.fontId 为指向 fontInfo[] 的索引.
+        return getChar(cf.c, cf.fontId, style);
     }
  
     /**
      * 得到指定 symbolName 的符号在 style 下对应的 Char-对象.
      */
     public Char getChar1(String symbolName, int style) throws SymbolMappingNotFoundException {
+        Char ch = tryGetChar1(symbolName, style);
+        if (ch == null) // no symbol mapping found!
+            throw new SymbolMappingNotFoundException(symbolName);
+        return ch;
+    }
+    
+    public Char tryGetChar1(String symbolName, int style) {
     	// 从 symbolMappings 中找到该名字对应的 {ch,fontid} 对.
         CharFont cf = symbolMappings.get(symbolName);
-        if (cf == null) // no symbol mapping found!
-            throw new SymbolMappingNotFoundException(symbolName);
-        else
-            return getChar2(cf, style);
+        return cf == null ? null : getChar2(cf, style);
     }
 
     
@@ -306,10 +351,7 @@ public class DefaultTeXFont implements TeXFont {
         else {
         	// c2 表示字符 c 在字体 fontId 中的实际位置. (一般和 c 相同)
         	char c2 = (char) (cf[kind].c + offset);
-        	// cfnt 表示 {c2, fontid}, 即字符和字体标识的组合.
-        	CharFont cfnt = new CharFont(c2, cf[kind].fontId);
-        	// 又调入一层, 很讨厌吧.
-            return getChar2(cfnt, style);
+            return getChar(c2, cf[kind].fontId, style);
         }
     }
     
@@ -356,33 +398,34 @@ public class DefaultTeXFont implements TeXFont {
     public float getDefaultRuleThickness(int style) {
     	// 首先得到 Parameters 中配置的 defaultrulethickness, 乘以 style 对应的大小比例,
     	// 再乘以点到像素的转换比例(用于屏幕显示??)
-        return getParameter("defaultrulethickness") * getSizeFactor(style)
-        * PIXELS_PER_POINT;
+        return styleParameters[style][DEFAULT_RULE_THICKNESS];
     }
     
     public float getDenom1(int style) {
-        return getParameter("denom1") * getSizeFactor(style) * PIXELS_PER_POINT;
+        return styleParameters[style][DENOM1];
     }
     
     public float getDenom2(int style) {
-        return getParameter("denom2") * getSizeFactor(style) * PIXELS_PER_POINT;
+        return styleParameters[style][DENOM2];
     }
     
     public Extension getExtension(Char c, int style) {
-        Font f = c.getFont();
+        float size = c.getSize();
         int fc = c.getFontCode();
-        float s = getSizeFactor(style);
         
         // construct Char for every part
-        FontInfo info = fontInfo[fc];
+        FontInfo info = getFontInfo(fc);
         int[] ext = info.getExtension(c.getChar()); // 此字符的扩展信息, 如 rep=62,bot=58,top=56
         Char[] parts = new Char[ext.length]; // 各个部分.
         for (int i = 0; i < ext.length; i++) {
             if (ext[i] == NONE)
                 parts[i] = null;
-            else // 得到各个部分. 可能包括: top,mid,bot,rep.
-                parts[i] = new Char((char) ext[i], f, fc, 
-                		getMetrics(new CharFont((char) ext[i], fc), s));
+            else { // 得到各个部分. 可能包括: top,mid,bot,rep.
+                Char part = getChar((char) ext[i], fc, style);
+                // in the font of c (in case it's from another size class)
+                parts[i] = (part.getSize() == size ? part : new Char((char) ext[i], fc,
+                        size, part.getMetrics()));
+            }
         }
         
         // 使用各个部分, 构造 Extension 对象. 并返回.
@@ -391,7 +434,7 @@ public class DefaultTeXFont implements TeXFont {
     
     public float getKern(CharFont left, CharFont right, int style) {
         if (left.fontId == right.fontId){
-            FontInfo info = fontInfo[left.fontId];
+            FontInfo info = getFontInfo(left.fontId);
             return info.getKern(left.c, right.c, getSizeFactor(style)
             * PIXELS_PER_POINT);
         } else
@@ -400,45 +443,43 @@ public class DefaultTeXFont implements TeXFont {
     
     public CharFont getLigature(CharFont left, CharFont right) {
         if (left.fontId == right.fontId) {
-            FontInfo info =  fontInfo[left.fontId];
+            FontInfo info =  getFontInfo(left.fontId);
             return info.getLigature(left.c, right.c);
         } else
             return null;
     }
     
-    private Metrics getMetrics(CharFont cf, float size) {
-        FontInfo info = fontInfo[cf.fontId];
+    private static Metrics getMetrics(CharFont cf, float size) {
+        FontInfo info = getFontInfo(cf.fontId);
         float[] m = info.getMetrics(cf.c);
         return new Metrics(m[WIDTH], m[HEIGHT], m[DEPTH], m[IT], size
                 * PIXELS_PER_POINT);
     }
     
     public int getMuFontId() {
-        return generalSettings.get(DefaultTeXFontParser.MUFONTID_ATTR).intValue();
+        return muFontId;
     }
     
     public Char getNextLarger(Char c, int style) {
-        FontInfo info = fontInfo[c.getFontCode()];
+        FontInfo info = getFontInfo(c.getFontCode());
         CharFont ch = info.getNextLarger(c.getChar());
-        FontInfo newInfo = fontInfo[ch.fontId];
-        return new Char(ch.c, newInfo.getFont().deriveFont(getSizeFactor(style)),
-                ch.fontId, getMetrics(ch, getSizeFactor(style)));
+        return getChar(ch.c, ch.fontId, style);
     }
     
     public float getNum1(int style) {
-        return getParameter("num1") * getSizeFactor(style) * PIXELS_PER_POINT;
+        return styleParameters[style][NUM1];
     }
     
     public float getNum2(int style) {
-        return getParameter("num2") * getSizeFactor(style) * PIXELS_PER_POINT;
+        return styleParameters[style][NUM2];
     }
     
     public float getNum3(int style) {
-        return getParameter("num3") * getSizeFactor(style) * PIXELS_PER_POINT;
+        return styleParameters[style][NUM3];
     }
     
     public float getQuad(int style, int fontCode) {
-        FontInfo info = fontInfo[fontCode];
+        FontInfo info = getFontInfo(fontCode);
         return info.getQuad(getSizeFactor(style) * PIXELS_PER_POINT);
     }
     
@@ -447,47 +488,45 @@ public class DefaultTeXFont implements TeXFont {
     }
     
     public float getSkew(CharFont cf, int style) {
-        FontInfo info = fontInfo[cf.fontId];
+        FontInfo info = getFontInfo(cf.fontId);
         char skew = info.getSkewChar();
         if (skew == -1)
             return 0;
         else
-            return getKern(cf, new CharFont(skew, cf.fontId), style);
+            return info.getKern(cf.c, skew, getSizeFactor(style) * PIXELS_PER_POINT);
     }
     
     public float getSpace(int style) {
-        int spaceFontId = generalSettings
-                .get(DefaultTeXFontParser.SPACEFONTID_ATTR).intValue();
-        FontInfo info = fontInfo[spaceFontId];
+        FontInfo info = getFontInfo(spaceFontId);
         return info.getSpace(getSizeFactor(style) * PIXELS_PER_POINT);
     }
     
     public float getSub1(int style) {
-        return getParameter("sub1") * getSizeFactor(style) * PIXELS_PER_POINT;
+        return styleParameters[style][SUB1];
     }
     
     public float getSub2(int style) {
-        return getParameter("sub2") * getSizeFactor(style) * PIXELS_PER_POINT;
+        return styleParameters[style][SUB2];
     }
     
     public float getSubDrop(int style) {
-        return getParameter("subdrop") * getSizeFactor(style) * PIXELS_PER_POINT;
+        return styleParameters[style][SUB_DROP];
     }
     
     public float getSup1(int style) {
-        return getParameter("sup1") * getSizeFactor(style) * PIXELS_PER_POINT;
+        return styleParameters[style][SUP1];
     }
     
     public float getSup2(int style) {
-        return getParameter("sup2") * getSizeFactor(style) * PIXELS_PER_POINT;
+        return styleParameters[style][SUP2];
     }
     
     public float getSup3(int style) {
-        return getParameter("sup3") * getSizeFactor(style) * PIXELS_PER_POINT;
+        return styleParameters[style][SUP3];
     }
     
     public float getSupDrop(int style) {
-        return getParameter("supdrop") * getSizeFactor(style) * PIXELS_PER_POINT;
+        return styleParameters[style][SUP_DROP];
     }
     
     /**
@@ -496,23 +535,23 @@ public class DefaultTeXFont implements TeXFont {
      */
     public float getXHeight(int style, int fontCode) {
     	// 根据 fontCode(fontId) 得到该字体信息对象.
-        FontInfo info = fontInfo[fontCode];
+        FontInfo info = getFontInfo(fontCode);
         // 得到其 XHeight*size_factor*... 转换比例.
         return info.getXHeight(getSizeFactor(style) * PIXELS_PER_POINT);
     }
     
     public boolean hasNextLarger(Char c) {
-        FontInfo info = fontInfo[c.getFontCode()];
+        FontInfo info = getFontInfo(c.getFontCode());
         return (info.getNextLarger(c.getChar()) != null);
     }
     
     public boolean hasSpace(int font) {
-        FontInfo info = fontInfo[font];
+        FontInfo info = getFontInfo(font);
         return info.hasSpace();
     }
     
     public boolean isExtensionChar(Char c) {
-        FontInfo info = fontInfo[c.getFontCode()];
+        FontInfo info = getFontInfo(c.getFontCode());
         return info.getExtension(c.getChar()) != null;
     }
     
@@ -537,12 +576,88 @@ public class DefaultTeXFont implements TeXFont {
      *   SS,SS'  		0.5 (配置为 GeneralSettings scriptscriptfactor=0.5)
      */
     public static float getSizeFactor(int style) {
-        if (style < TeXConstants.STYLE_SCRIPT) // 是 D,D',T,T' 则 factor=1.0
+        // 是 D,D',T,T' 则 factor=1.0; 是 S, S' 则 factor=0.7; 是 SS, SS' 则 factor=0.5
+        return sizeFactors[getSizeClass(style)];
+    }
+    
+    /**
+     * 根据 style 得到尺寸类: 0=text (D,D',T,T'), 1=script (S,S'), 2=scriptscript (SS,SS').
+     * Get the size class of the given style: 0 for the display and text styles, 1 for
+     * the script styles and 2 for the scriptscript styles (see {@link #getSizeFactor(int)}).
+     */
+    private static int getSizeClass(int style) {
+        if (style < TeXConstants.STYLE_SCRIPT)
+            return 0;
+        else if (style < TeXConstants.STYLE_SCRIPT_SCRIPT)
             return 1;
-        else if (style < TeXConstants.STYLE_SCRIPT_SCRIPT) // 是 S, S' 则 factor=0.7 
-            return generalSettings.get("scriptfactor").floatValue();
-        else 	// 是 SS, SS' 则 factor=0.5 
-            return generalSettings.get("scriptscriptfactor").floatValue();
+        else
+            return 2;
+    }
+    
+    /**
+     * 得到字体 fontId 在指定尺寸下的 Font (3 种尺寸类的是共享的, 不再每次 deriveFont). 只在绘制时调用.
+     * Get the font with the given id, derived for the given size. The fonts for the
+     * sizes of the 3 size classes are created once, on first use.
+     */
+    static Font getFont(int fontId, float size) {
+        FontInfo info = getFontInfo(fontId);
+        for (int j = 0; j < sizeFactors.length; j++)
+            if (sizeFactors[j] == size)
+                return info.getDerivedFont(j, size);
+        return info.getFont().deriveFont(size);
+    }
+    
+    /**
+     * 得到字体的 FontInfo, 第一次使用时加载 (线程安全).
+     * Get the description of the font with the given id (from the FontRegistry),
+     * loaded on first use.
+     */
+    private static FontInfo getFontInfo(int fontId) {
+        return FontRegistry.get(fontId);
+    }
+    
+    /**
+     * 得到字体的所有共享 Char 对象 (按尺寸类和字符索引), 第一次使用时创建.
+     * Get the shared (immutable) Char objects of the font with the given id, per size
+     * class (null for characters without metrics). They're created when the font is
+     * used for the first time, so looking up a character creates no objects.
+     */
+    @SuppressWarnings("unchecked")
+    private static CharTable<Char>[] getChars(int fontId) {
+        FontInfo info = getFontInfo(fontId);
+        CharTable<Char>[] res = info.getChars();
+        if (res == null)
+            synchronized (info) {
+                res = info.getChars();
+                if (res == null) {
+                    res = (CharTable<Char>[]) new CharTable<?>[sizeFactors.length];
+                    for (int j = 0; j < sizeFactors.length; j++) {
+                        res[j] = new CharTable<Char>();
+                        for (int c = info.nextChar(0); c >= 0; c = info.nextChar(c + 1)) {
+                            float[] m = info.getMetrics((char) c);
+                            if (m != null)
+                                res[j].put((char) c, new Char((char) c, fontId, sizeFactors[j],
+                                        new Metrics(m[WIDTH], m[HEIGHT], m[DEPTH], m[IT],
+                                                sizeFactors[j] * PIXELS_PER_POINT)));
+                        }
+                    }
+                    info.setChars(res);
+                }
+            }
+        return res;
+    }
+    
+    /**
+     * 得到共享的 Char 对象 (字符 c, 字体 fontId, style 对应的尺寸).
+     * Get the (shared) Char object for the given character in the font with the given
+     * id, with the font and metrics for the size of the given style.
+     */
+    private static Char getChar(char c, int fontId, int style) {
+        Char ch = getChars(fontId)[getSizeClass(style)].get(c);
+        if (ch == null) // no metrics: fails like it always did
+            ch = new Char(c, fontId, getSizeFactor(style),
+                    getMetrics(new CharFont(c, fontId), getSizeFactor(style)));
+        return ch;
     }
     
     public void dump() {
@@ -31,6 +31,7 @@ package be.ugent.caagt.jmathtex;
 import java.awt.Font;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
@@ -222,11 +223,10 @@ public class DefaultTeXFontParser {
                 // get optional integer attribute; 可选 skewChar属性. 例如 cmr10 没有此属性.
                 int skewChar = getOptionalInt("skewChar", font, -1);
                 
-                // try reading the font; 加载改字体到 java 中. 使用 awt.Font 对象.
-                Font f = createFont(fontName);
-                //logger.log(Level.INFO, "加载字体 " + fontName + " 结果为: " + f.toString());
+                // check the font; 字体文件本身在绘制时才加载 (FontInfo.getFont()).
+                checkFont(fontName);
                 // create FontInfo-object; 创建 jmathtex.FontInfo 对象, 其包装对字体信息的认识.
-                FontInfo info = new FontInfo(fontId, f, xHeight, space, quad);
+                FontInfo info = new FontInfo(fontId, fontName, xHeight, space, quad);
                 if (skewChar != -1) // attribute set
                     info.setSkewChar((char) skewChar);
                 
@@ -276,11 +276,33 @@ public class DefaultTeXFontParser {
         }
     }
     
+    /**
+     * Checks that the font resource with the given name exists, without loading it.
+     */
+    static void checkFont(String name) throws ResourceParseException {
+        if (DefaultTeXFontParser.class.getResource(name) == null)
+            throw new XMLResourceParseException(RESOURCE_NAME
+                    + ": error reading font '" + name + "'. Error message: not found");
+    }
+    
     /** 根据指定名字(例子 name="cmmi10.ttf") 创建字体? */
-    private Font createFont(String name) throws ResourceParseException {
+    static Font createFont(String name) throws ResourceParseException {
+        return createFont(DefaultTeXFontParser.class.getResource(name), name);
+    }
+    
+    /**
+     * 从 url 读取 TrueType 字体.
+     * Reads a TrueType font.
+     * 
+     * @param url the font file (null if it doesn't exist)
+     * @param name the name of the font, for the error message
+     */
+    static Font createFont(URL url, String name) throws ResourceParseException {
         InputStream fontIn = null;
         try {
-            fontIn = DefaultTeXFontParser.class.getResourceAsStream(name);
+            if (url == null)
+                throw new IOException("not found");
+            fontIn = url.openStream();
             return Font.createFont(java.awt.Font.TRUETYPE_FONT, fontIn);
         } catch (Exception e) {
             throw new XMLResourceParseException(RESOURCE_NAME
@@ -28,6 +28,11 @@
 
 package be.ugent.caagt.jmathtex; // NOPMD
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import be.ugent.caagt.jmathtex.box.Box;
 import be.ugent.caagt.jmathtex.box.CharBox;
 import be.ugent.caagt.jmathtex.box.VerticalBox;
@@ -57,6 +62,139 @@ public class DelimiterFactory {
 	 * 
 	 */
 	
+    // 最多尝试的较大版本数 (防止 nextLarger 成环)
+    private static final int MAX_VARIANTS = 64;
+    
+    /**
+     * 定界符的尺寸阶梯, 按符号名和 style 缓存.
+     * the ladders of the delimiter symbols of DefaultTeXFont, per symbol name and style
+     * (its characters don't depend on the font size, so they can be shared)
+     */
+    private static final ConcurrentHashMap<String, AtomicReferenceArray<Ladder>> ladders =
+        new ConcurrentHashMap<String, AtomicReferenceArray<Ladder>>();
+    
+    /**
+     * 定界符的尺寸阶梯: 所有较大版本及其高度, 以及最大版本的扩展部分.
+     * The sizes a delimiter symbol exists in, in 1 style: the chain of larger versions
+     * with their total heights (height + depth), and the pieces of the extension of
+     * the largest version, if it has one. Choosing a version is a binary search and
+     * the number of repeat pieces of an extension is computed directly.
+     */
+    private static final class Ladder {
+        
+        // the versions, from the smallest to the largest
+        private final Char[] variants;
+        
+        // the largest total height of the versions up to each version (ascending)
+        private final float[] reach;
+        
+        // the extension of the largest version (null if there's none)
+        private final Extension ext;
+        
+        // total height of the top, middle and bottom pieces
+        private float fixed;
+        
+        // total height added by 1 step: 1 repeat piece, or 2 if there's a middle
+        // piece between a top and a bottom piece
+        private float step;
+        
+        Ladder(TeXFont tf, String symbol, int style) {
+            List<Char> chain = new ArrayList<Char>();
+            Char c = tf.getChar1(symbol, style);
+            chain.add(c);
+            while (tf.hasNextLarger(c) && chain.size() < MAX_VARIANTS) {
+                c = tf.getNextLarger(c, style);
+                chain.add(c);
+            }
+            variants = chain.toArray(new Char[chain.size()]);
+            reach = new float[variants.length];
+            float max = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < variants.length; i++) {
+                max = Math.max(max, total(variants[i]));
+                reach[i] = max;
+            }
+            
+            if (tf.isExtensionChar(c)) {
+                ext = tf.getExtension(c, style);
+                if (ext.hasTop())
+                    fixed += total(ext.getTop());
+                if (ext.hasMiddle())
+                    fixed += total(ext.getMiddle());
+                if (ext.hasBottom())
+                    fixed += total(ext.getBottom());
+                step = total(ext.getRepeat());
+                if (ext.hasTop() && ext.hasBottom() && ext.hasMiddle())
+                    step *= 2;
+            } else
+                ext = null;
+        }
+        
+        /**
+         * @return the index of the first version with a total height of at least
+         *         minHeight, or the number of versions if they're all too small
+         */
+        int indexOf(float minHeight) {
+            int lo = 0, hi = variants.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (reach[mid] < minHeight)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+            return lo;
+        }
+        
+        /**
+         * 用扩展部分构造高度至少为 minHeight 的垂直盒子.
+         * @return a vertical box with the pieces of the extension and just enough repeat
+         *         pieces to make it at least minHeight tall
+         */
+        Box createExtension(float minHeight) {
+            VerticalBox vBox = new VerticalBox();
+            if (ext.hasTop()) // insert top part; 在垂直盒子中添加 top 部分, 如果有的话.
+                vBox.add(new CharBox(ext.getTop()));
+            if (ext.hasMiddle()) // insert middle part; 添加中间部分, 如果有的话.
+                vBox.add(new CharBox(ext.getMiddle()));
+            if (ext.hasBottom()) // insert bottom part; 添加底下部分, 如果有的话.
+                vBox.add(new CharBox(ext.getBottom()));
+            
+            // number of steps, computed. The estimate can be 1 too high when minHeight is
+            // within rounding of a step boundary, so 1 step less is added up front and
+            // the last ones are added while the box itself is too small (at least 1 step,
+            // like the old loop).
+            int n = 0;
+            if (step > 0 && minHeight - fixed > step)
+                n = (int) Math.ceil((minHeight - fixed) / step) - 1;
+            CharBox rep = new CharBox(ext.getRepeat());
+            for (int i = 0; i < n; i++)
+                addRepeat(vBox, rep);
+            if (n == 0)
+                addRepeat(vBox, rep);
+            while (vBox.getHeight() + vBox.getDepth() < minHeight && step > 0)
+                addRepeat(vBox, rep);
+            return vBox; // 返回此 垂直盒子. (这里没有设置垂直盒子的 depth,height, 因为不用基线对齐??)
+        }
+        
+        // 插入重复部分: 有 top,bottom 则在中间插入 (有 middle 则需要配对的插入); 只有 bottom
+        // 则在上面插入; 否则在下面插入.
+        private void addRepeat(VerticalBox vBox, CharBox rep) {
+            if (ext.hasTop() && ext.hasBottom()) {
+                vBox.add(1, rep);
+                if (ext.hasMiddle())
+                    vBox.add(vBox.getSize() - 1, rep);
+            } else if (ext.hasBottom())
+                vBox.add(0, rep);
+            else
+                vBox.add(rep);
+        }
+        
+        private static float total(Char c) {
+            Metrics m = c.getMetrics();
+            return m.getHeight() + m.getDepth();
+        }
+    }
+    
     /**
      * 得到最少是指定 minHeight 高度的定界符. (一般为 VerticalBox 盒子)
      * @param symbol the name of the delimiter symbol (该定界符的名字, 如 "langle", "lbrace" 等)
@@ -67,64 +205,44 @@ public class DelimiterFactory {
      * 			the required minimum size.
      */
     public static Box create(String symbol, TeXEnvironment env, float minHeight) {
-        TeXFont tf = env.getTeXFont();
-        int style = env.getStyle();
-        Char c = tf.getChar1(symbol, style); // 得到该符号的 char, fontid, font, 尺寸等全部信息.
-        
-        // start with smallest character; 从最小的尺寸开始.
-        Metrics m = c.getMetrics();
-        float total = m.getHeight() + m.getDepth(); // 该符号的大小(高度). 公式是水平排的, 所以...
+        Ladder ladder = getLadder(symbol, env);
         
-        // try larger versions of the same character until minHeight has been
-        // reached; 尝试较大版本, 直到能达到 minHeight (或者没有了?)
-        while (total < minHeight && tf.hasNextLarger(c)) { // 高度不够, 有下一个版本, 尝试它.
-            c = tf.getNextLarger(c, style);
-            m = c.getMetrics();
-            total = m.getHeight() + m.getDepth();
-        }
-        
-        // 如果有足够高度的, 则返回它.
-        if (total >= minHeight) { // tall enough character found
-            return new CharBox(c);
-        } else if (tf.isExtensionChar(c)) {
+        // 第一个高度足够的版本 (从最小的尺寸开始); smallest version that's tall enough
+        int i = ladder.indexOf(minHeight);
+        if (i < ladder.variants.length) // tall enough character found
+            return new CharBox(ladder.variants[i]);
+        else if (ladder.ext != null)
             // construct tall enough vertical box; 构造一个高度足够的垂直盒子.
-            VerticalBox vBox = new VerticalBox();
-            Extension ext = tf.getExtension(c, style); // extension info; 获得扩展信息. TODO: 了解extension
-            
-            if (ext.hasTop()) { // insert top part; 在垂直盒子中添加 top 部分, 如果有的话.
-                c = ext.getTop();
-                vBox.add(new CharBox(c));
-            }
-            
-            boolean middle = ext.hasMiddle();
-            if (middle) { // insert middle part; 添加中间部分, 如果有的话.
-                c = ext.getMiddle();
-                vBox.add(new CharBox(c));
-            }
-            
-            if (ext.hasBottom()) { // insert bottom part; 添加底下部分, 如果有的话.
-                c = ext.getBottom();
-                vBox.add(new CharBox(c));
-            }
-            
-            // insert repeatable part until tall enough; 插入重复部分, 直到高度达到要求的 minHeight
-            c = ext.getRepeat();
-            CharBox rep = new CharBox(c);
-            do {
-                if (ext.hasTop() && ext.hasBottom()) { // 如果有 top,bottom, 则在中间插入.
-                    vBox.add(1, rep);
-                    if (middle) // 有 middle, 则需要配对的插入.
-                        vBox.add(vBox.getSize() - 1, rep);
-                } else if (ext.hasBottom()) // 否则, 如果只有 bottom, 则在上面插入.
-                    vBox.add(0, rep);
-                else // 否则应该是只有 top 或 middle 了, 则在下面插入.
-                    vBox.add(rep);
-            } while (vBox.getHeight() + vBox.getDepth() < minHeight); // 直到高度达到要求.
-            
-            return vBox; // 返回此 垂直盒子. (这里没有设置垂直盒子的 depth,height, 因为不用基线对齐??)
-        } else
+            return ladder.createExtension(minHeight);
+        else
         	// 没有扩展字符, 则返回该字符的最高的那个版本.
             // no extensions, so return tallest possible character
-            return new CharBox(c);
+            return new CharBox(ladder.variants[ladder.variants.length - 1]);
+    }
+    
+    /**
+     * 得到 (缓存的) 尺寸阶梯.
+     * Get the ladder of the given symbol in the style of the environment, cached if the
+     * font is a DefaultTeXFont (and not a subclass, which can have other glyphs).
+     */
+    private static Ladder getLadder(String symbol, TeXEnvironment env) {
+        TeXFont tf = env.getTeXFont();
+        int style = env.getStyle();
+        if (tf.getClass() != DefaultTeXFont.class)
+            return new Ladder(tf, symbol, style);
+        AtomicReferenceArray<Ladder> styles = ladders.get(symbol);
+        if (styles == null) {
+            styles = new AtomicReferenceArray<Ladder>(8);
+            AtomicReferenceArray<Ladder> old = ladders.putIfAbsent(symbol, styles);
+            if (old != null)
+                styles = old;
+        }
+        Ladder ladder = styles.get(style);
+        if (ladder == null) {
+            ladder = new Ladder(tf, symbol, style);
+            if (!styles.compareAndSet(style, null, ladder))
+                ladder = styles.get(style);
+        }
+        return ladder;
     }
 }
@@ -29,67 +29,84 @@
 package be.ugent.caagt.jmathtex;
 
 import java.awt.Font;
-import java.util.HashMap;
-import java.util.Map;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * 包含单个字体(font)的所有字体信息.
- * Contains all the font information for 1 font.
+ * Contains all the font information for 1 font. The information per character is
+ * kept in sparse tables (see {@link CharTable}), so a font can contain any characters
+ * of Unicode: only the ranges it actually uses take memory.
+ * <p>
+ * Fonts are registered in the {@link FontRegistry}, which creates their FontInfo
+ * when they're used for the first time. Only the package can change a FontInfo (while
+ * reading the font descriptions): the fonts registered from outside the package are
+ * created with a {@link Builder}, so a FontInfo can't be changed anymore once it's
+ * returned to the registry.
  */
-class FontInfo {
+public class FontInfo {
     
     /**
-     * 在 TeX 字体中最大的字符编码值. (为支持中文, 可能要改变一些东西)
+     * 在 TeX 字体中最大的字符编码值 (旧的限制).
      * Maximum number of character codes in a TeX font.
+     * 
+     * @deprecated fonts aren't limited to 256 characters anymore; this is only the
+     *             minimum length of the arrays of the deprecated methods of
+     *             {@link TeXFormulaSettingsParser}
      */
+    @Deprecated
     public static final int NUMBER_OF_CHAR_CODES = 256;
     
-    /**
-     * 表示一对字符, 表示 leftChar + rightChar; 可用在 Map 等数据结构中做为 key. 以表示 lig/kern 数据.
-     */
-    private static class CharCouple {
-        
-        private final char left, right;
-        
-        CharCouple(char l, char r) {
-            left = l;
-            right = r;
-        }
-        
-        public boolean equals(Object o) {
-            CharCouple lig = (CharCouple) o;
-            return left == lig.left && right == lig.right;
-        }
-        
-        public int hashCode() {
-            return (left + right) % 128;
-        }
-    
-        public String toString() {
-        	return "CharCouple{left=" + left + ", right=" + right + "}";
-        }
-    }
-    
     // ID; 字体标识.
     private final int fontId;
     
-    // font; 系统字体对象.
-    private final Font font;
+    // name of the font resource (e.g. "cmmi10.ttf"); 字体文件名.
+    private final String fontName;
+    
+    // where the font is read from when it's needed (null: the resource fontName)
+    private final URL fontUrl;
     
-    /** 尺寸信息; 每字符一个 float[4], 分别为 width,height,depth,italic 值. 最多支持 256 个. */
-    private final float[][] metrics = new float[NUMBER_OF_CHAR_CODES][];
+    // font; 系统字体对象, 第一次绘制时才加载 (除非构造时已给出).
+    private volatile Font font;
     
-    /** 连排信息 */
-    private final Map<CharCouple, Character> lig = new HashMap<CharCouple, Character>();
+    // the font derived for the sizes of DefaultTeXFont's 3 size classes (on first use)
+    private final AtomicReferenceArray<Font> derivedFonts = new AtomicReferenceArray<Font>(3);
     
-    /** 字距调整 */
-    private final Map<CharCouple, Float> kern = new HashMap<CharCouple, Float>();
+    // DefaultTeXFont's shared Char objects of this font, per size class (on first use)
+    private volatile CharTable<Char>[] chars;
+    
+    // 字形轮廓 (字体单位), 第一次使用时提取; guarded by this
+    private CharTable<Shape> outlines;
+    private Font outlineFont;
+    
+    /** 尺寸信息; 每字符一个 float[4], 分别为 width,height,depth,italic 值. */
+    private final CharTable<float[]> metrics = new CharTable<float[]>();
+    
+    /**
+     * 连排信息, 按左边的字符索引: 右边的字符, 以及连排之后的字符 (共享的 CharFont). 
+     * ligatures, indexed by the left character (null if there are none): the right
+     * characters and the resulting ligatures
+     */
+    private final CharTable<char[]> ligRight = new CharTable<char[]>();
+    private final CharTable<CharFont[]> ligs = new CharTable<CharFont[]>();
+    
+    /**
+     * 字距调整, 按左边的字符索引: 右边的字符, 以及 kern 值. 查找时不创建对象.
+     * kerns, indexed by the left character (null if there are none): the right
+     * characters and the kern amounts. Most characters have no or only a few kerns, so
+     * a lookup is a null check or a short scan, without creating any objects.
+     */
+    private final CharTable<char[]> kernRight = new CharTable<char[]>();
+    private final CharTable<float[]> kerns = new CharTable<float[]>();
     
     /** 此字符(数学符号)的下一级更大的符号. */
-    private final CharFont[] nextLarger = new CharFont[NUMBER_OF_CHAR_CODES];
+    private final CharTable<CharFont> nextLarger = new CharTable<CharFont>();
     
     /** 一些符号(应主要是定界符)的扩展字符定义, 每个扩展可能包含 top,middle,bottom,rep 4 个组成部分. */
-    private final int[][] extensions = new int[NUMBER_OF_CHAR_CODES][];
+    private final CharTable<int[]> extensions = new CharTable<int[]>();
     
     // skew character of the font (used for positioning accents)
     private char skewChar = (char) -1;
@@ -99,8 +116,143 @@ class FontInfo {
     private final float space;
     private final float quad;
     
-    public FontInfo(int fontId, Font font, float xHeight, float space, float quad) {
+    /**
+     * 创建 FontInfo 的构建器, 用于注册的字体.
+     * Creates the FontInfo of a registered font (see
+     * {@link FontRegistry#register(FontRegistry.FontLoader)}): set its metrics, kerns,
+     * ligatures, ... and call {@link #build()}, which returns the FontInfo. The builder
+     * can't be used anymore after that.
+     */
+    public static final class Builder {
+        
+        private FontInfo info;
+        
+        /**
+         * @param fontName the name of the font resource (next to FontInfo), the font
+         *           itself is only loaded when it's needed for painting
+         */
+        public Builder(int fontId, String fontName, float xHeight, float space, float quad) {
+            info = new FontInfo(fontId, fontName, xHeight, space, quad);
+        }
+        
+        /**
+         * @param fontName the name of the font
+         * @param font the font, or null to load the font resource with the given name
+         *           (next to FontInfo) when it's needed for painting
+         */
+        public Builder(int fontId, String fontName, Font font, float xHeight, float space,
+                float quad) {
+            info = new FontInfo(fontId, fontName, font, xHeight, space, quad);
+        }
+        
+        /**
+         * @param fontUrl the TrueType file of the font, it's only read when the font is
+         *           needed for painting
+         */
+        public Builder(int fontId, URL fontUrl, float xHeight, float space, float quad) {
+            info = new FontInfo(fontId, fontUrl, xHeight, space, quad);
+        }
+        
+        private FontInfo info() {
+            if (info == null)
+                throw new IllegalStateException("The FontInfo was already built!");
+            return info;
+        }
+        
+        /**
+         * @param k the kern between the given left and right character
+         */
+        public Builder addKern(char left, char right, float k) {
+            info().addKern(left, right, k);
+            return this;
+        }
+        
+        /**
+         * @param ligChar the ligature that replaces the given left and right character
+         */
+        public Builder addLigature(char left, char right, char ligChar) {
+            info().addLigature(left, right, ligChar);
+            return this;
+        }
+        
+        /**
+         * @param ext the top, middle, bottom and repeat character of the extension of
+         *           the given character
+         */
+        public Builder setExtension(char ch, int[] ext) {
+            info().setExtension(ch, ext);
+            return this;
+        }
+        
+        /**
+         * @param metrics the width, height, depth and italic correction of the given
+         *           character
+         */
+        public Builder setMetrics(char c, float[] metrics) {
+            info().setMetrics(c, metrics);
+            return this;
+        }
+        
+        /**
+         * @param larger the next larger version of the given character, in the font
+         *           with the id fontLarger
+         */
+        public Builder setNextLarger(char ch, char larger, int fontLarger) {
+            info().setNextLarger(ch, larger, fontLarger);
+            return this;
+        }
+        
+        /**
+         * @param c the skew character of the font (for positioning accents)
+         */
+        public Builder setSkewChar(char c) {
+            info().setSkewChar(c);
+            return this;
+        }
+        
+        /**
+         * @return the FontInfo, which can't be changed anymore
+         * @throws IllegalStateException if it was already built
+         */
+        public FontInfo build() {
+            FontInfo res = info();
+            info = null;
+            return res;
+        }
+    }
+    
+    /**
+     * @param fontName the name of the font resource (next to this class), the font
+     *           itself is only loaded when it's needed for painting
+     */
+    FontInfo(int fontId, String fontName, float xHeight, float space, float quad) {
+        this(fontId, fontName, null, null, xHeight, space, quad);
+    }
+    
+    /**
+     * @param fontName the name of the font
+     * @param font the font, or null to load the font resource with the given name
+     *           (next to this class) when it's needed for painting
+     */
+    FontInfo(int fontId, String fontName, Font font, float xHeight, float space,
+            float quad) {
+        this(fontId, fontName, null, font, xHeight, space, quad);
+    }
+    
+    /**
+     * 从任意位置 (如其他 jar 或文件) 加载的字体.
+     * @param fontUrl the TrueType file of the font, it's only read when the font is
+     *           needed for painting
+     */
+    FontInfo(int fontId, URL fontUrl, float xHeight, float space, float quad) {
+        this(fontId, fontUrl.toString(), fontUrl, null, xHeight, space, quad);
+    }
+    
+    private FontInfo(int fontId, String fontName, URL fontUrl, Font font, float xHeight,
+            float space, float quad) {
         this.fontId = fontId;
+        this.fontName = fontName;
+        this.fontUrl = fontUrl;
         this.font = font;
         this.xHeight = xHeight;
         this.space = space;
@@ -116,8 +268,15 @@ class FontInfo {
      * @param k
      *           kern value (字距调整值)
      */
-    public void addKern(char left, char right, float k) {
-        kern.put(new CharCouple(left, right), new Float(k));
+    void addKern(char left, char right, float k) {
+        char[] rights = kernRight.get(left);
+        int i = indexOf(rights, right);
+        if (i < 0) { // new pair
+            i = (rights == null ? 0 : rights.length);
+            kernRight.put(left, append(rights, right));
+            kerns.put(left, i == 0 ? new float[1] : Arrays.copyOf(kerns.get(left), i + 1));
+        }
+        kerns.get(left)[i] = k;
     }
     
     /**
@@ -129,41 +288,111 @@ class FontInfo {
      * @param ligChar
      *           ligature to replace left and right character (连排之后的字符, 如 'fi' 成为一个字符)
      */
-    public void addLigature(char left, char right, char ligChar) {
-        lig.put(new CharCouple(left, right), new Character(ligChar));
+    void addLigature(char left, char right, char ligChar) {
+        char[] rights = ligRight.get(left);
+        int i = indexOf(rights, right);
+        if (i < 0) { // new pair
+            i = (rights == null ? 0 : rights.length);
+            ligRight.put(left, append(rights, right));
+            ligs.put(left, i == 0 ? new CharFont[1] : Arrays.copyOf(ligs.get(left), i + 1));
+        }
+        ligs.get(left)[i] = new CharFont(ligChar, fontId);
+    }
+    
+    /**
+     * 以下 4 个方法给出某左边字符的所有 kern/ligature (用于 FontMetricsSnapshot), 不要修改!
+     * @return the right characters that have a kern with the given left character
+     *         (null if there are none)
+     */
+    char[] getKernRight(char left) {
+        return kernRight.get(left);
+    }
+    
+    /** @return the kern amounts of the pairs of {@link #getKernRight(char)} */
+    float[] getKerns(char left) {
+        return kerns.get(left);
+    }
+    
+    /**
+     * @return the right characters that form a ligature with the given left character
+     *         (null if there are none)
+     */
+    char[] getLigatureRight(char left) {
+        return ligRight.get(left);
+    }
+    
+    /** @return the ligatures of the pairs of {@link #getLigatureRight(char)} */
+    CharFont[] getLigatures(char left) {
+        return ligs.get(left);
+    }
+    
+    /**
+     * 下一个有任何信息的字符 (用于遍历).
+     * Returns the first character, not smaller than the given one, that has any
+     * information (metrics, kerns, ligatures, an extension or a next larger character).
+     * 
+     * @return a character, or -1 if there are no more characters
+     */
+    int nextChar(int from) {
+        int res = -1;
+        for (CharTable<?> table : new CharTable<?>[] { metrics, kernRight, ligRight,
+                nextLarger, extensions }) {
+            int c = table.next(from);
+            if (c >= 0 && (res < 0 || c < res))
+                res = c;
+        }
+        return res;
+    }
+    
+    private static int indexOf(char[] chars, char c) {
+        if (chars != null)
+            for (int i = 0; i < chars.length; i++)
+                if (chars[i] == c)
+                    return i;
+        return -1;
+    }
+    
+    private static char[] append(char[] chars, char c) {
+        if (chars == null)
+            return new char[] { c };
+        char[] res = Arrays.copyOf(chars, chars.length + 1);
+        res[chars.length] = c;
+        return res;
     }
     
     public int[] getExtension(char ch) {
-        return extensions[ch];
+        return extensions.get(ch);
     }
     
     /** 得到 kern 信息 */
     public float getKern(char left, char right, float factor) {
-        Object obj = kern.get(new CharCouple(left, right));
-        if (obj == null)
-            return 0;
-        else
-            return ((Float) obj).floatValue() * factor;
+        char[] rights = kernRight.get(left);
+        if (rights != null)
+            for (int i = 0; i < rights.length; i++)
+                if (rights[i] == right)
+                    return kerns.get(left)[i] * factor;
+        return 0;
     }
     
-    /** 得到 ligature 信息 */
+    /** 得到 ligature 信息 (共享的 CharFont, 不要修改!) */
     public CharFont getLigature(char left, char right) {
-        Object obj = lig.get(new CharCouple(left, right));
-        if (obj == null)
-            return null;
-        else
-            return new CharFont(((Character) obj).charValue(), fontId);
+        char[] rights = ligRight.get(left);
+        if (rights != null)
+            for (int i = 0; i < rights.length; i++)
+                if (rights[i] == right)
+                    return ligs.get(left)[i];
+        return null;
     }
     
     /** 
-     * 得到字符 c 的尺寸信息. 如果想支持中文, 可能还需要更多兼容处理! 
+     * 得到字符 c 的尺寸信息 (null 表示本字体没有此字符).
      */
     public float[] getMetrics(char c) {
-        return metrics[c];
+        return metrics.get(c);
     }
     
     public CharFont getNextLarger(char ch) {
-        return nextLarger[ch];
+        return nextLarger.get(ch);
     }
     
     /**
@@ -195,19 +424,19 @@ class FontInfo {
         return space > TeXFormula.PREC;
     }
     
-    public void setExtension(char ch, int[] ext) {
-        extensions[ch] =  ext;
+    void setExtension(char ch, int[] ext) {
+        extensions.put(ch, ext);
     }
     
-    public void setMetrics(char c, float[] arr) {
-        metrics[c] = arr;
+    void setMetrics(char c, float[] arr) {
+        metrics.put(c, arr);
     }
     
-    public void setNextLarger(char ch, char larger, int fontLarger) {
-        nextLarger[ch] = new CharFont(larger, fontLarger);
+    void setNextLarger(char ch, char larger, int fontLarger) {
+        nextLarger.put(ch, new CharFont(larger, fontLarger));
     }
     
-    public void setSkewChar(char c) {
+    void setSkewChar(char c) {
         skewChar = c;
     }
     
@@ -215,12 +444,79 @@ class FontInfo {
         return fontId;
     }
     
+    /**
+     * 加载字体 (只在绘制时需要; 布局只使用尺寸信息, 不使用 java.awt.Font).
+     * @return the font given to the constructor, or else the font loaded on the first
+     *         call
+     */
     public Font getFont() {
-        return font;
+        Font f = font;
+        if (f == null)
+            synchronized (this) {
+                if (font == null)
+                    font = (fontUrl == null ? DefaultTeXFontParser.createFont(fontName)
+                            : DefaultTeXFontParser.createFont(fontUrl, fontName));
+                f = font;
+            }
+        return f;
+    }
+    
+    /**
+     * @return the name of the font resource (e.g. "cmmi10.ttf"), or the url the font
+     *         is read from
+     */
+    public String getFontName() {
+        return fontName;
+    }
+    
+    /**
+     * 得到导出的字体, DefaultTeXFont 的 3 种尺寸类的只生成一次.
+     * @return the font derived for the given size, shared if it's the size of the
+     *         given size class of DefaultTeXFont
+     */
+    Font getDerivedFont(int sizeClass, float size) {
+        Font f = derivedFonts.get(sizeClass);
+        if (f == null) {
+            derivedFonts.compareAndSet(sizeClass, null, getFont().deriveFont(size));
+            f = derivedFonts.get(sizeClass);
+        }
+        return f;
+    }
+    
+    /**
+     * @return DefaultTeXFont's shared Char objects of this font, per size class (null
+     *         if they're not created yet)
+     */
+    CharTable<Char>[] getChars() {
+        return chars;
+    }
+    
+    void setChars(CharTable<Char>[] chars) {
+        this.chars = chars;
+    }
+
+    /**
+     * 得到字符的字形轮廓, 每个字符只提取一次.
+     * @return the outline of the glyph of the given character, in font units (see
+     *         {@link GlyphOutlines#UNITS_PER_EM}), extracted from the font on the
+     *         first call and shared afterwards
+     */
+    synchronized Shape getOutline(char c) {
+        if (outlines == null) {
+            outlines = new CharTable<Shape>();
+            outlineFont = getFont().deriveFont((float) GlyphOutlines.UNITS_PER_EM);
+        }
+        Shape s = outlines.get(c);
+        if (s == null) {
+            s = outlineFont.createGlyphVector(new FontRenderContext(null, true, true),
+                    new char[] { c }).getOutline();
+            outlines.put(c, s);
+        }
+        return s;
     }
 
     @Override
     public String toString() {
-    	return "FontInfo{fontId=" + this.fontId + ", font=" + this.font + "}";
+    	return "FontInfo{fontId=" + this.fontId + ", font=" + this.fontName + "}";
     }
 }
@@ -0,0 +1,637 @@
+/* FontMetricsSnapshot.java
+ * =========================================================================
+ * This file is part of the JMathTeX Library - http://jmathtex.sourceforge.net
+ *
+ * Copyright (C) 2004-2007 Universiteit Gent
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ */
+
+package be.ugent.caagt.jmathtex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.CRC32;
+
+import be.ugent.caagt.jmathtex.ex.ResourceParseException;
+import be.ugent.caagt.jmathtex.ex.XMLResourceParseException;
+
+/**
+ * DefaultTeXFont.xml 内容的二进制快照, 避免启动时用 JDOM 解析 1600 行的 XML.
+ * All the information DefaultTeXFont reads from "DefaultTeXFont.xml" (parameters,
+ * general settings, text style and symbol mappings and the font descriptions with
+ * their metrics, kerns, ligatures, extensions and next larger characters), either
+ * parsed from the XML-file or loaded from a compact binary snapshot of it.
+ * <p>
+ * The XML-file remains the source of truth: the snapshot stores a checksum of the
+ * XML-file it was compiled from and is ignored when it doesn't match, so a stale
+ * snapshot only costs the time of parsing the XML. Compile it again whenever
+ * "DefaultTeXFont.xml" is changed:
+ * <pre>
+ *   java be.ugent.caagt.jmathtex.FontMetricsSnapshot resource-dir
+ * </pre>
+ * (writes resource-dir/be/ugent/caagt/jmathtex/DefaultTeXFont.bin from the XML-file
+ * on the classpath).
+ * <p>
+ * The font descriptions of a snapshot are only read when a font is used for the
+ * first time (see {@link #getFontInfo(int)}): the snapshot starts with a table of the
+ * offsets of the fonts, so an inline formula that never uses cmex10 never reads its
+ * metrics.
+ */
+public class FontMetricsSnapshot {
+    
+    /** 二进制快照的资源名. */
+    public static final String RESOURCE_NAME = "DefaultTeXFont.bin";
+    
+    // "JMTF" + format version
+    private static final int MAGIC = 0x4A4D5446;
+    private static final int VERSION = 3;
+    
+    // flags of a character record
+    private static final int HAS_METRICS = 1;
+    private static final int HAS_NEXT_LARGER = 2;
+    private static final int HAS_EXTENSION = 4;
+    private static final int HAS_KERNS = 8;
+    private static final int HAS_LIGATURES = 16;
+    
+    // types of a general setting
+    private static final int INT = 0;
+    private static final int FLOAT = 1;
+    
+    private final Map<String, Float> parameters;
+    private final Map<String, Number> generalSettings;
+    private final Map<String, CharFont[]> textStyleMappings;
+    private final String[] defaultTextStyleMappings;
+    private final Map<String, CharFont> symbolMappings;
+    
+    // the font descriptions, indexed by font id (loaded on first use)
+    private final AtomicReferenceArray<FontInfo> fontInfo;
+    
+    // the font records of a snapshot and their offsets in it (-1: no such font),
+    // both null if everything was parsed from the XML-file
+    private final ByteBuffer fontData;
+    private final int[] fontOffsets;
+    
+    private FontMetricsSnapshot(Map<String, Float> parameters,
+            Map<String, Number> generalSettings, Map<String, CharFont[]> textStyleMappings,
+            String[] defaultTextStyleMappings, Map<String, CharFont> symbolMappings,
+            FontInfo[] fontInfo, ByteBuffer fontData, int[] fontOffsets) {
+        this.parameters = parameters;
+        this.generalSettings = generalSettings;
+        this.textStyleMappings = textStyleMappings;
+        this.defaultTextStyleMappings = defaultTextStyleMappings;
+        this.symbolMappings = symbolMappings;
+        this.fontInfo = new AtomicReferenceArray<FontInfo>(fontInfo);
+        this.fontData = fontData;
+        this.fontOffsets = fontOffsets;
+    }
+    
+    /**
+     * 用 JDOM 解析 DefaultTeXFont.xml.
+     * Parses "DefaultTeXFont.xml".
+     * 
+     * @return the information from the XML-file
+     * @throws ResourceParseException if the XML-file is invalid
+     */
+    public static FontMetricsSnapshot parseXML() throws ResourceParseException {
+        DefaultTeXFontParser parser = new DefaultTeXFontParser();
+        // same order as DefaultTeXFont has always used
+        Map<String, Float> parameters = parser.parseParameters();
+        Map<String, Number> generalSettings = parser.parseGeneralSettings();
+        Map<String, CharFont[]> textStyleMappings = parser.parseTextStyleMappings();
+        String[] defaultTextStyleMappings = parser.parseDefaultTextStyleMappings();
+        Map<String, CharFont> symbolMappings = parser.parseSymbolMappings();
+        FontInfo[] fontInfo = parser.parseFontDescriptions();
+        return new FontMetricsSnapshot(parameters, generalSettings, textStyleMappings,
+                defaultTextStyleMappings, symbolMappings, fontInfo, null, null);
+    }
+    
+    /**
+     * 加载二进制快照 (文件资源用内存映射); 没有快照或已过期时返回 null.
+     * Loads the binary snapshot next to this class. A snapshot in a file is memory
+     * mapped, otherwise (e.g. in a jar) it's read into a buffer.
+     * 
+     * @return the information from the snapshot, or null if there's no snapshot or
+     *         if it wasn't compiled from the current "DefaultTeXFont.xml"
+     * @throws ResourceParseException if the snapshot is invalid
+     */
+    public static FontMetricsSnapshot load() throws ResourceParseException {
+        URL url = FontMetricsSnapshot.class.getResource(RESOURCE_NAME);
+        if (url == null) // not compiled
+            return null;
+        ByteBuffer buf;
+        try {
+            buf = map(url);
+        } catch (IOException e) {
+            return null; // can still parse the XML-file
+        }
+        
+        if (buf.remaining() < 12 || buf.getInt() != MAGIC || buf.getInt() != VERSION
+                || buf.getInt() != getChecksum())
+            return null; // other format or stale
+        try {
+            return read(buf);
+        } catch (BufferUnderflowException e) {
+            throw new XMLResourceParseException(RESOURCE_NAME + ": unexpected end of file!");
+        }
+    }
+    
+    private static ByteBuffer map(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            FileChannel ch = null;
+            try {
+                ch = new RandomAccessFile(new File(url.toURI()), "r").getChannel();
+                // the mapping stays valid after the channel is closed
+                return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            } catch (URISyntaxException e) {
+                // fall through: read it as a stream
+            } finally {
+                if (ch != null)
+                    ch.close();
+            }
+        }
+        return ByteBuffer.wrap(readFully(url.openStream()));
+    }
+    
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream res = new ByteArrayOutputStream();
+            byte[] b = new byte[8192];
+            for (int n = in.read(b); n >= 0; n = in.read(b))
+                res.write(b, 0, n);
+            return res.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+    
+    /**
+     * @return the CRC-32 checksum of the current "DefaultTeXFont.xml"
+     */
+    private static int getChecksum() throws ResourceParseException {
+        InputStream in = FontMetricsSnapshot.class
+                .getResourceAsStream(DefaultTeXFontParser.RESOURCE_NAME);
+        if (in == null)
+            throw new XMLResourceParseException(DefaultTeXFontParser.RESOURCE_NAME
+                    + ": resource not found!");
+        try {
+            CRC32 crc = new CRC32();
+            crc.update(readFully(in));
+            return (int) crc.getValue();
+        } catch (IOException e) {
+            throw new XMLResourceParseException(DefaultTeXFontParser.RESOURCE_NAME, e);
+        }
+    }
+    
+    private static FontMetricsSnapshot read(ByteBuffer buf) throws ResourceParseException {
+        // <Parameters>
+        Map<String, Float> parameters = new HashMap<String, Float>();
+        for (int n = buf.getInt(); n > 0; n--)
+            parameters.put(readString(buf), buf.getFloat());
+        
+        // <GeneralSettings>
+        Map<String, Number> generalSettings = new HashMap<String, Number>();
+        for (int n = buf.getInt(); n > 0; n--) {
+            String name = readString(buf);
+            if (buf.get() == INT)
+                generalSettings.put(name, buf.getInt());
+            else
+                generalSettings.put(name, buf.getFloat());
+        }
+        
+        // <TextStyleMappings>
+        Map<String, CharFont[]> textStyleMappings = new HashMap<String, CharFont[]>();
+        for (int n = buf.getInt(); n > 0; n--) {
+            String name = readString(buf);
+            CharFont[] charFonts = new CharFont[buf.getShort()];
+            for (int i = 0; i < charFonts.length; i++)
+                charFonts[i] = readCharFont(buf);
+            textStyleMappings.put(name, charFonts);
+        }
+        
+        // <DefaultTextStyleMapping>
+        String[] defaultTextStyleMappings = new String[buf.getShort()];
+        for (int i = 0; i < defaultTextStyleMappings.length; i++)
+            defaultTextStyleMappings[i] = readString(buf);
+        
+        // <SymbolMappings>
+        Map<String, CharFont> symbolMappings = new HashMap<String, CharFont>();
+        for (int n = buf.getInt(); n > 0; n--)
+            symbolMappings.put(readString(buf), readCharFont(buf));
+        
+        // <FontDescriptions>: only the offsets, the fonts are read on first use
+        int[] fontOffsets = new int[buf.getShort()];
+        for (int i = 0; i < fontOffsets.length; i++)
+            fontOffsets[i] = buf.getInt();
+        
+        return new FontMetricsSnapshot(parameters, generalSettings, textStyleMappings,
+                defaultTextStyleMappings, symbolMappings, new FontInfo[fontOffsets.length],
+                buf.slice(), fontOffsets);
+    }
+    
+    /**
+     * 得到字体的 FontInfo, 第一次使用时才从快照中读取 (线程安全).
+     * Get the description of the font with the given id. From a snapshot, it's read
+     * when it's needed for the first time.
+     * 
+     * @param fontId the font id
+     * @return the font description, or null if there's no font with that id
+     * @throws ResourceParseException if the snapshot is invalid or the font resource
+     *             is missing
+     */
+    FontInfo getFontInfo(int fontId) throws ResourceParseException {
+        FontInfo info = fontInfo.get(fontId);
+        if (info == null && fontOffsets != null && fontOffsets[fontId] >= 0) {
+            // another thread may read it at the same time: the first one wins
+            ByteBuffer buf = fontData.duplicate();
+            try {
+                buf.position(fontOffsets[fontId]);
+                fontInfo.compareAndSet(fontId, null, readFontInfo(buf));
+            } catch (ResourceParseException e) {
+                throw e;
+            } catch (RuntimeException e) { // invalid offset, end of file or character code
+                throw new XMLResourceParseException(RESOURCE_NAME + ": invalid font " + fontId
+                        + "! (" + e + ")");
+            }
+            info = fontInfo.get(fontId);
+        }
+        return info;
+    }
+    
+    /**
+     * @return the number of font ids (some of them may have no font)
+     */
+    int getFontCount() {
+        return fontInfo.length();
+    }
+    
+    /**
+     * @return whether there's a font with the given id (without loading it)
+     */
+    boolean hasFont(int fontId) {
+        if (fontId < 0 || fontId >= fontInfo.length())
+            return false;
+        return fontOffsets == null ? fontInfo.get(fontId) != null : fontOffsets[fontId] >= 0;
+    }
+    
+    private static FontInfo readFontInfo(ByteBuffer buf) throws ResourceParseException {
+        int fontId = buf.getShort();
+        String fontName = readString(buf);
+        float xHeight = buf.getFloat(), space = buf.getFloat(), quad = buf.getFloat();
+        DefaultTeXFontParser.checkFont(fontName);
+        FontInfo info = new FontInfo(fontId, fontName, xHeight, space, quad);
+        info.setSkewChar(buf.getChar());
+        
+        // the characters
+        for (int n = buf.getInt(); n > 0; n--) {
+            char ch = buf.getChar();
+            int flags = buf.get();
+            if ((flags & HAS_METRICS) != 0) {
+                float[] metrics = new float[4];
+                for (int i = 0; i < metrics.length; i++)
+                    metrics[i] = buf.getFloat();
+                info.setMetrics(ch, metrics);
+            }
+            if ((flags & HAS_NEXT_LARGER) != 0) {
+                char larger = buf.getChar();
+                info.setNextLarger(ch, larger, buf.getShort());
+            }
+            if ((flags & HAS_EXTENSION) != 0) {
+                int[] ext = new int[4];
+                for (int i = 0; i < ext.length; i++)
+                    ext[i] = buf.getShort();
+                info.setExtension(ch, ext);
+            }
+            if ((flags & HAS_KERNS) != 0)
+                for (int k = buf.getShort(); k > 0; k--) {
+                    char right = buf.getChar();
+                    info.addKern(ch, right, buf.getFloat());
+                }
+            if ((flags & HAS_LIGATURES) != 0)
+                for (int k = buf.getShort(); k > 0; k--) {
+                    char right = buf.getChar();
+                    info.addLigature(ch, right, buf.getChar());
+                }
+        }
+        return info;
+    }
+    
+    private static CharFont readCharFont(ByteBuffer buf) {
+        int fontId = buf.getShort();
+        char c = buf.getChar();
+        return fontId < 0 ? null : new CharFont(c, fontId);
+    }
+    
+    private static String readString(ByteBuffer buf) {
+        int length = buf.getShort();
+        if (length < 0)
+            return null;
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++)
+            chars[i] = buf.getChar();
+        return new String(chars);
+    }
+    
+    /**
+     * 写出二进制快照.
+     * Writes this information as a binary snapshot. It's tied to the current
+     * "DefaultTeXFont.xml" by its checksum.
+     * 
+     * @param os the stream to write to (not closed)
+     * @throws IOException if writing fails
+     * @throws ResourceParseException if "DefaultTeXFont.xml" can't be read
+     */
+    public void write(OutputStream os) throws IOException, ResourceParseException {
+        DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(getChecksum());
+        
+        // sorted by name, so the output doesn't depend on the hash map order
+        Map<String, Float> params = new TreeMap<String, Float>(parameters);
+        out.writeInt(params.size());
+        for (Map.Entry<String, Float> e : params.entrySet()) {
+            writeString(out, e.getKey());
+            out.writeFloat(e.getValue());
+        }
+        
+        Map<String, Number> settings = new TreeMap<String, Number>(generalSettings);
+        out.writeInt(settings.size());
+        for (Map.Entry<String, Number> e : settings.entrySet()) {
+            writeString(out, e.getKey());
+            if (e.getValue() instanceof Integer) {
+                out.writeByte(INT);
+                out.writeInt(e.getValue().intValue());
+            } else {
+                out.writeByte(FLOAT);
+                out.writeFloat(e.getValue().floatValue());
+            }
+        }
+        
+        Map<String, CharFont[]> styles = new TreeMap<String, CharFont[]>(textStyleMappings);
+        out.writeInt(styles.size());
+        for (Map.Entry<String, CharFont[]> e : styles.entrySet()) {
+            writeString(out, e.getKey());
+            out.writeShort(e.getValue().length);
+            for (CharFont cf : e.getValue())
+                writeCharFont(out, cf);
+        }
+        
+        out.writeShort(defaultTextStyleMappings.length);
+        for (String s : defaultTextStyleMappings)
+            writeString(out, s);
+        
+        Map<String, CharFont> symbols = new TreeMap<String, CharFont>(symbolMappings);
+        out.writeInt(symbols.size());
+        for (Map.Entry<String, CharFont> e : symbols.entrySet()) {
+            writeString(out, e.getKey());
+            writeCharFont(out, e.getValue());
+        }
+        
+        // the offsets of the fonts (relative to the end of the table), then the fonts
+        ByteArrayOutputStream fonts = new ByteArrayOutputStream();
+        DataOutputStream fontsOut = new DataOutputStream(fonts);
+        out.writeShort(getFontCount());
+        for (int i = 0; i < getFontCount(); i++) {
+            FontInfo info = getFontInfo(i);
+            out.writeInt(info == null ? -1 : fonts.size());
+            if (info != null)
+                writeFontInfo(fontsOut, info);
+        }
+        fonts.writeTo(out);
+        out.flush();
+    }
+    
+    private static void writeFontInfo(DataOutputStream out, FontInfo info) throws IOException {
+        out.writeShort(info.getId());
+        writeString(out, info.getFontName());
+        out.writeFloat(info.getXHeight(1));
+        out.writeFloat(info.getSpace(1));
+        out.writeFloat(info.getQuad(1));
+        out.writeChar(info.getSkewChar());
+        
+        List<Character> chars = new ArrayList<Character>();
+        for (int c = info.nextChar(0); c >= 0; c = info.nextChar(c + 1))
+            chars.add((char) c);
+        out.writeInt(chars.size());
+        for (char ch : chars) {
+            int flags = getFlags(info, ch);
+            out.writeChar(ch);
+            out.writeByte(flags);
+            if ((flags & HAS_METRICS) != 0)
+                for (float f : info.getMetrics(ch))
+                    out.writeFloat(f);
+            if ((flags & HAS_NEXT_LARGER) != 0) {
+                out.writeChar(info.getNextLarger(ch).c);
+                out.writeShort(info.getNextLarger(ch).fontId);
+            }
+            if ((flags & HAS_EXTENSION) != 0)
+                for (int ext : info.getExtension(ch))
+                    out.writeShort(ext);
+            if ((flags & HAS_KERNS) != 0) {
+                char[] right = info.getKernRight(ch);
+                out.writeShort(right.length);
+                for (int i = 0; i < right.length; i++) {
+                    out.writeChar(right[i]);
+                    out.writeFloat(info.getKerns(ch)[i]);
+                }
+            }
+            if ((flags & HAS_LIGATURES) != 0) {
+                char[] right = info.getLigatureRight(ch);
+                out.writeShort(right.length);
+                for (int i = 0; i < right.length; i++) {
+                    out.writeChar(right[i]);
+                    out.writeChar(info.getLigatures(ch)[i].c);
+                }
+            }
+        }
+    }
+    
+    private static int getFlags(FontInfo info, char ch) {
+        return (info.getMetrics(ch) == null ? 0 : HAS_METRICS)
+                | (info.getNextLarger(ch) == null ? 0 : HAS_NEXT_LARGER)
+                | (info.getExtension(ch) == null ? 0 : HAS_EXTENSION)
+                | (info.getKernRight(ch) == null ? 0 : HAS_KERNS)
+                | (info.getLigatureRight(ch) == null ? 0 : HAS_LIGATURES);
+    }
+    
+    private static void writeCharFont(DataOutputStream out, CharFont cf) throws IOException {
+        out.writeShort(cf == null ? -1 : cf.fontId);
+        out.writeChar(cf == null ? 0 : cf.c);
+    }
+    
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null)
+            out.writeShort(-1);
+        else {
+            out.writeShort(s.length());
+            out.writeChars(s);
+        }
+    }
+    
+    /**
+     * 比较两份信息, 返回所有不同之处 (用于测试两种加载方式的结果一致).
+     * Compares this information with the given one, font metrics included.
+     * 
+     * @param other the information to compare with
+     * @return a description of every difference (empty if they're identical)
+     */
+    public List<String> compare(FontMetricsSnapshot other) {
+        List<String> res = new ArrayList<String>();
+        if (!parameters.equals(other.parameters))
+            res.add("parameters: " + parameters + " <> " + other.parameters);
+        if (!generalSettings.equals(other.generalSettings))
+            res.add("general settings: " + generalSettings + " <> " + other.generalSettings);
+        if (!textStyleMappings.keySet().equals(other.textStyleMappings.keySet()))
+            res.add("text styles: " + textStyleMappings.keySet() + " <> "
+                    + other.textStyleMappings.keySet());
+        else
+            for (Map.Entry<String, CharFont[]> e : textStyleMappings.entrySet()) {
+                CharFont[] a = e.getValue(), b = other.textStyleMappings.get(e.getKey());
+                boolean same = a.length == b.length;
+                for (int i = 0; same && i < a.length; i++)
+                    same = equals(a[i], b[i]);
+                if (!same)
+                    res.add("text style " + e.getKey() + ": " + Arrays.toString(a) + " <> "
+                            + Arrays.toString(b));
+            }
+        if (!Arrays.equals(defaultTextStyleMappings, other.defaultTextStyleMappings))
+            res.add("default text styles: " + Arrays.toString(defaultTextStyleMappings)
+                    + " <> " + Arrays.toString(other.defaultTextStyleMappings));
+        if (!symbolMappings.keySet().equals(other.symbolMappings.keySet()))
+            res.add("symbols: " + symbolMappings.keySet() + " <> "
+                    + other.symbolMappings.keySet());
+        else
+            for (Map.Entry<String, CharFont> e : symbolMappings.entrySet())
+                if (!equals(e.getValue(), other.symbolMappings.get(e.getKey())))
+                    res.add("symbol " + e.getKey() + ": " + e.getValue() + " <> "
+                            + other.symbolMappings.get(e.getKey()));
+        
+        if (getFontCount() != other.getFontCount())
+            res.add("number of fonts: " + getFontCount() + " <> " + other.getFontCount());
+        else
+            for (int i = 0; i < getFontCount(); i++)
+                compare(getFontInfo(i), other.getFontInfo(i), "font " + i, res);
+        return res;
+    }
+    
+    private static void compare(FontInfo a, FontInfo b, String name, List<String> res) {
+        if (a == null || b == null) {
+            if (a != b)
+                res.add(name + ": " + a + " <> " + b);
+            return;
+        }
+        if (a.getId() != b.getId() || !a.getFontName().equals(b.getFontName())
+                || Float.compare(a.getXHeight(1), b.getXHeight(1)) != 0
+                || Float.compare(a.getSpace(1), b.getSpace(1)) != 0
+                || Float.compare(a.getQuad(1), b.getQuad(1)) != 0
+                || a.getSkewChar() != b.getSkewChar())
+            res.add(name + ": general font information differs");
+        for (int c = nextChar(a, b, 0); c >= 0; c = nextChar(a, b, c + 1)) {
+            char ch = (char) c;
+            String where = name + ", char " + c + ": ";
+            if (!Arrays.equals(a.getMetrics(ch), b.getMetrics(ch)))
+                res.add(where + "metrics");
+            if (!equals(a.getNextLarger(ch), b.getNextLarger(ch)))
+                res.add(where + "next larger");
+            if (!Arrays.equals(a.getExtension(ch), b.getExtension(ch)))
+                res.add(where + "extension");
+            if (!Arrays.equals(a.getKernRight(ch), b.getKernRight(ch))
+                    || !Arrays.equals(a.getKerns(ch), b.getKerns(ch)))
+                res.add(where + "kerns");
+            CharFont[] ligsA = a.getLigatures(ch), ligsB = b.getLigatures(ch);
+            boolean same = Arrays.equals(a.getLigatureRight(ch), b.getLigatureRight(ch));
+            for (int i = 0; same && ligsA != null && i < ligsA.length; i++)
+                same = equals(ligsA[i], ligsB[i]);
+            if (!same)
+                res.add(where + "ligatures");
+        }
+    }
+    
+    // the next character with information in a or b
+    private static int nextChar(FontInfo a, FontInfo b, int from) {
+        int c = a.nextChar(from), d = b.nextChar(from);
+        return c < 0 ? d : d < 0 ? c : Math.min(c, d);
+    }
+    
+    private static boolean equals(CharFont a, CharFont b) {
+        return a == null ? b == null : b != null && a.c == b.c && a.fontId == b.fontId;
+    }
+    
+    Map<String, Float> getParameters() {
+        return parameters;
+    }
+    
+    Map<String, Number> getGeneralSettings() {
+        return generalSettings;
+    }
+    
+    Map<String, CharFont[]> getTextStyleMappings() {
+        return textStyleMappings;
+    }
+    
+    String[] getDefaultTextStyleMappings() {
+        return defaultTextStyleMappings;
+    }
+    
+    Map<String, CharFont> getSymbolMappings() {
+        return symbolMappings;
+    }
+    
+    /**
+     * 构建时工具: 从 classpath 上的 DefaultTeXFont.xml 生成 DefaultTeXFont.bin.
+     * Compiles "DefaultTeXFont.xml" into "DefaultTeXFont.bin" in the given resource
+     * directory.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("usage: java " + FontMetricsSnapshot.class.getName()
+                    + " resource-dir");
+            System.exit(1);
+        }
+        File file = new File(new File(args[0], "be/ugent/caagt/jmathtex"), RESOURCE_NAME);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            parseXML().write(out);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/* FontRegistry.java
+ * =========================================================================
+ * This file is part of the JMathTeX Library - http://jmathtex.sourceforge.net
+ *
+ * Copyright (C) 2004-2007 Universiteit Gent
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ */
+
+package be.ugent.caagt.jmathtex;
+
+import be.ugent.caagt.jmathtex.ex.ResourceParseException;
+
+/**
+ * 字体注册表: 字体 id => FontInfo, 每个字体在第一次使用时才加载.
+ * The fonts DefaultTeXFont can use, by font id. The fonts of "DefaultTeXFont.xml"
+ * always come first (cmmi10, cmr10, cmex10 and cmsy10 keep the ids 0 .. 3), more
+ * fonts (bold, sans-serif, blackboard, ...) can be added with
+ * {@link #register(FontLoader)} and used through CharFont's with the returned font
+ * id. A font is only loaded when it's used for the first time.
+ * <p>
+ * All methods are thread-safe.
+ */
+public final class FontRegistry {
+    
+    /**
+     * 加载一个注册的字体.
+     * Creates the description of a registered font.
+     */
+    public interface FontLoader {
+        
+        /**
+         * Loads the font description. It's called at most once (unless it throws an
+         * exception), when the font is used for the first time.
+         * 
+         * @param fontId the id the font was registered with
+         * @return the font description, with the given font id (or null if there's
+         *         no such font)
+         * @throws ResourceParseException if the font can't be loaded
+         */
+        public FontInfo load(int fontId) throws ResourceParseException;
+    }
+    
+    // a registered font
+    private static final class Entry {
+        
+        private final FontLoader loader;
+        
+        // the font description, null until it's loaded
+        private volatile FontInfo info;
+        
+        Entry(FontLoader loader) {
+            this.loader = loader;
+        }
+    }
+    
+    // the registered fonts, indexed by font id (replaced on every registration)
+    private static volatile Entry[] entries = new Entry[0];
+    
+    // the information from "DefaultTeXFont.xml"
+    private static final FontMetricsSnapshot defaultFonts;
+    
+    static {
+        // the precompiled snapshot of DefaultTeXFont.xml, or the xml-file itself if there's
+        // no (up to date) snapshot; 优先加载二进制快照, 否则解析 XML.
+        FontMetricsSnapshot snapshot = FontMetricsSnapshot.load();
+        if (snapshot == null)
+            snapshot = FontMetricsSnapshot.parseXML();
+        defaultFonts = snapshot;
+        
+        FontLoader loader = new FontLoader() {
+            public FontInfo load(int fontId) throws ResourceParseException {
+                return defaultFonts.getFontInfo(fontId);
+            }
+        };
+        for (int i = 0; i < defaultFonts.getFontCount(); i++)
+            register(loader);
+    }
+    
+    private FontRegistry() {
+        // no instances
+    }
+    
+    /**
+     * 注册一个新字体, 返回其字体 id.
+     * Registers a new font. It's loaded when it's used for the first time.
+     * 
+     * @param loader creates the description of the font
+     * @return the font id of the new font
+     */
+    public static synchronized int register(FontLoader loader) {
+        if (loader == null)
+            throw new IllegalArgumentException("The loader of a font can't be null!");
+        Entry[] res = new Entry[entries.length + 1];
+        System.arraycopy(entries, 0, res, 0, entries.length);
+        res[entries.length] = new Entry(loader);
+        entries = res;
+        return entries.length - 1;
+    }
+    
+    /**
+     * 得到字体的 FontInfo, 第一次使用时加载.
+     * Get the description of a registered font, it's loaded on first use.
+     * 
+     * @param fontId the font id
+     * @return the font description (null if the loader returned null)
+     * @throws ArrayIndexOutOfBoundsException if no font is registered with that id
+     * @throws ResourceParseException if the font can't be loaded
+     */
+    public static FontInfo get(int fontId) throws ResourceParseException {
+        Entry e = entries[fontId];
+        FontInfo info = e.info;
+        if (info == null)
+            synchronized (e) {
+                if (e.info == null)
+                    e.info = e.loader.load(fontId);
+                info = e.info;
+            }
+        return info;
+    }
+    
+    /**
+     * @return whether the font with the given id is registered and already loaded
+     */
+    public static boolean isLoaded(int fontId) {
+        Entry[] e = entries;
+        return fontId >= 0 && fontId < e.length && e[fontId].info != null;
+    }
+    
+    /**
+     * @return the number of registered fonts (the font ids are 0 .. size() - 1)
+     */
+    public static int size() {
+        return entries.length;
+    }
+    
+    /**
+     * @return the information from "DefaultTeXFont.xml" (its fonts are the first
+     *         ones in the registry)
+     */
+    static FontMetricsSnapshot getDefaultFonts() {
+        return defaultFonts;
+    }
+}
@@ -0,0 +1,121 @@
+/* GlyphOutlines.java
+ * =========================================================================
+ * This file is part of the JMathTeX Library - http://jmathtex.sourceforge.net
+ *
+ * Copyright (C) 2004-2007 Universiteit Gent
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ */
+package be.ugent.caagt.jmathtex;
+
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+
+import be.ugent.caagt.jmathtex.ex.ResourceParseException;
+
+/**
+ * 字形轮廓缓存: 矢量输出 (SVG/PDF/EPS) 时直接输出路径, 不需要文本布局.
+ * The outlines of the glyphs of the fonts in the {@link FontRegistry}, by font id and
+ * character. The outline of a glyph is extracted from its font only once, in font
+ * units ({@link #UNITS_PER_EM} per em, origin on the baseline, y downwards), so
+ * vector backends can emit a glyph as a path, scaled to the size of the character,
+ * instead of letting Java2D lay out text for every glyph.
+ * <p>
+ * A backend that draws Box trees through its own Graphics2D can set the rendering
+ * hint {@link #KEY_GLYPH_OUTLINES} to {@link #VALUE_GLYPH_OUTLINES_ON}: CharBox then
+ * fills the outline of its character instead of calling drawString.
+ * <p>
+ * All methods are thread-safe.
+ */
+public final class GlyphOutlines {
+    
+    /** the number of font units per em of the outlines */
+    public static final int UNITS_PER_EM = 1000;
+    
+    /** rendering hint: draw characters as outlines (filled paths) or as text */
+    public static final RenderingHints.Key KEY_GLYPH_OUTLINES = new Key();
+    
+    /** draw characters by filling their outlines */
+    public static final Object VALUE_GLYPH_OUTLINES_ON = "glyph outlines on";
+    
+    /** draw characters with drawString (the default) */
+    public static final Object VALUE_GLYPH_OUTLINES_OFF = "glyph outlines off";
+    
+    private static final class Key extends RenderingHints.Key {
+        
+        Key() {
+            super(0x4A4D5447);
+        }
+        
+        @Override
+        public boolean isCompatibleValue(Object val) {
+            return val == VALUE_GLYPH_OUTLINES_ON || val == VALUE_GLYPH_OUTLINES_OFF;
+        }
+        
+        @Override
+        public String toString() {
+            return "glyph outlines";
+        }
+    }
+    
+    private GlyphOutlines() {
+        // only static methods
+    }
+    
+    /**
+     * @param fontId the id of a font in the FontRegistry
+     * @param c a character of the font
+     * @return the outline of the glyph, in font units (shared: don't change it!)
+     * @throws ResourceParseException if the font can't be loaded
+     */
+    public static Shape getOutline(int fontId, char c) throws ResourceParseException {
+        FontInfo info = FontRegistry.get(fontId);
+        if (info == null)
+            throw new IllegalArgumentException("no font with id " + fontId);
+        return info.getOutline(c);
+    }
+    
+    /**
+     * 得到在 (x, y) 处以字符的尺寸绘制的字形轮廓.
+     * The outline of a character whose font is the font of the FontRegistry with its
+     * font id is the cached outline, scaled. A character with its own font (created by
+     * another TeXFont, its font id can be the id of another font of the registry) is
+     * drawn with that font: its outline is extracted every time.
+     * 
+     * @param ch a character with its font and size
+     * @param x the x-coordinate of the origin of the character
+     * @param y the y-coordinate of the baseline
+     * @return the outline of the character at the given position, at its size (a new
+     *         Shape), the same as drawString(ch, x, y) with the character's font
+     * @throws ResourceParseException if the font can't be loaded
+     */
+    public static Shape getOutline(Char ch, float x, float y) throws ResourceParseException {
+        if (!ch.hasRegistryFont())
+            return ch.getFont().createGlyphVector(new FontRenderContext(null, true, true),
+                    new char[] { ch.getChar() }).getOutline(x, y);
+        float scale = ch.getSize() / UNITS_PER_EM;
+        AffineTransform t = new AffineTransform(scale, 0, 0, scale, x, y);
+        return t.createTransformedShape(getOutline(ch.getFontCode(), ch.getChar()));
+    }
+}
@@ -0,0 +1,324 @@
+/* IncrementalTeXFormula.java
+ * =========================================================================
+ * This file is part of the JMathTeX Library - http://jmathtex.sourceforge.net
+ *
+ * Copyright (C) 2004-2007 Universiteit Gent
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ */
+
+package be.ugent.caagt.jmathtex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import be.ugent.caagt.jmathtex.atom.Atom;
+import be.ugent.caagt.jmathtex.ex.ParseException;
+
+/**
+ * 可增量修改的 TeX 公式 (用于公式编辑器).
+ * A parsed formula string that can be edited (for live formula editors): after an edit,
+ * only the parts of the string that could be affected by it are parsed again. The
+ * groups that don't contain the edit are not parsed again, their atoms are reused.
+ * Inside the groups that contain the edit (from the smallest enclosing group up to
+ * the whole formula), the atoms that were parsed from characters before or after the
+ * edit are reused too. The result is always the same as parsing the new string from
+ * scratch.
+ * <p>
+ * Instances are immutable: an edit returns a new IncrementalTeXFormula, and if it
+ * can't be parsed, the old one remains valid. The atoms are shared between both
+ * (and between the TeXFormula's returned by {@link #getFormula()}).
+ */
+public class IncrementalTeXFormula {
+    
+   /*
+    * A step of parsing a level: the part of the string that was parsed at once
+    * (see TeXFormula.parseNext), relative to the start of its level.
+    */
+    static final class Step {
+        
+        // start and end of the step, and end of the characters that were read
+        final int start, end, lookahead;
+        
+        // whether primes followed, before and after the step
+        final boolean primesBefore, primesAfter;
+        
+        // the atom that was added (or null)
+        final Atom atom;
+        
+        Step(int start, int end, int lookahead, boolean primesBefore,
+                boolean primesAfter, Atom atom) {
+            this.start = start;
+            this.end = end;
+            this.lookahead = lookahead;
+            this.primesBefore = primesBefore;
+            this.primesAfter = primesAfter;
+            this.atom = atom;
+        }
+        
+        Step shift(int delta) {
+            return new Step(start + delta, end + delta, lookahead + delta, primesBefore,
+                    primesAfter, atom);
+        }
+    }
+    
+   /*
+    * The parse result of the whole string, a group or a script (a "level"): the
+    * steps and the levels nested in it, both ordered by their (relative) start.
+    */
+    static final class Level {
+        
+        final int length;
+        
+        final String textStyle;
+        
+        Atom root;
+        
+        final List<Step> steps = new ArrayList<Step>();
+        
+        private int[] childStarts = new int[4];
+        
+        private Level[] children = new Level[4];
+        
+        private int childCount = 0;
+        
+        Level(int length, String textStyle) {
+            this.length = length;
+            this.textStyle = textStyle;
+        }
+        
+        void addChild(int start, Level child) {
+            if (childCount == children.length) {
+                childStarts = Arrays.copyOf(childStarts, 2 * childCount);
+                children = Arrays.copyOf(children, 2 * childCount);
+            }
+            childStarts[childCount] = start;
+            children[childCount++] = child;
+        }
+        
+        Level getChild(int start) {
+            int i = Arrays.binarySearch(childStarts, 0, childCount, start);
+            return i < 0 ? null : children[i];
+        }
+        
+        /*
+         * Copies the children of the given level starting in [from, to), shifted.
+         */
+        void copyChildren(Level level, int from, int to, int delta) {
+            for (int i = 0; i < level.childCount; i++)
+                if (level.childStarts[i] >= from && level.childStarts[i] < to)
+                    addChild(level.childStarts[i] + delta, level.children[i]);
+        }
+        
+        /*
+         * The index of the step starting at the given position (or -1).
+         */
+        int getStepIndex(int start) {
+            int lo = 0, hi = steps.size() - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int s = steps.get(mid).start;
+                if (s < start)
+                    lo = mid + 1;
+                else if (s > start)
+                    hi = mid - 1;
+                else
+                    return mid;
+            }
+            return -1;
+        }
+    }
+    
+   /*
+    * The state of an incremental parse, shared by all the TeXFormula's created while
+    * parsing. It's the parse string, and keeps track of the characters that are read.
+    */
+    static final class Context implements CharSequence {
+        
+        private final String s;
+        
+        // the edit: offset, number of deleted and inserted characters
+        final int offset, deleted, inserted;
+        
+        // the parse result of the previous string (or null)
+        final Level oldRoot;
+        
+        // the parse result of the new string
+        Level root;
+        
+        // highest position read in the current step
+        private int maxRead = -1;
+        
+        Context(String s, int offset, int deleted, int inserted, Level oldRoot) {
+            this.s = s;
+            this.offset = offset;
+            this.deleted = deleted;
+            this.inserted = inserted;
+            this.oldRoot = oldRoot;
+        }
+        
+        String getString() {
+            return s;
+        }
+        
+        public char charAt(int index) {
+            if (index > maxRead)
+                maxRead = index;
+            return s.charAt(index);
+        }
+        
+        public int length() {
+            return s.length();
+        }
+        
+        public CharSequence subSequence(int start, int end) {
+            markRead(end - 1);
+            return s.subSequence(start, end);
+        }
+        
+        public String toString() {
+            return s;
+        }
+        
+        void markRead(int index) {
+            if (index > maxRead)
+                maxRead = index;
+        }
+        
+        /*
+         * Starts a new step, returns the state to pass to endStep.
+         */
+        int beginStep() {
+            int saved = maxRead;
+            maxRead = -1;
+            return saved;
+        }
+        
+        /*
+         * Ends a step, returns the highest position read in it.
+         */
+        int endStep(int saved) {
+            int res = maxRead;
+            maxRead = Math.max(saved, res);
+            return res;
+        }
+        
+        /*
+         * Whether the part of the new string from start to end wasn't changed by the edit.
+         */
+        boolean isUnchanged(int start, int end) {
+            return end <= offset || start >= offset + inserted;
+        }
+        
+        /*
+         * Finds the level in the old parse result that corresponds to the level from
+         * start to end in the new string, given the old parent level (that contains
+         * the edit, so it starts at the same position parentStart in both strings).
+         */
+        Level findOld(Level oldParent, int parentStart, int start, int end,
+                String textStyle) {
+            if (oldParent == null)
+                return null;
+            Level res;
+            if (end <= offset) // before the edit
+                res = oldParent.getChild(start - parentStart);
+            else if (start >= offset + inserted) // after the edit
+                res = oldParent.getChild(start - parentStart - inserted + deleted);
+            else if (start <= offset) // contains the edit
+                return matches(oldParent.getChild(start - parentStart), textStyle);
+            else
+                return null;
+            return res != null && res.length == end - start ? matches(res, textStyle) : null;
+        }
+        
+        private static Level matches(Level level, String textStyle) {
+            if (level == null || (textStyle == null ? level.textStyle != null
+                    : !textStyle.equals(level.textStyle)))
+                return null;
+            return level;
+        }
+    }
+    
+    private final String string;
+    
+    private final Level root;
+    
+    /**
+     * 解析所给字符串.
+     * Parses the given string, like {@link TeXFormula#TeXFormula(String)}.
+     * 
+     * @param s the string to be parsed
+     * @throws ParseException if the string could not be parsed correctly
+     */
+    public IncrementalTeXFormula(String s) throws ParseException {
+        this(s, new Context(s, 0, 0, s.length(), null));
+    }
+    
+    private IncrementalTeXFormula(String s, Context context) throws ParseException {
+        string = s;
+        new TeXFormula(context);
+        root = context.root;
+    }
+    
+    /**
+     * 编辑公式字符串, 只重新解析受影响的部分.
+     * Replaces the given part of the string by the given text and parses the result,
+     * reusing the atoms of the parts that were not affected by the edit.
+     * 
+     * @param offset the position of the edit in the string
+     * @param deleteLength the number of characters to delete at that position
+     * @param insert the text to insert at that position (or null)
+     * @return the edited formula
+     * @throws IndexOutOfBoundsException if the part to delete is not in the string
+     * @throws ParseException if the new string could not be parsed correctly
+     */
+    public IncrementalTeXFormula edit(int offset, int deleteLength, String insert)
+    throws ParseException {
+        if (offset < 0 || deleteLength < 0 || offset + deleteLength > string.length())
+            throw new IndexOutOfBoundsException("offset " + offset + ", deleteLength "
+                    + deleteLength + ", length " + string.length());
+        if (insert == null)
+            insert = "";
+        String s = string.substring(0, offset) + insert
+                + string.substring(offset + deleteLength);
+        return new IncrementalTeXFormula(s, new Context(s, offset, deleteLength,
+                insert.length(), root));
+    }
+    
+    /**
+     * @return the (current) string of the formula
+     */
+    public String getString() {
+        return string;
+    }
+    
+    /**
+     * @return a new TeXFormula for the parsed string (sharing its atoms, which are 
+     *          copied as soon as atoms are added to it)
+     */
+    public TeXFormula getFormula() {
+        TeXFormula res = new TeXFormula();
+        res.root = root.root;
+        return res;
+    }
+}
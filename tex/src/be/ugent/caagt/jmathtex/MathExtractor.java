@@ -0,0 +1,340 @@
+/* MathExtractor.java
+ * =========================================================================
+ * This file is part of the JMathTeX Library - http://jmathtex.sourceforge.net
+ *
+ * Copyright (C) 2004-2007 Universiteit Gent
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ */
+
+package be.ugent.caagt.jmathtex;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 从 (LaTeX/HTML) 文档中流式地提取数学公式.
+ * Extracts the math segments from a (LaTeX or HTML) document read from a Reader, 
+ * without loading the whole document: <code>$...$</code> and <code>\(...\)</code>
+ * (inline) and <code>$$...$$</code> and <code>\[...\]</code> (display). Every segment
+ * is handed to a {@link Handler}, together with its offset in the document, so that
+ * it can be rendered (using {@link TeXFormula#TeXFormula(String)} for example).
+ * <p>
+ * Escaped characters (<code>\$</code>, <code>\\</code>, ...) never start or end a math
+ * segment. Comments (from <code>%</code> to the end of the line) are skipped, also inside
+ * math segments, unless they're disabled (for HTML documents for example). 
+ * <p>
+ * A math segment that isn't closed within the maximum segment length (or before the
+ * end of the document), like one opened by a stray currency sign, is reported to an
+ * {@link ErrorHandler}. Its opening delimiter is then treated as ordinary text and the
+ * extraction continues right after it, so the math segments that follow are still
+ * found.
+ * <p>
+ * Only the current math segment is kept in memory, so memory use is bounded by
+ * the maximum segment length, regardless of the size of the document.
+ */
+public class MathExtractor {
+    
+    /**
+     * 接收提取出的数学公式的回调接口.
+     * Receives the math segments found by a MathExtractor.
+     */
+    public interface Handler {
+        
+        /**
+         * Handles a math segment.
+         * 
+         * @param tex the contents of the math segment (without delimiters and comments)
+         * @param offset the offset (in characters) of the opening delimiter in the document
+         * @param display whether it's a display formula (<code>$$...$$</code> or 
+         *          <code>\[...\]</code>) or an inline formula
+         */
+        public void handleMath(String tex, long offset, boolean display);
+    }
+    
+    /**
+     * 接收未结束的数学公式的回调接口.
+     * Receives the math segments a MathExtractor couldn't close.
+     */
+    public interface ErrorHandler {
+        
+        /**
+         * Handles a math segment that isn't closed within the maximum segment length
+         * or before the end of the document. The extraction continues right after its
+         * opening delimiter.
+         * 
+         * @param offset the offset (in characters) of the opening delimiter in the document
+         * @param display whether it would have been a display formula
+         * @param message a description of the error
+         */
+        public void handleError(long offset, boolean display, String message);
+    }
+    
+    /** default maximum length of a math segment (in the document) */
+    public static final int DEFAULT_MAX_LENGTH = 65536;
+    
+    private static final char ESCAPE = '\\';
+    private static final char DOLLAR = '$';
+    private static final char COMMENT = '%';
+    
+    // kinds of math segments (also the closing delimiter)
+    private static final int NONE = 0, DOLLAR_INLINE = 1, DOLLAR_DISPLAY = 2,
+            PAREN_INLINE = 3, BRACKET_DISPLAY = 4;
+    
+    private final int maxLength;
+    
+    private boolean commentsEnabled = true;
+    
+    // read buffer
+    private Reader in;
+    private final char[] buf = new char[8192];
+    private int bufPos = 0, bufLen = 0;
+    
+    // characters to be read (again) before the read buffer, from pendingPos on
+    private final StringBuilder pending = new StringBuilder();
+    private int pendingPos = 0;
+    
+    // offset (in the document) of the next character to be read
+    private long offset;
+    
+    // contents of the current math segment
+    private final StringBuilder math = new StringBuilder();
+    
+    // the characters of the document read since the opening delimiter of the current
+    // math segment (to read them again if it isn't closed), while recording
+    private final StringBuilder raw = new StringBuilder();
+    private boolean recording = false;
+    
+    /**
+     * Creates a MathExtractor that accepts math segments of at most
+     * {@link #DEFAULT_MAX_LENGTH} characters.
+     */
+    public MathExtractor() {
+        this(DEFAULT_MAX_LENGTH);
+    }
+    
+    /**
+     * Creates a MathExtractor that accepts math segments of at most the given number of
+     * characters (in the document, between the delimiters).
+     * 
+     * @param maxLength the maximum length of a math segment
+     * @throws IllegalArgumentException if the maximum length is not positive
+     */
+    public MathExtractor(int maxLength) {
+        if (maxLength <= 0)
+            throw new IllegalArgumentException("The maximum length must be positive!");
+        this.maxLength = maxLength;
+    }
+    
+    /**
+     * Sets whether '%' starts a comment (the default). This should be disabled for
+     * documents in which '%' is an ordinary character (like HTML).
+     * 
+     * @param enabled whether comments should be skipped
+     */
+    public void setCommentsEnabled(boolean enabled) {
+        commentsEnabled = enabled;
+    }
+    
+    /**
+     * @return whether '%' starts a comment
+     */
+    public boolean isCommentsEnabled() {
+        return commentsEnabled;
+    }
+    
+    /**
+     * 读取整个文档, 每个数学公式都交给 handler 处理.
+     * Reads the whole document and hands every math segment to the given handler, in
+     * the order they appear. A math segment that isn't closed within the maximum length
+     * or before the end of the document is skipped: the extraction continues right
+     * after its opening delimiter. The reader isn't closed.
+     * 
+     * @param reader the reader to read the document from
+     * @param handler the handler that receives the math segments
+     * @throws IOException if the document could not be read
+     */
+    public void extract(Reader reader, Handler handler) throws IOException {
+        extract(reader, handler, null);
+    }
+    
+    /**
+     * Reads the whole document like {@link #extract(Reader, Handler)}, and reports the
+     * math segments that aren't closed within the maximum length or before the end of
+     * the document to the given error handler.
+     * 
+     * @param reader the reader to read the document from
+     * @param handler the handler that receives the math segments
+     * @param errorHandler the handler that receives the math segments that aren't
+     *          closed (or null)
+     * @throws IOException if the document could not be read
+     */
+    public void extract(Reader reader, Handler handler, ErrorHandler errorHandler)
+    throws IOException {
+        in = reader;
+        bufPos = bufLen = 0;
+        pending.setLength(0);
+        pendingPos = 0;
+        offset = 0;
+        try {
+            int ch;
+            while ((ch = read()) >= 0) {
+                long start = offset - 1;
+                int kind = NONE;
+                if (ch == ESCAPE) {
+                    // an escaped character is never a delimiter
+                    ch = read();
+                    if (ch == '(')
+                        kind = PAREN_INLINE;
+                    else if (ch == '[')
+                        kind = BRACKET_DISPLAY;
+                } else if (ch == DOLLAR) {
+                    if (peek() == DOLLAR) {
+                        read();
+                        kind = DOLLAR_DISPLAY;
+                    } else
+                        kind = DOLLAR_INLINE;
+                } else if (ch == COMMENT && commentsEnabled)
+                    skipComment();
+                
+                if (kind != NONE) {
+                    boolean display = (kind == DOLLAR_DISPLAY || kind == BRACKET_DISPLAY);
+                    String error = readMath(kind, start);
+                    if (error == null)
+                        handler.handleMath(math.toString(), start, display);
+                    else {
+                        // read the segment again as ordinary text
+                        pending.delete(0, pendingPos).insert(0, raw);
+                        pendingPos = 0;
+                        offset -= raw.length();
+                        if (errorHandler != null)
+                            errorHandler.handleError(start, display, error);
+                    }
+                }
+            }
+        } finally {
+            in = null;
+            math.setLength(0);
+            raw.setLength(0);
+            pending.setLength(0);
+            recording = false;
+        }
+    }
+    
+    /*
+     * Reads the contents of a math segment of the given kind into "math", up to and
+     * including the closing delimiter, and keeps the characters read in "raw". Returns
+     * null, or the error message if the segment is longer than the maximum length or
+     * the end of the document was reached first.
+     */
+    private String readMath(int kind, long start) throws IOException {
+        math.setLength(0);
+        raw.setLength(0);
+        recording = true;
+        try {
+            if (readMath(kind))
+                return null;
+            else if (raw.length() > maxLength)
+                return "The math segment at offset " + start + " is longer than "
+                        + maxLength + " characters!";
+            else
+                return "The math segment at offset " + start + " isn't closed!";
+        } finally {
+            recording = false;
+        }
+    }
+    
+    private boolean readMath(int kind) throws IOException {
+        int ch;
+        while (raw.length() <= maxLength && (ch = read()) >= 0) {
+            if (ch == DOLLAR) {
+                if (kind == DOLLAR_INLINE)
+                    return true;
+                else if (kind == DOLLAR_DISPLAY && peek() == DOLLAR) {
+                    read();
+                    return true;
+                }
+            } else if (ch == ESCAPE) {
+                int next = read();
+                if ((next == ')' && kind == PAREN_INLINE)
+                        || (next == ']' && kind == BRACKET_DISPLAY))
+                    return true;
+                math.append((char) ch);
+                if (next < 0)
+                    break;
+                ch = next; // keep escaped characters (like "\$" or "\%")
+            } else if (ch == COMMENT && commentsEnabled) {
+                skipComment();
+                ch = '\n';
+            }
+            math.append((char) ch);
+        }
+        return false;
+    }
+    
+    /*
+     * Skips everything up to and including the end of the line (or up to the maximum
+     * length of the math segment that's being read).
+     */
+    private void skipComment() throws IOException {
+        int ch;
+        while ((ch = read()) >= 0 && ch != '\n' && ch != '\r'
+                && !(recording && raw.length() > maxLength))
+            ; // skip
+        if (ch == '\r' && peek() == '\n')
+            read();
+    }
+    
+    private int read() throws IOException {
+        char ch;
+        if (pendingPos < pending.length())
+            ch = pending.charAt(pendingPos++);
+        else if (bufPos < bufLen || fill())
+            ch = buf[bufPos++];
+        else
+            return -1;
+        offset++;
+        if (recording)
+            raw.append(ch);
+        return ch;
+    }
+    
+    private int peek() throws IOException {
+        if (pendingPos < pending.length())
+            return pending.charAt(pendingPos);
+        if (bufPos == bufLen && !fill())
+            return -1;
+        return buf[bufPos];
+    }
+    
+    private boolean fill() throws IOException {
+        int n;
+        do {
+            n = in.read(buf, 0, buf.length);
+        } while (n == 0);
+        if (n < 0)
+            return false;
+        bufPos = 0;
+        bufLen = n;
+        return true;
+    }
+}
@@ -0,0 +1,72 @@
+/* ParseError.java
+ * =========================================================================
+ * This file is part of the JMathTeX Library - http://jmathtex.sourceforge.net
+ *
+ * Copyright (C) 2004-2007 Universiteit Gent
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ */
+
+package be.ugent.caagt.jmathtex;
+
+/**
+ * 语法错误: 位置和消息.
+ * A syntax error found by {@link TeXFormula#validate(CharSequence)}: the position in
+ * the checked string where the error was found and a message (the same message as
+ * the ParseException the parser would throw). Immutable.
+ */
+public final class ParseError {
+    
+    private final int position;
+    
+    private final String message;
+    
+    /**
+     * Creates a new syntax error.
+     * 
+     * @param position the position in the string where the error was found
+     * @param message the error message
+     */
+    public ParseError(int position, String message) {
+        this.position = position;
+        this.message = message;
+    }
+    
+    /**
+     * @return the position in the string where the error was found
+     */
+    public int getPosition() {
+        return position;
+    }
+    
+    /**
+     * @return the error message
+     */
+    public String getMessage() {
+        return message;
+    }
+    
+    @Override
+    public String toString() {
+        return position + ": " + message;
+    }
+}
@@ -0,0 +1,410 @@
+/* PredefinedTeXFormulaCompiler.java
+ * =========================================================================
+ * This file is part of the JMathTeX Library - http://jmathtex.sourceforge.net
+ *
+ * Copyright (C) 2004-2007 Universiteit Gent
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ */
+
+package be.ugent.caagt.jmathtex;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.SourceVersion;
+
+import org.jdom.Element;
+import org.jdom.input.SAXBuilder;
+
+import be.ugent.caagt.jmathtex.ex.ResourceParseException;
+import be.ugent.caagt.jmathtex.ex.XMLResourceParseException;
+
+/**
+ * 构建时工具: 将 PredefinedTeXFormulas.xml 编译为 java 源代码 (PredefinedTeXFormulas.java).
+ * Build tool that compiles the definitions in "PredefinedTeXFormulas.xml" into plain
+ * Java code: the generated class <code>PredefinedTeXFormulas</code> creates the
+ * predefined TeXFormula's by calling the constructors and methods of TeXFormula
+ * directly, so that no XML parsing or reflection is needed when TeXFormula is
+ * initialized. The actions of the "TeXFormula"-elements are translated exactly as
+ * {@link TeXFormulaParser} would execute them.
+ * <p>
+ * Run it again whenever "PredefinedTeXFormulas.xml" is changed:
+ * <pre>
+ *   java be.ugent.caagt.jmathtex.PredefinedTeXFormulaCompiler [xml-file] source-dir
+ * </pre>
+ * (without an xml-file, the resource next to this class is used). Custom definitions 
+ * can still be loaded from XML at runtime, see 
+ * {@link TeXFormula#addPredefinedTeXFormulas(InputStream)}.
+ */
+class PredefinedTeXFormulaCompiler {
+    
+    /** name of the generated class */
+    public static final String CLASS_NAME = "PredefinedTeXFormulas";
+    
+    // type name (from the xml-file) => java class of the argument
+    private static final Map<String, Class<?>> classMappings = new HashMap<String, Class<?>>();
+    
+    static {
+        // same mappings as TeXFormulaParser
+        classMappings.put("TeXConstants", int.class);
+        classMappings.put("TeXFormula", TeXFormula.class);
+        classMappings.put("String", String.class);
+        classMappings.put("float", float.class);
+        classMappings.put("int", int.class);
+        classMappings.put("boolean", boolean.class);
+        classMappings.put("char", char.class);
+        classMappings.put("ColorConstant", Color.class);
+    }
+    
+    private final Element root;
+    
+    /** names of the generated methods */
+    private final Set<String> methodNames = new HashSet<String>();
+    
+    public PredefinedTeXFormulaCompiler(InputStream in) throws ResourceParseException {
+        try {
+            root = new SAXBuilder().build(in).getRootElement();
+        } catch (Exception e) { // JDOMException or IOException
+            throw new XMLResourceParseException(PredefinedTeXFormulaParser.RESOURCE_NAME, e);
+        }
+    }
+    
+    /**
+     * 生成 java 源代码.
+     * Writes the source code of the generated class.
+     * 
+     * @param out the writer to write the source code to
+     * @throws ResourceParseException if the xml-file contains invalid definitions
+     */
+    public void compile(PrintWriter out) throws ResourceParseException {
+        // generate the methods first: they have to be called from "addTo"
+        List<String> names = new ArrayList<String>();
+        List<String> methods = new ArrayList<String>();
+        StringBuilder code = new StringBuilder();
+        if ("true".equals(getAttrValueAndCheckIfNotNull("enabled", root))) {
+            for (Object obj : root.getChildren("TeXFormula")) {
+                Element formula = (Element) obj;
+                if ("true".equals(getAttrValueAndCheckIfNotNull("enabled", formula))) {
+                    String name = getAttrValueAndCheckIfNotNull("name", formula);
+                    String method = getMethodName(name);
+                    names.add(name);
+                    methods.add(method);
+                    compileFormula(name, method, formula, code);
+                }
+            }
+        }
+        
+        out.println("/* " + CLASS_NAME + ".java");
+        out.println(" * =========================================================================");
+        out.println(" * This file is part of the JMathTeX Library - http://jmathtex.sourceforge.net");
+        out.println(" * ");
+        out.println(" * Generated from " + PredefinedTeXFormulaParser.RESOURCE_NAME
+                + " by PredefinedTeXFormulaCompiler: DO NOT EDIT!");
+        out.println(" * ");
+        out.println(" */");
+        out.println();
+        out.println("package be.ugent.caagt.jmathtex;");
+        out.println();
+        out.println("import java.util.Map;");
+        out.println();
+        out.println("/**");
+        out.println(" * Creates the predefined TeXFormula's defined in \""
+                + PredefinedTeXFormulaParser.RESOURCE_NAME + "\"");
+        out.println(" * without parsing the xml-file (generated by {@link PredefinedTeXFormulaCompiler}).");
+        out.println(" */");
+        out.println("final class " + CLASS_NAME + " {");
+        out.println();
+        out.println("    private " + CLASS_NAME + "() {");
+        out.println("        // not to be instantiated");
+        out.println("    }");
+        out.println();
+        out.println("    /**");
+        out.println("     * Creates all the predefined TeXFormula's and puts them in the given map.");
+        out.println("     */");
+        out.println("    static void addTo(Map<String, TeXFormula> predefinedTeXFormulas) {");
+        for (int i = 0; i < names.size(); i++)
+            out.println("        predefinedTeXFormulas.put(" + toJavaString(names.get(i)) + ", "
+                    + methods.get(i) + "());");
+        out.println("    }");
+        out.print(code);
+        out.println("}");
+    }
+    
+    private void compileFormula(String formulaName, String method, Element formula,
+            StringBuilder code) throws ResourceParseException {
+        Set<String> vars = new HashSet<String>();
+        List<String> lines = new ArrayList<String>();
+        String result = null; // temporary TeXFormula to return
+        int returns = 0; // number of "Return"-elements
+        boolean returnLast = false; // whether "Return" is the last action
+        for (Object obj : formula.getChildren()) {
+            Element el = (Element) obj;
+            if ("CreateTeXFormula".equals(el.getName())) {
+                String name = getAttrValueAndCheckIfNotNull("name", el);
+                List<?> args = el.getChildren("Argument");
+                try {
+                    TeXFormula.class.getConstructor(getArgumentClasses(args));
+                } catch (NoSuchMethodException e) {
+                    throw new XMLResourceParseException(
+                            "Error creating the temporary TeXFormula '" + name
+                            + "' while constructing the predefined TeXFormula '"
+                            + formulaName + "'!", e);
+                }
+                lines.add((vars.add(name) ? "TeXFormula " : "") + toVariable(name)
+                        + " = new TeXFormula(" + getArguments(args, vars) + ");");
+                returnLast = false;
+            } else if ("MethodInvocation".equals(el.getName())) {
+                String methodName = getAttrValueAndCheckIfNotNull("name", el);
+                String objectName = getAttrValueAndCheckIfNotNull("formula", el);
+                if (!vars.contains(objectName))
+                    throw new XMLResourceParseException(
+                            PredefinedTeXFormulaParser.RESOURCE_NAME, "Argument", "formula",
+                            "has an unknown temporary TeXFormula name as value : '"
+                            + objectName + "'!");
+                List<?> args = el.getChildren("Argument");
+                try {
+                    TeXFormula.class.getMethod(methodName, getArgumentClasses(args));
+                } catch (NoSuchMethodException e) {
+                    throw new XMLResourceParseException(
+                            "Error invoking the method '" + methodName
+                            + "' on the temporary TeXFormula '" + objectName
+                            + "' while constructing the predefined TeXFormula '"
+                            + formulaName + "'!", e);
+                }
+                lines.add(toVariable(objectName) + "." + methodName + "("
+                        + getArguments(args, vars) + ");");
+                returnLast = false;
+            } else if ("Return".equals(el.getName())) {
+                String name = getAttrValueAndCheckIfNotNull("name", el);
+                if (!vars.contains(name))
+                    throw new XMLResourceParseException(
+                            PredefinedTeXFormulaParser.RESOURCE_NAME, "Return", "name",
+                            "contains an unknown temporary TeXFormula variable name '"
+                            + name + "' for the predefined TeXFormula '"
+                            + formulaName + "'!");
+                lines.add("result = " + toVariable(name) + ";");
+                result = name;
+                returns++;
+                returnLast = true;
+            } // ignore unknown elements
+        }
+        
+        code.append("\n    // <TeXFormula name=\"" + formulaName + "\">\n");
+        code.append("    private static TeXFormula " + method + "() {\n");
+        // usually, there's just one "Return" at the end
+        boolean simpleReturn = returns == 1 && returnLast;
+        if (!simpleReturn && result != null)
+            code.append("        TeXFormula result = new TeXFormula();\n");
+        for (int i = 0; i < lines.size(); i++) {
+            if (simpleReturn && i == lines.size() - 1)
+                code.append("        return " + toVariable(result) + ";\n");
+            else
+                code.append("        " + lines.get(i) + "\n");
+        }
+        if (result == null)
+            code.append("        return new TeXFormula();\n");
+        else if (!simpleReturn)
+            code.append("        return result;\n");
+        code.append("    }\n");
+    }
+    
+    private static Class<?>[] getArgumentClasses(List<?> args) throws ResourceParseException {
+        Class<?>[] res = new Class<?>[args.size()];
+        for (int i = 0; i < res.length; i++) {
+            String type = getAttrValueAndCheckIfNotNull("type", (Element) args.get(i));
+            res[i] = classMappings.get(type);
+            if (res[i] == null) // no class mapping found
+                throw new XMLResourceParseException(
+                        PredefinedTeXFormulaParser.RESOURCE_NAME, "Argument", "type",
+                        "has an invalid class name value!");
+        }
+        return res;
+    }
+    
+    /*
+     * Translates the values of the "Argument"-elements into Java expressions.
+     */
+    private static String getArguments(List<?> args, Set<String> vars)
+    throws ResourceParseException {
+        StringBuilder res = new StringBuilder();
+        for (Object obj : args) {
+            Element arg = (Element) obj;
+            String type = getAttrValueAndCheckIfNotNull("type", arg);
+            String value = arg.getAttributeValue("value");
+            if (res.length() > 0)
+                res.append(", ");
+            res.append(getArgument(type, value, vars));
+        }
+        return res.toString();
+    }
+    
+    private static String getArgument(String type, String value, Set<String> vars)
+    throws ResourceParseException {
+        if ("String".equals(type))
+            return value == null ? "(String) null" : toJavaString(value);
+        else if ("TeXFormula".equals(type)) {
+            if (value == null)
+                return "(TeXFormula) null";
+            if (!vars.contains(value))
+                throw invalidValue("has an unknown temporary TeXFormula name as value : '"
+                        + value + "'!", null);
+            return toVariable(value);
+        }
+        
+        if (value == null)
+            throw invalidValue("is required for an argument of type '" + type + "'!", null);
+        try {
+            if ("TeXConstants".equals(type)) {
+                TeXConstants.class.getDeclaredField(value).getInt(null);
+                return "TeXConstants." + value;
+            } else if ("ColorConstant".equals(type)) {
+                Color.class.getDeclaredField(value).get(null);
+                return "java.awt.Color." + value;
+            } else if ("float".equals(type)) {
+                float f = Float.parseFloat(value);
+                if (Float.isNaN(f))
+                    return "Float.NaN";
+                else if (Float.isInfinite(f))
+                    return f > 0 ? "Float.POSITIVE_INFINITY" : "Float.NEGATIVE_INFINITY";
+                return Float.toString(f) + "f";
+            } else if ("int".equals(type))
+                return Integer.toString(Integer.parseInt(value));
+            else if ("boolean".equals(type)) {
+                if ("true".equals(value) || "false".equals(value))
+                    return value;
+            } else if ("char".equals(type)) {
+                if (value.length() == 1)
+                    return "'" + toJavaChar(value.charAt(0), '\'') + "'";
+                throw invalidValue("must have a value that consists of exactly 1 character!", null);
+            }
+        } catch (ResourceParseException e) {
+            throw e;
+        } catch (Exception e) { // unknown constant or invalid number
+            throw invalidValue("has an invalid '" + type + "'-value : '" + value + "'!", e);
+        }
+        throw invalidValue("has an invalid '" + type + "'-value : '" + value + "'!", null);
+    }
+    
+    private static ResourceParseException invalidValue(String msg, Exception e) {
+        return new XMLResourceParseException(PredefinedTeXFormulaParser.RESOURCE_NAME,
+                "Argument", "value", msg, e);
+    }
+    
+    /*
+     * Gets a unique method name for creating the predefined TeXFormula with the 
+     * given name.
+     */
+    private String getMethodName(String formulaName) {
+        String id = toIdentifier(formulaName);
+        String method = "create" + Character.toUpperCase(id.charAt(0)) + id.substring(1);
+        if (!methodNames.add(method)) {
+            int i = 2;
+            while (!methodNames.add(method + i))
+                i++;
+            method += i;
+        }
+        return method;
+    }
+    
+    /*
+     * The name of the local variable for the temporary TeXFormula with the given name.
+     */
+    private static String toVariable(String name) {
+        return SourceVersion.isName(name) && !"result".equals(name) ? name : "t_"
+                + toIdentifier(name);
+    }
+    
+    private static String toIdentifier(String s) {
+        StringBuilder buf = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            buf.append(Character.isJavaIdentifierPart(ch) ? ch : '_');
+        }
+        return buf.toString();
+    }
+    
+    private static String toJavaString(String s) {
+        StringBuilder buf = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++)
+            buf.append(toJavaChar(s.charAt(i), '"'));
+        return buf.append('"').toString();
+    }
+    
+    private static String toJavaChar(char ch, char quote) {
+        if (ch == '\\' || ch == quote)
+            return "\\" + ch;
+        else if (ch >= ' ' && ch < 0x7f)
+            return String.valueOf(ch);
+        else
+            return String.format("\\u%04x", (int) ch);
+    }
+    
+    private static String getAttrValueAndCheckIfNotNull(String attrName,
+            Element element) throws ResourceParseException {
+        String attrValue = element.getAttributeValue(attrName);
+        if (attrValue == null)
+            throw new XMLResourceParseException(
+                    PredefinedTeXFormulaParser.RESOURCE_NAME, element.getName(),
+                    attrName, null);
+        return attrValue;
+    }
+    
+    /**
+     * Generates <code>PredefinedTeXFormulas.java</code>.
+     * 
+     * @param args [the xml-file] and the source directory (containing the 
+     *          "be/ugent/caagt/jmathtex" directory) to write the generated class to
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: java " + PredefinedTeXFormulaCompiler.class.getName()
+                    + " [xml-file] source-dir");
+            System.exit(1);
+        }
+        InputStream in = args.length == 2 ? new FileInputStream(args[0])
+                : PredefinedTeXFormulaCompiler.class.getResourceAsStream(PredefinedTeXFormulaParser.RESOURCE_NAME);
+        File dir = new File(args[args.length - 1], "be/ugent/caagt/jmathtex");
+        PrintWriter out = null;
+        try {
+            PredefinedTeXFormulaCompiler compiler = new PredefinedTeXFormulaCompiler(in);
+            out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(
+                    new File(dir, CLASS_NAME + ".java")), "UTF-8"));
+            compiler.compile(out);
+        } finally {
+            in.close();
+            if (out != null)
+                out.close();
+        }
+    }
+}
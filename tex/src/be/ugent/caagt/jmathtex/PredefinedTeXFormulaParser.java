@@ -28,6 +28,7 @@
 
 package be.ugent.caagt.jmathtex;
 
+import java.io.InputStream;
 import java.util.Map;
 
 import org.jdom.Element;
@@ -49,10 +50,20 @@ public class PredefinedTeXFormulaParser {
     private Element root;
     
     public PredefinedTeXFormulaParser() throws ResourceParseException {
+        this(PredefinedTeXFormulaParser.class.getResourceAsStream(RESOURCE_DIR + RESOURCE_NAME));
+    }
+    
+    /**
+     * 从所给的输入流中读取 (自定义的) 预定义公式.
+     * Creates a parser for predefined TeXFormula's read from the given input stream
+     * (in the same format as "PredefinedTeXFormulas.xml"). 
+     * 
+     * @param in the input stream to read the xml from
+     * @throws ResourceParseException if the xml could not be read
+     */
+    public PredefinedTeXFormulaParser(InputStream in) throws ResourceParseException {
         try {
-            root = new SAXBuilder().build(
-                    getClass().getResourceAsStream(RESOURCE_DIR + RESOURCE_NAME))
-                    .getRootElement();
+            root = new SAXBuilder().build(in).getRootElement();
         } catch (Exception e) { // JDOMException or IOException
             throw new XMLResourceParseException(RESOURCE_NAME, e);
         }
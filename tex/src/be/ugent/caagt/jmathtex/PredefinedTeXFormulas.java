@@ -0,0 +1,117 @@
+/* PredefinedTeXFormulas.java
+ * =========================================================================
+ * This file is part of the JMathTeX Library - http://jmathtex.sourceforge.net
+ * 
+ * Generated from PredefinedTeXFormulas.xml by PredefinedTeXFormulaCompiler: DO NOT EDIT!
+ * 
+ */
+
+package be.ugent.caagt.jmathtex;
+
+import java.util.Map;
+
+/**
+ * Creates the predefined TeXFormula's defined in "PredefinedTeXFormulas.xml"
+ * without parsing the xml-file (generated by {@link PredefinedTeXFormulaCompiler}).
+ */
+final class PredefinedTeXFormulas {
+
+    private PredefinedTeXFormulas() {
+        // not to be instantiated
+    }
+
+    /**
+     * Creates all the predefined TeXFormula's and puts them in the given map.
+     */
+    static void addTo(Map<String, TeXFormula> predefinedTeXFormulas) {
+        predefinedTeXFormulas.put("ne", createNe());
+        predefinedTeXFormulas.put("neq", createNeq());
+        predefinedTeXFormulas.put("hbar", createHbar());
+        predefinedTeXFormulas.put("surd", createSurd());
+        predefinedTeXFormulas.put("ldots", createLdots());
+        predefinedTeXFormulas.put("cdots", createCdots());
+        predefinedTeXFormulas.put("bowtie", createBowtie());
+        predefinedTeXFormulas.put("models", createModels());
+        predefinedTeXFormulas.put("doteq", createDoteq());
+        predefinedTeXFormulas.put("cong", createCong());
+    }
+
+    // <TeXFormula name="ne">
+    private static TeXFormula createNe() {
+        TeXFormula f = new TeXFormula("\\not\\equals");
+        return f;
+    }
+
+    // <TeXFormula name="neq">
+    private static TeXFormula createNeq() {
+        TeXFormula f = new TeXFormula("\\not\\equals");
+        return f;
+    }
+
+    // <TeXFormula name="hbar">
+    private static TeXFormula createHbar() {
+        TeXFormula f = new TeXFormula("\\bar");
+        f.addStrut(TeXConstants.UNIT_MU, -9.0f, 0.0f, 0.0f);
+        f.add("h");
+        return f;
+    }
+
+    // <TeXFormula name="surd">
+    private static TeXFormula createSurd() {
+        TeXFormula f = new TeXFormula("\\surdsign");
+        f.centerOnAxis();
+        return f;
+    }
+
+    // <TeXFormula name="ldots">
+    private static TeXFormula createLdots() {
+        TeXFormula f = new TeXFormula("\\ldotp\\ldotp\\ldotp");
+        f.setFixedTypes(TeXConstants.TYPE_INNER, TeXConstants.TYPE_INNER);
+        return f;
+    }
+
+    // <TeXFormula name="cdots">
+    private static TeXFormula createCdots() {
+        TeXFormula f = new TeXFormula("\\cdotp\\cdotp\\cdotp");
+        f.setFixedTypes(TeXConstants.TYPE_INNER, TeXConstants.TYPE_INNER);
+        return f;
+    }
+
+    // <TeXFormula name="bowtie">
+    private static TeXFormula createBowtie() {
+        TeXFormula f = new TeXFormula("\\triangleright");
+        f.setFixedTypes(TeXConstants.TYPE_RELATION, TeXConstants.TYPE_ORDINARY);
+        TeXFormula g = new TeXFormula("\\triangleleft");
+        g.setFixedTypes(TeXConstants.TYPE_ORDINARY, TeXConstants.TYPE_RELATION);
+        f.addStrut(TeXConstants.UNIT_MU, -1.8f, 0.0f, 0.0f);
+        f.add(g);
+        return f;
+    }
+
+    // <TeXFormula name="models">
+    private static TeXFormula createModels() {
+        TeXFormula f = new TeXFormula("\\vert");
+        f.setFixedTypes(TeXConstants.TYPE_RELATION, TeXConstants.TYPE_ORDINARY);
+        TeXFormula g = new TeXFormula("\\equals");
+        g.setFixedTypes(TeXConstants.TYPE_ORDINARY, TeXConstants.TYPE_RELATION);
+        f.addStrut(TeXConstants.UNIT_MU, -3.5f, 0.0f, 0.0f);
+        f.add(g);
+        return f;
+    }
+
+    // <TeXFormula name="doteq">
+    private static TeXFormula createDoteq() {
+        TeXFormula f = new TeXFormula("\\equals");
+        f.putOver("\\ldotp", TeXConstants.UNIT_MU, 2.0f, false);
+        f.setFixedTypes(TeXConstants.TYPE_RELATION, TeXConstants.TYPE_RELATION);
+        return f;
+    }
+
+    // <TeXFormula name="cong">
+    private static TeXFormula createCong() {
+        TeXFormula f = new TeXFormula("\\equals");
+        f.putOver("\\sim", TeXConstants.UNIT_MU, 1.0f, false);
+        f.setFixedTypes(TeXConstants.TYPE_RELATION, TeXConstants.TYPE_RELATION);
+        return f;
+    }
+}
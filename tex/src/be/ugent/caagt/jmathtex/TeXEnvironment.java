@@ -36,17 +36,60 @@ import java.awt.Color;
  * Contains the used TeXFont-object, color settings and the current style in which a
  * formula must be drawn. It's used in the createBox-methods. Contains methods that
  * apply the style changing rules for subformula's.
+ * <p>
+ * 样式 (style) 和 TeXFont 是不变的部分; 颜色和最后使用的字体是可变的部分.
+ * The style and the TeXFont never change. An environment created with the constructor
+ * has 8 shared environments, 1 per style, without colors: the style changing methods
+ * return one of these (through a precomputed table) instead of allocating a new
+ * environment, unless this environment has colors.
+ * <p>
+ * 修改共享的环境时 (写时复制), 它不再是共享的, 表中换成一个新的共享环境.
+ * The shared environments can still be changed: a setter called on a shared
+ * environment first takes it out of the table (a new shared environment for its style
+ * replaces it), so the change is only seen by the code that holds it, like with the
+ * new environment that the style changing methods ({@link #crampStyle()},
+ * {@link #numStyle()}, {@link #denomStyle()}, {@link #subStyle()}, {@link #supStyle()}
+ * and {@link #rootStyle()}) used to return. Code that got the same shared environment
+ * before the change (like both scripts of an atom in a cramped style) does see it, so
+ * it's better to change a copy: <code>env.subStyle().copy()</code>, or
+ * {@link #localCopy()} (like RowAtom and UnderOverAtom do).
  */
 public class TeXEnvironment {
     
-    // colors
-    private Color background = null, color = null;
+    // the style changes, the columns of STYLE_TRANSITIONS
+    private static final int CRAMP = 0, NUM = 1, DENOM = 2, SUB = 3, SUP = 4, ROOT = 5;
+    
+    /** 样式转换表: STYLE_TRANSITIONS[style][CRAMP .. ROOT] = 新的样式. */
+    private static final int[][] STYLE_TRANSITIONS = new int[8][6];
+    static {
+        for (int style = 0; style < STYLE_TRANSITIONS.length; style++) {
+            int[] t = STYLE_TRANSITIONS[style];
+            t[CRAMP] = (style % 2 == 1 ? style : style + 1);
+            // 神奇的公式, 见 numStyle() 等的表格.
+            t[NUM] = style + 2 - 2 * (style / 6);
+            t[DENOM] = 2 * (style / 2) + 1 + 2 - 2 * (style / 6);
+            t[SUB] = 2 * (style / 4) + 4 + 1;
+            t[SUP] = 2 * (style / 4) + 4 + (style % 2);
+            t[ROOT] = TeXConstants.STYLE_SCRIPT_SCRIPT;
+        }
+    }
+    
+    // the shared environments without colors, by style (the same array for all the
+    // environments derived from the same one)
+    private final TeXEnvironment[] styles;
+    
+    // whether this is one of the shared environments (in styles); only changed from
+    // true to false, while holding the lock of styles
+    private boolean shared;
     
     /** current style (当前显示形式) */
-    private int style = TeXConstants.STYLE_DISPLAY;
+    private final int style;
     
     /** TeXFont used */
-    private TeXFont tf;
+    private final TeXFont tf;
+    
+    // colors
+    private Color background = null, color = null;
     
     // last used font
     private int lastFontId = TeXFont.NO_FONT;
@@ -57,29 +100,104 @@ public class TeXEnvironment {
      * @param tf
      */
     public TeXEnvironment(int style, TeXFont tf) {
-        this(style, tf, null, null);
+        this(validStyle(style), tf, null, null, createStyles(tf));
     }
     
-    private TeXEnvironment(int style, TeXFont tf, Color bg, Color c) {
+    private TeXEnvironment(int style, TeXFont tf, Color bg, Color c,
+            TeXEnvironment[] styles) {
+        this.style = style;
+        this.tf = tf;
+        background = bg;
+        color = c;
+        this.styles = styles;
+        shared = false;
+    }
+    
+    // a shared environment
+    private TeXEnvironment(int style, TeXFont tf, TeXEnvironment[] styles) {
+        this.style = style;
+        this.tf = tf;
+        this.styles = styles;
+        shared = true;
+    }
+    
+    private static TeXEnvironment[] createStyles(TeXFont tf) {
+        TeXEnvironment[] res = new TeXEnvironment[STYLE_TRANSITIONS.length];
+        for (int i = 0; i < res.length; i++)
+            res[i] = new TeXEnvironment(i, tf, res);
+        return res;
+    }
+    
+    private static int validStyle(int style) {
         // check if style is valid
         // if not : DISPLAY = default value
         if (style == TeXConstants.STYLE_DISPLAY || style == TeXConstants.STYLE_TEXT
                 || style == TeXConstants.STYLE_SCRIPT || style == TeXConstants.STYLE_SCRIPT_SCRIPT)
-            this.style = style;
+            return style;
         else
-            this.style = TeXConstants.STYLE_DISPLAY;
-        
-        this.tf = tf;
-        background = bg;
-        color = c;
+            return TeXConstants.STYLE_DISPLAY;
     }
     
     /**
      * 新建一个 TeXEnvironment 的复制(拷贝), 与此实例的值完全一样.
-     * @return
+     * @return a new environment that can be changed
      */
     public TeXEnvironment copy() {
-        return new TeXEnvironment(style, tf, background, color);
+        return new TeXEnvironment(validStyle(style), tf, background, color, styles);
+    }
+    
+    /**
+     * 得到样式转换后的环境: 没有颜色时是共享的环境, 不需要新建对象.
+     * @return the environment in the style of the given transition: the shared one if
+     *         this environment has no colors, otherwise a new one with the same colors
+     */
+    private TeXEnvironment transition(int t) {
+        int s = STYLE_TRANSITIONS[style][t];
+        if (color == null && background == null)
+            return styles[s];
+        return new TeXEnvironment(s, tf, background, color, styles);
+    }
+    
+    /**
+     * 是否为共享的环境.
+     * @return whether this is one of the shared environments returned by the style
+     *         changing methods (it stops being shared when one of its setters is
+     *         called)
+     */
+    public boolean isShared() {
+        return shared;
+    }
+    
+    /**
+     * 写时复制: 把此环境从共享的环境中取出, 换成一个新的.
+     * Called before this environment is changed: if it's shared, it's replaced in the
+     * table of shared environments by a new one without colors, so that the change
+     * isn't seen by the environments that change to its style later.
+     */
+    private void unshare() {
+        if (shared) {
+            synchronized (styles) {
+                if (shared) {
+                    styles[style] = new TeXEnvironment(style, tf, styles);
+                    shared = false;
+                }
+            }
+        }
+    }
+    
+    /**
+     * 新建环境拷贝: 样式和最后使用的字体不变, 但没有颜色. 用于在布局时修改最后使用的字体.
+     * RowAtom and UnderOverAtom change the last used font while they lay out their
+     * parts, so they work in their own copy: the environment they get is never
+     * changed, and it can be shared by several threads.
+     * 
+     * @return a copy of the environment with the same style and last used font, but
+     *         without colors (the box of the atom paints them)
+     */
+    public TeXEnvironment localCopy() {
+        TeXEnvironment s = new TeXEnvironment(style, tf, null, null, styles);
+        s.lastFontId = lastFontId;
+        return s;
     }
     
     /**
@@ -95,12 +213,12 @@ public class TeXEnvironment {
      *    SS=6				SS'=7
      *    SS'=7				SS'=7 </pre>
      *    
-     * @return a copy of the environment, but in a cramped(狭窄的) style.
+     * The returned environment is shared if this one has no colors: better use
+     * {@link #copy()} on it before calling its setters.
+     * @return the environment (a shared one if this one has no colors), but in a cramped(狭窄的) style.
      */
     public TeXEnvironment crampStyle() {
-        TeXEnvironment s = copy();
-        s.style = (style % 2 == 1 ? style : style + 1);
-        return s;
+        return transition(CRAMP);
     }
     
     /**
@@ -113,23 +231,22 @@ public class TeXEnvironment {
      *    S=4,SS=6           SS=6                   SS'=7
      *    S'=5,SS'=7         SS'=7                  SS'=7
      * 这里的公式计算出来 `应该' 就是表中的值. 但是就是不容易懂吧...
-     * @return a copy of the environment, but in denominator(分母) style.
+     * The returned environment is shared if this one has no colors: better use
+     * {@link #copy()} on it before calling its setters.
+     * @return the environment (a shared one if this one has no colors), but in denominator(分母) style.
      */
     public TeXEnvironment denomStyle() {
-        TeXEnvironment s = copy();
-        // 神奇的公式, 我觉得弄成表格是不是更容易理解??
-        s.style = 2 * (style / 2) + 1 + 2 - 2 * (style / 6);
-        return s;
+        return transition(DENOM);
     }
     
     /**
      * 参见 denomStyle() 的说明.
-     * @return a copy of the environment, but in numerator(分子) style.
+     * The returned environment is shared if this one has no colors: better use
+     * {@link #copy()} on it before calling its setters.
+     * @return the environment (a shared one if this one has no colors), but in numerator(分子) style.
      */
     public TeXEnvironment numStyle() {
-        TeXEnvironment s = copy();
-        s.style = style + 2 - 2 * (style / 6);
-        return s;
+        return transition(NUM);
     }
     
     /**
@@ -173,37 +290,40 @@ public class TeXEnvironment {
     }
     
     /**
-     * Resets the color settings.
-     *
+     * Resets the color settings (a shared environment stops being shared first).
      */
     public void reset() {
+        unshare();
         color = null;
         background = null;
     }
     
     /**
-     *
-     * @return a copy of the environment, but with the style changed for roots
+     * The returned environment is shared if this one has no colors: better use
+     * {@link #copy()} on it before calling its setters.
+     * @return the environment (a shared one if this one has no colors), but with the style changed for roots
      */
     public TeXEnvironment rootStyle() {
-        TeXEnvironment s = copy();
-        s.style = TeXConstants.STYLE_SCRIPT_SCRIPT;
-        return s;
+        return transition(ROOT);
     }
     
     /**
+     * Sets the background color (a shared environment stops being shared first).
      *
      * @param c the background color to be set
      */
     public void setBackground(Color c) {
+        unshare();
         background = c;
     }
     
     /**
+     * Sets the foreground color (a shared environment stops being shared first).
      *
      * @param c the foreground color to be set
      */
     public void setColor(Color c) {
+        unshare();
         color = c;
     }
     
@@ -218,12 +338,12 @@ public class TeXEnvironment {
      *   S=4,SS=6                    SS'=7
      *   S'=5,SS'=7                  SS'=7
      *   
-     * @return a copy of the environment, but in subscript(下标) style.
+     * The returned environment is shared if this one has no colors: better use
+     * {@link #copy()} on it before calling its setters.
+     * @return the environment (a shared one if this one has no colors), but in subscript(下标) style.
      */
     public TeXEnvironment subStyle() {
-        TeXEnvironment s = copy();
-        s.style = 2 * (style / 4) + 4 + 1;
-        return s;
+        return transition(SUB);
     }
     
     /**
@@ -237,19 +357,25 @@ public class TeXEnvironment {
      *    S=4,SS=6                  SS=6
      *    S'=5,SS'=7                SS'=7
 	 * 此函数中的公式算出的值即如上表所示. 只是不好理解, 不如写成如上表格形式.
-     * @return a copy of the environment, but in superscript(上标) style.
+     * The returned environment is shared if this one has no colors: better use
+     * {@link #copy()} on it before calling its setters.
+     * @return the environment (a shared one if this one has no colors), but in superscript(上标) style.
      */
     public TeXEnvironment supStyle() {
-        TeXEnvironment s = copy();
-        s.style = 2 * (style / 4) + 4 + (style % 2);
-        return s;
+        return transition(SUP);
     }
     
     public float getSpace() {
         return tf.getSpace(style);
     }
     
+    /**
+     * 设置最后使用的字体.
+     * Sets the last used font (a shared environment stops being shared first).
+     * @param id the id of the last used font
+     */
     public void setLastFontId(int id) {
+        unshare();
         lastFontId = id;
     }
     
@@ -85,6 +85,18 @@ public interface TeXFont {
     */
    public Char getChar3(char c, String textStyle, int style) throws TextStyleMappingNotFoundException;
 
+   /**
+    * Same as {@link #getChar3(char, String, int)}, but returns null instead of
+    * throwing an exception if there's no text style defined with the given name.
+    *  
+    * @param c alphanumeric character
+    * @param textStyle the text style in which the character should be drawn
+    * @param style the style in which the atom should be drawn
+    * @return the Char-object specifying the given character in the given text style,
+    *       or null if there's no text style defined with the given name
+    */
+   public Char tryGetChar3(char c, String textStyle, int style);
+
    /**
     * Get a Char-object for this specific character containing the metric information
     * 
@@ -107,6 +119,17 @@ public interface TeXFont {
     */
    public Char getChar1(String symbolName, int style) throws SymbolMappingNotFoundException;
 
+   /**
+    * Same as {@link #getChar1(String, int)}, but returns null instead of throwing an
+    * exception if there's no symbol defined with the given name.
+    * 
+    * @param symbolName the symbol name (符号名)
+    * @param style the style in which the atom should be drawn (显示样式)
+    * @return a Char-object for this symbol with metric information, or null if
+    *       there's no symbol defined with the given name
+    */
+   public Char tryGetChar1(String symbolName, int style);
+
    
    /**
     * 以缺省 文本样式(text style), 和根据 显示样式(display style) 得到的尺寸信息, 
@@ -29,6 +29,8 @@
 package be.ugent.caagt.jmathtex;
 
 import java.awt.Color;
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -37,6 +39,7 @@ import java.util.Set;
 
 import be.ugent.caagt.jmathtex.atom.AccentedAtom;
 import be.ugent.caagt.jmathtex.atom.Atom;
+import be.ugent.caagt.jmathtex.atom.AtomInterner;
 import be.ugent.caagt.jmathtex.atom.BigOperatorAtom;
 import be.ugent.caagt.jmathtex.atom.CharAtom;
 import be.ugent.caagt.jmathtex.atom.ColorAtom;
@@ -66,6 +69,7 @@ import be.ugent.caagt.jmathtex.ex.InvalidSymbolTypeException;
 import be.ugent.caagt.jmathtex.ex.InvalidTeXFormulaException;
 import be.ugent.caagt.jmathtex.ex.InvalidUnitException;
 import be.ugent.caagt.jmathtex.ex.ParseException;
+import be.ugent.caagt.jmathtex.ex.ResourceParseException;
 import be.ugent.caagt.jmathtex.ex.SymbolNotFoundException;
 
 /*
@@ -140,8 +144,27 @@ public class TeXFormula {
     // for comparing floats with 0
     public static final float PREC = 0.0000001f;
     
-    /** predefined TeXFormula's; 预定义的公式, 加载自 `TeXFormulaSettings.xml' 文件中. */
-    private static Map<String, TeXFormula> predefinedTeXFormulas = new HashMap<String, TeXFormula>();
+    /**
+     * root atoms of the predefined TeXFormula's; 预定义的公式, 加载自 `PredefinedTeXFormulas.xml' 文件中.
+     * They're immutable and shared by all the TeXFormula's that use them.
+     */
+    private static Map<String, Atom> predefinedTeXFormulas = new HashMap<String, Atom>();
+    
+    /** the (optional) cache of parsed formulas; 解析结果的缓存, 默认不使用. */
+    private static volatile TeXFormulaCache parseCache = null;
+    
+    /** the (optional) cache of laid out sub-expressions; 盒子缓存, 默认不使用. */
+    private static volatile BoxCache boxCache = null;
+    
+    /** the (optional) table of interned atoms; atom 的 intern 表, 默认不使用. */
+    private static volatile AtomInterner atomInterner = null;
+    
+    /**
+     * all the names that can follow the escape character (symbols, predefined
+     * TeXFormula's, text styles and commands), for finding the longest
+     * control word in one scan
+     */
+    private static ControlWordTrie controlWords = new ControlWordTrie();
     
     // script characters (for parsing)
     private static final char SUB_SCRIPT = '_';
@@ -157,6 +180,18 @@ public class TeXFormula {
      * 
      *  character-to-symbol mappings
      */
+    private static CharTable<String> symbolTable;
+    
+    /**
+     * 旧的数组形式的 character-to-symbol 映射 (修改它仍然影响解析).
+     * 
+     * @deprecated the character-to-symbol mappings as an array indexed by the
+     *             character. Changes are still used by the parser (for the characters
+     *             within the array: the others are looked up in the mappings of
+     *             TeXFormulaSettings.xml), but clear the parse cache after changing it.
+     *             Use {@link #getSymbolMapping(char)} to look up a mapping.
+     */
+    @Deprecated
     public static String[] symbolMappings;
     
     /**
@@ -165,7 +200,7 @@ public class TeXFormula {
      * 
      * character-to-delimiter mappings
      */
-    private static String[] delimiterMappings;
+    private static CharTable<String> delimiterTable;
     
     // 静态初始化.
     static {
@@ -173,10 +208,11 @@ public class TeXFormula {
         TeXFormulaSettingsParser parser = new TeXFormulaSettingsParser();
         
         // 解析子节点 <CharacterToSymbolMappings>
-        symbolMappings = parser.parseSymbolMappings();
+        symbolTable = parser.parseSymbolTable();
+        symbolMappings = TeXFormulaSettingsParser.toArray(symbolTable);
         
         // 解析子节点 <CharacterToDelimiterMappings>
-        delimiterMappings = parser.parseDelimiterMappings();
+        delimiterTable = parser.parseDelimiterTable();
         
         // textstyle commands; 解析子节点 <TextStyles>
         textStyles = parser.parseTextStyles();
@@ -184,17 +220,97 @@ public class TeXFormula {
         // commands; 添加两个特殊处理的数学命令? (不含 \above 等??)
         commands.add("frac");
         commands.add("sqrt");
+        commands.add("nbsp"); // space (for MathML-purposes!)
         
-        // predefined TeXFormula's; 预定义的数学公式.
-        new PredefinedTeXFormulaParser().parse(predefinedTeXFormulas);
+        // control words known before the predefined TeXFormula's are parsed
+        for (SymbolAtom s : SymbolAtom.getAll())
+            controlWords.add(s);
+        for (String name : textStyles)
+            controlWords.add(name, ControlWordTrie.TEXT_STYLE);
+        for (String name : commands)
+            controlWords.add(name, ControlWordTrie.COMMAND);
+        
+        // predefined TeXFormula's; 预定义的数学公式. (no xml parsing: the code that creates
+        // them is generated from PredefinedTeXFormulas.xml by PredefinedTeXFormulaCompiler)
+        Map<String, TeXFormula> predefined = new HashMap<String, TeXFormula>();
+        PredefinedTeXFormulas.addTo(predefined);
+        addPredefinedTeXFormulas(predefined);
+    }
+    
+   /*
+    * Makes the given TeXFormula's available as predefined TeXFormula's.
+    */
+    private static void addPredefinedTeXFormulas(Map<String, TeXFormula> predefined) {
+        for (Map.Entry<String, TeXFormula> entry : predefined.entrySet()) {
+            Atom root = entry.getValue().root;
+            // only a row as a root could be changed (by adding atoms to it)
+            if (root instanceof RowAtom)
+                ((RowAtom) root).makeImmutable();
+            AtomInterner interner = atomInterner;
+            if (interner != null)
+                root = interner.intern(root);
+            predefinedTeXFormulas.put(entry.getKey(), root);
+            controlWords.add(entry.getKey(), root);
+        }
+    }
+    
+    /**
+     * 从 XML 中加载自定义的预定义公式.
+     * Reads (custom) predefined TeXFormula's from the given input stream, in the same
+     * xml-format as "PredefinedTeXFormulas.xml". From then on, they can be used by
+     * their names, just like the default predefined TeXFormula's (existing ones with
+     * the same name are replaced). The parse cache (if any) is cleared.
+     * <p>
+     * This isn't thread-safe: it should be done before formulas are created.
+     *
+     * @param in the input stream to read the xml from
+     * @throws ResourceParseException if the xml could not be read or contains
+     *          invalid definitions
+     */
+    public static void addPredefinedTeXFormulas(InputStream in) throws ResourceParseException {
+        Map<String, TeXFormula> predefined = new HashMap<String, TeXFormula>();
+        new PredefinedTeXFormulaParser(in).parse(predefined);
+        addPredefinedTeXFormulas(predefined);
+        TeXFormulaCache cache = parseCache;
+        if (cache != null)
+            cache.clear();
     }
     
     /** the string to be parsed (要被解析/正在被解析/已被解析的)字符串 */
-    private String parseString;
+    private CharSequence parseString;
     
     /** current position in the parse string */
     private int pos = 0;
     
+    /** end of the part of the parse string that's being parsed (exclusive) */
+    private int end = 0;
+    
+    /**
+     * for every group opening character in the parse string, the position of the
+     * matching group closing character (or -1 if there's none), indexed by
+     * position minus {@link #groupOffset}. Shared with the TeXFormula's that are
+     * created for the groups while parsing.
+     */
+    private int[] groupEnds;
+    
+    private int groupOffset;
+    
+    /** whether the last attachScripts stopped at a "'" (see {@link #getPrimes()}) */
+    private boolean primesFollow = false;
+    
+    /** state of an incremental parse (see IncrementalTeXFormula), shared with the child formulas */
+    private IncrementalTeXFormula.Context incremental = null;
+    
+    /** the level being parsed incrementally, the corresponding old level and its start */
+    private IncrementalTeXFormula.Level newLevel, oldLevel;
+    private int levelStart;
+    
+    /** the last atom added (only while parsing incrementally) */
+    private Atom lastAdded;
+    
+    /** the user defined macros and the state of their expansion (or null), shared with the child formulas */
+    private TeXMacros.Expansion expansion = null;
+    
     /** the root atom of the "atom tree" that represents the formula
      * 表示此公式的 atom 树的树根.  
      */
@@ -246,22 +362,121 @@ public class TeXFormula {
      * @throws ParseException if the string could not be parsed correctly
      */
     public TeXFormula(String s) throws ParseException {
-        this(s, null);
+        if (s != null && s.length() != 0)
+            parseCached(s);
+    }
+    
+    /**
+     * 解析所给的字符串, 并展开其中用到的用户定义的宏.
+     * Creates a new TeXFormula by parsing the given string (using a primitive TeX parser),
+     * expanding the macros from the given set of user defined macros. The expansion
+     * of a macro is parsed like a group. Macros with the same name as a TeX symbol,
+     * command or predefined TeXFormula replace them. If there are macros, the parse
+     * cache (see {@link #setParseCache(TeXFormulaCache)}) isn't used.
+     *
+     * @param s the string to be parsed
+     * @param macros the user defined macros (or null)
+     * @throws ParseException if the string could not be parsed correctly, or if the
+     * 			macro expansions are nested too deep or produce too many characters
+     * 			(see {@link TeXMacros})
+     */
+    public TeXFormula(String s, TeXMacros macros) throws ParseException {
+        if (s != null && s.length() != 0) {
+            if (macros == null)
+                parseCached(s);
+            else {
+                expansion = new TeXMacros.Expansion(macros);
+                parse(s);
+                expansion = null;
+            }
+        }
+    }
+    
+    /**
+     * Creates a new TeXFormula by parsing the characters from start (inclusive) to
+     * end (exclusive) of the given character sequence (using a primitive TeX parser).
+     * This is the same as parsing <code>s.subSequence(start, end).toString()</code>,
+     * but the characters aren't copied.
+     *
+     * @param s the character sequence containing the string to be parsed
+     * @param start the position of the first character to be parsed
+     * @param end the position after the last character to be parsed
+     * @throws ParseException if the string could not be parsed correctly
+     * @throws IndexOutOfBoundsException if start or end are not valid positions in s
+     */
+    public TeXFormula(CharSequence s, int start, int end) throws ParseException {
+        if (start < 0 || end > s.length() || start > end)
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end
+                    + ", length " + s.length());
+        if (start < end) {
+            parseString = s;
+            pos = start;
+            this.end = end;
+            groupEnds = findGroupEnds(s, start, end);
+            groupOffset = start;
+            parse();
+            groupEnds = null;
+        }
     }
     
    /**
-    * 用于当找到 text style 命令在字符串中时使用.
-    * 这些 text style 命令应该是 \displaystyle, \textstyle, \scriptstyle, \scriptscriptstyle (见书 17.5)
+    * 用于读取一个组(或一个上标/下标字符)时使用, 不复制字符串.
     * 
-    * Creates a TeXFormula by parsing the given string in the given text style.
-    * Used when a text style command was found in the parse string.
+    * Creates a TeXFormula by parsing the given part of the parse string of another
+    * TeXFormula in the given text style (or null). Used for groups and scripts found
+    * in the parse string.
     */
-    private TeXFormula(String s, String textStyle) throws ParseException {
+    private TeXFormula(TeXFormula parent, int start, int end, String textStyle)
+    throws ParseException {
         this.textStyle = textStyle;
-        if (s != null && s.length() != 0)
+        if (start < end) {
+            parseString = parent.parseString;
+            pos = start;
+            this.end = end;
+            groupEnds = parent.groupEnds;
+            groupOffset = parent.groupOffset;
+            expansion = parent.expansion;
+            if (parent.incremental == null)
+                parse();
+            else {
+                incremental = parent.incremental;
+                parseIncrementally(parent);
+                incremental = null;
+            }
+        }
+    }
+    
+   /*
+    * Parses the expansion of a user defined macro in the given text style (or null).
+    */
+    private TeXFormula(TeXMacros.Expansion expansion, String s, String textStyle)
+    throws ParseException {
+        this.textStyle = textStyle;
+        this.expansion = expansion;
+        if (s.length() != 0)
             parse(s);
     }
     
+   /*
+    * Parses the string of the given incremental parse (see IncrementalTeXFormula).
+    */
+    TeXFormula(IncrementalTeXFormula.Context context) throws ParseException {
+        String s = context.getString();
+        if (s.length() == 0)
+            context.root = new IncrementalTeXFormula.Level(0, null);
+        else {
+            parseString = context;
+            pos = 0;
+            end = s.length();
+            groupEnds = findGroupEnds(s, 0, end);
+            groupOffset = 0;
+            incremental = context;
+            parseIncrementally(null);
+            incremental = null;
+            groupEnds = null;
+        }
+    }
+    
     /**
      * Creates a new TeXFormula that is a copy of the given TeXFormula.
      * <p>
@@ -275,14 +490,17 @@ public class TeXFormula {
     }
     
    /*
-    * Inserts an atom at the end of the current formula
+    * Inserts an atom at the end of the current formula. An immutable (shared) row
+    * as root is copied first.
     */
     private TeXFormula add(Atom el) {
+        if (incremental != null)
+            lastAdded = el;
         if (el != null) {
             if (root == null)
                 root = el;
             else {
-                if (!(root instanceof RowAtom))
+                if (!(root instanceof RowAtom) || ((RowAtom) root).isImmutable())
                     root = new RowAtom(root);
                 ((RowAtom) root).add(el);
             }
@@ -322,8 +540,8 @@ public class TeXFormula {
     
     private void addImpl (TeXFormula f) {
         if (f.root != null) {
-            // special copy-treatment for Mrow as a root!!
-            if (f.root instanceof RowAtom)
+            // special copy-treatment for Mrow as a root!! (unless it's immutable)
+            if (f.root instanceof RowAtom && !((RowAtom) f.root).isImmutable())
                 add(new RowAtom(f.root));
             else
                 add(f.root);
@@ -933,15 +1151,15 @@ public class TeXFormula {
         skipWhiteSpace(); // 忽略/跳过可能的空白.
         Atom f = atom;
         
-        if (pos < parseString.length()) { // 未结束.
+        if (pos < end) { // 未结束.
             // attach script(s) if present
             char ch = parseString.charAt(pos);
             
-            // ' 相当于 上标\prime, 因此先替换这个, 然后...
-            // ' = ^{\prime... so first replace this, then attach this script
+            // ' 相当于 {\prime}, 由 parse() 读取, 见 getPrimes()
+            // ' = {\prime... so leave it to parse(), that will read it as a group
             if (ch == PRIME) {
-                replaceAccents();
-                ch = parseString.charAt(pos);
+                primesFollow = true;
+                return f;
             }
             
             // 看是否有上下标, 并附加到原子.
@@ -953,12 +1171,13 @@ public class TeXFormula {
                     TeXFormula sub = new TeXFormula(); // 构造一个空下标
                     
                     skipWhiteSpace();
-                    if (pos < parseString.length()
+                    if (pos < end
                     		&& parseString.charAt(pos) == SUB_SCRIPT) { // both; 即有上标又有下标.
                         pos++;
                         sub = getScript(); // 则读取下标.
                     }
                     
+                    checkBase(f);
                     // 如果是巨算符, 则构造 BigOp 原子; 否则构造 Script 原子. 
                     // ? 这两种的详细情况呢? 为什么不用一种呢?
                     if(f.getRightType() == TeXConstants.TYPE_BIG_OPERATOR)
@@ -971,12 +1190,13 @@ public class TeXFormula {
                     TeXFormula sup = new TeXFormula(); // 空上标(可能没有上标)
                     
                     skipWhiteSpace();
-                    if (pos < parseString.length()
+                    if (pos < end
                     		&& parseString.charAt(pos) == SUPER_SCRIPT) { // both
                         pos++;
                         sup = getScript(); // 先有下标, 后有上标.
                     }
                     
+                    checkBase(f);
                     if(f.getRightType() == TeXConstants.TYPE_BIG_OPERATOR)
                         f = new BigOperatorAtom(f, sub.root, sup.root);
                     else
@@ -987,6 +1207,18 @@ public class TeXFormula {
         return f;
     }
     
+   /*
+    * 脚本没有基 (如 "{}^2") 时报错, 而不是 NullPointerException.
+    * Throws the same ParseException as for a script at the start, if the scripts
+    * that were read have no base (an empty group, like in "{}^2").
+    */
+    private static void checkBase(Atom base) throws ParseException {
+        if (base == null)
+            throw new ParseException("Every script needs a base: \""
+                    + SUPER_SCRIPT + "\", \"" + SUB_SCRIPT + "\" and \""
+                    + PRIME + "\" can't be the first character!");
+    }
+    
    /**
     * 将一个字符(从要解析的字符串中取得的)转换(创建)为一个 atom, 其可能是 CharAtom 或 SymbolAtom
     * 
@@ -995,21 +1227,20 @@ public class TeXFormula {
     private Atom convertCharacter(char c) throws ParseException {
         pos++;
         if (isSymbol(c)) { // 如果是符号(非数字,非字母)
-            String symbolName = symbolMappings[c]; // 得到该字符对应的名字. (也可能没有??, 例如 ` 字符没有?)
+            String symbolName = getSymbolMapping(c); // 得到该字符对应的名字. (也可能没有??, 例如 ` 字符没有?)
             if (symbolName == null) // 没有则提示未知字符? 不如原样显示?
                 throw new ParseException("Unknown character : '"
                         + Character.toString(c) + "'");
-            else
-            	// 该符号字符有名字. 如 +="plus"
-                try {
-                	// 从 SymbolAtom 中得到该名字对应的 SymbolAtom. (其初始化时创建自配置文件)
-                    return SymbolAtom.get(symbolName);
-                } catch (SymbolNotFoundException e) {
-                    throw new ParseException("The character '"
-                            + Character.toString(c)
-                            + "' was mapped to an unknown symbol with the name '"
-                            + (String) symbolName + "'!", e);
-                }
+            
+            // 该符号字符有名字. 如 +="plus"
+            // 从 SymbolAtom 中得到该名字对应的 SymbolAtom. (其初始化时创建自配置文件)
+            SymbolAtom symbol = SymbolAtom.tryGet(symbolName);
+            if (symbol == null)
+                throw new ParseException("The character '"
+                        + Character.toString(c)
+                        + "' was mapped to an unknown symbol with the name '"
+                        + symbolName + "'!");
+            return symbol;
         } else
             // alphanumeric character; 创建为普通 CharAtom(包含字母,数字两种小分类)
             return new CharAtom(c, textStyle);
@@ -1323,38 +1554,33 @@ public class TeXFormula {
     }
     
    /**
-    * 读取下一个组(使用指定的开符号和闭符号, 如 lbrace={, rbrace=} ).
+    * 读取下一个组(使用指定的开符号和闭符号, 如 lbrace={, rbrace=} ), 并解析它.
     *   调试例子 "\mathrm {x+y}" 进入这里.
     * 
     * Get the next group (between the given opening and closing characters)
-    * at the current position in the parse string, return it as a string and
-    * adjust the current position (after the group).
+    * at the current position in the parse string, parse it (in the given text
+    * style, or null) without copying it, return it as a TeXFormula and adjust
+    * the current position (after the group).
     */
-    private String getGroup(char open, char close) throws ParseException {
-        int group = 0;
-        if (pos < parseString.length()) {
+    private TeXFormula getGroup(char open, char close, String style)
+    throws ParseException {
+        if (pos < end) {
             char ch = parseString.charAt(pos);
-            if (ch == open) { // 遇到开符号: 开符号数量+1, 扫描里面的内容.
-                pos++;
-                StringBuffer buf = new StringBuffer();
-                // 扫描内容, 直到遇到 `配对的' 闭符号, 或到了字符串末尾.
-                while (pos < parseString.length() 
-                		&& !(parseString.charAt(pos) == close && group == 0)) {
-                    if (parseString.charAt(pos) == open)
-                        group++;
-                    else if (parseString.charAt(pos) == close)
-                        group--;
-                    buf.append(parseString.charAt(pos));
-                    pos++;
-                }
-                if (pos == parseString.length())
+            if (ch == open) { // 遇到开符号: 找到`配对的' 闭符号, 解析里面的内容.
+                int groupEnd = groupEnds[pos - groupOffset];
+                if (groupEnd < 0 || groupEnd >= end)
                     // end of string reached, but not processed properly
                     throw new ParseException("Illegal end,  missing '" + close
                             + "'!");
-                else { // end of group
-                    pos++;
-                    return buf.toString();
-                }
+                if (incremental != null)
+                    incremental.markRead(groupEnd);
+                TeXFormula group = new TeXFormula(this, pos + 1, groupEnd, style);
+                // the row of the group is complete, so its structural hash can be stored
+                if (group.root instanceof RowAtom)
+                    ((RowAtom) group.root).makeImmutable();
+                // end of group
+                pos = groupEnd + 1;
+                return group;
             } else
                 throw new ParseException("missing '" + open + "'!");
         }
@@ -1362,6 +1588,17 @@ public class TeXFormula {
         throw new ParseException("Illegal end, missing '" + close + "'!");
     }
     
+   /**
+    * 读取下一个组, 不使用 text style.
+    * 
+    * Get the next group (between the given opening and closing characters) at the
+    * current position in the parse string, parse it, return it as a TeXFormula and
+    * adjust the current position (after the group).
+    */
+    private TeXFormula getGroup(char open, char close) throws ParseException {
+        return getGroup(open, close, null);
+    }
+    
    /**
     * 解析原子后跟的上标/下标. 解析然后作为 TeXFormula 返回.
     * 
@@ -1373,15 +1610,15 @@ public class TeXFormula {
     private TeXFormula getScript() throws ParseException {
         skipWhiteSpace();
         char ch;
-        if (pos < parseString.length()) {
+        if (pos < end) {
             ch = parseString.charAt(pos);
             if (ch == L_GROUP) {
             	// 后跟 { 符号, 所以跟随一个组, 则读取组, 构造为 TeXFormula.
-                return new TeXFormula(getGroup(L_GROUP, R_GROUP));
+                return getGroup(L_GROUP, R_GROUP);
             } else {
             	// 单个字符做为上标/下标.
                 pos++;
-                return new TeXFormula(Character.toString(ch));
+                return new TeXFormula(this, pos - 1, pos, null);
             }
         }
         // end of string reached, but not processed properly
@@ -1456,51 +1693,197 @@ public class TeXFormula {
         return this;
     }
     
+   /*
+    * Parses the given string, or uses the atom tree of the same (normalized) string
+    * from the parse cache (if any).
+    */
+    private void parseCached(String s) throws ParseException {
+        TeXFormulaCache cache = parseCache;
+        if (cache == null) {
+            parse(s);
+            intern();
+        } else {
+            String key = TeXFormulaCache.normalize(s);
+            root = cache.get(key);
+            if (root == null) {
+                parse(s);
+                intern();
+                cache.put(key, root);
+            }
+        }
+    }
+    
+   /*
+    * Replaces the (just parsed) atom tree by the interned one, if atoms are interned.
+    */
+    private void intern() {
+        AtomInterner interner = atomInterner;
+        if (interner != null)
+            root = interner.intern(root);
+    }
+    
    /**
     * 解析指定的字符串(从位置 0 开始)
     * Starts parsing the given string (at position 0).
     */
     private void parse(String s) throws ParseException {
+        parseString = s;
+        pos = 0;
+        end = s.length();
+        groupEnds = findGroupEnds(s, 0, end);
+        groupOffset = 0;
+        parse();
+        groupEnds = null;
+    }
+    
+   /**
+    * 解析 parseString 中从 pos 到 end 的部分.
+    * Parses the parse string from the current position up to the end position.
+    */
+    private void parse() throws ParseException {
     	if (debug_stop) {
     		System.out.println("在这里加断点");
     	}
-        parseString = s;
-        if (parseString == null || parseString.length() == 0) return;
+        int start = pos;
 
         // 遍历整个字符串, pos 指向当前正在扫描的字符.
-        while (pos < parseString.length()) {
-            char ch = parseString.charAt(pos); // 得到当前正在扫描的字符.
-            // 1. ignore white space; 忽略空格(空白).
-            if (isWhiteSpace(ch))
-                pos++; 
-            // 2. 遇到 `\' 转义字符, 处理转义序列.
-            else if (ch == ESCAPE) 
-                processEscape(); // 转义序列,命令,数学符号,textstyle,commands,预定义数学公式.
-            // 3. 读入一个分组. {xxx}
-            else if (ch == L_GROUP) { 
-            	String g = getGroup(L_GROUP, R_GROUP);
-            	TeXFormula txf = new TeXFormula(g);
-            	Atom atom = attachScripts(txf.root); // 认真读取 <<TeX原本>> 中关于原子(atom)的说明.
-                add(atom);
-            }
-            else if (ch == R_GROUP) { // 不匹配的 } (右花括号)
-                throw new ParseException("Found a closing '" + R_GROUP
-                        + "' without an opening '" + L_GROUP + "'!");
-            }
-            // 4. 上标,下标.
-            else if (ch == SUPER_SCRIPT || ch == SUB_SCRIPT || ch == PRIME) { // ' = ^{\prime...
-                if (pos == 0) // first character
-                    throw new ParseException("Every script needs a base: \""
-                            + SUPER_SCRIPT + "\", \"" + SUB_SCRIPT + "\" and \""
-                            + PRIME + "\" can't be the first character!");
-                else
-                    throw new ParseException(
-                            "Double scripts found! Try using more braces.");
-            }
-            // 5. 其它字符.
-            else {
-                add(attachScripts(convertCharacter(ch)));
+        while (pos < end)
+            parseNext(start);
+    }
+    
+   /**
+    * 增量解析: 重用旧的解析结果中未受编辑影响的部分.
+    * Parses the parse string from the current position up to the end position, like
+    * parse(), but reuses the old parse result of this part of the string (if any, see
+    * IncrementalTeXFormula): if the edit isn't inside it, all its atoms are reused.
+    * Otherwise the steps (see parseNext) that only read characters before the edit
+    * are reused, and after the edit, as soon as a step starts at the same position
+    * (relative to the end) and in the same state as an old one, all the remaining
+    * steps are reused.
+    */
+    private void parseIncrementally(TeXFormula parent) throws ParseException {
+        IncrementalTeXFormula.Context inc = incremental;
+        int start = pos;
+        IncrementalTeXFormula.Level old = (parent == null ? inc.oldRoot : inc.findOld(
+                parent.oldLevel, parent.levelStart, start, end, textStyle));
+        if (old != null && old.length == end - start && inc.isUnchanged(start, end)) { // reuse everything
+            root = old.root;
+            pos = end;
+            inc.markRead(end - 1);
+            if (parent == null)
+                inc.root = old;
+            else
+                parent.newLevel.addChild(start - parent.levelStart, old);
+            return;
+        }
+        
+        IncrementalTeXFormula.Level level = new IncrementalTeXFormula.Level(end - start,
+                textStyle);
+        newLevel = level;
+        oldLevel = old;
+        levelStart = start;
+        int n = (old == null ? 0 : old.steps.size());
+        // the steps before the edit
+        int i = 0;
+        for (; i < n && old.steps.get(i).lookahead < inc.offset - start; i++)
+            reuseStep(old.steps.get(i), 0);
+        if (i > 0)
+            level.copyChildren(old, 0, pos - start, 0);
+        
+        int delta = inc.inserted - inc.deleted;
+        while (pos < end) {
+            // after the edit: try to continue with the old steps
+            if (old != null && pos >= inc.offset + inc.inserted
+                    && old.length + delta == level.length) {
+                int j = old.getStepIndex(pos - start - delta);
+                if (j >= 0 && old.steps.get(j).primesBefore == primesFollow) {
+                    level.copyChildren(old, pos - start - delta, old.length, delta);
+                    for (; j < n; j++)
+                        reuseStep(old.steps.get(j), delta);
+                    break;
+                }
             }
+            
+            int stepStart = pos, saved = inc.beginStep();
+            boolean primes = primesFollow;
+            lastAdded = null;
+            parseNext(start);
+            int read = inc.endStep(saved);
+            // the atom may become the root, it mustn't be changed by adding atoms to it
+            if (lastAdded instanceof RowAtom)
+                ((RowAtom) lastAdded).makeImmutable();
+            level.steps.add(new IncrementalTeXFormula.Step(stepStart - start, pos - start,
+                    read + 1 - start, primes, primesFollow, lastAdded));
+        }
+        
+        if (root instanceof RowAtom)
+            ((RowAtom) root).makeImmutable();
+        level.root = root;
+        if (parent == null)
+            inc.root = level;
+        else
+            parent.newLevel.addChild(start - parent.levelStart, level);
+        newLevel = oldLevel = null;
+    }
+    
+   /*
+    * Does what the given (old) step did, shifted over the given distance.
+    */
+    private void reuseStep(IncrementalTeXFormula.Step step, int delta) {
+        if (delta != 0)
+            step = step.shift(delta);
+        add(step.atom);
+        primesFollow = step.primesAfter;
+        pos = levelStart + step.end;
+        incremental.markRead(levelStart + step.lookahead - 1);
+        newLevel.steps.add(step);
+    }
+    
+   /**
+    * 解析一步: 从 pos 开始, 至多添加一个 atom.
+    * Parses the next part of the parse string: white space, an escape sequence, a
+    * group or a character (and the scripts attached to it). At most one atom is added.
+    * This depends only on the current position and on whether primes follow.
+    *
+    * @param start the position where parsing started (for error messages)
+    */
+    private void parseNext(int start) throws ParseException {
+        char ch = parseString.charAt(pos); // 得到当前正在扫描的字符.
+        // 1. ignore white space; 忽略空格(空白).
+        if (isWhiteSpace(ch))
+            pos++; 
+        // 2. 遇到 `\' 转义字符, 处理转义序列.
+        else if (ch == ESCAPE) 
+            processEscape(); // 转义序列,命令,数学符号,textstyle,commands,预定义数学公式.
+        // 3. 读入一个分组. {xxx}
+        else if (ch == L_GROUP) { 
+        	TeXFormula txf = getGroup(L_GROUP, R_GROUP);
+        	Atom atom = attachScripts(txf.root); // 认真读取 <<TeX原本>> 中关于原子(atom)的说明.
+            add(atom);
+        }
+        else if (ch == R_GROUP) { // 不匹配的 } (右花括号)
+            throw new ParseException("Found a closing '" + R_GROUP
+                    + "' without an opening '" + L_GROUP + "'!");
+        }
+        // 4. ' 跟在一个原子之后: 相当于 {\prime}
+        else if (ch == PRIME && primesFollow) {
+            primesFollow = false;
+            pos++;
+            add(attachScripts(getPrimes().root));
+        }
+        // 5. 上标,下标.
+        else if (ch == SUPER_SCRIPT || ch == SUB_SCRIPT || ch == PRIME) { // ' = {\prime...
+            if (pos == start) // first character
+                throw new ParseException("Every script needs a base: \""
+                        + SUPER_SCRIPT + "\", \"" + SUB_SCRIPT + "\" and \""
+                        + PRIME + "\" can't be the first character!");
+            else
+                throw new ParseException(
+                        "Double scripts found! Try using more braces.");
+        }
+        // 6. 其它字符.
+        else {
+            add(attachScripts(convertCharacter(ch)));
         }
     }
     
@@ -1510,150 +1893,228 @@ public class TeXFormula {
     */
     private Atom processCommands(String command) throws ParseException {
         skipWhiteSpace();
-        if ("frac".equals(command)) {
-            TeXFormula num = new TeXFormula(getGroup(L_GROUP, R_GROUP));
+        if ("nbsp".equals(command)) { // space found (for MathML-purposes!)
+            return new SpaceAtom();
+        } else if ("frac".equals(command)) {
+            TeXFormula num = getGroup(L_GROUP, R_GROUP);
             skipWhiteSpace();
-            TeXFormula denom = new TeXFormula(getGroup(L_GROUP, R_GROUP));
+            TeXFormula denom = getGroup(L_GROUP, R_GROUP);
             if (num.root == null || denom.root == null)
                 throw new ParseException(
                         "Both numerator and denominator of a fraction can't be empty!");
             return new FractionAtom(num.root, denom.root, true);
         } else { // sqrt
             skipWhiteSpace();
-            if (pos == parseString.length())
+            if (pos == end)
                 // end of string reached, but not processed properly
                 throw new ParseException("illegal end!");
             
             TeXFormula nRoot = new TeXFormula();
             if (parseString.charAt(pos) == L_BRACK) { // n-th root
-                nRoot = new TeXFormula(getGroup(L_BRACK, R_BRACK));
+                nRoot = getGroup(L_BRACK, R_BRACK);
                 skipWhiteSpace();
             }
-            return new NthRoot(new TeXFormula(getGroup(L_GROUP, R_GROUP)).root,
-                    nRoot.root);
+            return new NthRoot(getGroup(L_GROUP, R_GROUP).root, nRoot.root);
             
         }
     }
     
    /**
-    * 尝试查找/发现一个 TeX 命令(如 \displaystyle)或一个 TeX 符号名(如 \frac), 
+    * 尝试查找/发现一个 TeX 命令(如 \frac)或一个 TeX 符号名(如 \infty), 
     * 在当前扫描位置(在发现了转义字符 `\' 之后).
     * 
     * Tries to find a TeX command or TeX symbol name at the current position
     * in the parse string (just after an escape character was found).
+    * The control word trie is followed one character at a time: text styles and
+    * commands are processed as soon as they're found, while for symbols and
+    * predefined TeXFormula's the longest match is used (like "in" and "infty").
     */
     private void processEscape() throws ParseException {
         pos++; // 跳过 `\' 转义字符.
-        StringBuffer buf = new StringBuffer(); // 用于保存 `\' 之后的字符串.
-        // no longer symbol name or predefined TeXFormula name possible; 不会有更多命令或符号的字符了的标志(序列结束)
-        boolean endOfEscape = false;
-        // temporarily save symbol
-        SymbolAtom symbolFound = null;
-        int symbolPos = -1;
-        // temporarily save predefined TeXFormula
-        TeXFormula predefFound = null;
-        int predefPos = -1;
-        // what was the longest match: symbol or predefined TeXFormula?
-        // 这里的算法也许不太好理解, 用最长匹配? 一般总是用最长的??
-        boolean symbolLongest = true;
+        if (pos == end)
+            // escape-char found at the end of the string
+            throw new ParseException("The escape-character '" + ESCAPE
+                    + "' can't be the last one!");
+        
+        if (expansion != null && expandMacro())
+            return;
         
-        while (pos < parseString.length()) { // 循环向后扫描.
+        int start = pos;
+        ControlWordTrie.Node node = controlWords.getRoot();
+        // longest symbol or predefined TeXFormula found so far
+        ControlWordTrie.Node found = null;
+        int foundPos = -1;
+        
+        while (pos < end) {
             char ch = parseString.charAt(pos);
-            boolean isEnd = (pos == parseString.length() - 1); // 这是字符串的最后一个字符
-            
-            // 这些字符不是命令或符号的允许使用的字符, 故而如果前面没有找到任何命令或符号, 则抛出相应的异常.
-            // the following characters can't be part of a command or symbol, so
-            // if there's no command or symbol found, then an exception is
-            // thrown
-            if (isWhiteSpace(ch) || ch == ESCAPE || ch == SUB_SCRIPT // 下标 `_'
-                    || ch == SUPER_SCRIPT || isEnd) { // 上标 `^'
-                endOfEscape = true; // escape 序列结束
-                if (isEnd) { // 因为 isEnd 是最后判断的, 所以如果 isEnd 成立, 则前面都不成立. 这里的语义写法真的很不好.
-                    buf.append(ch);
-                    pos++;
-                }
-            } else {
-                buf.append(ch);
-                pos++;
-            }
-            // 现在 buf 里面是全部或部分 \ 后的名字序列.
-            
-            String command = buf.toString(); // 奇怪的是, 每扫描一个字符, 就查找一下??
-            // 这里的查找方式比较怪, 正常思路是先找到所有字母(tex只使用字母), 然后再看是什么命令就行的.
-            
-            SymbolAtom s = null;
-            TeXFormula predef = null;
-            try { 
-            	// 检查这个 `字符串' 是不是一个有效的符号名.
-            	// check if 'command' is a valid symbolname
-                s = SymbolAtom.get(command);
-            } catch (SymbolNotFoundException e) { // symbol not found; 其实这里用抛出异常的方法是不推荐的实现方法. 返回 null 不是很好吗?
-                // check if a predefined TeXFormula exists with that name
-            	// 检查是不是一个预定义的 TeX公式.
-                try {
-                    predef = TeXFormula.get(command);
-                } catch (FormulaNotFoundException e1) {
-                    predef = null; // none found
-                }
-            } // 上面执行之后, 变量 s 或 predef 被设置, 或两者皆 null.
+            // the following characters can't be part of a command or symbol
+            if (isWhiteSpace(ch) || ch == ESCAPE || ch == SUB_SCRIPT
+                    || ch == SUPER_SCRIPT)
+                break;
+            node = node.next(ch);
+            if (node == null) // no longer control word possible
+                break;
+            pos++;
             
-            if (s != null) { // symbol found! 是一个符号,如 \plus   // NOPMD
-                if (endOfEscape) {
-                    // no longer symbol name or predefined TeXFormula name possible
-                    add(attachScripts(s));
-                    return;
-                } else { // could be part of another valid symbolname, like "in" and "infty"
-                    symbolFound = s;
-                    symbolPos = pos;
-                    symbolLongest = true;
-                }
-            } else if (predef != null) { // predefined TeXFormula found!   // NOPMD
-                if (endOfEscape) {
-                    // no longer symbol name or predefined TeXFormula name possible
-                    add(attachScripts(predef.root));
-                    return;
-                } else { // could be part of another valid symbolname, like "in" and "infty"
-                    predefFound = predef;
-                    predefPos = pos;
-                    symbolLongest = false;
-                }
-            } else if ("nbsp".equals(command)) { // space found (for MathML-purposes!) 
-            	// 语法 \nbsp, 表示空格?
-                add(attachScripts(new SpaceAtom()));
-                return;
-            } else if (textStyles.contains(command)) { // textstyle found
-            	// 如 \mathrm, \mathit, \mathcal , 配置在 xml 中.
+            if (node.is(ControlWordTrie.SYMBOL | ControlWordTrie.PREDEFINED_FORMULA)) {
+                // could be part of another valid name, like "in" and "infty"
+                found = node;
+                foundPos = pos;
+            } else if (node.is(ControlWordTrie.TEXT_STYLE)) { // textstyle found
                 skipWhiteSpace();
-                String g = getGroup(L_GROUP, R_GROUP); // 拆分以方便调试.
-                TeXFormula txf = new TeXFormula(g, command);
+                TeXFormula txf = getGroup(L_GROUP, R_GROUP, node.name);
                 add(attachScripts(txf.root));
                 return;
-            } else if (commands.contains(command)) { // command found
-            	// 当前的命令有 \frac, \sqrt. 也许暂时不支持更多的?
-                add(attachScripts(processCommands(command)));
+            } else if (node.is(ControlWordTrie.COMMAND)) { // command found
+                add(attachScripts(processCommands(node.name)));
                 return;
-            } else if (endOfEscape) { // searching is over
-                if (symbolLongest && symbolFound != null) {
-                    // go back to that position and add that symbol
-                    pos = symbolPos;
-                    add(attachScripts(symbolFound));
-                    return;
-                } else if (!symbolLongest && predefFound != null) { // NOPMD
-                    // go back to that position and add that predefined TeXFormula
-                    pos = predefPos;
-                    add(attachScripts(predefFound.root));
-                    return;
-                } else
-                    // not a valid command or symbol or predefined TeXFormula found
-                    throw new ParseException(
-                            "Unknown symbol or command or predefined TeXFormula: '"
-                            + command + "'");
             }
         }
         
-        // escape-char found at the end of the string
-        throw new ParseException("The escape-character '" + ESCAPE
-                + "' can't be the last one!");
+        if (found == null)
+            // not a valid command or symbol or predefined TeXFormula found
+            throw new ParseException(
+                    "Unknown symbol or command or predefined TeXFormula: '"
+                    + getControlWord(start) + "'");
+        
+        // go back to the end of the longest match and add that symbol or
+        // predefined TeXFormula
+        pos = foundPos;
+        if (found.symbol != null)
+            add(attachScripts(found.symbol));
+        else // shared, no copy needed
+            add(attachScripts(found.formula));
+    }
+    
+   /**
+    * 展开用户定义的宏.
+    * 
+    * Expands the user defined macro at the current position in the parse string
+    * (just after an escape character), if any, and adds its expansion (parsed like a
+    * group). Like in TeX, the macro name is a sequence of letters or a single other
+    * character. Returns false (without changing the position) if there's no macro
+    * with that name.
+    */
+    private boolean expandMacro() throws ParseException {
+        int nameEnd = pos + 1;
+        if (TeXMacros.isLetter(parseString.charAt(pos)))
+            while (nameEnd < end && TeXMacros.isLetter(parseString.charAt(nameEnd)))
+                nameEnd++;
+        TeXMacros.Macro macro = expansion.macros.get(parseString.subSequence(pos, nameEnd)
+                .toString());
+        if (macro == null)
+            return false;
+        pos = nameEnd;
+        
+        Atom atom;
+        if (macro.nrOfParams == 0 && textStyle == null) { // shared parse result
+            TeXMacros.Expanded expanded = macro.getExpanded(expansion.version);
+            if (expanded != null)
+                expansion.enter(macro, expanded.length, expanded.depth);
+            else {
+                // measure the nested expansions of this macro only
+                int deepest = expansion.deepest, length = expansion.length;
+                expansion.deepest = expansion.depth;
+                expansion.enter(macro, macro.getText().length(), 1);
+                Atom root = parseExpansion(macro.getText()).root;
+                if (root instanceof RowAtom)
+                    ((RowAtom) root).makeImmutable();
+                expanded = new TeXMacros.Expanded(expansion.version, root,
+                        expansion.deepest - expansion.depth, expansion.length - length);
+                expansion.deepest = Math.max(deepest, expansion.deepest);
+                macro.setExpanded(expanded);
+            }
+            atom = expanded.root;
+        } else {
+            int[] args = getMacroArguments(macro);
+            int length = macro.getExpansionLength(args);
+            expansion.enter(macro, length, 1);
+            StringBuilder buf = new StringBuilder(length);
+            macro.expand(buf, parseString, args);
+            atom = parseExpansion(buf.toString()).root;
+        }
+        add(attachScripts(atom));
+        return true;
+    }
+    
+   /*
+    * Parses the given expansion of a macro, one level deeper.
+    */
+    private TeXFormula parseExpansion(String s) throws ParseException {
+        expansion.depth++;
+        try {
+            return new TeXFormula(expansion, s, textStyle);
+        } finally {
+            expansion.depth--;
+        }
+    }
+    
+   /*
+    * Finds the arguments of the given macro in the parse string: for every parameter
+    * the start and end (exclusive) of the argument, or -1 as start if the default
+    * value of an optional parameter has to be used. An argument is a group (without
+    * the braces), a control word or a single character.
+    */
+    private int[] getMacroArguments(TeXMacros.Macro macro) throws ParseException {
+        int[] args = new int[2 * macro.nrOfParams];
+        for (int i = 0; i < macro.nrOfParams; i++) {
+            skipWhiteSpace();
+            char ch = (pos < end ? parseString.charAt(pos) : 0);
+            if (i == 0 && macro.defaultValue != null) { // optional
+                if (ch == L_BRACK) {
+                    int groupEnd = groupEnds[pos - groupOffset];
+                    if (groupEnd < 0 || groupEnd >= end)
+                        throw new ParseException("Illegal end,  missing '" + R_BRACK + "'!");
+                    args[0] = pos + 1;
+                    args[1] = groupEnd;
+                    pos = groupEnd + 1;
+                } else
+                    args[0] = -1;
+                continue;
+            }
+            
+            args[2 * i] = pos;
+            if (pos == end || ch == R_GROUP)
+                throw new ParseException("The macro '" + ESCAPE + macro.name + "' needs "
+                        + macro.nrOfParams + " arguments!");
+            else if (ch == L_GROUP) {
+                int groupEnd = groupEnds[pos - groupOffset];
+                if (groupEnd < 0 || groupEnd >= end)
+                    throw new ParseException("Illegal end,  missing '" + R_GROUP + "'!");
+                args[2 * i] = pos + 1;
+                pos = groupEnd + 1;
+                args[2 * i + 1] = groupEnd;
+                continue;
+            } else if (ch == ESCAPE) {
+                pos++;
+                if (pos == end)
+                    throw new ParseException("The escape-character '" + ESCAPE
+                            + "' can't be the last one!");
+                if (TeXMacros.isLetter(parseString.charAt(pos)))
+                    while (pos + 1 < end && TeXMacros.isLetter(parseString.charAt(pos + 1)))
+                        pos++;
+            }
+            pos++;
+            args[2 * i + 1] = pos;
+        }
+        return args;
+    }
+    
+   /*
+    * Get the (unknown) control word starting at the given position in the parse
+    * string, for error messages.
+    */
+    private String getControlWord(int start) {
+        int i = start;
+        while (i < end) {
+            char ch = parseString.charAt(i++);
+            if ((isWhiteSpace(ch) || ch == ESCAPE || ch == SUB_SCRIPT
+                    || ch == SUPER_SCRIPT) && i < end) {
+                i--;
+                break;
+            }
+        }
+        return parseString.subSequence(start, i).toString();
     }
     
     /**
@@ -2026,28 +2487,28 @@ public class TeXFormula {
     }
     
    /**
-    * 将 ' 替换为 ^{\prime} (' 作为上标)
-    * Replaces "'" with "^{\prime}", "''" with "^{\prime\prime}", etc. at the
-    * current position in the parse string.
+    * 将 ' 作为 {\prime} 读取
+    * Reads "'" as "{\prime}", "''" as "{\prime\prime}", etc. (following the atom
+    * before it, not as a superscript). The first "'" was already skipped.
+    * Returns the group and adjusts the current position (after the last "'"
+    * and the white space after it).
     */
-    private void replaceAccents() {
-        StringBuffer buf = new StringBuffer(SUPER_SCRIPT); // 字符 ^
-        buf.append(L_GROUP); // 加上字符 {
-        buf.append("\\prime"); // 加上 \prime
-        int i = pos + 1;
-        while (i < parseString.length()) {
-            if (parseString.charAt(i) == PRIME) // 可能有多个 ', 则添加多个 \prime
-                buf.append("\\prime");
-            else if (!isWhiteSpace(parseString.charAt(i)))
+    private TeXFormula getPrimes() throws ParseException {
+        SymbolAtom prime = SymbolAtom.tryGet("prime");
+        if (prime == null)
+            throw new ParseException(
+                    "Unknown symbol or command or predefined TeXFormula: 'prime'");
+        TeXFormula sup = new TeXFormula();
+        sup.add(prime);
+        while (pos < end) {
+            char ch = parseString.charAt(pos);
+            if (ch == PRIME) // 可能有多个 ', 则添加多个 \prime
+                sup.add(prime);
+            else if (!isWhiteSpace(ch))
                 break;
-            i++;
+            pos++;
         }
-        buf.append(R_GROUP); // 加上字符 } 现在字符串为 ^{\prime ... }
-        
-        // 构造新的要解析的字符串, 替代原有字符串.
-        // construct the new parsing string
-        parseString = parseString.substring(0, pos) + buf.toString()
-        	+ parseString.substring(i);
+        return sup;
     }
     
     /**
@@ -2239,8 +2700,7 @@ public class TeXFormula {
     * non-whitespace character
     */
     private void skipWhiteSpace() {
-        while (pos < parseString.length()
-        && isWhiteSpace(parseString.charAt(pos)))
+        while (pos < end && isWhiteSpace(parseString.charAt(pos)))
             pos++;
     }
     
@@ -2268,27 +2728,160 @@ public class TeXFormula {
     /**
      * 得到一个预定义的 TeX公式.
      * Get a predefined TeXFormula.
+     * <p>
+     * The returned TeXFormula shares the (immutable) atoms of the predefined
+     * TeXFormula, nothing is copied unless atoms are added to it later on.
      *
      * @param name the name of the predefined TeXFormula
-     * @return a copy of the predefined TeXFormula
+     * @return a new TeXFormula representing the predefined TeXFormula
      * @throws FormulaNotFoundException if no predefined TeXFormula is found with the
      * 			given name
      */
     public static TeXFormula get(String name) throws FormulaNotFoundException {
-        Object formula = predefinedTeXFormulas.get(name);
-        if (formula == null)
+        TeXFormula res = tryGet(name);
+        if (res == null)
             throw new FormulaNotFoundException(name);
-        else
-            return new TeXFormula((TeXFormula) formula);
+        return res;
+    }
+
+    /**
+     * 同 get(), 但找不到时返回 null 而不抛出异常.
+     * Get a predefined TeXFormula, like {@link #get(String)}, but returns null instead
+     * of throwing an exception if it's not found.
+     *
+     * @param name the name of the predefined TeXFormula
+     * @return a new TeXFormula representing the predefined TeXFormula, or null if no 
+     *          predefined TeXFormula is found with the given name
+     */
+    public static TeXFormula tryGet(String name) {
+        if (!predefinedTeXFormulas.containsKey(name))
+            return null;
+        TeXFormula res = new TeXFormula();
+        res.root = predefinedTeXFormulas.get(name);
+        return res;
+    }
+
+    /**
+     * 设置解析结果的缓存 (null 表示不使用缓存).
+     * Sets the cache that will be used by {@link #TeXFormula(String)}: strings that
+     * are already in the cache won't be parsed again. The cache is disabled by default.
+     *
+     * @param cache the cache of parsed formulas, or null to disable caching
+     */
+    public static void setParseCache(TeXFormulaCache cache) {
+        parseCache = cache;
+    }
+
+    /**
+     * @return the cache of parsed formulas currently used, or null if caching is disabled
+     */
+    public static TeXFormulaCache getParseCache() {
+        return parseCache;
+    }
+
+    /**
+     * 设置盒子缓存 (null 表示不使用缓存).
+     * Sets the cache of laid out sub-expressions: fractions, scripts, fenced atoms
+     * and rows that are structurally equal to one that was laid out before (in the
+     * same style and font size) share its box. The cache is disabled by default.
+     *
+     * @param cache the box cache, or null to disable caching
+     */
+    public static void setBoxCache(BoxCache cache) {
+        boxCache = cache;
+    }
+
+    /**
+     * @return the box cache currently used, or null if caching is disabled
+     */
+    public static BoxCache getBoxCache() {
+        return boxCache;
+    }
+
+    /**
+     * 设置 atom 的 intern 表 (null 表示不使用).
+     * Sets the table of interned atoms that will be used by {@link #TeXFormula(String)}:
+     * the atom tree of every parsed formula is interned, so that structurally equal
+     * subtrees of all the formulas share the same atoms (see {@link AtomInterner}).
+     * The predefined TeXFormula's are interned right away and replaced by the interned
+     * atoms, so equal ones share their root. Interning is disabled by default.
+     * <p>
+     * This isn't thread-safe: it should be done before formulas are created.
+     *
+     * @param interner the table of interned atoms, or null to disable interning
+     */
+    public static void setAtomInterner(AtomInterner interner) {
+        if (interner != null)
+            for (Map.Entry<String, Atom> entry : predefinedTeXFormulas.entrySet()) {
+                // equal predefined formulas (aliases like \ne and \neq) now share one root
+                Atom root = interner.intern(entry.getValue());
+                entry.setValue(root);
+                controlWords.add(entry.getKey(), root);
+            }
+        atomInterner = interner;
+    }
+
+    /**
+     * @return the table of interned atoms currently used, or null if interning is disabled
+     */
+    public static AtomInterner getAtomInterner() {
+        return atomInterner;
     }
     
+    /**
+     * 只检查语法 (不创建 atom, 不加载字体).
+     * Checks the syntax of the given string without creating a TeXFormula: finds the
+     * same errors as {@link #TeXFormula(String)} would (but without user defined
+     * macros), with the same messages. No atoms are created and no fonts are loaded,
+     * so this is much faster than parsing. Unlike the parser, the check doesn't stop
+     * at the first error, but skips the erroneous part and continues.
+     * <p>
+     * This method is thread-safe.
+     *
+     * @param s the string to be checked
+     * @return the errors found, in the order in which the parser would find them
+     *          (empty if the string can be parsed)
+     */
+    public static List<ParseError> validate(CharSequence s) {
+        return new TeXFormulaValidator(s, controlWords).validate();
+    }
+    
+    /**
+     * 得到字符对应的符号名字 (如 '+' => "plus").
+     * Returns the name of the symbol the given character is parsed to (the
+     * character-to-symbol mappings of TeXFormulaSettings.xml, or of the deprecated
+     * {@link #symbolMappings} array if it was changed).
+     * 
+     * @param c a character
+     * @return the symbol name, or null if the character isn't mapped to a symbol
+     */
+    @SuppressWarnings("deprecation")
+    public static String getSymbolMapping(char c) {
+        String[] mappings = symbolMappings;
+        if (mappings != null && c < mappings.length)
+            return mappings[c];
+        return symbolTable.get(c);
+    }
+    
+    /**
+     * 得到字符对应的定界符名字 (如 '(' => "lbrack").
+     * Returns the name of the delimiter symbol the given character stands for in
+     * {@link #embrace(char, char)} and {@link #addEmbraced(TeXFormula, char, char)}.
+     * 
+     * @param c a character
+     * @return the symbol name, or null if the character isn't mapped to a delimiter
+     */
+    public static String getDelimiterMapping(char c) {
+        return delimiterTable.get(c);
+    }
+
    /*
     * Retrieves the delimiter mapping (a symbol name) of the given character
     * from a hash table.
     */
     private static String getCharacterToDelimiterMapping(char ch)
     throws DelimiterMappingNotFoundException {
-        String str = delimiterMappings[ch];
+        String str = delimiterTable.get(ch);
         if (str == null)
             throw new DelimiterMappingNotFoundException(ch);
         else
@@ -2304,20 +2897,57 @@ public class TeXFormula {
         SymbolAtom res = null;
         // null means no delimiter
         if (delName != null) {
-            res = SymbolAtom.get(delName);
+            res = SymbolAtom.tryGet(delName);
+            if (res == null)
+                throw new SymbolNotFoundException(delName);
             // check if the symbol is a delimiter
-            if (!res.isDelimiter())
+            else if (!res.isDelimiter())
                 throw new InvalidDelimiterException(delName);
         }
         return res;
     }
     
+   /*
+    * For every group opening character ('{' or '[') between start and end in the
+    * given string, find the position of the matching group closing character
+    * ('}' or ']'), like TeX does: counting only the group characters of the same
+    * kind. The result is indexed by position minus start, and contains -1 for
+    * unmatched opening characters (null if there are no opening characters).
+    */
+    static int[] findGroupEnds(CharSequence s, int start, int end) {
+        int[] res = null;
+        // stacks of the positions of the opening characters that aren't closed yet
+        int[] braces = new int[16], bracks = new int[16];
+        int nrOfBraces = 0, nrOfBracks = 0;
+        for (int i = start; i < end; i++) {
+            char ch = s.charAt(i);
+            if (ch == L_GROUP || ch == L_BRACK) {
+                if (res == null)
+                    res = new int[end - start];
+                res[i - start] = -1;
+                if (ch == L_GROUP) {
+                    if (nrOfBraces == braces.length)
+                        braces = Arrays.copyOf(braces, 2 * nrOfBraces);
+                    braces[nrOfBraces++] = i;
+                } else {
+                    if (nrOfBracks == bracks.length)
+                        bracks = Arrays.copyOf(bracks, 2 * nrOfBracks);
+                    bracks[nrOfBracks++] = i;
+                }
+            } else if (ch == R_GROUP && nrOfBraces > 0)
+                res[braces[--nrOfBraces] - start] = i;
+            else if (ch == R_BRACK && nrOfBracks > 0)
+                res[bracks[--nrOfBracks] - start] = i;
+        }
+        return res;
+    }
+    
    /**
     * 测试指定的字符 c 是否是一个符号(symbol)字符. 符号字符指不是 `数字,字母' 的字符.
     * Tests if the given character is a symbol character. A character is a
     * symbol character if it is not alphanumeric.
     */
-    private static boolean isSymbol(char c) {
+    static boolean isSymbol(char c) {
     	boolean alpha = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
     	if (alpha) return false; // 是字母, 创建 CharAtom(style=SMALL 小写字母, style=CAPITAL 大写字母)
     	boolean numeric = (c >= '0' && c <= '9');
@@ -2329,7 +2959,7 @@ public class TeXFormula {
    /*
     * Tests if the given character is a whitespace character.
     */
-    private static boolean isWhiteSpace(char ch) {
+    static boolean isWhiteSpace(char ch) {
         return (ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r');
     }
 
@@ -0,0 +1,204 @@
+/* TeXFormulaCache.java
+ * =========================================================================
+ * This file is part of the JMathTeX Library - http://jmathtex.sourceforge.net
+ *
+ * Copyright (C) 2004-2007 Universiteit Gent
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ */
+
+package be.ugent.caagt.jmathtex;
+
+import be.ugent.caagt.jmathtex.atom.Atom;
+import be.ugent.caagt.jmathtex.atom.RowAtom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 解析结果的缓存: 从(规范化的)公式字符串到其解析出的 (不可改变的) atom 树.
+ * A size-bounded cache of parsed formulas: maps the (normalized) string of a formula
+ * to the root of the atom tree it was parsed into. When the cache is full, the least
+ * recently used formula is removed.
+ * <p>
+ * The cache is disabled by default, it can be enabled using
+ * {@link TeXFormula#setParseCache(TeXFormulaCache)}. From then on, creating a 
+ * TeXFormula from a string that's already in the cache won't parse the string again,
+ * but share the cached atom tree (nothing is copied, unless atoms are added to the 
+ * TeXFormula later on). Atoms aren't changed while creating their boxes, so they can 
+ * be shared between threads. All methods of this class are thread-safe.
+ */
+public class TeXFormulaCache {
+    
+    /** the maximum number of formulas in the cache */
+    private final int capacity;
+    
+    /** the cached atom trees, in access order (least recently used first) */
+    private final LinkedHashMap<String, Atom> cache;
+    
+    // statistics
+    private long hits = 0, misses = 0, evictions = 0;
+    
+    /**
+     * 构造新的缓存, 最多保存 capacity 个公式.
+     * Creates a new, empty cache that can contain the given number of formulas.
+     * 
+     * @param capacity the maximum number of formulas in the cache
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public TeXFormulaCache(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("The capacity of a TeXFormulaCache must be positive!");
+        this.capacity = capacity;
+        cache = new LinkedHashMap<String, Atom>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            
+            protected boolean removeEldestEntry(Map.Entry<String, Atom> eldest) {
+                if (size() > TeXFormulaCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    /**
+     * Get the root atom of the formula parsed from the given (normalized) string.
+     * Counts as a hit or a miss.
+     * 
+     * @param key a normalized formula string (see {@link #normalize(String)})
+     * @return the cached root atom, or null if it isn't in the cache
+     */
+    synchronized Atom get(String key) {
+        Atom root = cache.get(key);
+        if (root == null)
+            misses++;
+        else
+            hits++;
+        return root;
+    }
+    
+    /**
+     * Puts the root atom of the formula parsed from the given (normalized) string into
+     * the cache. A row as a root is made immutable, so that it can be shared.
+     * 
+     * @param key a normalized formula string (see {@link #normalize(String)})
+     * @param root the root atom of the parsed formula (null's aren't cached)
+     */
+    synchronized void put(String key, Atom root) {
+        if (root == null)
+            return;
+        if (root instanceof RowAtom)
+            ((RowAtom) root).makeImmutable();
+        cache.put(key, root);
+    }
+    
+    /**
+     * 规范化公式字符串: 去掉首尾空白, 连续的空白字符变为一个空格.
+     * Normalizes a formula string: leading and trailing whitespace is removed and
+     * every other sequence of whitespace characters is replaced by a single space.
+     * The parser treats whitespace that way, so strings with the same normalized
+     * form are parsed into the same atoms. Only the characters the parser skips
+     * (TeXFormula.isWhiteSpace: space, tab, newline and carriage return)
+     * are whitespace: other (Unicode) space characters are left alone, they can't be
+     * parsed.
+     * 
+     * @param s the formula string
+     * @return the normalized string
+     */
+    static String normalize(String s) {
+        int len = s.length();
+        // check first whether anything has to change
+        boolean normalized = len == 0
+                || (!TeXFormula.isWhiteSpace(s.charAt(0))
+                        && !TeXFormula.isWhiteSpace(s.charAt(len - 1)));
+        for (int i = 1; normalized && i < len; i++)
+            normalized = !(TeXFormula.isWhiteSpace(s.charAt(i)) 
+                    && (s.charAt(i) != ' ' || TeXFormula.isWhiteSpace(s.charAt(i - 1))));
+        if (normalized)
+            return s;
+        
+        StringBuilder buf = new StringBuilder(len);
+        boolean space = false;
+        for (int i = 0; i < len; i++) {
+            char ch = s.charAt(i);
+            if (TeXFormula.isWhiteSpace(ch))
+                space = buf.length() > 0;
+            else {
+                if (space)
+                    buf.append(' ');
+                space = false;
+                buf.append(ch);
+            }
+        }
+        return buf.toString();
+    }
+    
+    /**
+     * @return the maximum number of formulas in the cache
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * @return the number of formulas currently in the cache
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+    
+    /**
+     * @return how many times a formula was found in the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+    
+    /**
+     * @return how many times a formula was not found in the cache (and had to be parsed)
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+    
+    /**
+     * @return how many formulas were removed from the cache because it was full
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+    
+    /**
+     * 清空缓存和统计数据.
+     * Removes all the formulas from the cache and resets the statistics.
+     */
+    public synchronized void clear() {
+        cache.clear();
+        hits = misses = evictions = 0;
+    }
+    
+    public synchronized String toString() {
+        return "TeXFormulaCache{size=" + cache.size() + ", capacity=" + capacity
+                + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "}";
+    }
+}
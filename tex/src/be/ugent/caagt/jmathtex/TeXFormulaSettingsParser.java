@@ -72,12 +72,11 @@ public class TeXFormulaSettingsParser {
      * 从配置文件中加载 <CharacterToSymbolMappings> 子节点, 该子节点下面例子为:
      *   <Map symbol="plus" char="+" />
      * 
-     * @return 解析的结果: 一个数组 String[], 索引为字符(char)的编码值, 字符串为该字符的符号名字.
+     * @return 解析的结果: 字符 => 该字符的符号名字 (稀疏表, 可以映射任何字符).
      * @throws ResourceParseException
      */
-    public String[] parseSymbolMappings() throws ResourceParseException {
-    	// 构造一个数组, 最大 256 个字符编码 => 名字的映射.
-        String[] mappings = new String[FontInfo.NUMBER_OF_CHAR_CODES];
+    CharTable<String> parseSymbolTable() throws ResourceParseException {
+        CharTable<String> mappings = new CharTable<String>();
         
         // 找到 <CharacterToSymbolMappings> 子节点.
         Element charToSymbol = root.getChild("CharacterToSymbolMappings");
@@ -90,11 +89,11 @@ public class TeXFormulaSettingsParser {
      * 从配置文件加载 <CharacterToDelimiterMappings> 子节点, 例子为:
      *   <Map symbol="lbrack" char="(" />
      * 
-     * @return 从字符值到 String 的映射. 如 return['('] = "lbrack" 
+     * @return 从字符值到 String 的映射. 如 return.get('(') = "lbrack" 
      * @throws ResourceParseException
      */
-    public String[] parseDelimiterMappings() throws ResourceParseException {
-        String[] mappings = new String[FontInfo.NUMBER_OF_CHAR_CODES];
+    CharTable<String> parseDelimiterTable() throws ResourceParseException {
+        CharTable<String> mappings = new CharTable<String>();
         Element charToDelimiter = root.getChild("CharacterToDelimiterMappings");
         if (charToDelimiter != null) // element present
             addToMap(charToDelimiter.getChildren(CHARTODEL_MAPPING_EL),
@@ -102,6 +101,50 @@ public class TeXFormulaSettingsParser {
         return mappings;
     }
     
+    /**
+     * 旧的数组形式: 索引为字符(char)的编码值, 字符串为该字符的符号名字.
+     * 
+     * @return the character-to-symbol mappings as an array indexed by the character,
+     *         with at least {@link FontInfo#NUMBER_OF_CHAR_CODES} entries (more if
+     *         a higher character is mapped)
+     * @throws ResourceParseException
+     * @deprecated the mappings aren't limited to the first 256 characters anymore; use
+     *             {@link TeXFormula#getSymbolMapping(char)}
+     */
+    @Deprecated
+    public String[] parseSymbolMappings() throws ResourceParseException {
+        return toArray(parseSymbolTable());
+    }
+    
+    /**
+     * 旧的数组形式: 如 return['('] = "lbrack".
+     * 
+     * @return the character-to-delimiter mappings as an array indexed by the character,
+     *         with at least {@link FontInfo#NUMBER_OF_CHAR_CODES} entries (more if
+     *         a higher character is mapped)
+     * @throws ResourceParseException
+     * @deprecated the mappings aren't limited to the first 256 characters anymore; use
+     *             {@link TeXFormula#getDelimiterMapping(char)}
+     */
+    @Deprecated
+    public String[] parseDelimiterMappings() throws ResourceParseException {
+        return toArray(parseDelimiterTable());
+    }
+    
+    /**
+     * @return the mappings of the table as an array indexed by the character
+     */
+    @SuppressWarnings("deprecation")
+    static String[] toArray(CharTable<String> table) {
+        int last = -1;
+        for (int c = table.next(0); c >= 0; c = table.next(c + 1))
+            last = c;
+        String[] res = new String[Math.max(FontInfo.NUMBER_OF_CHAR_CODES, last + 1)];
+        for (int c = table.next(0); c >= 0; c = table.next(c + 1))
+            res[c] = table.get((char) c);
+        return res;
+    }
+    
     /**
      * 将 <Map> 子节点解析之后放入 table 映射中.
      * @param mapList <CharacterToSymbolMappings> 节点下 <Map> 子节点列表.
@@ -109,7 +152,7 @@ public class TeXFormulaSettingsParser {
      * @throws ResourceParseException
      */
     @SuppressWarnings("unchecked")
-	private static void addToMap(List mapList, String[] table) throws ResourceParseException {
+	private static void addToMap(List mapList, CharTable<String> table) throws ResourceParseException {
         for (Object obj : mapList) { // 遍历所有 <Map> 子节点.
             Element map = (Element) obj; // 例如 <Map symbol="minus" char="-" />
             String ch = map.getAttributeValue("char");       // 对应字符
@@ -122,7 +165,7 @@ public class TeXFormulaSettingsParser {
                 throw new XMLResourceParseException(RESOURCE_NAME, map.getName(),
                         "symbol", null);
             if (ch.length() == 1) // valid element found; 只允许 char 为一个字符.
-                table[ch.charAt(0)] =  symbol;
+                table.put(ch.charAt(0), symbol);
             else
                 // only single-character mappings allowed, ignore others
                 throw new XMLResourceParseException(RESOURCE_NAME, map.getName(),
@@ -0,0 +1,312 @@
+/* TeXFormulaValidator.java
+ * =========================================================================
+ * This file is part of the JMathTeX Library - http://jmathtex.sourceforge.net
+ *
+ * Copyright (C) 2004-2007 Universiteit Gent
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ */
+
+package be.ugent.caagt.jmathtex;
+
+import be.ugent.caagt.jmathtex.atom.SymbolAtom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 语法检查: 与 TeXFormula 的解析器走同样的路径, 但不创建 atom.
+ * Checks the syntax of a string (see {@link TeXFormula#validate(CharSequence)}) by
+ * following the same path through the string as the parser of TeXFormula, but
+ * without creating any atoms: for every group it's only remembered whether it would
+ * result in an atom (needed for empty fractions and scripts without a base). The
+ * errors that would make the parser throw a ParseException are collected instead,
+ * and the check continues after the erroneous part.
+ */
+final class TeXFormulaValidator {
+    
+    private static final char ESCAPE = '\\';
+    private static final char L_GROUP = '{';
+    private static final char R_GROUP = '}';
+    private static final char L_BRACK = '[';
+    private static final char R_BRACK = ']';
+    private static final char SUB_SCRIPT = '_';
+    private static final char SUPER_SCRIPT = '^';
+    private static final char PRIME = '\'';
+    
+    // result of checking a group
+    private static final int ERROR = -1, EMPTY = 0, NOT_EMPTY = 1;
+    
+    private final CharSequence s;
+    
+    private final ControlWordTrie controlWords;
+    
+    // like in TeXFormula (indexed by position)
+    private final int[] groupEnds;
+    
+    private int pos = 0;
+    
+    // whether the last checked scripts stopped at a "'" (in the current group)
+    private boolean primesFollow = false;
+    
+    private List<ParseError> errors = null;
+    
+    TeXFormulaValidator(CharSequence s, ControlWordTrie controlWords) {
+        this.s = s;
+        this.controlWords = controlWords;
+        groupEnds = TeXFormula.findGroupEnds(s, 0, s.length());
+    }
+    
+   /*
+    * Checks the whole string and returns the errors found.
+    */
+    List<ParseError> validate() {
+        check(s.length());
+        if (errors == null)
+            return Collections.emptyList();
+        return errors;
+    }
+    
+    private void error(int position, String message) {
+        if (errors == null)
+            errors = new ArrayList<ParseError>();
+        errors.add(new ParseError(position, message));
+    }
+    
+   /*
+    * Checks the string from the current position up to the given end (like
+    * TeXFormula.parse()) and returns whether it results in an atom.
+    */
+    private boolean check(int end) {
+        boolean savedPrimesFollow = primesFollow;
+        primesFollow = false;
+        int start = pos;
+        boolean atom = false;
+        while (pos < end) {
+            char ch = s.charAt(pos);
+            if (TeXFormula.isWhiteSpace(ch))
+                pos++;
+            else if (ch == ESCAPE)
+                atom |= checkEscape(end);
+            else if (ch == L_GROUP)
+                atom |= checkScripts(checkGroup(L_GROUP, R_GROUP, end) == NOT_EMPTY, end);
+            else if (ch == R_GROUP) {
+                error(pos++, "Found a closing '" + R_GROUP + "' without an opening '"
+                        + L_GROUP + "'!");
+            } else if (ch == PRIME && primesFollow) {
+                primesFollow = false;
+                pos++;
+                while (pos < end && (s.charAt(pos) == PRIME
+                        || TeXFormula.isWhiteSpace(s.charAt(pos))))
+                    pos++;
+                atom |= checkScripts(true, end);
+            } else if (ch == SUPER_SCRIPT || ch == SUB_SCRIPT || ch == PRIME) {
+                if (pos == start)
+                    error(pos, "Every script needs a base: \"" + SUPER_SCRIPT + "\", \""
+                            + SUB_SCRIPT + "\" and \"" + PRIME
+                            + "\" can't be the first character!");
+                else
+                    error(pos, "Double scripts found! Try using more braces.");
+                pos++;
+            } else {
+                checkCharacter(ch);
+                atom |= checkScripts(true, end);
+            }
+        }
+        primesFollow = savedPrimesFollow;
+        return atom;
+    }
+    
+   /*
+    * Checks the character at the current position (like TeXFormula.convertCharacter).
+    */
+    private void checkCharacter(char c) {
+        pos++;
+        if (TeXFormula.isSymbol(c)) {
+            String symbolName = TeXFormula.getSymbolMapping(c);
+            if (symbolName == null)
+                error(pos - 1, "Unknown character : '" + Character.toString(c) + "'");
+            else if (SymbolAtom.tryGet(symbolName) == null)
+                error(pos - 1, "The character '" + Character.toString(c)
+                        + "' was mapped to an unknown symbol with the name '"
+                        + symbolName + "'!");
+        }
+    }
+    
+   /*
+    * Checks the scripts following an atom (or nothing, if there's no base), like
+    * TeXFormula.attachScripts, and returns whether it results in an atom.
+    */
+    private boolean checkScripts(boolean base, int end) {
+        skipWhiteSpace(end);
+        if (pos < end) {
+            char ch = s.charAt(pos);
+            if (ch == PRIME)
+                primesFollow = true;
+            else if (ch == SUPER_SCRIPT || ch == SUB_SCRIPT) {
+                int script = pos++;
+                checkScript(end);
+                skipWhiteSpace(end);
+                char other = (ch == SUPER_SCRIPT ? SUB_SCRIPT : SUPER_SCRIPT);
+                if (pos < end && s.charAt(pos) == other) {
+                    pos++;
+                    checkScript(end);
+                }
+                // (the parser only fails after reading the scripts)
+                if (!base)
+                    error(script, "Every script needs a base: \"" + SUPER_SCRIPT + "\", \""
+                            + SUB_SCRIPT + "\" and \"" + PRIME
+                            + "\" can't be the first character!");
+                return true;
+            }
+        }
+        return base;
+    }
+    
+   /*
+    * Checks a script: a group or a single character (like TeXFormula.getScript).
+    */
+    private void checkScript(int end) {
+        skipWhiteSpace(end);
+        if (pos == end)
+            error(pos, "illegal end, missing script!");
+        else if (s.charAt(pos) == L_GROUP)
+            checkGroup(L_GROUP, R_GROUP, end);
+        else {
+            // the character is parsed on its own
+            check(pos + 1);
+        }
+    }
+    
+   /*
+    * Checks the group at the current position (like TeXFormula.getGroup): ERROR if
+    * there's no group, otherwise whether it's EMPTY (results in no atom).
+    */
+    private int checkGroup(char open, char close, int end) {
+        if (pos == end) {
+            error(pos, "Illegal end, missing '" + close + "'!");
+            return ERROR;
+        }
+        if (s.charAt(pos) != open) {
+            error(pos, "missing '" + open + "'!");
+            return ERROR;
+        }
+        int groupEnd = groupEnds[pos];
+        if (groupEnd < 0 || groupEnd >= end) {
+            error(pos, "Illegal end,  missing '" + close + "'!");
+            // check the rest as the contents of the group
+            pos++;
+            check(end);
+            return ERROR;
+        }
+        pos++;
+        boolean atom = check(groupEnd);
+        pos = groupEnd + 1;
+        return atom ? NOT_EMPTY : EMPTY;
+    }
+    
+   /*
+    * Checks the escape sequence at the current position (like
+    * TeXFormula.processEscape) and returns whether it results in an atom.
+    */
+    private boolean checkEscape(int end) {
+        int escape = pos++;
+        if (pos == end) {
+            error(escape, "The escape-character '" + ESCAPE + "' can't be the last one!");
+            return false;
+        }
+        
+        int start = pos;
+        ControlWordTrie.Node node = controlWords.getRoot();
+        boolean found = false;
+        int foundPos = -1;
+        while (pos < end) {
+            char ch = s.charAt(pos);
+            if (TeXFormula.isWhiteSpace(ch) || ch == ESCAPE || ch == SUB_SCRIPT
+                    || ch == SUPER_SCRIPT)
+                break;
+            node = node.next(ch);
+            if (node == null)
+                break;
+            pos++;
+            
+            if (node.is(ControlWordTrie.SYMBOL | ControlWordTrie.PREDEFINED_FORMULA)) {
+                found = true;
+                foundPos = pos;
+            } else if (node.is(ControlWordTrie.TEXT_STYLE)) {
+                skipWhiteSpace(end);
+                return checkScripts(checkGroup(L_GROUP, R_GROUP, end) == NOT_EMPTY, end);
+            } else if (node.is(ControlWordTrie.COMMAND)) {
+                checkCommand(node.name, escape, end);
+                return checkScripts(true, end);
+            }
+        }
+        
+        if (!found) {
+            // skip the unknown control word (like in the error message of the parser)
+            int i = start;
+            while (i < end) {
+                char ch = s.charAt(i++);
+                if ((TeXFormula.isWhiteSpace(ch) || ch == ESCAPE || ch == SUB_SCRIPT
+                        || ch == SUPER_SCRIPT) && i < end) {
+                    i--;
+                    break;
+                }
+            }
+            error(escape, "Unknown symbol or command or predefined TeXFormula: '"
+                    + s.subSequence(start, i) + "'");
+            pos = i;
+            return false;
+        }
+        pos = foundPos;
+        return checkScripts(true, end);
+    }
+    
+   /*
+    * Checks the arguments of the given command (like TeXFormula.processCommands).
+    */
+    private void checkCommand(String command, int escape, int end) {
+        skipWhiteSpace(end);
+        if ("frac".equals(command)) {
+            int num = checkGroup(L_GROUP, R_GROUP, end);
+            skipWhiteSpace(end);
+            int denom = checkGroup(L_GROUP, R_GROUP, end);
+            if (num == EMPTY && denom != ERROR || denom == EMPTY && num != ERROR)
+                error(escape, "Both numerator and denominator of a fraction can't be empty!");
+        } else if ("sqrt".equals(command)) {
+            if (pos == end) {
+                error(pos, "illegal end!");
+                return;
+            }
+            if (s.charAt(pos) == L_BRACK) {
+                checkGroup(L_BRACK, R_BRACK, end);
+                skipWhiteSpace(end);
+            }
+            checkGroup(L_GROUP, R_GROUP, end);
+        }
+    }
+    
+    private void skipWhiteSpace(int end) {
+        while (pos < end && TeXFormula.isWhiteSpace(s.charAt(pos)))
+            pos++;
+    }
+}
@@ -39,6 +39,7 @@ import java.awt.geom.AffineTransform;
 import javax.swing.Icon;
 
 import be.ugent.caagt.jmathtex.box.Box;
+import be.ugent.caagt.jmathtex.box.DisplayList;
 import be.ugent.caagt.jmathtex.box.HorizontalBox;
 import be.ugent.caagt.jmathtex.box.VerticalBox;
 
@@ -55,6 +56,13 @@ public class TeXIcon implements Icon {
 
    private Box box;
 
+   /**
+    * 绘制列表 (缓存), 在第一次绘制时编译.
+    * The box compiled into a display list, for the origin it was last painted at
+    * (null if it wasn't painted yet).
+    */
+   private volatile DisplayList displayList;
+
    /** 字体点数, 如 10pt 则 size=10.0 */
    private final float size;
 
@@ -103,8 +111,10 @@ public class TeXIcon implements Icon {
     */
    public void setIconWidth(int width, int alignment) {
       float diff = width - getIconWidth();
-      if (diff > 0)
+      if (diff > 0) {
          box = new HorizontalBox(box, box.getWidth() + diff, alignment);
+         displayList = null;
+      }
    }
 
    /**
@@ -118,8 +128,10 @@ public class TeXIcon implements Icon {
     */
    public void setIconHeight(int height, int alignment) {
       float diff = height - getIconHeight();
-      if (diff > 0)
+      if (diff > 0) {
          box = new VerticalBox(box, diff, alignment);
+         displayList = null;
+      }
    }
 
    /**
@@ -149,7 +161,9 @@ public class TeXIcon implements Icon {
    /**
     * 绘制此 icon. 问题: 我们能否绘制到 image 上面, 并将 image 保存起来? 
     * 
-    * Paint the {@link TeXFormula} that created this icon.    
+    * Paint the {@link TeXFormula} that created this icon. The box is compiled into a
+    * {@link DisplayList} the first time, that's painted again as long as the icon is
+    * painted at the same position.
     */
    public void paintIcon(Color foreground, Graphics g, int x, int y) {
       Graphics2D g2 = (Graphics2D) g;
@@ -164,9 +178,13 @@ public class TeXIcon implements Icon {
       g2.scale(size, size); // the point size 
       g2.setColor(foreground); // foreground will be used as default painting color 
 
-      // draw formula box
-      box.draw(g2, (x + insets.left) / size, (y + insets.top) / size
-            + box.getHeight());
+      // draw formula box (from the display list, compiled for this position)
+      float boxX = (x + insets.left) / size, boxY = (y + insets.top) / size
+            + box.getHeight();
+      DisplayList list = displayList;
+      if (list == null || list.getX() != boxX || list.getY() != boxY)
+         displayList = list = DisplayList.compile(box, boxX, boxY);
+      list.paint(g2);
 
       // restore graphics settings
       g2.setRenderingHints(oldHints);
@@ -0,0 +1,511 @@
+/* TeXMacros.java
+ * =========================================================================
+ * This file is part of the JMathTeX Library - http://jmathtex.sourceforge.net
+ *
+ * Copyright (C) 2004-2007 Universiteit Gent
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ */
+
+package be.ugent.caagt.jmathtex;
+
+import be.ugent.caagt.jmathtex.atom.Atom;
+import be.ugent.caagt.jmathtex.ex.ParseException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 用户定义的宏 (类似 \newcommand). 每个 TeXMacros 对象是一个独立的宏集合.
+ * A set of user defined macros, like LaTeX's <code>\newcommand</code>: a macro has
+ * a name, a number of parameters (0 to 9, the first one can be optional with a
+ * default value) and a body in which <code>#1</code> to <code>#9</code> are
+ * replaced by the arguments (and <code>##</code> by <code>#</code>). Macros are
+ * only expanded when parsing a formula using {@link TeXFormula#TeXFormula(String, TeXMacros)},
+ * so different sets of macros can be used at the same time. The expansion of a
+ * macro is parsed like a group.
+ * <p>
+ * The body of a macro is compiled into a template when the macro is defined, so
+ * expanding it only copies the parts of the body and the arguments. The expansion
+ * of a macro without parameters is even parsed only once and its atoms are shared.
+ * To protect against (mutually) recursive or exploding macros, the nesting depth
+ * of macro expansions and the total number of characters produced by the macro
+ * expansions while parsing one formula are limited.
+ * <p>
+ * All methods of this class are thread-safe.
+ */
+public class TeXMacros {
+
+    /** the default maximum nesting depth of macro expansions */
+    public static final int DEFAULT_MAX_DEPTH = 32;
+
+    /** the default maximum number of characters produced by macro expansions in one formula */
+    public static final int DEFAULT_MAX_OUTPUT_LENGTH = 65536;
+
+    private static final char ESCAPE = '\\';
+    private static final char PARAMETER = '#';
+
+    // macro name (without escape character) -> macro
+    private final ConcurrentHashMap<String, Macro> macros = new ConcurrentHashMap<String, Macro>();
+
+    private volatile int maxDepth = DEFAULT_MAX_DEPTH;
+    private volatile int maxOutputLength = DEFAULT_MAX_OUTPUT_LENGTH;
+
+    /**
+     * changed every time a macro is (re)defined or removed: the shared parse results
+     * of macros without parameters are only valid for the same version (because the
+     * body can use other macros)
+     */
+    private volatile int version = 0;
+
+    /**
+     * Creates a new, empty set of macros.
+     */
+    public TeXMacros() {
+        // do nothing
+    }
+
+    /**
+     * 定义 (或重新定义) 一个宏.
+     * Defines a macro without an optional parameter (or replaces the macro with the
+     * same name).
+     *
+     * @param name the name of the macro (with or without a leading backslash): a
+     *            sequence of letters or a single other character
+     * @param nrOfParams the number of parameters (0 to 9)
+     * @param body the body of the macro
+     * @throws ParseException if the name, the number of parameters or a parameter
+     *             in the body is not valid
+     */
+    public void define(String name, int nrOfParams, String body) throws ParseException {
+        define(name, nrOfParams, null, body);
+    }
+
+    /**
+     * Defines a macro (or replaces the macro with the same name). If a default value
+     * is given, the first parameter is optional: it's given between square brackets
+     * (like <code>\sqrt[3]{x}</code>) and if it's not, the default value is used.
+     *
+     * @param name the name of the macro (with or without a leading backslash): a
+     *            sequence of letters or a single other character
+     * @param nrOfParams the number of parameters (0 to 9)
+     * @param defaultValue the default value of the first parameter, or null if
+     *            all parameters are required
+     * @param body the body of the macro
+     * @throws ParseException if the name, the number of parameters or a parameter
+     *             in the body is not valid
+     */
+    public void define(String name, int nrOfParams, String defaultValue, String body)
+    throws ParseException {
+        if (name != null && name.length() > 1 && name.charAt(0) == ESCAPE)
+            name = name.substring(1);
+        if (name == null || name.length() == 0
+                || (name.length() > 1 && !isLetters(name, 0, name.length())))
+            throw new ParseException("Illegal macro name '" + name + "'!");
+        if (nrOfParams < 0 || nrOfParams > 9)
+            throw new ParseException("The macro '" + ESCAPE + name
+                    + "' can't have " + nrOfParams + " parameters!");
+        if (defaultValue != null && nrOfParams == 0)
+            throw new ParseException("The macro '" + ESCAPE + name
+                    + "' has no parameter for the default value!");
+        Macro macro = new Macro(name, nrOfParams, defaultValue, body == null ? "" : body);
+        synchronized (this) {
+            macros.put(name, macro);
+            version++;
+        }
+    }
+
+    /**
+     * 解析 \newcommand 或 \renewcommand 定义.
+     * Parses and adds the macro definitions in the given string, a sequence of
+     * <pre>
+     * \newcommand{\name}[nrOfParams][defaultValue]{body}
+     * </pre>
+     * where the number of parameters and the default value are optional, the
+     * braces around the name can be left out and <code>\renewcommand</code> can be
+     * used instead of <code>\newcommand</code> to replace an existing macro. White
+     * space and comments (from '%' to the end of the line) between the definitions
+     * are ignored, so a macro library can be read from a file.
+     *
+     * @param definitions the macro definitions
+     * @throws ParseException if a definition is not valid, or if
+     *             <code>\newcommand</code> is used for a macro that's already
+     *             defined (the definitions before it are added)
+     */
+    public void newCommands(String definitions) throws ParseException {
+        int pos = skipWhiteSpace(definitions, 0);
+        while (pos < definitions.length()) {
+            boolean renew;
+            if (definitions.startsWith("\\newcommand", pos)) {
+                renew = false;
+                pos += "\\newcommand".length();
+            } else if (definitions.startsWith("\\renewcommand", pos)) {
+                renew = true;
+                pos += "\\renewcommand".length();
+            } else
+                throw new ParseException("Expected '\\newcommand' or '\\renewcommand' at position "
+                        + pos + "!");
+
+            // name
+            pos = skipWhiteSpace(definitions, pos);
+            boolean braces = pos < definitions.length() && definitions.charAt(pos) == '{';
+            if (braces)
+                pos = skipWhiteSpace(definitions, pos + 1);
+            if (pos + 1 >= definitions.length() || definitions.charAt(pos) != ESCAPE)
+                throw new ParseException("Missing macro name at position " + pos + "!");
+            int nameEnd = pos + 2;
+            if (isLetters(definitions, pos + 1, pos + 2))
+                while (nameEnd < definitions.length() && isLetters(definitions, nameEnd, nameEnd + 1))
+                    nameEnd++;
+            String name = definitions.substring(pos + 1, nameEnd);
+            pos = skipWhiteSpace(definitions, nameEnd);
+            if (braces) {
+                if (pos == definitions.length() || definitions.charAt(pos) != '}')
+                    throw new ParseException("Missing '}' after the macro name '" + ESCAPE
+                            + name + "'!");
+                pos = skipWhiteSpace(definitions, pos + 1);
+            }
+
+            // number of parameters and default value
+            int nrOfParams = 0;
+            String defaultValue = null;
+            if (pos < definitions.length() && definitions.charAt(pos) == '[') {
+                int close = findClosing(definitions, pos, '[', ']');
+                try {
+                    nrOfParams = Integer.parseInt(definitions.substring(pos + 1, close).trim());
+                } catch (NumberFormatException e) {
+                    throw new ParseException("Illegal number of parameters for the macro '"
+                            + ESCAPE + name + "'!", e);
+                }
+                pos = skipWhiteSpace(definitions, close + 1);
+                if (pos < definitions.length() && definitions.charAt(pos) == '[') {
+                    close = findClosing(definitions, pos, '[', ']');
+                    defaultValue = definitions.substring(pos + 1, close);
+                    pos = skipWhiteSpace(definitions, close + 1);
+                }
+            }
+
+            // body
+            if (pos == definitions.length() || definitions.charAt(pos) != '{')
+                throw new ParseException("Missing body of the macro '" + ESCAPE + name + "'!");
+            int close = findClosing(definitions, pos, '{', '}');
+            String body = definitions.substring(pos + 1, close);
+            pos = skipWhiteSpace(definitions, close + 1);
+
+            synchronized (this) {
+                if (!renew && macros.containsKey(name))
+                    throw new ParseException("The macro '" + ESCAPE + name
+                            + "' is already defined, use \\renewcommand!");
+                define(name, nrOfParams, defaultValue, body);
+            }
+        }
+    }
+
+    /**
+     * @param name the name of a macro (with or without a leading backslash)
+     * @return whether a macro with the given name is defined
+     */
+    public boolean isDefined(String name) {
+        return get(name) != null;
+    }
+
+    /**
+     * Removes the macro with the given name (if any).
+     *
+     * @param name the name of the macro (with or without a leading backslash)
+     */
+    public synchronized void remove(String name) {
+        if (name.length() > 1 && name.charAt(0) == ESCAPE)
+            name = name.substring(1);
+        if (macros.remove(name) != null)
+            version++;
+    }
+
+    /**
+     * Removes all macros.
+     */
+    public synchronized void clear() {
+        macros.clear();
+        version++;
+    }
+
+    /**
+     * @return the number of defined macros
+     */
+    public int size() {
+        return macros.size();
+    }
+
+    /**
+     * Sets the maximum nesting depth of macro expansions (a macro used in the body of
+     * a macro, and so on). Deeper nesting (e.g. caused by a recursive macro) results in
+     * a ParseException.
+     *
+     * @param maxDepth the maximum depth (at least 1)
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 1)
+            throw new IllegalArgumentException("The maximum depth must be at least 1!");
+        this.maxDepth = maxDepth;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Sets the maximum total number of characters that macro expansions can produce
+     * while parsing one formula. More characters result in a ParseException.
+     *
+     * @param maxOutputLength the maximum number of characters (at least 1)
+     */
+    public void setMaxOutputLength(int maxOutputLength) {
+        if (maxOutputLength < 1)
+            throw new IllegalArgumentException("The maximum output length must be at least 1!");
+        this.maxOutputLength = maxOutputLength;
+    }
+
+    public int getMaxOutputLength() {
+        return maxOutputLength;
+    }
+
+   /*
+    * Returns the macro with the given name (with or without a leading backslash), or null.
+    */
+    Macro get(String name) {
+        if (name.length() > 1 && name.charAt(0) == ESCAPE)
+            name = name.substring(1);
+        return macros.get(name);
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    static boolean isLetter(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
+    }
+
+    private static boolean isLetters(CharSequence s, int start, int end) {
+        for (int i = start; i < end; i++)
+            if (!isLetter(s.charAt(i)))
+                return false;
+        return true;
+    }
+
+    private static int skipWhiteSpace(String s, int pos) {
+        while (pos < s.length()) {
+            char ch = s.charAt(pos);
+            if (ch == '%') // comment
+                while (pos < s.length() && s.charAt(pos) != '\n')
+                    pos++;
+            else if (Character.isWhitespace(ch))
+                pos++;
+            else
+                break;
+        }
+        return pos;
+    }
+
+   /*
+    * Returns the position of the closing character that matches the opening character
+    * at the given position (nested pairs and escaped characters are skipped).
+    */
+    private static int findClosing(String s, int pos, char open, char close)
+    throws ParseException {
+        int level = 0;
+        for (int i = pos; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == ESCAPE)
+                i++;
+            else if (ch == open)
+                level++;
+            else if (ch == close && --level == 0)
+                return i;
+        }
+        throw new ParseException("Illegal end, missing '" + close + "'!");
+    }
+
+    /**
+     * 编译后的宏: 宏体中参数以外的文本, 以及参数的位置.
+     * A compiled macro: the text of the body without the parameters, and for every
+     * parameter in the body its position in that text and its number. Immutable,
+     * except for the shared parse result of a macro without parameters.
+     */
+    static final class Macro {
+
+        final String name;
+
+        final int nrOfParams;
+
+        // default value of the first parameter (or null if it's not optional)
+        final String defaultValue;
+
+        // the body without the parameters
+        private final String text;
+
+        // for every parameter in the body: its position in text and its number (0-based)
+        private final int[] paramPos, paramNr;
+
+        // shared parse result (only for macros without parameters)
+        private volatile Expanded expanded = null;
+
+        Macro(String name, int nrOfParams, String defaultValue, String body)
+        throws ParseException {
+            this.name = name;
+            this.nrOfParams = nrOfParams;
+            this.defaultValue = defaultValue;
+
+            StringBuilder buf = new StringBuilder(body.length());
+            int[] pos = new int[4], nr = new int[4];
+            int n = 0;
+            for (int i = 0; i < body.length(); i++) {
+                char ch = body.charAt(i);
+                if (ch != PARAMETER)
+                    buf.append(ch);
+                else if (i + 1 < body.length() && body.charAt(i + 1) == PARAMETER) {
+                    buf.append(PARAMETER); // ## -> #
+                    i++;
+                } else {
+                    int p = (i + 1 < body.length() ? body.charAt(i + 1) - '0' : -1);
+                    if (p < 1 || p > nrOfParams)
+                        throw new ParseException("Illegal parameter in the body of the macro '"
+                                + ESCAPE + name + "' at position " + i + "!");
+                    if (n == pos.length) {
+                        pos = Arrays.copyOf(pos, 2 * n);
+                        nr = Arrays.copyOf(nr, 2 * n);
+                    }
+                    pos[n] = buf.length();
+                    nr[n++] = p - 1;
+                    i++;
+                }
+            }
+            text = buf.toString();
+            paramPos = Arrays.copyOf(pos, n);
+            paramNr = Arrays.copyOf(nr, n);
+        }
+
+       /*
+        * Returns the length of the expansion with the given arguments: for every
+        * parameter the start and end of the argument in src, or -1 as start for the
+        * default value.
+        */
+        int getExpansionLength(int[] args) {
+            int length = text.length();
+            for (int i = 0; i < paramNr.length; i++) {
+                int a = paramNr[i];
+                length += (args[2 * a] < 0 ? defaultValue.length() : args[2 * a + 1]
+                        - args[2 * a]);
+            }
+            return length;
+        }
+
+       /*
+        * Appends the expansion with the given arguments (see getExpansionLength) to out.
+        */
+        void expand(StringBuilder out, CharSequence src, int[] args) {
+            int last = 0;
+            for (int i = 0; i < paramNr.length; i++) {
+                out.append(text, last, paramPos[i]);
+                int a = paramNr[i];
+                if (args[2 * a] < 0)
+                    out.append(defaultValue);
+                else
+                    out.append(src, args[2 * a], args[2 * a + 1]);
+                last = paramPos[i];
+            }
+            out.append(text, last, text.length());
+        }
+
+        String getText() {
+            return text;
+        }
+
+        Expanded getExpanded(int version) {
+            Expanded e = expanded;
+            return (e != null && e.version == version ? e : null);
+        }
+
+        void setExpanded(Expanded e) {
+            expanded = e;
+        }
+    }
+
+    /**
+     * The (shared) parse result of a macro without parameters, together with the
+     * nesting depth and the number of characters of the macro expansions it took.
+     */
+    static final class Expanded {
+
+        final int version;
+
+        final Atom root;
+
+        final int depth, length;
+
+        Expanded(int version, Atom root, int depth, int length) {
+            this.version = version;
+            this.root = root;
+            this.depth = depth;
+            this.length = length;
+        }
+    }
+
+    /**
+     * 一次解析中的宏展开状态 (嵌套深度, 已产生的字符数).
+     * The state of the macro expansions while parsing one formula: the current and
+     * the deepest nesting depth and the number of characters produced so far.
+     */
+    static final class Expansion {
+
+        final TeXMacros macros;
+
+        // the values of the limits and the version at the start
+        final int maxDepth, maxOutputLength, version;
+
+        int depth = 0, deepest = 0, length = 0;
+
+        Expansion(TeXMacros macros) {
+            this.macros = macros;
+            maxDepth = macros.maxDepth;
+            maxOutputLength = macros.maxOutputLength;
+            version = macros.version;
+        }
+
+       /*
+        * Checks and updates the state for the expansion of the given macro, which
+        * produces the given number of characters and takes the given number of
+        * nested expansions.
+        */
+        void enter(Macro macro, int length, int depth) throws ParseException {
+            if (this.depth + depth > maxDepth)
+                throw new ParseException("Macro expansions nested too deep (more than "
+                        + maxDepth + " levels) in the macro '" + ESCAPE + macro.name
+                        + "', is it recursive?");
+            deepest = Math.max(deepest, this.depth + depth);
+            this.length += length;
+            if (this.length > maxOutputLength)
+                throw new ParseException("Macro expansions produce more than "
+                        + maxOutputLength + " characters (in the macro '" + ESCAPE
+                        + macro.name + "')!");
+        }
+    }
+}
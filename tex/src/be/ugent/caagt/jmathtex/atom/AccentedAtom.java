@@ -67,9 +67,11 @@ public class AccentedAtom extends Atom {
     public AccentedAtom(Atom base, String accentName) 
     		throws InvalidSymbolTypeException, SymbolNotFoundException { 
     	// 使用 SymbolAtom 的静态方法 get() 得到预先配置好的 accentName=>SymbolAtom 的映射
-        accent = SymbolAtom.get(accentName); // 返回为一个预先从配置文件中加载的 SymbolAtom.
+        accent = SymbolAtom.tryGet(accentName); // 返回为一个预先从配置文件中加载的 SymbolAtom.
         
-        if (accent.type == TeXConstants.TYPE_ACCENT) // 确保必须是类型 TYPE_ACCENT!
+        if (accent == null)
+            throw new SymbolNotFoundException(accentName);
+        else if (accent.type == TeXConstants.TYPE_ACCENT) // 确保必须是类型 TYPE_ACCENT!
             this.base = base;
         else
             throw new InvalidSymbolTypeException("The symbol with the name '"
@@ -209,4 +211,33 @@ public class AccentedAtom extends Atom {
     	}
     	sxw.endElement("AccentedAtom").ln();
     }
+
+    @Override
+    protected int computeStructuralHash() {
+        return 31 * (31 * super.computeStructuralHash() + hash(accent)) + hash(base);
+    }
+
+    @Override
+    public boolean structurallyEquals(Atom a) {
+        if (!super.structurallyEquals(a))
+            return false;
+        AccentedAtom o = (AccentedAtom) a;
+        return equal(accent, o.accent) && equal(base, o.base);
+    }
+
+    @Override
+    protected Atom internChildren(AtomInterner in) {
+        SymbolAtom acc = in.intern(accent);
+        Atom b = in.intern(base);
+        if (acc == accent && b == base)
+            return this;
+        return new AccentedAtom(this, b, acc);
+    }
+
+    // a copy with the given child atoms (for internChildren)
+    private AccentedAtom(AccentedAtom a, Atom base, SymbolAtom accent) {
+        this.accent = accent;
+        this.base = base;
+        type = a.type;
+    }
 }
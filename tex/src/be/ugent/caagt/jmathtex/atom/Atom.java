@@ -86,6 +86,30 @@ public abstract class Atom {
     */
    public int type = TeXConstants.TYPE_ORDINARY;
 
+   /**
+    * 被 intern 的 atom 的 (缓存的) 结构哈希, 0 表示未被 intern.
+    * The structural hash of this atom, stored when it's interned (see
+    * {@link AtomInterner}): 0 if it isn't interned.
+    */
+   int internedHash = 0;
+
+   /**
+    * 计算过的结构哈希 (0 表示未计算或不能缓存).
+    * The structural hash of this atom once it's been computed, if no mutable row was
+    * met while computing it (0 otherwise): see {@link #structuralHash()}.
+    */
+   private int computedHash = 0;
+
+   /**
+    * the number of mutable rows met while computing structural hashes, per thread: a
+    * hash that depends on a mutable row can change, so it isn't stored
+    */
+   private static final ThreadLocal<int[]> mutableRowsMet = new ThreadLocal<int[]>() {
+      protected int[] initialValue() {
+         return new int[1];
+      }
+   };
+
    /**
     * 转换此 atom 到一个 box, 使用由 'parent' 设置的属性, 类似于 TeX 样式, 
     *   最后使用的字体, 颜色设置,...
@@ -136,4 +160,103 @@ public abstract class Atom {
    protected void superToXml(SimpleXmlWriter sxw) {
 	   sxw.appendRaw("<Atom ").attribute("type", type).appendRaw("/>").ln();
    }
+
+   /**
+    * 结构哈希: 结构相同的 atom (树) 的哈希值相同. 用于盒子缓存 (BoxCache) 和 AtomInterner.
+    * A hash of the structure of this atom: of its class, its type and everything else
+    * that determines its box, including the structural hashes of its child atoms (a
+    * Merkle hash). Atoms that are {@link #structurallyEquals(Atom) structurally equal}
+    * have the same hash. The hash is stored once it's been computed, unless it depends
+    * on a mutable row (see {@link RowAtom#isImmutable()}), so laying out nested atoms
+    * with the box cache only computes the hash of every atom once. Atoms mustn't be
+    * changed once they've been added to another atom, except mutable rows.
+    * 
+    * @return the structural hash of this atom (never 0)
+    */
+   public final int structuralHash() {
+      int h = internedHash;
+      if (h == 0)
+         h = computedHash;
+      if (h == 0) {
+         int[] met = mutableRowsMet.get();
+         int before = met[0];
+         h = computeStructuralHash();
+         if (h == 0)
+            h = 1;
+         if (isMutable())
+            met[0]++;
+         else if (met[0] == before)
+            computedHash = h;
+      }
+      return h;
+   }
+
+   /**
+    * @return whether atoms can still be added to this atom (only true for a mutable
+    *         row), so that its structural hash can change
+    */
+   protected boolean isMutable() {
+      return false;
+   }
+
+   /**
+    * Computes the structural hash of this atom from its own fields and the structural
+    * hashes of its child atoms (see {@link #hash(Atom)}). Subclasses with more fields
+    * must override this method and {@link #structurallyEquals(Atom)}.
+    * 
+    * @return the structural hash of this atom
+    */
+   protected int computeStructuralHash() {
+      return getClass().getName().hashCode() * 31 + type;
+   }
+
+   /**
+    * 是否与给定的 atom 结构相同 (相同的类, 类型, 字段, 子 atom 也结构相同).
+    * 
+    * @param a an atom
+    * @return whether the given atom has the same class, type and fields as this one,
+    *         and structurally equal child atoms: then both create the same boxes
+    */
+   public boolean structurallyEquals(Atom a) {
+      return a != null && a.getClass() == getClass() && a.type == type;
+   }
+
+   /**
+    * @return the structural hash of the given atom (0 for null)
+    */
+   protected static int hash(Atom a) {
+      return a == null ? 0 : a.structuralHash();
+   }
+
+   /**
+    * @return whether the given atoms are both null or structurally equal
+    */
+   protected static boolean equal(Atom a, Atom b) {
+      if (a == b)
+         return true;
+      if (a == null || b == null)
+         return false;
+      // atoms with a different (known) hash can't be equal
+      int ha = (a.internedHash != 0 ? a.internedHash : a.computedHash);
+      int hb = (b.internedHash != 0 ? b.internedHash : b.computedHash);
+      if (ha != 0 && hb != 0 && ha != hb)
+         return false;
+      return a.structurallyEquals(b);
+   }
+
+   /**
+    * 返回子 atom 都是 intern 后的 (共享的) atom 的版本; 不修改此 atom.
+    * Returns this atom with its child atoms replaced by the ones returned by
+    * {@link AtomInterner#intern(Atom)}: structurally equal atoms, that may be shared
+    * with other formulas. If all the child atoms are interned already, that's this atom
+    * itself, otherwise it's a copy of the same class: this atom is never changed. Only
+    * called by the AtomInterner, before the atom itself is interned. Subclasses with
+    * child atoms must override this method (and so must their subclasses).
+    * 
+    * @param in the interner
+    * @return this atom or a copy, with interned child atoms
+    */
+   protected Atom internChildren(AtomInterner in) {
+      return this; // no child atoms
+   }
 }
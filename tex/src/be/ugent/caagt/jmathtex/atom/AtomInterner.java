@@ -0,0 +1,195 @@
+/* AtomInterner.java
+ * =========================================================================
+ * This file is part of the JMathTeX Library - http://jmathtex.sourceforge.net
+ * 
+ * Copyright (C) 2004-2007 Universiteit Gent
+ * 
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ * 
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ * 
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ * 
+ */
+
+package be.ugent.caagt.jmathtex.atom;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * atom 的 intern 表 (hash-consing): 结构相同的 atom 子树只保存一份.
+ * A table of interned atoms (hash-consing): {@link #intern(Atom)} returns the one
+ * atom of the table that's structurally equal to the given atom (see
+ * {@link Atom#structurallyEquals(Atom)}), so that identical subtrees (x, +, \frac{1}{2},
+ * ...) of many formulas are the same object. Atoms are interned bottom-up: first their
+ * child atoms are interned, then the atom with the interned children (a copy, if they
+ * weren't interned yet) is looked up, so comparing atoms only compares their own fields
+ * and the identity of their children. The structural hash of an interned atom is stored
+ * in the atom.
+ * <p>
+ * The table only holds weak references: an interned atom that isn't used by any
+ * formula anymore can be garbage collected (and is removed from the table). Atoms are
+ * never changed after they're interned (only immutable rows are interned), so they can
+ * be shared. The interner can be used for all the formulas created from strings using
+ * {@link be.ugent.caagt.jmathtex.TeXFormula#setAtomInterner(AtomInterner)}. All
+ * methods of this class are thread-safe.
+ */
+public class AtomInterner {
+    
+    /**
+     * An entry of the table: a weak reference to an interned atom, with its
+     * structural hash and the next entry with the same index.
+     */
+    private static final class Entry extends WeakReference<Atom> {
+        
+        final int hash;
+        
+        Entry next;
+        
+        Entry(Atom a, int hash, Entry next, ReferenceQueue<Atom> queue) {
+            super(a, queue);
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+    
+    /** the hash table (the length is a power of 2) */
+    private Entry[] table = new Entry[64];
+    
+    /** the number of entries in the table (including the ones that were collected) */
+    private int size = 0;
+    
+    /** the entries of the atoms that were garbage collected */
+    private final ReferenceQueue<Atom> queue = new ReferenceQueue<Atom>();
+    
+    // statistics
+    private long hits = 0, misses = 0;
+    
+    /**
+     * 返回与给定 atom 结构相同的 intern 后的 atom.
+     * Returns the interned atom that's structurally equal to the given atom. If there
+     * isn't one yet, the given atom is interned (after its child atoms) and returned.
+     * The given atom tree isn't changed: an atom whose child atoms aren't all interned
+     * yet is copied (see {@link Atom#internChildren(AtomInterner)}), and a row is only
+     * shared itself if it's immutable already. An atom of the given tree that's returned
+     * (or shared by the returned atoms) mustn't be changed afterwards.
+     * 
+     * @param a an atom (or null)
+     * @return the interned atom that's structurally equal to the given one (of the same
+     *         class), or null if the given atom is null
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T extends Atom> T intern(T a) {
+        if (a == null)
+            return null;
+        expungeStaleEntries();
+        // atoms that were interned before have interned children
+        T c = (a.internedHash != 0 ? a : (T) a.internChildren(this));
+        int h = c.structuralHash();
+        
+        int i = h & (table.length - 1);
+        for (Entry e = table[i]; e != null; e = e.next) {
+            Atom b;
+            if (e.hash == h && (b = e.get()) != null && (b == c || b.structurallyEquals(c))) {
+                hits++;
+                return (T) b;
+            }
+        }
+        misses++;
+        c.internedHash = h;
+        table[i] = new Entry(c, h, table[i], queue);
+        if (++size > table.length * 3 / 4)
+            resize();
+        return c;
+    }
+    
+    /*
+     * Removes the entries of the atoms that were garbage collected.
+     */
+    private void expungeStaleEntries() {
+        for (Object x; (x = queue.poll()) != null;) {
+            Entry e = (Entry) x;
+            int i = e.hash & (table.length - 1);
+            Entry prev = null;
+            for (Entry p = table[i]; p != null; prev = p, p = p.next)
+                if (p == e) {
+                    if (prev == null)
+                        table[i] = e.next;
+                    else
+                        prev.next = e.next;
+                    size--;
+                    break;
+                }
+        }
+    }
+    
+    /*
+     * Doubles the size of the table.
+     */
+    private void resize() {
+        Entry[] newTable = new Entry[table.length * 2];
+        for (Entry e : table)
+            while (e != null) {
+                Entry next = e.next;
+                int i = e.hash & (newTable.length - 1);
+                e.next = newTable[i];
+                newTable[i] = e;
+                e = next;
+            }
+        table = newTable;
+    }
+    
+    /**
+     * @return the number of interned atoms (that weren't garbage collected yet)
+     */
+    public synchronized int size() {
+        expungeStaleEntries();
+        return size;
+    }
+    
+    /**
+     * @return how many times an atom was replaced by an interned one
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+    
+    /**
+     * @return how many times an atom was interned itself (a new one)
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+    
+    /**
+     * 清空 intern 表和统计数据.
+     * Removes all the atoms from the table and resets the statistics. Atoms that were
+     * interned before keep their stored hash.
+     */
+    public synchronized void clear() {
+        while (queue.poll() != null)
+            ;
+        table = new Entry[64];
+        size = 0;
+        hits = misses = 0;
+    }
+    
+    public synchronized String toString() {
+        return "AtomInterner{size=" + size + ", hits=" + hits + ", misses=" + misses + "}";
+    }
+}
@@ -246,4 +246,32 @@ public class BigOperatorAtom extends Atom {
     	
     	sxw.endElement("</BigOperatorAtom>").ln();
     }
- }
+ 
+
+   @Override
+   protected int computeStructuralHash() {
+      return 31 * (31 * (31 * super.computeStructuralHash() + hash(base)) + hash(under)) + hash(over)
+            + (limitsSet ? 1 : 0) + (limits ? 2 : 0);
+   }
+
+   @Override
+   public boolean structurallyEquals(Atom a) {
+      if (!super.structurallyEquals(a))
+         return false;
+      BigOperatorAtom o = (BigOperatorAtom) a;
+      return equal(base, o.base) && equal(under, o.under) && equal(over, o.over)
+            && limitsSet == o.limitsSet && limits == o.limits;
+   }
+
+   @Override
+   protected Atom internChildren(AtomInterner in) {
+      Atom u = in.intern(under), o = in.intern(over), b = in.intern(base);
+      if (u == under && o == over && b == base)
+         return this;
+      BigOperatorAtom res = new BigOperatorAtom(b, u, o);
+      res.limitsSet = limitsSet;
+      res.limits = limits;
+      res.type = type;
+      return res;
+   }
+}
@@ -0,0 +1,73 @@
+/* CacheableAtom.java
+ * =========================================================================
+ * This file is part of the JMathTeX Library - http://jmathtex.sourceforge.net
+ * 
+ * Copyright (C) 2004-2007 Universiteit Gent
+ * 
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ * 
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ * 
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ * 
+ */
+
+package be.ugent.caagt.jmathtex.atom;
+
+import be.ugent.caagt.jmathtex.BoxCache;
+import be.ugent.caagt.jmathtex.TeXEnvironment;
+import be.ugent.caagt.jmathtex.TeXFormula;
+import be.ugent.caagt.jmathtex.box.Box;
+
+/**
+ * 盒子可以被缓存的 atom.
+ * An atom whose box can be taken from the box cache (see
+ * {@link TeXFormula#setBoxCache(BoxCache)}): its createBox method calls
+ * {@link #createCachedBox(TeXEnvironment)}, which only lays it out with
+ * {@link #layout(TeXEnvironment)} if a structurally equal atom wasn't laid out in the
+ * same environment before. These are the atoms that are most often repeated and
+ * costly to lay out: fractions, scripts, fenced atoms and rows.
+ */
+public abstract class CacheableAtom extends Atom {
+
+   /**
+    * 通过盒子缓存创建盒子 (如果启用了缓存).
+    * Creates the box of this atom with {@link #layout(TeXEnvironment)}, or takes it
+    * from the box cache if that's enabled and a structurally equal atom was laid out
+    * in the same environment before.
+    * 
+    * @param env the current environment settings
+    * @return the resulting box (a new one, or a SharedBox showing a cached box)
+    */
+   protected final Box createCachedBox(TeXEnvironment env) {
+      BoxCache cache = TeXFormula.getBoxCache();
+      BoxCache.Key key = (cache == null ? null : cache.keyOf(this, env));
+      if (key == null)
+         return layout(env);
+      Box b = cache.get(key);
+      return b != null ? b : cache.put(key, layout(env));
+   }
+
+   /**
+    * 创建盒子, 不使用缓存.
+    * Creates the box of this atom without the box cache.
+    * 
+    * @param env the current environment settings
+    * @return the resulting box
+    */
+   protected abstract Box layout(TeXEnvironment env);
+}
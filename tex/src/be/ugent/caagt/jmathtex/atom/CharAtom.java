@@ -117,4 +117,18 @@ public class CharAtom extends CharSymbol {
 	   if (c > 32 && c < 127) return true;
 	   return false;
    }
+
+   @Override
+   protected int computeStructuralHash() {
+      return 31 * (31 * super.computeStructuralHash() + c) + (textStyle == null ? 0 : textStyle.hashCode());
+   }
+
+   @Override
+   public boolean structurallyEquals(Atom a) {
+      if (!super.structurallyEquals(a))
+         return false;
+      CharAtom o = (CharAtom) a;
+      return c == o.c
+         && (textStyle == null ? o.textStyle == null : textStyle.equals(o.textStyle));
+   }
 }
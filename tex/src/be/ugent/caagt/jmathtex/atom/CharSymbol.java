@@ -46,14 +46,15 @@ public abstract class CharSymbol extends Atom {
    private boolean textSymbol = false;
 
    /**
-    * Mark as text symbol (used by Dummy)
+    * Mark as text symbol. Dummy keeps this mark itself instead, so that (shared)
+    * atoms remain unchanged while creating boxes.
     */
    public void markAsTextSymbol() {
       textSymbol = true;
    }
 
    /**
-    * Remove the mark so the atom remains unchanged (used by Dummy)
+    * Remove the mark so the atom remains unchanged
     */
    public void removeMark() {
       textSymbol = false;
@@ -86,4 +87,17 @@ public abstract class CharSymbol extends Atom {
 	   	  .attribute("textSymbol", textSymbol)
 	   	  .appendRaw(" />").ln();
    }
+
+   @Override
+   protected int computeStructuralHash() {
+      return 2 * super.computeStructuralHash() + (textSymbol ? 1 : 0);
+   }
+
+   @Override
+   public boolean structurallyEquals(Atom a) {
+      if (!super.structurallyEquals(a))
+         return false;
+      CharSymbol o = (CharSymbol) a;
+      return textSymbol == o.textSymbol;
+   }
 }
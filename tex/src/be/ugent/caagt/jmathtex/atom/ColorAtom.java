@@ -81,12 +81,16 @@ public class ColorAtom extends Atom implements Row {
    }
 
    public Box createBox(TeXEnvironment env) {
+      return createBox(env, null);
+   }
+
+   public Box createBox(TeXEnvironment env, Dummy prev) {
       TeXEnvironment copy = env.copy();
       if (background != null)
          copy.setBackground(background);
       if (color != null)
          copy.setColor(color);
-      return elements.createBox(copy);
+      return elements.createBox(copy, prev);
    }
 
    public int getLeftType() {
@@ -97,10 +101,6 @@ public class ColorAtom extends Atom implements Row {
       return elements.getRightType();
    }
 
-   public void setPreviousAtom(Dummy prev) {
-      elements.setPreviousAtom(prev);
-   }
-
    @Override 
    public String toString() {
 	   return "ColorAtom{bg=" + background + ", c=" + color + ", e[]=" + elements.toString() + "}";
@@ -120,4 +120,36 @@ public class ColorAtom extends Atom implements Row {
    public void toXml(SimpleXmlWriter sxw, Object hint) {
 	   throw new java.lang.UnsupportedOperationException();
    }
+
+   @Override
+   protected int computeStructuralHash() {
+      return 31 * (31 * (31 * super.computeStructuralHash() + hash(elements))
+         + (color == null ? 0 : color.hashCode())) + (background == null ? 0 : background.hashCode());
+   }
+
+   @Override
+   public boolean structurallyEquals(Atom a) {
+      if (!super.structurallyEquals(a))
+         return false;
+      ColorAtom o = (ColorAtom) a;
+      return equal(elements, o.elements)
+         && (color == null ? o.color == null : color.equals(o.color))
+         && (background == null ? o.background == null : background.equals(o.background));
+   }
+
+   @Override
+   protected Atom internChildren(AtomInterner in) {
+      RowAtom el = in.intern(elements);
+      if (el == elements)
+         return this;
+      return new ColorAtom(this, el);
+   }
+
+   // a copy with the given row (for internChildren)
+   private ColorAtom(ColorAtom a, RowAtom elements) {
+      this.elements = elements;
+      background = a.background;
+      color = a.color;
+      type = a.type;
+   }
 }
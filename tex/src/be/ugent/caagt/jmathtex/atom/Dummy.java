@@ -47,6 +47,10 @@ import be.ugent.caagt.jmathtex.box.Box;
  * different boxes could be made from the same TeXFormula, and that is not desired!
  * This "dummy atom" makes sure that changes to an atom (during the createBox-method of
  * a RowAtom) will be reset.
+ * <p>
+ * 这些改变只保存在 dummy 中, 原 atom 从不被修改, 因此 atom 可以被多个公式/线程共享.
+ * These changes are only kept in the dummy, the atom itself is never modified, so
+ * atoms can be shared between formulas and threads.
  */
 public class Dummy {
 
@@ -120,15 +124,14 @@ public class Dummy {
    }
 
    /*
-    * 创建盒子.
+    * 创建盒子. previousAtom: 前一个 atom (只用于 Row 元素)
     */
-   public Box createBox(TeXEnvironment rs) {
-      if (textSymbol)
-         ((CharSymbol) el).markAsTextSymbol();  // 标记为 textSymbol??
-      Box b = el.createBox(rs); // 然后创建盒子, 创建之后再恢复标记.
-      if (textSymbol)
-         ((CharSymbol) el).removeMark(); // atom remains unchanged!
-      return b;
+   public Box createBox(TeXEnvironment rs, Dummy previousAtom) {
+      // the textSymbol mark isn't put on the (possibly shared) atom: the createBox
+      // method of a CharSymbol doesn't use it. atom remains unchanged!
+      if (el instanceof Row)
+         return ((Row) el).createBox(rs, previousAtom);
+      return el.createBox(rs);
    }
 
    public void markAsTextSymbol() {
@@ -138,10 +141,4 @@ public class Dummy {
    public boolean isKern() {
       return el instanceof SpaceAtom;
    }
-
-   // only for Row-elements
-   public void setPreviousAtom(Dummy prev) {
-      if (el instanceof Row)
-         ((Row) el).setPreviousAtom(prev);
-   }
 }
@@ -44,7 +44,7 @@ import be.ugent.caagt.jmathtex.box.HorizontalBox;
  * An atom representing a base atom surrounded with delimiters that change their size
  * according to the height of the base.
  */
-public class FencedAtom extends Atom {
+public class FencedAtom extends CacheableAtom {
 
    // parameters used in the TeX algorithm; (TeX 算法中使用的神奇数字, 我也不知道什么意思)
    private static final int DELIMITER_FACTOR = 901;
@@ -95,6 +95,10 @@ public class FencedAtom extends Atom {
    }
 
    public Box createBox(TeXEnvironment env) {
+      return createCachedBox(env);
+   }
+
+   protected Box layout(TeXEnvironment env) {
       TeXFont tf = env.getTeXFont();
 
       Box content = base.createBox(env); // 创建基元件的盒子.
@@ -176,4 +180,28 @@ public class FencedAtom extends Atom {
 	   }
 	   sxw.endElement("FencedAtom").ln();
    }
+
+   @Override
+   protected int computeStructuralHash() {
+      return 31 * (31 * (31 * super.computeStructuralHash() + hash(base)) + hash(left)) + hash(right);
+   }
+
+   @Override
+   public boolean structurallyEquals(Atom a) {
+      if (!super.structurallyEquals(a))
+         return false;
+      FencedAtom o = (FencedAtom) a;
+      return equal(base, o.base) && equal(left, o.left) && equal(right, o.right);
+   }
+
+   @Override
+   protected Atom internChildren(AtomInterner in) {
+      Atom b = in.intern(base);
+      SymbolAtom l = in.intern(left), r = in.intern(right);
+      if (b == base && l == left && r == right)
+         return this;
+      FencedAtom res = new FencedAtom(b, l, r);
+      res.type = type;
+      return res;
+   }
 }
@@ -85,4 +85,17 @@ class FixedCharAtom extends CharSymbol {
 	   
 	   sxw.endElement("FixedCharAtom").ln();
    }
+
+   @Override
+   protected int computeStructuralHash() {
+      return 31 * (31 * super.computeStructuralHash() + cf.c) + cf.fontId;
+   }
+
+   @Override
+   public boolean structurallyEquals(Atom a) {
+      if (!super.structurallyEquals(a))
+         return false;
+      FixedCharAtom o = (FixedCharAtom) a;
+      return cf.c == o.cf.c && cf.fontId == o.cf.fontId;
+   }
 }
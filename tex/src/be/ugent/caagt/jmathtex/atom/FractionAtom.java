@@ -43,7 +43,7 @@ import be.ugent.caagt.jmathtex.ex.InvalidUnitException;
  * 表示分数的元件.
  * An atom representing a fraction.
  */
-public class FractionAtom extends Atom {
+public class FractionAtom extends CacheableAtom {
     
 	// 是否缺省的(分数线)粗细不应该在分数线上使用.
     // whether the default thickness should not be used for the fraction line
@@ -188,14 +188,19 @@ public class FractionAtom extends Atom {
     }
     
     public Box createBox(TeXEnvironment env) {
+        return createCachedBox(env);
+    }
+    
+    protected Box layout(TeXEnvironment env) {
         TeXFont tf = env.getTeXFont();
         int style = env.getStyle();
         
         // set thickness to default if default value should be used
-        float drt = tf.getDefaultRuleThickness(style);
+        // (in a local variable: the atom isn't changed while creating its box)
+        float drt = tf.getDefaultRuleThickness(style), thickness;
         if (noDefault)
             // convert the thickness to pixels
-            thickness = new SpaceAtom(unit, 0, thickness, 0).createBox(env).getHeight();
+            thickness = new SpaceAtom(unit, 0, this.thickness, 0).createBox(env).getHeight();
         else
             thickness = (defFactorSet ? defFactor * drt : drt);
         
@@ -323,4 +328,44 @@ public class FractionAtom extends Atom {
     	
     	sxw.endElement("FractionAtom").ln();
     }
+
+    @Override
+    protected int computeStructuralHash() {
+        return 31 * (31 * (31 * (31 * super.computeStructuralHash() + hash(numerator)) + hash(denominator))
+                + unit * 8 + numAlign * 2 + denomAlign) + Float.floatToIntBits(thickness)
+                + Float.floatToIntBits(defFactor) + (noDefault ? 1 : 0) + (defFactorSet ? 2 : 0);
+    }
+
+    @Override
+    public boolean structurallyEquals(Atom a) {
+        if (!super.structurallyEquals(a))
+            return false;
+        FractionAtom o = (FractionAtom) a;
+        return equal(numerator, o.numerator) && equal(denominator, o.denominator)
+                && noDefault == o.noDefault && unit == o.unit && numAlign == o.numAlign
+                && denomAlign == o.denomAlign && thickness == o.thickness
+                && defFactor == o.defFactor && defFactorSet == o.defFactorSet;
+    }
+
+    @Override
+    protected Atom internChildren(AtomInterner in) {
+        Atom num = in.intern(numerator), den = in.intern(denominator);
+        if (num == numerator && den == denominator)
+            return this;
+        return new FractionAtom(this, num, den);
+    }
+
+    // a copy with the given numerator and denominator (for internChildren)
+    private FractionAtom(FractionAtom a, Atom num, Atom den) {
+        numerator = num;
+        denominator = den;
+        noDefault = a.noDefault;
+        unit = a.unit;
+        numAlign = a.numAlign;
+        denomAlign = a.denomAlign;
+        thickness = a.thickness;
+        defFactor = a.defFactor;
+        defFactorSet = a.defFactorSet;
+        type = a.type;
+    }
 }
@@ -173,4 +173,27 @@ public class NthRoot extends Atom {
 	   
 	   sxw.endElement("NthRoot").ln();
    }
+
+   @Override
+   protected int computeStructuralHash() {
+      return 31 * (31 * super.computeStructuralHash() + hash(base)) + hash(root);
+   }
+
+   @Override
+   public boolean structurallyEquals(Atom a) {
+      if (!super.structurallyEquals(a))
+         return false;
+      NthRoot o = (NthRoot) a;
+      return equal(base, o.base) && equal(root, o.root);
+   }
+
+   @Override
+   protected Atom internChildren(AtomInterner in) {
+      Atom b = in.intern(base), r = in.intern(root);
+      if (b == base && r == root)
+         return this;
+      NthRoot res = new NthRoot(b, r);
+      res.type = type;
+      return res;
+   }
 }
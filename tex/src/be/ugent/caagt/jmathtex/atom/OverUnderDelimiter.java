@@ -154,4 +154,40 @@ public class OverUnderDelimiter extends Atom {
 	   
 	   sxw.endElement("OverUnderDelimiter").ln();
    }
+
+   @Override
+   protected int computeStructuralHash() {
+      return 31 * (31 * (31 * (31 * super.computeStructuralHash() + hash(base)) + hash(script))
+         + hash(symbol)) + hash(kern) + (over ? 1 : 0);
+   }
+
+   @Override
+   public boolean structurallyEquals(Atom a) {
+      if (!super.structurallyEquals(a))
+         return false;
+      OverUnderDelimiter o = (OverUnderDelimiter) a;
+      return equal(base, o.base) && equal(script, o.script) && equal(symbol, o.symbol)
+         && equal(kern, o.kern) && over == o.over;
+   }
+
+   @Override
+   protected Atom internChildren(AtomInterner in) {
+      Atom b = in.intern(base), sc = in.intern(script);
+      SymbolAtom sym = in.intern(symbol);
+      SpaceAtom k = in.intern(kern);
+      if (b == base && sc == script && sym == symbol && k == kern)
+         return this;
+      return new OverUnderDelimiter(this, b, sc, sym, k);
+   }
+
+   // a copy with the given child atoms (for internChildren)
+   private OverUnderDelimiter(OverUnderDelimiter a, Atom base, Atom script,
+         SymbolAtom symbol, SpaceAtom kern) {
+      this.base = base;
+      this.script = script;
+      this.symbol = symbol;
+      this.kern = kern;
+      over = a.over;
+      type = a.type;
+   }
 }
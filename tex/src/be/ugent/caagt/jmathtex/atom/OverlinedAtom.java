@@ -93,4 +93,27 @@ public class OverlinedAtom extends Atom {
 	   
 	   sxw.endElement("OverlinedAtom").ln();
    }
+
+   @Override
+   protected int computeStructuralHash() {
+      return 31 * super.computeStructuralHash() + hash(base);
+   }
+
+   @Override
+   public boolean structurallyEquals(Atom a) {
+      if (!super.structurallyEquals(a))
+         return false;
+      OverlinedAtom o = (OverlinedAtom) a;
+      return equal(base, o.base);
+   }
+
+   @Override
+   protected Atom internChildren(AtomInterner in) {
+      Atom b = in.intern(base);
+      if (b == base)
+         return this;
+      OverlinedAtom res = new OverlinedAtom(b);
+      res.type = type;
+      return res;
+   }
 }
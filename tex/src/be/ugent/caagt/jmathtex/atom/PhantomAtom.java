@@ -70,8 +70,12 @@ public class PhantomAtom extends Atom implements Row {
    }
 
    public Box createBox(TeXEnvironment env) {
+      return createBox(env, null);
+   }
+
+   public Box createBox(TeXEnvironment env, Dummy prev) {
 	  // 创建内部元素, 但是用 StrutBox 替代它(使用相同的尺寸)
-      Box res = elements.createBox(env);
+      Box res = elements.createBox(env, prev);
       return new StrutBox((w ? res.getWidth() : 0), (h ? res.getHeight() : 0),
             (d ? res.getDepth() : 0), res.getShift());
    }
@@ -84,10 +88,6 @@ public class PhantomAtom extends Atom implements Row {
       return elements.getRightType();
    }
 
-   public void setPreviousAtom(Dummy prev) {
-      elements.setPreviousAtom(prev);
-   }
-
    public String toString() {
 	   return "PhantomAtom{elements = " + elements + "}";
    }
@@ -115,4 +115,34 @@ public class PhantomAtom extends Atom implements Row {
 	   
 	   sxw.endElement("PhantomAtom").ln();
    }
+
+   @Override
+   protected int computeStructuralHash() {
+      return 31 * super.computeStructuralHash() + hash(elements) + (w ? 1 : 0) + (h ? 2 : 0) + (d ? 4 : 0);
+   }
+
+   @Override
+   public boolean structurallyEquals(Atom a) {
+      if (!super.structurallyEquals(a))
+         return false;
+      PhantomAtom o = (PhantomAtom) a;
+      return equal(elements, o.elements) && w == o.w && h == o.h && d == o.d;
+   }
+
+   @Override
+   protected Atom internChildren(AtomInterner in) {
+      RowAtom el = in.intern(elements);
+      if (el == elements)
+         return this;
+      return new PhantomAtom(this, el);
+   }
+
+   // a copy with the given row (for internChildren)
+   private PhantomAtom(PhantomAtom a, RowAtom elements) {
+      this.elements = elements;
+      w = a.w;
+      h = a.h;
+      d = a.d;
+      type = a.type;
+   }
 }
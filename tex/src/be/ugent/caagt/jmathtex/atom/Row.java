@@ -28,6 +28,8 @@
 
 package be.ugent.caagt.jmathtex.atom;
 
+import be.ugent.caagt.jmathtex.TeXEnvironment;
+import be.ugent.caagt.jmathtex.box.Box;
 
 /**
  * A "composed atom": an atom that consists of child atoms that will be displayed 
@@ -36,13 +38,18 @@ package be.ugent.caagt.jmathtex.atom;
 public interface Row {
 
    /**
-    * Sets the given dummy containing the atom that comes just before
-    * the first child atom of this "composed atom". This method will allways be called
+    * Creates the box for this "composed atom", given the dummy containing the atom
+    * that comes just before its first child atom. This method will allways be called
     * by another composed atom, so this composed atom will be a child of it (nested). 
     * This is necessary to determine the glue to insert between the first child atom 
     * of this nested composed atom and the atom that the dummy contains. 
+    * <p>
+    * The dummy is passed as an argument (and not stored in the atom), so that
+    * atoms can be shared between formulas and threads.
     * 
-    * @param dummy the dummy that comes just before this "composed atom"
+    * @param env the TeXEnvironment to be used
+    * @param dummy the dummy that comes just before this "composed atom" (or null)
+    * @return the resulting box
     */
-   public void setPreviousAtom(Dummy dummy);
+   public Box createBox(TeXEnvironment env, Dummy dummy);
 }
@@ -53,7 +53,7 @@ import be.ugent.caagt.jmathtex.ex.EmptyFormulaException;
  * An atom representing a horizontal row of other atoms, to be seperated by glue.
  * It's also responsible for inserting kerns and ligatures.
  */
-public class RowAtom extends Atom implements Row {
+public class RowAtom extends CacheableAtom implements Row {
     
     /**
      * 水平排列的多个 atom 的数组(集合) 
@@ -62,9 +62,9 @@ public class RowAtom extends Atom implements Row {
     protected List<Atom> elements = new ArrayList<Atom>();
     
     /**
-     * previous atom (for nested Row atoms)
+     * whether atoms can't be added anymore (see {@link #makeImmutable()})
      */
-    private Dummy previousAtom = null;
+    private boolean immutable = false;
     
     /**
      * atom 类型的集合, 其使得前一个 bin 元件类型变为 ord ?
@@ -133,12 +133,37 @@ public class RowAtom extends Atom implements Row {
     /**
      * 添加一个子 atom 在列表末尾.
      * @param el
+     * @throws UnsupportedOperationException if this row is immutable
      */
     public final void add(Atom el) {
+        if (immutable)
+            throw new UnsupportedOperationException("This RowAtom is immutable!");
         if (el != null)
             elements.add(el);
     }
     
+    /**
+     * 使这个 RowAtom 不可改变, 以便共享.
+     * Makes this row immutable: no atoms can be added to it anymore. Immutable rows
+     * (like the roots of the predefined TeXFormula's) can be shared by many
+     * TeXFormula's. To add atoms, make a (modifiable) copy first using
+     * {@link #RowAtom(Atom)}.
+     */
+    public void makeImmutable() {
+        immutable = true;
+    }
+    
+    /**
+     * @return whether this row is immutable (see {@link #makeImmutable()})
+     */
+    public boolean isImmutable() {
+        return immutable;
+    }
+    
+    protected boolean isMutable() {
+        return !immutable;
+    }
+    
     /**
      * 从 createBox() 中调用. 对于某些条件下, 将二元运算符(bin)当做普通(ord)符号看待.
      *   对此, cur.setType(ord) 将被调用以设置其类型.
@@ -209,11 +234,24 @@ public class RowAtom extends Atom implements Row {
      * (non-Javadoc)
      * @see be.ugent.caagt.jmathtex.Atom#createBox(be.ugent.caagt.jmathtex.TeXEnvironment)
      */
+    public Box createBox(TeXEnvironment env) {
+        return createCachedBox(env);
+    }
+    
+    protected Box layout(TeXEnvironment env) {
+        return createBox(env, null);
+    }
+    
+    /*
+     * previousAtom: previous atom (for nested Row atoms), a local variable so that
+     * a row can be shared (no state is kept in the atom while creating its box).
+     */
     @SuppressWarnings("unchecked")
-	public Box createBox(TeXEnvironment env) {
+    public Box createBox(TeXEnvironment env, Dummy previousAtom) {
         TeXFont tf = env.getTeXFont();
         HorizontalBox hBox = new HorizontalBox(env.getColor(), env.getBackground());
-        env.reset();
+        // the elements are laid out in a copy: the caller's environment isn't changed
+        env = env.localCopy();
         
         // 转换子 atom 为盒子, 然后添加到 水平盒子中. (水平盒子构造算法)
         // convert atoms to boxes and add to the horizontal box
@@ -264,8 +302,7 @@ public class RowAtom extends Atom implements Row {
                         env));
             
             // insert atom's box; 
-            atom.setPreviousAtom(previousAtom);
-            Box b = atom.createBox(env);
+            Box b = atom.createBox(env, previousAtom);
             hBox.add(b);
             
             // set last used fontId (for next atom); 设置最后使用的字体标识.
@@ -280,17 +317,11 @@ public class RowAtom extends Atom implements Row {
             if (!atom.isKern())
                 previousAtom = atom;
         }
-        // reset previousAtom
-        previousAtom = null;
         
         // return resulting horizontal box
         return hBox;
     }
     
-    public void setPreviousAtom(Dummy prev) {
-        previousAtom = prev;
-    }
-    
     public int getLeftType() {
         if (elements.isEmpty())
             return TeXConstants.TYPE_ORDINARY;
@@ -333,4 +364,47 @@ public class RowAtom extends Atom implements Row {
     	
     	sxw.endElement("RowAtom").ln();
     }
+
+    @Override
+    protected int computeStructuralHash() {
+        int h = super.computeStructuralHash();
+        for (Atom a : elements)
+            h = 31 * h + hash(a);
+        return h;
+    }
+
+    @Override
+    public boolean structurallyEquals(Atom a) {
+        if (!super.structurallyEquals(a))
+            return false;
+        List<Atom> o = ((RowAtom) a).elements;
+        if (elements.size() != o.size())
+            return false;
+        for (int i = 0; i < elements.size(); i++)
+            if (!equal(elements.get(i), o.get(i)))
+                return false;
+        return true;
+    }
+
+    /*
+     * An interned row may be shared by other formulas, so it must be immutable: a row
+     * that isn't immutable yet is always copied (the copy is made immutable).
+     */
+    @Override
+    protected Atom internChildren(AtomInterner in) {
+        List<Atom> el = new ArrayList<Atom>(elements.size());
+        boolean same = immutable;
+        for (Atom a : elements) {
+            Atom b = in.intern(a);
+            el.add(b);
+            same &= (a == b);
+        }
+        if (same)
+            return this;
+        RowAtom res = new RowAtom();
+        res.elements = el;
+        res.immutable = true;
+        res.type = type;
+        return res;
+    }
 }
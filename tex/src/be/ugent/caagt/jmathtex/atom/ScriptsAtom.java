@@ -45,7 +45,7 @@ import be.ugent.caagt.jmathtex.box.VerticalBox;
  * 表示一个上下标原子, 其被附加到另一个原子.
  * An atom representing scripts to be attached to another atom.
  */
-public class ScriptsAtom extends Atom {
+public class ScriptsAtom extends CacheableAtom {
 
    // TeX constant: what's the use???
    private final static SpaceAtom SCRIPT_SPACE = new SpaceAtom(
@@ -75,6 +75,10 @@ public class ScriptsAtom extends Atom {
     * 因为有上标下标的几种不同组合, 所以要分别跟踪实验. 以了解创建了什么盒子, 及其特点.
     */
    public Box createBox(TeXEnvironment env) {
+      return createCachedBox(env);
+   }
+
+   protected Box layout(TeXEnvironment env) {
       Box b = (base == null ? new StrutBox(0, 0, 0, 0) : base.createBox(env));
       if (subscript == null && superscript == null)
          return b; // 简单的 case, 没有上标也没有下标, 则就是 base 的盒子类型.
@@ -262,4 +266,29 @@ public class ScriptsAtom extends Atom {
 	   
 	   sxw.endElement("ScriptsAtom").ln();
    }
+
+   @Override
+   protected int computeStructuralHash() {
+      return 31 * (31 * (31 * super.computeStructuralHash() + hash(base)) + hash(subscript))
+         + hash(superscript);
+   }
+
+   @Override
+   public boolean structurallyEquals(Atom a) {
+      if (!super.structurallyEquals(a))
+         return false;
+      ScriptsAtom o = (ScriptsAtom) a;
+      return equal(base, o.base) && equal(subscript, o.subscript)
+         && equal(superscript, o.superscript);
+   }
+
+   @Override
+   protected Atom internChildren(AtomInterner in) {
+      Atom b = in.intern(base), sub = in.intern(subscript), sup = in.intern(superscript);
+      if (b == base && sub == subscript && sup == superscript)
+         return this;
+      ScriptsAtom res = new ScriptsAtom(b, sub, sup);
+      res.type = type;
+      return res;
+   }
 }
@@ -186,4 +186,20 @@ public class SpaceAtom extends Atom {
     	
     	sxw.endElement("SpaceAtom").ln();
     }
+
+    @Override
+    protected int computeStructuralHash() {
+        return 31 * (31 * (31 * (31 * super.computeStructuralHash() + Float.floatToIntBits(width))
+                + Float.floatToIntBits(height)) + Float.floatToIntBits(depth))
+                + wUnit * 64 + hUnit * 8 + dUnit + (blankSpace ? 1 : 0);
+    }
+
+    @Override
+    public boolean structurallyEquals(Atom a) {
+        if (!super.structurallyEquals(a))
+            return false;
+        SpaceAtom o = (SpaceAtom) a;
+        return blankSpace == o.blankSpace && width == o.width && height == o.height
+                && depth == o.depth && wUnit == o.wUnit && hUnit == o.hUnit && dUnit == o.dUnit;
+    }
 }
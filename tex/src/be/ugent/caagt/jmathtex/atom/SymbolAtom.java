@@ -29,6 +29,8 @@
 package be.ugent.caagt.jmathtex.atom;
 
 import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 
 import be.ugent.caagt.jmathtex.Char;
@@ -126,6 +128,29 @@ public class SymbolAtom extends CharSymbol {
             return obj;
     }
     
+    /**
+     * 同 get(), 但找不到时返回 null 而不抛出异常.
+     * Looks up the name in the table and returns the corresponding SymbolAtom, like 
+     * {@link #get(String)}, but returns null instead of throwing an exception if
+     * it's not found.
+     *
+     * @param name the name of the symbol
+     * @return a SymbolAtom representing the found symbol, or null if no symbol
+     *          with the given name was found
+     */
+    public static SymbolAtom tryGet(String name) {
+        return symbols.get(name);
+    }
+    
+    /**
+     * Get all the symbols defined in "TeXSymbols.xml".
+     *
+     * @return an unmodifiable collection of all the defined symbols
+     */
+    public static Collection<SymbolAtom> getAll() {
+        return Collections.unmodifiableCollection(symbols.values());
+    }
+    
     /**
      *
      * @return true if this symbol can act as a delimiter to embrace formulas
@@ -174,4 +199,17 @@ public class SymbolAtom extends CharSymbol {
     	
     	sxw.endElement("SymbolAtom").ln();
     }
+
+    @Override
+    protected int computeStructuralHash() {
+        return 31 * super.computeStructuralHash() + name.hashCode() + (delimiter ? 1 : 0);
+    }
+
+    @Override
+    public boolean structurallyEquals(Atom a) {
+        if (!super.structurallyEquals(a))
+            return false;
+        SymbolAtom o = (SymbolAtom) a;
+        return delimiter == o.delimiter && name.equals(o.name);
+    }
 }
@@ -88,4 +88,27 @@ public class TypedAtom extends Atom {
 	   
 	   sxw.endElement("TypedAtom").ln();
    }
+
+   @Override
+   protected int computeStructuralHash() {
+      return 31 * (31 * super.computeStructuralHash() + leftType * 16 + rightType) + hash(atom);
+   }
+
+   @Override
+   public boolean structurallyEquals(Atom a) {
+      if (!super.structurallyEquals(a))
+         return false;
+      TypedAtom o = (TypedAtom) a;
+      return leftType == o.leftType && rightType == o.rightType && equal(atom, o.atom);
+   }
+
+   @Override
+   protected Atom internChildren(AtomInterner in) {
+      Atom a = in.intern(atom);
+      if (a == atom)
+         return this;
+      TypedAtom res = new TypedAtom(leftType, rightType, a);
+      res.type = type;
+      return res;
+   }
 }
@@ -131,14 +131,16 @@ public class UnderOverAtom extends Atom {
         // create vertical box
         VerticalBox vBox = new VerticalBox();
         
-        // last font used by the base (for Mspace atoms following)
-        env.setLastFontId(b.getLastFontId());
+        // last font used by the base (for Mspace atoms following), in a copy: the
+        // caller's environment isn't changed
+        TeXEnvironment spaceEnv = env.localCopy();
+        spaceEnv.setLastFontId(b.getLastFontId());
         
         // overscript + space
         if (over != null) {
             vBox.add(changeWidth(o, max));
             // unit will be valid (checked in constructor)
-            vBox.add(new SpaceAtom(overUnit, 0, overSpace, 0).createBox(env));
+            vBox.add(new SpaceAtom(overUnit, 0, overSpace, 0).createBox(spaceEnv));
         }
         
         // base
@@ -151,7 +153,7 @@ public class UnderOverAtom extends Atom {
         // underscript + space
         if (under != null) {
             // unit will be valid (checked in constructor)
-            vBox.add(new SpaceAtom(overUnit, 0, underSpace, 0).createBox(env));
+            vBox.add(new SpaceAtom(overUnit, 0, underSpace, 0).createBox(spaceEnv));
             vBox.add(changeWidth(u, max));
         }
         
@@ -216,4 +218,44 @@ public class UnderOverAtom extends Atom {
     	
     	sxw.endElement("UnderOverAtom").ln();
     }
+
+    @Override
+    protected int computeStructuralHash() {
+        return 31 * (31 * (31 * (31 * super.computeStructuralHash() + hash(base)) + hash(under)) + hash(over))
+                + Float.floatToIntBits(underSpace) + Float.floatToIntBits(overSpace)
+                + underUnit * 16 + overUnit * 4 + (underScriptSize ? 2 : 0) + (overScriptSize ? 1 : 0);
+    }
+
+    @Override
+    public boolean structurallyEquals(Atom a) {
+        if (!super.structurallyEquals(a))
+            return false;
+        UnderOverAtom o = (UnderOverAtom) a;
+        return equal(base, o.base) && equal(under, o.under) && equal(over, o.over)
+                && underSpace == o.underSpace && overSpace == o.overSpace
+                && underUnit == o.underUnit && overUnit == o.overUnit
+                && underScriptSize == o.underScriptSize && overScriptSize == o.overScriptSize;
+    }
+
+    @Override
+    protected Atom internChildren(AtomInterner in) {
+        Atom b = in.intern(base), u = in.intern(under), o = in.intern(over);
+        if (b == base && u == under && o == over)
+            return this;
+        return new UnderOverAtom(this, b, u, o);
+    }
+
+    // a copy with the given child atoms (for internChildren)
+    private UnderOverAtom(UnderOverAtom a, Atom base, Atom under, Atom over) {
+        this.base = base;
+        this.under = under;
+        this.over = over;
+        underSpace = a.underSpace;
+        overSpace = a.overSpace;
+        underUnit = a.underUnit;
+        overUnit = a.overUnit;
+        underScriptSize = a.underScriptSize;
+        overScriptSize = a.overScriptSize;
+        type = a.type;
+    }
 }
@@ -98,4 +98,27 @@ public class UnderlinedAtom extends Atom {
 	   
 	   sxw.endElement("UnderlinedAtom").ln();
    }
+
+   @Override
+   protected int computeStructuralHash() {
+      return 31 * super.computeStructuralHash() + hash(base);
+   }
+
+   @Override
+   public boolean structurallyEquals(Atom a) {
+      if (!super.structurallyEquals(a))
+         return false;
+      UnderlinedAtom o = (UnderlinedAtom) a;
+      return equal(base, o.base);
+   }
+
+   @Override
+   protected Atom internChildren(AtomInterner in) {
+      Atom b = in.intern(base);
+      if (b == base)
+         return this;
+      UnderlinedAtom res = new UnderlinedAtom(b);
+      res.type = type;
+      return res;
+   }
 }
@@ -87,4 +87,27 @@ public class VCenteredAtom extends Atom {
 	   }
 	   sxw.endElement("VCenteredAtom").ln();
    }
+
+   @Override
+   protected int computeStructuralHash() {
+      return 31 * super.computeStructuralHash() + hash(atom);
+   }
+
+   @Override
+   public boolean structurallyEquals(Atom a) {
+      if (!super.structurallyEquals(a))
+         return false;
+      VCenteredAtom o = (VCenteredAtom) a;
+      return equal(atom, o.atom);
+   }
+
+   @Override
+   protected Atom internChildren(AtomInterner in) {
+      Atom a = in.intern(atom);
+      if (a == atom)
+         return this;
+      VCenteredAtom res = new VCenteredAtom(a);
+      res.type = type;
+      return res;
+   }
 }
@@ -36,6 +36,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import be.ugent.caagt.jmathtex.SimpleXmlWriter;
+import be.ugent.caagt.jmathtex.TeXFont;
 
 /**
  * 公式的抽象图形表示, 可用于绘制. 所有的字符, 字体尺寸, 位置都是固定的. 只有特殊的 glue 盒子能伸展或压缩.
@@ -49,7 +50,7 @@ import be.ugent.caagt.jmathtex.SimpleXmlWriter;
  * Subclasses must implement the abstract {@link #draw(Graphics2D, float, float)} method
  * (that paints the box). <b> This implementation must start with calling the method
  * {@link #startDraw(Graphics2D, float, float)} and end with calling the method
- * {@link #endDraw(Graphics2D)} to set and restore the color's that must be used for
+ * {@link #endDraw(Graphics2D, Color)} to set and restore the color's that must be used for
  * painting the box and to draw the background!</b> They must also implement the abstract 
  * {@link #getLastFontId()} method (the last font
  * that will be used when this box will be painted).
@@ -70,8 +71,6 @@ public abstract class Box {
     */
    protected Color background;
 
-   private Color prevColor; // used temporarily in startDraw and endDraw
-
    /**
     * The width of this box, i.e. the value that will be used for further 
     * calculations. 
@@ -101,6 +100,12 @@ public abstract class Box {
     */
    protected List<Box> children = new ArrayList<Box>();
 
+   /**
+    * The result of {@link #getLastChildFontId()}, or NO_FONT - 1 if it isn't known
+    * (yet)
+    */
+   private int lastChildFontId = TeXFont.NO_FONT - 1;
+
    /**
     * Inserts the given box at the end of the list of child boxes.
     * 
@@ -108,6 +113,7 @@ public abstract class Box {
     */
    public void add(Box b) {
       children.add(b);
+      lastChildFontId = TeXFont.NO_FONT - 1;
    }
 
    /**
@@ -118,6 +124,7 @@ public abstract class Box {
     */
    public void add(int pos, Box b) {
       children.add(pos, b);
+      lastChildFontId = TeXFont.NO_FONT - 1;
    }
 
    /**
@@ -220,16 +227,36 @@ public abstract class Box {
    public abstract int getLastFontId();
 
    /**
-    * Stores the old color setting, draws the background of the box (if not null) 
-    * and sets the foreground color (if not null).
+    * Gets the last font id of the child boxes: iterates from the last child box to
+    * the first until a font id is found that's not equal to NO_FONT. The result is
+    * stored until a child box is added, so that asking it for every level of a
+    * deeply nested box doesn't take quadratic time.
+    * 
+    * @return the last font id of the child boxes, or NO_FONT if there's none
+    */
+   protected final int getLastChildFontId() {
+      if (lastChildFontId < TeXFont.NO_FONT) {
+         int fontId = TeXFont.NO_FONT;
+         for (int i = children.size() - 1; fontId == TeXFont.NO_FONT && i >= 0; i--)
+            fontId = children.get(i).getLastFontId();
+         lastChildFontId = fontId;
+      }
+      return lastChildFontId;
+   }
+
+   /**
+    * Draws the background of the box (if not null) and sets the foreground color
+    * (if not null). The old color is returned instead of kept in the box, so the
+    * same box can be painted by several threads at once.
     * 
     * @param g2 the graphics (2D) context
     * @param x the x-coordinate
     * @param y the y-coordinate
+    * @return the old color, to pass to {@link #endDraw(Graphics2D, Color)}
     */
-   protected void startDraw(Graphics2D g2, float x, float y) {
+   protected Color startDraw(Graphics2D g2, float x, float y) {
       // old color
-      prevColor = g2.getColor();
+      Color prevColor = g2.getColor();
 
       if (background != null) { // draw background
          g2.setColor(background);
@@ -240,14 +267,16 @@ public abstract class Box {
          g2.setColor(prevColor); // old foreground color
       else
          g2.setColor(foreground); // overriding foreground color
+      return prevColor;
    }
 
    /**
     * Restores the previous color setting.
     * 
     * @param g2 the graphics (2D) context
+    * @param prevColor the color returned by startDraw
     */
-   protected void endDraw(Graphics2D g2) {
+   protected void endDraw(Graphics2D g2, Color prevColor) {
       g2.setColor(prevColor);
    }
 
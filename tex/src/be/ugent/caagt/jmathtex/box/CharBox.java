@@ -33,6 +33,7 @@ import java.awt.Graphics2D;
 
 import be.ugent.caagt.jmathtex.Char;
 import be.ugent.caagt.jmathtex.CharFont;
+import be.ugent.caagt.jmathtex.GlyphOutlines;
 import be.ugent.caagt.jmathtex.SimpleXmlWriter;
 
 /**
@@ -43,7 +44,7 @@ public class CharBox extends Box {
 
    private final CharFont cf; // {char, fontID}
 
-   private final Font font; // 对应 java awt 的字体?
+   private final Char ch; // 字符; 其字体在绘制时才得到.
 
    /**
     * Create a new CharBox that will represent the character defined by the given
@@ -52,18 +53,24 @@ public class CharBox extends Box {
     * @param c a Char-object containing the character's font information.
     */
    public CharBox(Char c) {
+      ch = c;
       cf = c.getCharFont();
-      font = c.getFont();
       width = c.getWidth();
       height = c.getHeight();
       depth = c.getDepth();
    }
 
    public void draw(Graphics2D g2, float x, float y) {
+      // 矢量输出: 直接填充字形轮廓
+      if (g2.getRenderingHint(GlyphOutlines.KEY_GLYPH_OUTLINES) == GlyphOutlines.VALUE_GLYPH_OUTLINES_ON) {
+         g2.fill(GlyphOutlines.getOutline(ch, x, y));
+         return;
+      }
+
       // copy
       Font f = g2.getFont();
 
-      g2.setFont(font);
+      g2.setFont(ch.getFont());
       g2.drawString(Character.toString(cf.c), x, y);
 
       // restore
@@ -74,9 +81,16 @@ public class CharBox extends Box {
       return cf.fontId;
    }
 
+   /**
+    * @return the character (with its font) shown by this box
+    */
+   Char getChar() {
+      return ch;
+   }
+
    @Override
    public String toString() {
-	   return "CharBox{cf=" + cf + ", font=" + font.getName() + "}";
+	   return "CharBox{cf=" + cf + ", font=" + ch.getFont().getName() + "}";
    }
 
    public void dump() {
@@ -96,7 +110,7 @@ public class CharBox extends Box {
 		   sxw.blank().attribute("c", Character.toString(cf.c));
 	   }
 	   sxw.blank().attribute("fontId", cf.fontId)
-	      .blank().attribute("fontName", font.getName());
+	      .blank().attribute("fontName", ch.getFont().getName());
 	   addAttr(sxw);
 	   sxw.appendRaw(">").ln();
 	   
@@ -0,0 +1,309 @@
+/* DisplayList.java
+ * =========================================================================
+ * This file is part of the JMathTeX Library - http://jmathtex.sourceforge.net
+ *
+ * Copyright (C) 2004-2007 Universiteit Gent
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ */
+
+package be.ugent.caagt.jmathtex.box;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+import be.ugent.caagt.jmathtex.Char;
+import be.ugent.caagt.jmathtex.GlyphOutlines;
+
+/**
+ * 盒子树编译成的扁平的绘制列表: 一个循环就能绘制.
+ * A flat display list compiled from a box tree, for repainting a formula fast: the
+ * tree is walked once by {@link #compile(Box, float, float)}, that computes the
+ * positions of all the glyphs and rules and the colors they're painted in, and
+ * {@link #paint(Graphics2D)} then paints them in one loop over arrays, without virtual
+ * draw calls, saving and restoring colors and setting the font for every character.
+ * <p>
+ * The list contains runs of glyphs in the same font and color (drawn with drawString,
+ * or by filling their outlines if {@link GlyphOutlines#KEY_GLYPH_OUTLINES} is on),
+ * filled rectangles (rules and backgrounds) and color changes. Only boxes of exactly
+ * the classes HorizontalBox, VerticalBox, OverBar, SharedBox, CharBox, HorizontalRule,
+ * StrutBox and GlueBox are flattened: other boxes (like OverUnderBox, that rotates its
+ * delimiter, or subclasses that override draw) are kept as a whole and drawn with
+ * their own draw method. The positions are computed exactly like the draw methods of
+ * the boxes do, for the given origin, so the result is the same as drawing the box.
+ * A display list is immutable and can be painted by several threads at once.
+ */
+public final class DisplayList {
+    
+    // the operations
+    private static final byte GLYPHS = 0, RECT = 1, COLOR = 2, BOX = 3;
+    
+    // the origin (the position of the baseline of the box) the list was compiled for
+    private final float x, y;
+    
+    // the operations and their arguments: the number of glyphs of a run, the font of
+    // a run, the color to set (null = the foreground color) or the box to draw
+    private final byte[] ops;
+    private final int[] counts;
+    private final Object[] refs;
+    
+    // the coordinates of the rectangles (x, y, width, height) and boxes (x, y)
+    private final float[] coords;
+    
+    // the glyphs of all the runs
+    private final String[] text;
+    private final Char[] chars;
+    private final float[] glyphX, glyphY;
+    
+    private DisplayList(Compiler c, float x, float y) {
+        this.x = x;
+        this.y = y;
+        ops = Arrays.copyOf(c.ops, c.nOps);
+        counts = Arrays.copyOf(c.counts, c.nOps);
+        refs = Arrays.copyOf(c.refs, c.nOps);
+        coords = Arrays.copyOf(c.coords, c.nCoords);
+        text = Arrays.copyOf(c.text, c.nGlyphs);
+        chars = Arrays.copyOf(c.chars, c.nGlyphs);
+        glyphX = Arrays.copyOf(c.glyphX, c.nGlyphs);
+        glyphY = Arrays.copyOf(c.glyphY, c.nGlyphs);
+    }
+    
+    /**
+     * 将盒子树编译成绘制列表.
+     * Compiles the given box into a display list, that paints it like
+     * <code>b.draw(g2, x, y)</code>.
+     * 
+     * @param b the box
+     * @param x the x-coordinate of the box
+     * @param y the y-coordinate of the baseline of the box
+     * @return the display list
+     */
+    public static DisplayList compile(Box b, float x, float y) {
+        Compiler c = new Compiler();
+        c.add(b, x, y, null);
+        return new DisplayList(c, x, y);
+    }
+    
+    /**
+     * @return the x-coordinate the box was compiled for
+     */
+    public float getX() {
+        return x;
+    }
+    
+    /**
+     * @return the y-coordinate (of the baseline) the box was compiled for
+     */
+    public float getY() {
+        return y;
+    }
+    
+    /**
+     * @return the number of operations (glyph runs, rectangles, color changes, boxes)
+     */
+    public int size() {
+        return ops.length;
+    }
+    
+    /**
+     * @return the number of glyphs
+     */
+    public int getGlyphCount() {
+        return text.length;
+    }
+    
+    /**
+     * 绘制列表. 当前颜色为前景色 (没有设置颜色的部分用它绘制).
+     * Paints the display list. The current color of the graphics context is used as the
+     * foreground color (for everything without a color of its own). The color and the
+     * font of the graphics context are restored afterwards.
+     * 
+     * @param g2 the graphics (2D) context
+     */
+    public void paint(Graphics2D g2) {
+        Color foreground = g2.getColor();
+        Font font = g2.getFont();
+        boolean outlines = g2.getRenderingHint(GlyphOutlines.KEY_GLYPH_OUTLINES)
+                == GlyphOutlines.VALUE_GLYPH_OUTLINES_ON;
+        Rectangle2D.Float rect = new Rectangle2D.Float();
+        int g = 0, c = 0;
+        for (int i = 0; i < ops.length; i++) {
+            switch (ops[i]) {
+            case GLYPHS:
+                int end = g + counts[i];
+                if (outlines)
+                    for (; g < end; g++)
+                        g2.fill(GlyphOutlines.getOutline(chars[g], glyphX[g], glyphY[g]));
+                else {
+                    g2.setFont((Font) refs[i]);
+                    for (; g < end; g++)
+                        g2.drawString(text[g], glyphX[g], glyphY[g]);
+                }
+                break;
+            case RECT:
+                rect.setRect(coords[c], coords[c + 1], coords[c + 2], coords[c + 3]);
+                c += 4;
+                g2.fill(rect);
+                break;
+            case COLOR:
+                g2.setColor(refs[i] == null ? foreground : (Color) refs[i]);
+                break;
+            default: // BOX
+                ((Box) refs[i]).draw(g2, coords[c], coords[c + 1]);
+                c += 2;
+            }
+        }
+        g2.setFont(font);
+        g2.setColor(foreground);
+    }
+    
+    /**
+     * Walks a box tree and collects the operations in growing arrays.
+     */
+    private static final class Compiler {
+        
+        byte[] ops = new byte[16];
+        int[] counts = new int[16];
+        Object[] refs = new Object[16];
+        int nOps = 0;
+        
+        float[] coords = new float[16];
+        int nCoords = 0;
+        
+        String[] text = new String[16];
+        Char[] chars = new Char[16];
+        float[] glyphX = new float[16], glyphY = new float[16];
+        int nGlyphs = 0;
+        
+        // the color the painter will have set (null = the foreground color)
+        Color current = null;
+        
+        /*
+         * Adds the operations that draw the given box at the given position, in the
+         * given color (null = the foreground color), like its draw method does.
+         */
+        void add(Box b, float x, float y, Color color) {
+            // only the classes whose draw method is known, subclasses can override it
+            Class<?> c = b.getClass();
+            if (c == CharBox.class)
+                addGlyph(((CharBox) b).getChar(), x, y, color);
+            else if (c == HorizontalRule.class) {
+                setColor(color);
+                addRect(x, y - b.height, b.width, b.height);
+            } else if (c == HorizontalBox.class) {
+                color = start(b, x, y, color);
+                float xPos = x;
+                for (Box box : b.children) {
+                    add(box, xPos, y + box.shift, color);
+                    xPos += box.getWidth();
+                }
+            } else if (c == VerticalBox.class || c == OverBar.class) {
+                float yPos = y - b.height, left = ((VerticalBox) b).getLeftMostPos();
+                for (Box box : b.children) {
+                    yPos += box.getHeight();
+                    add(box, x + box.getShift() - left, yPos, color);
+                    yPos += box.getDepth();
+                }
+            } else if (c == SharedBox.class) {
+                color = start(b, x, y, color);
+                add(((SharedBox) b).getSharedBox(), x, y, color);
+            } else if (c != StrutBox.class && c != GlueBox.class) {
+                setColor(color);
+                newOp(BOX, 0, b);
+                addCoords(2);
+                coords[nCoords - 2] = x;
+                coords[nCoords - 1] = y;
+            }
+        }
+        
+        /*
+         * Like Box.startDraw: adds the background, returns the color of the box.
+         */
+        private Color start(Box b, float x, float y, Color color) {
+            if (b.background != null) {
+                setColor(b.background);
+                addRect(x, y - b.height, b.getWidth(), b.height + b.getDepth());
+            }
+            return b.foreground == null ? color : b.foreground;
+        }
+        
+        private void setColor(Color color) {
+            if (color == null ? current != null : !color.equals(current)) {
+                newOp(COLOR, 0, color);
+                current = color;
+            }
+        }
+        
+        private void addGlyph(Char ch, float x, float y, Color color) {
+            setColor(color);
+            Font font = ch.getFont();
+            // continue the last run if it's in the same font
+            if (nOps > 0 && ops[nOps - 1] == GLYPHS && font.equals(refs[nOps - 1]))
+                counts[nOps - 1]++;
+            else
+                newOp(GLYPHS, 1, font);
+            if (nGlyphs == text.length) {
+                int n = 2 * nGlyphs;
+                text = Arrays.copyOf(text, n);
+                chars = Arrays.copyOf(chars, n);
+                glyphX = Arrays.copyOf(glyphX, n);
+                glyphY = Arrays.copyOf(glyphY, n);
+            }
+            text[nGlyphs] = String.valueOf(ch.getChar());
+            chars[nGlyphs] = ch;
+            glyphX[nGlyphs] = x;
+            glyphY[nGlyphs] = y;
+            nGlyphs++;
+        }
+        
+        private void addRect(float x, float y, float w, float h) {
+            newOp(RECT, 0, null);
+            addCoords(4);
+            coords[nCoords - 4] = x;
+            coords[nCoords - 3] = y;
+            coords[nCoords - 2] = w;
+            coords[nCoords - 1] = h;
+        }
+        
+        private void newOp(byte op, int count, Object ref) {
+            if (nOps == ops.length) {
+                int n = 2 * nOps;
+                ops = Arrays.copyOf(ops, n);
+                counts = Arrays.copyOf(counts, n);
+                refs = Arrays.copyOf(refs, n);
+            }
+            ops[nOps] = op;
+            counts[nOps] = count;
+            refs[nOps] = ref;
+            nOps++;
+        }
+        
+        private void addCoords(int n) {
+            if (nCoords + n > coords.length)
+                coords = Arrays.copyOf(coords, 2 * coords.length + n);
+            nCoords += n;
+        }
+    }
+}
@@ -30,11 +30,9 @@ package be.ugent.caagt.jmathtex.box;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
-import java.util.ListIterator;
 
 import be.ugent.caagt.jmathtex.SimpleXmlWriter;
 import be.ugent.caagt.jmathtex.TeXConstants;
-import be.ugent.caagt.jmathtex.TeXFont;
 
 /**
  * A box composed of a horizontal row of child boxes.
@@ -79,13 +77,13 @@ public class HorizontalBox extends Box {
     }
     
     public void draw(Graphics2D g2, float x, float y) {
-        startDraw(g2, x, y);
+        Color prevColor = startDraw(g2, x, y);
         float xPos = x;
         for (Box box: children) {
             box.draw(g2, xPos, y + box.shift);
             xPos += box.getWidth();
         }
-        endDraw(g2);
+        endDraw(g2, prevColor);
     }
     
     // 添加一个盒子到末尾.
@@ -104,16 +102,10 @@ public class HorizontalBox extends Box {
                 + b.shift);
     }
     
-    @SuppressWarnings("unchecked")
-	public int getLastFontId() {
+    public int getLastFontId() {
         // iterate from the last child box to the first untill a font id is found
         // that's not equal to NO_FONT
-        int fontId = TeXFont.NO_FONT;
-        for (ListIterator it = children.listIterator(children.size()); fontId == TeXFont.NO_FONT
-                && it.hasPrevious();)
-            fontId = ((Box) it.previous()).getLastFontId();
-        
-        return fontId;
+        return getLastChildFontId();
     }
 
     public String toString() {
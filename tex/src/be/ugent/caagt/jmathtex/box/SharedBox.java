@@ -0,0 +1,92 @@
+/* SharedBox.java
+ * =========================================================================
+ * This file is part of the JMathTeX Library - http://jmathtex.sourceforge.net
+ *
+ * Copyright (C) 2004-2007 Universiteit Gent
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or (at
+ * your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * A copy of the GNU General Public License can be found in the file
+ * LICENSE.txt provided with the source distribution of this program (see
+ * the META-INF directory in the source jar). This license can also be
+ * found on the GNU website at http://www.gnu.org/licenses/gpl.html.
+ *
+ * If you did not receive a copy of the GNU General Public License along
+ * with this program, contact the lead developer, or write to the Free
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301, USA.
+ *
+ */
+
+package be.ugent.caagt.jmathtex.box;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+
+import be.ugent.caagt.jmathtex.SimpleXmlWriter;
+
+/**
+ * 显示一个共享的 (缓存的) 盒子的盒子.
+ * A box that shows a box from the box cache (see {@link be.ugent.caagt.jmathtex.BoxCache}).
+ * The cached box can be shown by several formulas (and threads) at the same time, so it
+ * must never be changed: parent boxes and atoms change the dimensions, the shift and the
+ * colors of the SharedBox instead, which starts with the dimensions and the shift of the
+ * shared box.
+ */
+public class SharedBox extends Box {
+    
+    // the shared box (not changed after it was created)
+    private final Box box;
+    
+    public SharedBox(Box b) {
+        box = b;
+        width = b.width;
+        height = b.height;
+        depth = b.depth;
+        shift = b.shift;
+    }
+    
+    /**
+     * @return the shared box shown by this box
+     */
+    public Box getSharedBox() {
+        return box;
+    }
+    
+    public void draw(Graphics2D g2, float x, float y) {
+        Color prevColor = startDraw(g2, x, y);
+        box.draw(g2, x, y);
+        endDraw(g2, prevColor);
+    }
+    
+    public int getLastFontId() {
+        return box.getLastFontId();
+    }
+    
+    public String toString() {
+        return "SharedBox{width=" + width + ", height=" + height + ", depth=" + depth + "}";
+    }
+    
+    public void dump() {
+        System.out.println(toString());
+        box.dump();
+    }
+    
+    public void toXml(SimpleXmlWriter sxw, Object hint) {
+        sxw.appendRaw("<SharedBox ");
+        super.addAttr(sxw);
+        sxw.appendRaw(">").ln();
+        
+        box.toXml(sxw, this);
+        
+        sxw.endElement("SharedBox").ln();
+    }
+}
@@ -29,11 +29,9 @@
 package be.ugent.caagt.jmathtex.box;
 
 import java.awt.Graphics2D;
-import java.util.ListIterator;
 
 import be.ugent.caagt.jmathtex.SimpleXmlWriter;
 import be.ugent.caagt.jmathtex.TeXConstants;
-import be.ugent.caagt.jmathtex.TeXFont;
 
 /**
  * A box composed of other boxes, put one above the other.
@@ -92,6 +90,13 @@ public class VerticalBox extends Box {
         recalculateWidth(b);
     }
     
+    /*
+     * the leftmost shift of the children: they're drawn relative to this position
+     */
+    float getLeftMostPos() {
+        return leftMostPos;
+    }
+    
     public void draw(Graphics2D g2, float x, float y) {
         float yPos = y - height;
         for (Box b : children) {
@@ -105,16 +110,10 @@ public class VerticalBox extends Box {
         return children.size();
     }
     
-    @SuppressWarnings("unchecked")
-	public int getLastFontId() {
+    public int getLastFontId() {
         // iterate from the last child box (the lowest) to the first (the highest)
         // untill a font id is found that's not equal to NO_FONT
-        int fontId = TeXFont.NO_FONT;
-        for (ListIterator it = children.listIterator(children.size()); fontId == TeXFont.NO_FONT
-                && it.hasPrevious();)
-            fontId = ((Box) it.previous()).getLastFontId();
-        
-        return fontId;
+        return getLastChildFontId();
     }
 
     public String toString() {
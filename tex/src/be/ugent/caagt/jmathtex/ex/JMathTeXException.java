@@ -35,6 +35,9 @@ package be.ugent.caagt.jmathtex.ex;
  */
 public class JMathTeXException extends RuntimeException {
 
+   // whether the stack trace is filled in when an exception is created
+   private static volatile boolean stackTracesEnabled = true;
+
    protected JMathTeXException(String msg) {
       super(msg);
    }
@@ -42,4 +45,27 @@ public class JMathTeXException extends RuntimeException {
    protected JMathTeXException(String msg, Throwable cause) {
       super(msg, cause);
    }
+
+   /**
+    * Sets whether JMathTeXExceptions created from now on get a stack trace (the
+    * default). Filling in the stack trace is the most expensive part of creating an
+    * exception, so disabling it keeps user errors (like invalid formulas) cheap when
+    * lots of formulas are parsed. The message and the cause are still available.
+    * 
+    * @param enabled whether the stack trace should be filled in
+    */
+   public static void setStackTracesEnabled(boolean enabled) {
+      stackTracesEnabled = enabled;
+   }
+
+   /**
+    * @return whether the stack trace is filled in when a JMathTeXException is created
+    */
+   public static boolean isStackTracesEnabled() {
+      return stackTracesEnabled;
+   }
+
+   public Throwable fillInStackTrace() {
+      return stackTracesEnabled ? super.fillInStackTrace() : this;
+   }
 }
@@ -31,8 +31,10 @@ package be.ugent.caagt.jmathtex.mathml;
 import java.util.List;
 
 import org.jdom.Element;
+import be.ugent.caagt.jmathtex.TeXConstants;
 import be.ugent.caagt.jmathtex.TeXFormula;
-import be.ugent.caagt.jmathtex.ex.JMathTeXException;
+import be.ugent.caagt.jmathtex.atom.Atom;
+import be.ugent.caagt.jmathtex.atom.SymbolAtom;
 
 class MoverParser extends PresentationElementParser {
 
@@ -44,29 +46,31 @@ class MoverParser extends PresentationElementParser {
       if (formulas.size() != 2)
          throw new MathMLException("mover needs exactly 2 child elements!");
 
-      // construct formula
-      try {
+      // construct formula: an accent if the second child represents an accent symbol
+      // (checked beforehand instead of catching the exception addAcc would throw)
+      Atom over = ((TeXFormula) formulas.get(1)).root;
+      if (over instanceof SymbolAtom && over.type == TeXConstants.TYPE_ACCENT)
          return new TeXFormula().addAcc((TeXFormula) formulas.get(0),
                ((TeXFormula) formulas.get(1)));
-      } catch (JMathTeXException e) { // use other methods
-         // get element attribute value
-         String accent = el.getAttributeValue(ACCENT);
 
-         // if attribute value not set, use environment value if set
-         if (accent == null)
-            accent = env.get(ACCENT);
+      // use other methods
+      // get element attribute value
+      String accent = el.getAttributeValue(ACCENT);
 
-         if (accent != null && accent.equals("true"))
-            // units are guaranteed to be valid
-            return ((TeXFormula) formulas.get(0)).putUnderAndOver(null,
-                  ACC_LIM_UNIT, 0, false, (TeXFormula) formulas.get(1), ACC_LIM_UNIT,
-                  ACC_SPACE, false);
-         else if (accent == null || accent.equals("false")) // default
-            return new TeXFormula().addOp((TeXFormula) formulas.get(0), null,
-                  (TeXFormula) formulas.get(1), true);
-         else
-            throw new MathMLException(
-                  "Invalid attribute value for 'accent' : '" + accent + "'!", e);
-      }
+      // if attribute value not set, use environment value if set
+      if (accent == null)
+         accent = env.get(ACCENT);
+
+      if (accent != null && accent.equals("true"))
+         // units are guaranteed to be valid
+         return ((TeXFormula) formulas.get(0)).putUnderAndOver(null,
+               ACC_LIM_UNIT, 0, false, (TeXFormula) formulas.get(1), ACC_LIM_UNIT,
+               ACC_SPACE, false);
+      else if (accent == null || accent.equals("false")) // default
+         return new TeXFormula().addOp((TeXFormula) formulas.get(0), null,
+               (TeXFormula) formulas.get(1), true);
+      else
+         throw new MathMLException(
+               "Invalid attribute value for 'accent' : '" + accent + "'!");
    }
 }
@@ -0,0 +1,153 @@
+package be.ugent.caagt.jmathtex;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import be.ugent.caagt.jmathtex.box.Box;
+import be.ugent.caagt.jmathtex.box.CharBox;
+import be.ugent.caagt.jmathtex.box.VerticalBox;
+
+/**
+ * 比较 DelimiterFactory.create 和原来的 (逐个尝试的) 算法.
+ * Compares DelimiterFactory.create with the original algorithm, that tried the larger
+ * versions one by one and added repeat pieces until the box was tall enough: for all
+ * delimiter symbols, styles and a few font sizes, at random heights and at (and just
+ * around) every height where the original algorithm switches to the next version or
+ * adds a repeat piece, both must create the same box (the same character, or the same
+ * number of pieces with the same dimensions). The same is checked for a subclass of
+ * DefaultTeXFont without larger versions, which mustn't use the cached versions of
+ * DefaultTeXFont. This test is in the package of DelimiterFactory because the
+ * extensions and metrics aren't public.
+ */
+public class DelimiterFactoryTest {
+	private static final String[] SYMBOLS = { "lbrack", "rbrack", "lsqbrack", "rsqbrack",
+			"lbrace", "rbrace", "langle", "rangle", "vert", "Vert", "slash", "backslash",
+			"lfloor", "rfloor", "lceil", "rceil", "sqrt", "uparrow", "downarrow", "updownarrow",
+			"Uparrow", "Downarrow", "Updownarrow", "widehat", "widetilde", "lgroup", "rgroup",
+			"lmoustache", "rmoustache", "bracevert", "arrowvert", "Arrowvert", "overbrace",
+			"underbrace", "int", "sum" };
+
+	private static final float[] SIZES = { 10f, 20f, 23.5f };
+
+	// the largest height tried, in multiples of the font size
+	private static final float MAX_HEIGHT = 4f;
+
+	private static final int RANDOM_HEIGHTS = 300;
+
+	public static void main(String[] args) throws Exception {
+		Random random = new Random(20);
+		long cases = 0, differ = 0;
+		for (float size : SIZES)
+			for (String symbol : SYMBOLS)
+				for (int style = 0; style < 8; style++) {
+					TeXEnvironment env = new TeXEnvironment(style, new DefaultTeXFont(size));
+					try {
+						env.getTeXFont().getChar1(symbol, style);
+					} catch (Exception e) {
+						continue; // not a symbol of this font
+					}
+					TreeSet<Float> heights = new TreeSet<Float>();
+					for (int i = 0; i < RANDOM_HEIGHTS; i++)
+						heights.add(random.nextFloat() * MAX_HEIGHT * size);
+					// the heights of the boxes of the original algorithm, and just around
+					for (float h = 0; h < MAX_HEIGHT * size; h += size / 25) {
+						Box b = original(symbol, env, h);
+						float total = b.getHeight() + b.getDepth();
+						for (float t = total, i = 0; i < 4; i++, t = Math.nextDown(t))
+							heights.add(t);
+						for (float t = total, i = 0; i < 4; i++, t = Math.nextUp(t))
+							heights.add(t);
+						heights.add(total * (1 + 2e-5f));
+						heights.add(total * (1 - 2e-5f));
+					}
+					for (float h : heights) {
+						cases++;
+						String expected = signature(original(symbol, env, h));
+						String result = signature(DelimiterFactory.create(symbol, env, h));
+						if (!expected.equals(result) && ++differ <= 5)
+							System.out.println("FAILED: " + symbol + ", style " + style + ", size "
+									+ size + ", height " + h);
+					}
+				}
+		// a subclass with other glyphs (after DefaultTeXFont's versions were cached)
+		TeXFont noLarger = new DefaultTeXFont(SIZES[1]) {
+			public boolean hasNextLarger(Char c) {
+				return false;
+			}
+		};
+		for (String symbol : SYMBOLS)
+			for (int style = 0; style < 8; style++) {
+				TeXEnvironment env = new TeXEnvironment(style, noLarger);
+				try {
+					noLarger.getChar1(symbol, style);
+				} catch (Exception e) {
+					continue; // not a symbol of this font
+				}
+				for (float h = 0; h < MAX_HEIGHT * SIZES[1]; h += SIZES[1] / 4) {
+					cases++;
+					String expected = signature(original(symbol, env, h));
+					String result = signature(DelimiterFactory.create(symbol, env, h));
+					if (!expected.equals(result) && ++differ <= 10)
+						System.out.println("FAILED: " + symbol + ", style " + style
+								+ ", height " + h + " in a subclass of DefaultTeXFont");
+				}
+			}
+
+		System.out.println(cases + " cases, " + differ + " differ");
+		System.out.println(differ == 0 ? "OK" : "FAILED");
+		if (differ > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * The original DelimiterFactory.create.
+	 */
+	private static Box original(String symbol, TeXEnvironment env, float minHeight) {
+		TeXFont tf = env.getTeXFont();
+		int style = env.getStyle();
+		Char c = tf.getChar1(symbol, style);
+		Metrics m = c.getMetrics();
+		float total = m.getHeight() + m.getDepth();
+		while (total < minHeight && tf.hasNextLarger(c)) {
+			c = tf.getNextLarger(c, style);
+			m = c.getMetrics();
+			total = m.getHeight() + m.getDepth();
+		}
+		if (total >= minHeight)
+			return new CharBox(c);
+		else if (tf.isExtensionChar(c)) {
+			VerticalBox vBox = new VerticalBox();
+			Extension ext = tf.getExtension(c, style);
+			if (ext.hasTop())
+				vBox.add(new CharBox(ext.getTop()));
+			boolean middle = ext.hasMiddle();
+			if (middle)
+				vBox.add(new CharBox(ext.getMiddle()));
+			if (ext.hasBottom())
+				vBox.add(new CharBox(ext.getBottom()));
+			CharBox rep = new CharBox(ext.getRepeat());
+			do {
+				if (ext.hasTop() && ext.hasBottom()) {
+					vBox.add(1, rep);
+					if (middle)
+						vBox.add(vBox.getSize() - 1, rep);
+				} else if (ext.hasBottom())
+					vBox.add(0, rep);
+				else
+					vBox.add(rep);
+			} while (vBox.getHeight() + vBox.getDepth() < minHeight);
+			return vBox;
+		} else
+			return new CharBox(c);
+	}
+
+	/**
+	 * @return the dimensions of the box and its number of pieces, or its character
+	 */
+	private static String signature(Box b) {
+		String s = b.getWidth() + " " + b.getHeight() + " " + b.getDepth();
+		if (b instanceof CharBox)
+			return s + " " + b;
+		return s + " " + ((VerticalBox) b).getSize() + " pieces";
+	}
+}
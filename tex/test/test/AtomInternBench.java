@@ -0,0 +1,86 @@
+package test;
+
+import java.util.Random;
+
+import be.ugent.caagt.jmathtex.TeXFormula;
+import be.ugent.caagt.jmathtex.atom.AtomInterner;
+
+/**
+ * 测量 100000 个公式的 atom 树所占的内存, 使用和不使用 AtomInterner.
+ * Parses a corpus of 100000 textbook-like formulas (built from a few patterns with
+ * random letters and numbers, so the same small subtrees occur many times), keeps
+ * them all in memory and prints the heap used by their atom trees and the parse
+ * time, once without and once with interning the atoms
+ * (TeXFormula.setAtomInterner).
+ */
+public class AtomInternBench {
+	private static final int FORMULAS = 100000;
+
+	private static final String[] PATTERNS = { "x_{#}^{2} + y_{#}^{2} = r^{2}",
+			"\\frac{#}{#} + \\frac{1}{2}", "\\sum_{#=1}^{n} a_{#} x^{#}", "\\sqrt{# + #} \\leq #",
+			"f(#) = # x^{2} + # x + #", "\\int_{0}^{1} # d#", "(# + #)^{2} = #^{2} + 2 # # + #^{2}",
+			"\\alpha_{#} \\beta^{#} - \\frac{\\partial #}{\\partial t}" };
+
+	private static final String[] VARIABLES = { "a", "b", "c", "i", "j", "k", "n", "x", "y", "z",
+			"t", "1", "2", "3", "10", "\\alpha", "\\pi" };
+
+	public static void main(String[] args) throws Exception {
+		String[] corpus = createCorpus();
+
+		long[] plain = measure(corpus);
+		AtomInterner interner = new AtomInterner();
+		TeXFormula.setAtomInterner(interner);
+		long[] interned = measure(corpus);
+		TeXFormula.setAtomInterner(null);
+
+		System.out.println(FORMULAS + " formulas:");
+		System.out.println("  without interning: " + plain[0] / 1024 + " KB, parsed in " + plain[1]
+				+ " ms");
+		System.out.println("  with interning:    " + interned[0] / 1024 + " KB, parsed in "
+				+ interned[1] + " ms (" + interner.size() + " distinct atoms, " + interner.getHits()
+				+ " shared)");
+		System.out.println(String.format("  heap reduction:    %.1f%%", 100.0
+				* (plain[0] - interned[0]) / plain[0]));
+	}
+
+	private static String[] createCorpus() {
+		Random random = new Random(1);
+		String[] corpus = new String[FORMULAS];
+		for (int i = 0; i < FORMULAS; i++) {
+			String p = PATTERNS[random.nextInt(PATTERNS.length)];
+			StringBuilder buf = new StringBuilder();
+			for (int j = 0; j < p.length(); j++)
+				if (p.charAt(j) == '#')
+					buf.append(VARIABLES[random.nextInt(VARIABLES.length)]);
+				else
+					buf.append(p.charAt(j));
+			corpus[i] = buf.toString();
+		}
+		return corpus;
+	}
+
+	/**
+	 * @return the heap used by the parsed formulas (in bytes) and the parse time (in ms)
+	 */
+	private static long[] measure(String[] corpus) throws Exception {
+		long before = usedMemory();
+		long time = System.nanoTime();
+		TeXFormula[] formulas = new TeXFormula[corpus.length];
+		for (int i = 0; i < corpus.length; i++)
+			formulas[i] = new TeXFormula(corpus[i]);
+		time = (System.nanoTime() - time) / 1000000;
+		long used = usedMemory() - before;
+		if (formulas[corpus.length - 1] == null) // keep the formulas alive until here
+			throw new IllegalStateException();
+		return new long[] { used, time };
+	}
+
+	private static long usedMemory() throws InterruptedException {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+}
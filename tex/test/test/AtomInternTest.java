@@ -0,0 +1,152 @@
+package test;
+
+import java.awt.Color;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import be.ugent.caagt.jmathtex.DefaultTeXFont;
+import be.ugent.caagt.jmathtex.TeXConstants;
+import be.ugent.caagt.jmathtex.TeXEnvironment;
+import be.ugent.caagt.jmathtex.TeXFormula;
+import be.ugent.caagt.jmathtex.atom.Atom;
+import be.ugent.caagt.jmathtex.atom.AtomInterner;
+import be.ugent.caagt.jmathtex.atom.CharAtom;
+import be.ugent.caagt.jmathtex.atom.RowAtom;
+import be.ugent.caagt.jmathtex.box.Box;
+
+/**
+ * 检查 AtomInterner 不修改给定的 atom 树.
+ * Interns the atom trees of formulas whose subtrees were interned before (from an
+ * equal formula), and checks that the given tree isn't changed: it still consists of
+ * the same atom objects, while the interned tree is structurally equal to it, has the
+ * same size and only contains immutable rows. Also checks that a mutable row is copied, and that
+ * TeXFormula.setAtomInterner replaces the predefined formulas by their interned roots
+ * (\ne and \neq are equal).
+ */
+public class AtomInternTest {
+	// the number of formulas created by create(int)
+	private static final int FORMULAS = 16;
+
+	public static void main(String[] args) throws Exception {
+		boolean ok = true;
+		AtomInterner interner = new AtomInterner();
+		for (int i = 0; i < FORMULAS; i++) {
+			interner.intern(create(i).root);
+
+			Atom root = create(i).root;
+			String s = "formula " + i;
+			List<Atom> before = atoms(root);
+			int hash = root.structuralHash();
+			String size = size(root);
+			Atom interned = interner.intern(root);
+			if (!identical(before, atoms(root)) || hash != root.structuralHash()) {
+				System.out.println("FAILED: " + s + ": the given tree was changed");
+				ok = false;
+			}
+			if (!interned.structurallyEquals(root) || !size.equals(size(interned))
+					|| interned != interner.intern(create(i).root)) {
+				System.out.println("FAILED: " + s + ": the interned tree isn't equal or not shared");
+				ok = false;
+			}
+			for (Atom a : atoms(interned))
+				if (a instanceof RowAtom && !((RowAtom) a).isImmutable()) {
+					System.out.println("FAILED: " + s + ": an interned row is mutable");
+					ok = false;
+				}
+		}
+
+		RowAtom row = new RowAtom(new CharAtom('x', null));
+		Atom interned = interner.intern(row);
+		row.add(new CharAtom('y', null));
+		if (interned == row || !interned.structurallyEquals(new RowAtom(new CharAtom('x', null)))) {
+			System.out.println("FAILED: a mutable row was interned itself");
+			ok = false;
+		}
+
+		TeXFormula.setAtomInterner(new AtomInterner());
+		try {
+			if (TeXFormula.get("ne").root != TeXFormula.get("neq").root
+					|| new TeXFormula("\\ne").root != TeXFormula.get("neq").root) {
+				System.out.println("FAILED: the predefined formulas weren't replaced");
+				ok = false;
+			}
+		} finally {
+			TeXFormula.setAtomInterner(null);
+		}
+
+		System.out.println(FORMULAS + " formulas interned, " + interner);
+		System.out.println(ok ? "OK" : "FAILED");
+		if (!ok)
+			System.exit(1);
+	}
+
+	/**
+	 * Creates a new formula (a new atom tree) for each index, together containing all
+	 * the kinds of atoms with child atoms.
+	 */
+	private static TeXFormula create(int i) throws Exception {
+		switch (i) {
+		case 0: return new TeXFormula("x");
+		case 1: return new TeXFormula("x + y");
+		case 2: return new TeXFormula("\\frac{a}{b} + \\frac{1}{2}");
+		case 3: return new TeXFormula("\\sqrt{x_1^2 + y^{2}}");
+		case 4: return new TeXFormula("\\sum_{i=1}^n a_i");
+		case 5: return new TeXFormula("\\hat{x} \\ne \\vec{y}");
+		case 6: return new TeXFormula("ab").overline().add(new TeXFormula("c").underline());
+		case 7: return new TeXFormula("x").setColor(Color.RED).setBackground(Color.YELLOW);
+		case 8: return new TeXFormula("a+b").makePhantom(true, false, true);
+		case 9: return new TeXFormula("x").setFixedTypes(TeXConstants.TYPE_RELATION,
+				TeXConstants.TYPE_RELATION).centerOnAxis();
+		case 10: return new TeXFormula("a").embrace('(', ')');
+		case 11: return new TeXFormula("ab").putDelimiterOver(TeXConstants.DELIM_BRACE, "n",
+				TeXConstants.UNIT_EX, 0.5f);
+		case 12: return new TeXFormula("x").putUnderAndOver("0", TeXConstants.UNIT_EX, 0.3f, true,
+				"1", TeXConstants.UNIT_EX, 0.3f, true);
+		case 13: return new TeXFormula().addOp(new TeXFormula("\\sum"), new TeXFormula("i"),
+				new TeXFormula("n"), true);
+		case 14: return new TeXFormula("x").nthRoot("3").addFraction("a", "b", false);
+		default: return new TeXFormula().addAcc("xy", "widehat");
+		}
+	}
+
+	// all the atoms of the tree (with their child atoms found by reflection), in order
+	private static List<Atom> atoms(Atom root) throws IllegalAccessException {
+		List<Atom> res = new ArrayList<Atom>();
+		addAtoms(root, res);
+		return res;
+	}
+
+	private static void addAtoms(Object o, List<Atom> res) throws IllegalAccessException {
+		if (o instanceof List<?>)
+			for (Object el : (List<?>) o)
+				addAtoms(el, res);
+		else if (o instanceof Atom) {
+			res.add((Atom) o);
+			for (Class<?> c = o.getClass(); c != Atom.class; c = c.getSuperclass())
+				for (Field f : c.getDeclaredFields())
+					if (!Modifier.isStatic(f.getModifiers())
+							&& (Atom.class.isAssignableFrom(f.getType()) || f.getType() == List.class)) {
+						f.setAccessible(true);
+						addAtoms(f.get(o), res);
+					}
+		}
+	}
+
+	private static boolean identical(List<Atom> a, List<Atom> b) {
+		if (a.size() != b.size())
+			return false;
+		for (int i = 0; i < a.size(); i++)
+			if (a.get(i) != b.get(i))
+				return false;
+		return true;
+	}
+
+	// the size of the box of the formula with the given root
+	private static String size(Atom root) {
+		Box b = root.createBox(new TeXEnvironment(TeXConstants.STYLE_DISPLAY,
+				new DefaultTeXFont(20f)));
+		return b.getWidth() + " x " + b.getHeight() + " + " + b.getDepth();
+	}
+}
@@ -0,0 +1,176 @@
+package test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import be.ugent.caagt.jmathtex.BoxCache;
+import be.ugent.caagt.jmathtex.DefaultTeXFont;
+import be.ugent.caagt.jmathtex.TeXConstants;
+import be.ugent.caagt.jmathtex.TeXEnvironment;
+import be.ugent.caagt.jmathtex.TeXFormula;
+import be.ugent.caagt.jmathtex.TeXIcon;
+import be.ugent.caagt.jmathtex.box.Box;
+
+/**
+ * 比较使用和不使用盒子缓存时的布局结果和速度.
+ * Lays out a "document" of formulas that repeat the same sub-expressions, without and
+ * with a BoxCache (TeXFormula.setBoxCache): checks that the boxes have the same
+ * dimensions and that the icons are painted the same, and prints the hit rate of the
+ * cache and the time per layout of the document. Then checks that parsing and laying
+ * out nested fractions and groups with the cache (but without an AtomInterner) stays
+ * linear in the nesting depth: the time per level at depth 1000 may not be much
+ * larger than at depth 10.
+ */
+public class BoxCacheTest {
+	private static final String[] FORMULAS = { "\\frac{1}{2} + x_i^2",
+			"(a+b)^2 = a^2 + 2ab + b^2", "\\sum_{i=1}^n x_i^2 \\leq \\frac{1}{2}",
+			"\\frac{\\frac{1}{2}}{x_i^2 + y_i^2}", "e^{-x^2} \\frac{1}{2} \\sqrt{x_i^2+1}",
+			"\\int_0^{\\infty} e^{-x^2} dx", "[x_i, x_{i+1}] \\frac{a+b}{c}" };
+
+	// how many times each formula occurs in the document
+	private static final int REPEAT = 20;
+
+	private static final int ROUNDS = 200;
+
+	private static final int[] DEPTHS = { 10, 100, 1000 };
+
+	// how much larger the time per level at the largest depth may be than at the smallest
+	private static final int NESTING_FACTOR = 10;
+
+	public static void main(String[] args) throws Exception {
+		TeXFormula[] doc = new TeXFormula[(FORMULAS.length + 3) * REPEAT];
+		for (int i = 0; i < doc.length; i++)
+			doc[i] = createFormula(i % (FORMULAS.length + 3));
+		DefaultTeXFont font = new DefaultTeXFont(20f);
+
+		// the results without the cache
+		float[][] dims = new float[doc.length][];
+		int[][] pixels = new int[doc.length][];
+		for (int i = 0; i < doc.length; i++) {
+			dims[i] = dimensions(doc[i].createBox(new TeXEnvironment(TeXConstants.STYLE_DISPLAY, font)));
+			pixels[i] = paint(doc[i].createTeXIcon(TeXConstants.STYLE_DISPLAY, 20f));
+		}
+		long uncached = time(doc, font);
+
+		BoxCache cache = new BoxCache(1000);
+		TeXFormula.setBoxCache(cache);
+		int errors = 0;
+		for (int i = 0; i < doc.length; i++) {
+			if (!Arrays.equals(dims[i], dimensions(doc[i].createBox(new TeXEnvironment(
+					TeXConstants.STYLE_DISPLAY, font))))) {
+				System.out.println("FAILED: the box of " + doc[i]);
+				errors++;
+			}
+			if (!Arrays.equals(pixels[i], paint(doc[i].createTeXIcon(TeXConstants.STYLE_DISPLAY, 20f)))) {
+				System.out.println("FAILED: the icon of " + doc[i]);
+				errors++;
+			}
+		}
+		System.out.println(cache + String.format(", hit rate %.1f%%", 100 * cache.getHitRate()));
+		long cached = time(doc, font);
+
+		// deeply nested formulas need a larger stack than the main thread has
+		final long[] perLevel = new long[DEPTHS.length];
+		final BoxCache c = cache;
+		final DefaultTeXFont f = font;
+		Thread t = new Thread(null, new Runnable() {
+			public void run() {
+				for (int d : DEPTHS) // warm up
+					timeNested(d, c, f);
+				for (int i = 0; i < DEPTHS.length; i++)
+					perLevel[i] = timeNested(DEPTHS[i], c, f) / DEPTHS[i];
+			}
+		}, "nesting", 1 << 28);
+		t.start();
+		t.join();
+		for (int i = 0; i < DEPTHS.length; i++)
+			System.out.println("depth " + DEPTHS[i] + ": " + perLevel[i] + " ns/level");
+		if (perLevel[DEPTHS.length - 1] > NESTING_FACTOR * perLevel[0]) {
+			System.out.println("FAILED: the layout time grows faster than the nesting depth");
+			errors++;
+		}
+		TeXFormula.setBoxCache(null);
+
+		System.out.println(doc.length + " formulas: " + uncached / 1000 + " us/layout without cache, "
+				+ cached / 1000 + " us/layout with cache");
+		System.out.println(errors == 0 ? "OK" : "FAILED");
+		if (errors > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * @return the n-th formula: one of FORMULAS, a fenced fraction, a colored fraction
+	 *         or a fraction with a thick line
+	 */
+	private static TeXFormula createFormula(int n) throws Exception {
+		if (n < FORMULAS.length)
+			return new TeXFormula(FORMULAS[n]);
+		n -= FORMULAS.length;
+		if (n == 0)
+			return new TeXFormula().addEmbraced(new TeXFormula("\\frac{a+b}{c}"), '(', ')')
+					.add("+ x_i");
+		else if (n == 1)
+			return new TeXFormula("x_i + ").add(new TeXFormula("\\frac{1}{2}").setColor(Color.red));
+		else
+			return new TeXFormula("\\frac{1}{2} = ").add(new TeXFormula("1").fraction(
+					new TeXFormula("2"), TeXConstants.UNIT_POINT, 1.5f));
+	}
+
+	/**
+	 * @return the average time (in ns) to lay out the whole document (after a warm up)
+	 */
+	private static long time(TeXFormula[] doc, DefaultTeXFont font) {
+		long start = 0;
+		for (int r = -ROUNDS; r < ROUNDS; r++) {
+			if (r == 0)
+				start = System.nanoTime();
+			for (TeXFormula f : doc)
+				f.createBox(new TeXEnvironment(TeXConstants.STYLE_DISPLAY, font));
+		}
+		return (System.nanoTime() - start) / ROUNDS;
+	}
+
+	/**
+	 * @return the average time (in ns) to parse and lay out new nested formulas
+	 *         (\frac{1}{1+\frac{1}{1+...x}} and {a+{a+...a}}) of the given depth, with
+	 *         an empty cache
+	 */
+	private static long timeNested(int depth, BoxCache cache, DefaultTeXFont font) {
+		StringBuilder fraction = new StringBuilder(), groups = new StringBuilder();
+		for (int i = 0; i < depth; i++) {
+			fraction.append("\\frac{1}{1+");
+			groups.append("{a+");
+		}
+		fraction.append('x');
+		groups.append('a');
+		for (int i = 0; i < depth; i++) {
+			fraction.append('}');
+			groups.append('}');
+		}
+		int rounds = 20000 / depth;
+		long start = System.nanoTime();
+		for (int r = 0; r < rounds; r++) {
+			cache.clear();
+			new TeXFormula(fraction.toString()).createBox(new TeXEnvironment(
+					TeXConstants.STYLE_DISPLAY, font));
+			new TeXFormula(groups.toString()).createBox(new TeXEnvironment(
+					TeXConstants.STYLE_DISPLAY, font));
+		}
+		return (System.nanoTime() - start) / rounds;
+	}
+
+	private static float[] dimensions(Box b) {
+		return new float[] { b.getWidth(), b.getHeight(), b.getDepth(), b.getShift() };
+	}
+
+	private static int[] paint(TeXIcon icon) {
+		BufferedImage img = new BufferedImage(icon.getIconWidth(), icon.getIconHeight(),
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2 = img.createGraphics();
+		icon.paintIcon(Color.black, g2, 0, 0);
+		g2.dispose();
+		return img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+	}
+}
@@ -0,0 +1,100 @@
+package test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import be.ugent.caagt.jmathtex.DefaultTeXFont;
+import be.ugent.caagt.jmathtex.SimpleXmlWriter;
+import be.ugent.caagt.jmathtex.TeXConstants;
+import be.ugent.caagt.jmathtex.TeXEnvironment;
+import be.ugent.caagt.jmathtex.TeXFormula;
+import be.ugent.caagt.jmathtex.TeXIcon;
+import be.ugent.caagt.jmathtex.box.Box;
+
+/**
+ * 64 个线程同时布局和绘制同一个公式.
+ * Stress test for sharing formulas between threads: 64 threads lay out the same
+ * TeXFormula (in the same TeXEnvironment) and paint the same TeXIcon, half of them in
+ * black and half of them in blue, and compare every result with the one of a single
+ * thread.
+ */
+public class ConcurrentLayoutTest {
+	private static final int THREADS = 64;
+
+	private static final int ROUNDS = 200;
+
+	private static final Color[] FOREGROUNDS = { Color.black, Color.blue };
+
+	public static void main(String[] args) throws Exception {
+		final TeXFormula formula = new TeXFormula("\\frac{a+b}{\\sqrt{x^2+1}} \\sum_{i=1}^n x_i");
+		formula.add(new TeXFormula("\\int_0^{\\infty} e^{-x}dx").setColor(Color.red)
+				.setBackground(Color.yellow));
+		formula.add("\\mathrm{ffi} AV \\ne [x]");
+		final TeXEnvironment env = new TeXEnvironment(TeXConstants.STYLE_DISPLAY,
+				new DefaultTeXFont(20f));
+		final TeXIcon icon = formula.createTeXIcon(TeXConstants.STYLE_DISPLAY, 20f);
+
+		// the results of a single thread
+		final String box = toXml(formula.createBox(env));
+		final int[][] pixels = new int[FOREGROUNDS.length][];
+		for (int i = 0; i < FOREGROUNDS.length; i++)
+			pixels[i] = paint(icon, FOREGROUNDS[i]);
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+		for (int t = 0; t < THREADS; t++) {
+			final int color = t % FOREGROUNDS.length;
+			results.add(executor.submit(new Callable<Integer>() {
+				public Integer call() throws Exception {
+					start.await();
+					int errors = 0;
+					for (int r = 0; r < ROUNDS; r++) {
+						if (!box.equals(toXml(formula.createBox(env))))
+							errors++;
+						if (!Arrays.equals(pixels[color], paint(icon, FOREGROUNDS[color])))
+							errors++;
+					}
+					return errors;
+				}
+			}));
+		}
+		long time = System.nanoTime();
+		start.countDown();
+		int errors = 0;
+		for (Future<Integer> f : results)
+			errors += f.get();
+		time = System.nanoTime() - time;
+		executor.shutdown();
+
+		System.out.println(THREADS + " threads x " + ROUNDS + " layouts and paintings: " + errors
+				+ " errors (" + time / 1000000 + " ms)");
+		System.out.println(errors == 0 ? "OK" : "FAILED");
+		if (errors > 0)
+			System.exit(1);
+	}
+
+	private static String toXml(Box b) {
+		SimpleXmlWriter sxw = new SimpleXmlWriter();
+		b.toXml(sxw, null);
+		return sxw.toString();
+	}
+
+	private static int[] paint(TeXIcon icon, Color foreground) {
+		BufferedImage img = new BufferedImage(icon.getIconWidth(), icon.getIconHeight(),
+				BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2 = img.createGraphics();
+		icon.paintIcon(foreground, g2, 0, 0);
+		g2.dispose();
+		return img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+	}
+}
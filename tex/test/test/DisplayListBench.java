@@ -0,0 +1,140 @@
+package test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import be.ugent.caagt.jmathtex.DefaultTeXFont;
+import be.ugent.caagt.jmathtex.TeXConstants;
+import be.ugent.caagt.jmathtex.TeXEnvironment;
+import be.ugent.caagt.jmathtex.TeXFormula;
+import be.ugent.caagt.jmathtex.box.Box;
+import be.ugent.caagt.jmathtex.box.DisplayList;
+import be.ugent.caagt.jmathtex.box.HorizontalBox;
+
+/**
+ * 比较直接绘制盒子树和绘制编译后的绘制列表 (结果和速度).
+ * Paints a set of formulas (like a scrolling view repainting them) once by drawing
+ * their box trees and once from their compiled display lists: checks that both give
+ * the same pixels and prints the time per repaint of all the formulas, and the time
+ * to compile the display lists. One of the boxes is a subclass of HorizontalBox with
+ * its own draw method, which the display list must call.
+ */
+public class DisplayListBench {
+	private static final String[] FORMULAS = { "\\frac{a+b}{\\sqrt{x^2+1}}",
+			"\\sum_{i=1}^n x_i^2 \\leq \\prod_{k} y_k", "\\int_0^{\\infty} e^{-x}dx",
+			"\\mathrm{ffi fl} AV \\hat{x} \\vec{a}", "(\\frac{a}{b})^2 \\ne [x]",
+			"x_{i}^{2} + y_{i}^{2} = r^{2}", "f(x) = a x^{2} + b x + c" };
+
+	private static final float SIZE = 16f;
+
+	private static final int ROUNDS = 300;
+
+	public static void main(String[] args) throws Exception {
+		Box[] boxes = new Box[FORMULAS.length + 2];
+		DefaultTeXFont font = new DefaultTeXFont(SIZE);
+		for (int i = 0; i < FORMULAS.length; i++)
+			boxes[i] = new TeXFormula(FORMULAS[i]).createBox(new TeXEnvironment(
+					TeXConstants.STYLE_DISPLAY, font));
+		// colors and a background
+		boxes[FORMULAS.length] = new TeXFormula("a + ").add(new TeXFormula("\\frac{1}{2}")
+				.setColor(Color.red).setBackground(Color.yellow)).add("+ b").createBox(
+				new TeXEnvironment(TeXConstants.STYLE_DISPLAY, font));
+		// a subclass with its own draw method
+		boxes[FORMULAS.length + 1] = new FramedBox(new TeXFormula("x+y").createBox(
+				new TeXEnvironment(TeXConstants.STYLE_DISPLAY, font)));
+
+		BufferedImage img = new BufferedImage(400, 60 * boxes.length, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2 = img.createGraphics();
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g2.scale(SIZE, SIZE);
+
+		int[] tree = paintTrees(img, g2, boxes);
+		long start = System.nanoTime();
+		DisplayList[] lists = new DisplayList[boxes.length];
+		for (int r = 0; r < ROUNDS; r++)
+			for (int i = 0; i < boxes.length; i++)
+				lists[i] = DisplayList.compile(boxes[i], 1, y(i));
+		long compile = (System.nanoTime() - start) / ROUNDS;
+		int[] list = paintLists(img, g2, lists);
+		boolean ok = Arrays.equals(tree, list);
+		int ops = 0, glyphs = 0;
+		for (DisplayList l : lists) {
+			ops += l.size();
+			glyphs += l.getGlyphCount();
+		}
+
+		// warm up, then time (painting over the same image)
+		for (int r = 0; r < ROUNDS; r++) {
+			drawTrees(g2, boxes);
+			drawLists(g2, lists);
+		}
+		start = System.nanoTime();
+		for (int r = 0; r < ROUNDS; r++)
+			drawTrees(g2, boxes);
+		long treeTime = (System.nanoTime() - start) / ROUNDS;
+		start = System.nanoTime();
+		for (int r = 0; r < ROUNDS; r++)
+			drawLists(g2, lists);
+		long listTime = (System.nanoTime() - start) / ROUNDS;
+		g2.dispose();
+
+		System.out.println(boxes.length + " formulas, " + glyphs + " glyphs, " + ops
+				+ " display list operations (compiled in " + compile / 1000 + " us)");
+		System.out.println("  box trees:     " + treeTime / 1000 + " us/repaint");
+		System.out.println("  display lists: " + listTime / 1000 + " us/repaint");
+		System.out.println(ok ? "OK" : "FAILED: the pixels differ");
+		if (!ok)
+			System.exit(1);
+	}
+
+	private static float y(int i) {
+		return (60 * i + 40) / SIZE;
+	}
+
+	private static void drawTrees(Graphics2D g2, Box[] boxes) {
+		for (int i = 0; i < boxes.length; i++)
+			boxes[i].draw(g2, 1, y(i));
+	}
+
+	private static void drawLists(Graphics2D g2, DisplayList[] lists) {
+		for (DisplayList l : lists)
+			l.paint(g2);
+	}
+
+	private static int[] paintTrees(BufferedImage img, Graphics2D g2, Box[] boxes) {
+		clear(g2, img);
+		drawTrees(g2, boxes);
+		return img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+	}
+
+	private static int[] paintLists(BufferedImage img, Graphics2D g2, DisplayList[] lists) {
+		clear(g2, img);
+		drawLists(g2, lists);
+		return img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+	}
+
+	/**
+	 * A horizontal box that draws a frame around its child boxes.
+	 */
+	private static class FramedBox extends HorizontalBox {
+
+		FramedBox(Box b) {
+			super(b);
+		}
+
+		public void draw(Graphics2D g2, float x, float y) {
+			super.draw(g2, x, y);
+			g2.draw(new Rectangle2D.Float(x, y - height, width, height + depth));
+		}
+	}
+
+	private static void clear(Graphics2D g2, BufferedImage img) {
+		g2.setColor(Color.white);
+		g2.fillRect(0, 0, img.getWidth(), img.getHeight());
+		g2.setColor(Color.black);
+	}
+}
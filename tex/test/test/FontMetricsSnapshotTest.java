@@ -0,0 +1,40 @@
+package test;
+
+import java.util.List;
+
+import be.ugent.caagt.jmathtex.FontMetricsSnapshot;
+
+/**
+ * 检查 DefaultTeXFont.bin 与 DefaultTeXFont.xml 给出完全相同的字体信息.
+ * Checks that the binary snapshot "DefaultTeXFont.bin" and the XML-file it was
+ * compiled from give identical font information (parameters, mappings, metrics,
+ * kerns, ligatures, extensions and next larger characters), and prints the time
+ * each loader takes.
+ */
+public class FontMetricsSnapshotTest {
+
+	public static void main(String[] args) throws Exception {
+		long start = System.nanoTime();
+		FontMetricsSnapshot xml = FontMetricsSnapshot.parseXML();
+		long xmlTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		FontMetricsSnapshot bin = FontMetricsSnapshot.load();
+		long binTime = System.nanoTime() - start;
+		if (bin == null) {
+			System.out.println("FAILED: no up to date " + FontMetricsSnapshot.RESOURCE_NAME
+					+ ", compile it with FontMetricsSnapshot.main");
+			System.exit(1);
+		}
+
+		List<String> diffs = xml.compare(bin);
+		for (String diff : diffs)
+			System.out.println(diff);
+		System.out.println("XML: " + xmlTime / 1000000 + " ms, binary: " + binTime / 1000000 + " ms");
+		if (!diffs.isEmpty()) {
+			System.out.println("FAILED: " + diffs.size() + " differences");
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+}
@@ -0,0 +1,104 @@
+package test;
+
+import be.ugent.caagt.jmathtex.CharFont;
+import be.ugent.caagt.jmathtex.DefaultTeXFont;
+import be.ugent.caagt.jmathtex.FontInfo;
+import be.ugent.caagt.jmathtex.FontRegistry;
+import be.ugent.caagt.jmathtex.TeXConstants;
+
+/**
+ * 测量 10 个注册字体 (4 个默认字体 + 6 个大的 Unicode 字体) 的字形表所占的内存.
+ * Registers 6 synthetic Unicode fonts (a few thousand code points each, spread
+ * over several Unicode blocks) next to the 4 default fonts, looks up every glyph
+ * in every style and prints the heap used by the glyph tables of the 10 fonts,
+ * compared to the size of dense 65536-entry tables.
+ */
+public class FontRegistryMemoryBench {
+	// the Unicode blocks of the synthetic fonts: { first, last }
+	private static final int[][] BLOCKS = { { 0x0020, 0x024F }, // Latin
+			{ 0x0370, 0x03FF }, // Greek
+			{ 0x0400, 0x04FF }, // Cyrillic
+			{ 0x2100, 0x214F }, // letterlike symbols
+			{ 0x2190, 0x22FF }, // arrows, mathematical operators
+			{ 0x27C0, 0x27EF }, // miscellaneous mathematical symbols
+			{ 0x4E00, 0x5DFF }, // CJK (part)
+			{ 0xFF01, 0xFF5E } }; // fullwidth forms
+
+	private static final int EXTRA_FONTS = 6;
+
+	// the tables of a FontInfo (metrics, ligatures, kerns, next larger, extensions)
+	// and the glyphs of the 3 size classes
+	private static final int TABLES = 7 + 3;
+
+	public static void main(String[] args) throws Exception {
+		DefaultTeXFont font = new DefaultTeXFont(20f);
+		int defaults = FontRegistry.size();
+		long before = usedMemory();
+
+		int glyphs = 0;
+		for (int f = 0; f < EXTRA_FONTS; f++) {
+			final FontInfo info = createFont(FontRegistry.size(), f);
+			FontRegistry.register(new FontRegistry.FontLoader() {
+				public FontInfo load(int fontId) {
+					return info;
+				}
+			});
+		}
+		for (int id = 0; id < FontRegistry.size(); id++)
+			glyphs += lookupAll(font, id);
+		long used = usedMemory() - before;
+
+		int fonts = FontRegistry.size();
+		long dense = (long) fonts * TABLES * 65536 * 4;
+		System.out.println(fonts + " fonts (" + defaults + " default), " + glyphs + " glyphs");
+		System.out.println("  glyph tables:        " + used / 1024 + " KB (" + used / glyphs
+				+ " bytes/glyph, including the metrics)");
+		System.out.println("  dense 65536 entries: " + dense / 1024 + " KB (references only)");
+	}
+
+	/**
+	 * Creates a font with every (1 + f / 2)-th code point of the blocks, a kern for
+	 * each pair of adjacent capitals and a next larger version of each arrow. The font
+	 * files don't exist: the fonts are only used for lookups, they can't be painted.
+	 */
+	private static FontInfo createFont(int id, int f) {
+		FontInfo.Builder info = new FontInfo.Builder(id, "unicode" + f + ".ttf", 0.43f, 0.33f,
+				1f);
+		for (int[] block : BLOCKS)
+			for (int c = block[0] + f % 2; c <= block[1]; c += 1 + f / 2) {
+				info.setMetrics((char) c, new float[] { 0.5f + c % 7 / 10f, 0.7f, 0.2f, 0f });
+				if (Character.isUpperCase(c) && Character.isUpperCase(c + 1))
+					info.addKern((char) c, (char) (c + 1), -0.03f);
+				if (c >= 0x2190 && c < 0x2200)
+					info.setNextLarger((char) c, (char) c, id);
+			}
+		return info.build();
+	}
+
+	/**
+	 * Looks up all glyphs of the font in the text, script and script script
+	 * style and returns the number of different characters.
+	 */
+	private static int lookupAll(DefaultTeXFont font, int id) throws Exception {
+		FontInfo info = FontRegistry.get(id);
+		int n = 0;
+		for (int c = 0; c < 65536; c++)
+			if (info.getMetrics((char) c) != null) {
+				CharFont cf = new CharFont((char) c, id);
+				font.getChar2(cf, TeXConstants.STYLE_TEXT);
+				font.getChar2(cf, TeXConstants.STYLE_SCRIPT);
+				font.getChar2(cf, TeXConstants.STYLE_SCRIPT_SCRIPT);
+				n++;
+			}
+		return n;
+	}
+
+	private static long usedMemory() throws InterruptedException {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+}
@@ -0,0 +1,99 @@
+package test;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import be.ugent.caagt.jmathtex.CharFont;
+import be.ugent.caagt.jmathtex.DefaultTeXFont;
+import be.ugent.caagt.jmathtex.FontInfo;
+import be.ugent.caagt.jmathtex.FontRegistry;
+import be.ugent.caagt.jmathtex.TeXConstants;
+import be.ugent.caagt.jmathtex.box.CharBox;
+
+/**
+ * 注册其他字体 (给出 java.awt.Font 或字体文件的 url) 并绘制.
+ * Registers copies of cmr10 that are not resources of the library: one with the
+ * java.awt.Font itself and one with the url of a temporary TrueType file, both with a
+ * name that doesn't exist. Their capitals must be painted exactly like those of the
+ * default cmr10 font.
+ */
+public class FontRegistryTest {
+	// the id of cmr10 in DefaultTeXFont.xml
+	private static final int CMR10 = 1;
+
+	private static final float SIZE = 60f;
+
+	public static void main(String[] args) throws Exception {
+		DefaultTeXFont tf = new DefaultTeXFont(SIZE);
+		FontInfo cmr10 = FontRegistry.get(CMR10);
+
+		Font font = cmr10.getFont();
+		final FontInfo given = copy(cmr10, new FontInfo.Builder(FontRegistry.size(), "given.ttf",
+				font, cmr10.getXHeight(1f), cmr10.getSpace(1f), cmr10.getQuad(1f)));
+		int givenId = register(given);
+
+		File file = File.createTempFile("cmr10", ".ttf");
+		file.deleteOnExit();
+		InputStream in = DefaultTeXFont.class.getResourceAsStream("cmr10.ttf");
+		OutputStream out = new FileOutputStream(file);
+		byte[] buf = new byte[4096];
+		for (int n = in.read(buf); n > 0; n = in.read(buf))
+			out.write(buf, 0, n);
+		in.close();
+		out.close();
+		final FontInfo fromUrl = copy(cmr10, new FontInfo.Builder(FontRegistry.size(),
+				file.toURI().toURL(), cmr10.getXHeight(1f), cmr10.getSpace(1f),
+				cmr10.getQuad(1f)));
+		int urlId = register(fromUrl);
+
+		boolean ok = given.getFont() == font;
+		if (!ok)
+			System.out.println("FAILED: the given font isn't used");
+		int painted = 0;
+		for (char c = 'A'; c <= 'Z'; c++) {
+			int[] expected = paint(tf, new CharFont(c, CMR10));
+			for (int id : new int[] { givenId, urlId })
+				if (!Arrays.equals(expected, paint(tf, new CharFont(c, id)))) {
+					System.out.println("FAILED: '" + c + "' of font " + FontRegistry.get(id)
+							+ " is painted differently");
+					ok = false;
+				}
+			painted++;
+		}
+		System.out.println(painted + " characters in 2 registered fonts");
+		System.out.println(ok ? "OK" : "FAILED");
+		if (!ok)
+			System.exit(1);
+	}
+
+	private static FontInfo copy(FontInfo from, FontInfo.Builder to) {
+		for (char c = 'A'; c <= 'Z'; c++)
+			to.setMetrics(c, from.getMetrics(c));
+		return to.build();
+	}
+
+	private static int register(final FontInfo info) {
+		return FontRegistry.register(new FontRegistry.FontLoader() {
+			public FontInfo load(int fontId) {
+				return info;
+			}
+		});
+	}
+
+	// the pixels of the character painted in text style
+	private static int[] paint(DefaultTeXFont tf, CharFont cf) {
+		BufferedImage img = new BufferedImage(80, 80, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2 = img.createGraphics();
+		g2.setColor(Color.BLACK);
+		new CharBox(tf.getChar2(cf, TeXConstants.STYLE_TEXT)).draw(g2, 10, 60);
+		g2.dispose();
+		return img.getRGB(0, 0, 80, 80, null, 0, 80);
+	}
+}
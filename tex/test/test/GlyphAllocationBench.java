@@ -0,0 +1,48 @@
+package test;
+
+import java.lang.management.ManagementFactory;
+
+import be.ugent.caagt.jmathtex.DefaultTeXFont;
+import be.ugent.caagt.jmathtex.TeXConstants;
+import be.ugent.caagt.jmathtex.TeXEnvironment;
+import be.ugent.caagt.jmathtex.TeXFormula;
+
+/**
+ * 测量为一个含 500 个字形的公式创建盒子时分配的内存.
+ * Measures the bytes allocated (and the time) per createBox of a formula with 500
+ * glyphs (letters, digits and symbols, half of them in scripts), to see how much
+ * garbage the glyph lookups in the font produce.
+ */
+public class GlyphAllocationBench {
+	private static final int GLYPHS = 500;
+
+	private static final int ROUNDS = 2000;
+
+	public static void main(String[] args) throws Exception {
+		// 250 times "x_1" or "a^2" or "+" ... : 500 glyphs
+		String[] parts = { "x_1", "a^2", "b+", "3=", "y_k", "\\alpha^n" };
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < GLYPHS / 2; i++)
+			buf.append(parts[i % parts.length]);
+		TeXFormula f = new TeXFormula(buf.toString());
+		DefaultTeXFont font = new DefaultTeXFont(20f);
+
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long id = Thread.currentThread().getId();
+
+		// warm up
+		for (int i = 0; i < ROUNDS; i++)
+			f.createBox(new TeXEnvironment(TeXConstants.STYLE_DISPLAY, font));
+
+		long bytes = bean.getThreadAllocatedBytes(id);
+		long start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++)
+			f.createBox(new TeXEnvironment(TeXConstants.STYLE_DISPLAY, font));
+		long time = System.nanoTime() - start;
+		bytes = bean.getThreadAllocatedBytes(id) - bytes;
+
+		System.out.println(GLYPHS + " glyphs: " + bytes / ROUNDS + " bytes/createBox ("
+				+ bytes / ROUNDS / GLYPHS + " bytes/glyph), " + time / ROUNDS / 1000 + " us/createBox");
+	}
+}
@@ -0,0 +1,111 @@
+package test;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.font.FontRenderContext;
+import java.awt.image.BufferedImage;
+
+import be.ugent.caagt.jmathtex.Char;
+import be.ugent.caagt.jmathtex.FontRegistry;
+import be.ugent.caagt.jmathtex.GlyphOutlines;
+import be.ugent.caagt.jmathtex.TeXConstants;
+import be.ugent.caagt.jmathtex.TeXFormula;
+import be.ugent.caagt.jmathtex.TeXIcon;
+
+/**
+ * 比较用字形轮廓绘制和用 drawString 绘制的结果.
+ * Paints some formulas once with drawString and once by filling the glyph outlines
+ * (GlyphOutlines.KEY_GLYPH_OUTLINES) and checks that both images have the same ink:
+ * the edges differ because text is hinted, but the ink must cover the same area,
+ * with about the same amount of ink (within 3%). Also checks that an outline is only
+ * extracted once, and that a Char with its own font gets the outline of that font,
+ * not of the registered font with its font id.
+ */
+public class GlyphOutlineTest {
+	private static final String[] FORMULAS = { "\\frac{a+b}{\\sqrt{x^2+1}}",
+			"\\sum_{i=1}^n x_i^2 \\leq \\prod_{k} y_k", "\\int_0^{\\infty} e^{-x}dx",
+			"\\mathrm{ffi fl} AV \\hat{x} \\vec{a}", "(\\frac{a}{b})^2 \\ne [x]" };
+
+	// the maximum difference of the bounding boxes of the ink, in pixels
+	private static final int MAX_SHIFT = 1;
+
+	// the maximum relative difference of the amount of ink
+	private static final double MAX_INK_DIFFERENCE = 0.03;
+
+	// the ids of cmmi10 and cmr10 in DefaultTeXFont.xml
+	private static final int CMMI10 = 0, CMR10 = 1;
+
+	public static void main(String[] args) throws Exception {
+		boolean ok = GlyphOutlines.getOutline(1, 'x') == GlyphOutlines.getOutline(1, 'x');
+		if (!ok)
+			System.out.println("FAILED: the outline of 'x' isn't cached");
+
+		// a Char with the font cmmi10, but the font id of cmr10
+		Font cmmi10 = FontRegistry.get(CMMI10).getFont().deriveFont(50f);
+		Char own = new Char('x', cmmi10, CMR10, null); // no metrics needed
+		Rectangle expected = cmmi10.createGlyphVector(new FontRenderContext(null, true, true),
+				"x").getOutline(10, 60).getBounds();
+		Rectangle found = GlyphOutlines.getOutline(own, 10, 60).getBounds();
+		if (!expected.equals(found)) {
+			System.out.println("FAILED: the outline of a Char with its own font: " + found
+					+ " instead of " + expected);
+			ok = false;
+		}
+
+		for (String s : FORMULAS) {
+			// a large size: small text is hinted a lot
+			TeXIcon icon = new TeXFormula(s).createTeXIcon(TeXConstants.STYLE_DISPLAY, 80f);
+			BufferedImage text = paint(icon, false), outlines = paint(icon, true);
+			int[] t = ink(text), o = ink(outlines);
+			System.out.println(s + ": ink " + t[4] + " / " + o[4] + ", bounds [" + t[0] + "," + t[1]
+					+ "," + t[2] + "," + t[3] + "] / [" + o[0] + "," + o[1] + "," + o[2] + "," + o[3]
+					+ "]");
+			boolean same = Math.abs(t[4] - o[4]) <= MAX_INK_DIFFERENCE * t[4];
+			for (int i = 0; i < 4; i++)
+				same &= Math.abs(t[i] - o[i]) <= MAX_SHIFT;
+			if (!same) {
+				System.out.println("FAILED: " + s);
+				ok = false;
+			}
+		}
+		System.out.println(ok ? "OK" : "FAILED");
+		if (!ok)
+			System.exit(1);
+	}
+
+	private static BufferedImage paint(TeXIcon icon, boolean outlines) {
+		BufferedImage img = new BufferedImage(icon.getIconWidth() + 4, icon.getIconHeight() + 4,
+				BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2 = img.createGraphics();
+		g2.setColor(Color.white);
+		g2.fillRect(0, 0, img.getWidth(), img.getHeight());
+		if (outlines)
+			g2.setRenderingHint(GlyphOutlines.KEY_GLYPH_OUTLINES,
+					GlyphOutlines.VALUE_GLYPH_OUTLINES_ON);
+		icon.paintIcon(Color.black, g2, 2, 2);
+		g2.dispose();
+		return img;
+	}
+
+	/**
+	 * @return the bounding box of the ink (minimum x and y, maximum x and y) and the
+	 *         amount of ink (the sum of the darkness of the pixels)
+	 */
+	private static int[] ink(BufferedImage img) {
+		int[] res = { Integer.MAX_VALUE, Integer.MAX_VALUE, -1, -1, 0 };
+		for (int y = 0; y < img.getHeight(); y++)
+			for (int x = 0; x < img.getWidth(); x++) {
+				int dark = 0xff - (img.getRGB(x, y) & 0xff);
+				if (dark > 0) {
+					res[0] = Math.min(res[0], x);
+					res[1] = Math.min(res[1], y);
+					res[2] = Math.max(res[2], x);
+					res[3] = Math.max(res[3], y);
+					res[4] += dark;
+				}
+			}
+		return res;
+	}
+}
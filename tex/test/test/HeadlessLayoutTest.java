@@ -0,0 +1,103 @@
+package test;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import be.ugent.caagt.jmathtex.DefaultTeXFont;
+import be.ugent.caagt.jmathtex.TeXConstants;
+import be.ugent.caagt.jmathtex.TeXEnvironment;
+import be.ugent.caagt.jmathtex.TeXFormula;
+import be.ugent.caagt.jmathtex.box.Box;
+
+/**
+ * 检查布局 (createBox) 不使用 java.awt.Font, 只有绘制时才加载字体.
+ * Checks that creating the boxes of some formulas never touches the AWT fonts: the
+ * library is loaded in a class loader that records every request for a java.awt.Font,
+ * java.awt.font or sun.font class. Painting the boxes afterwards must load the fonts
+ * (which shows the check works).
+ */
+public class HeadlessLayoutTest {
+	private static final String[] FORMULAS = { "\\frac{a+b}{\\sqrt{x^2+1}}",
+			"\\sum_{i=1}^n x_i^2 \\leq \\prod_{k} y_k", "\\int_0^{\\infty} e^{-x}dx",
+			"\\mathrm{ffi fl} AV \\hat{x} \\vec{a}",
+			"\\sqrt{\\frac{\\frac{1}{2}}{\\frac{\\frac{3}{4}}{5}}}", "(\\frac{a}{b})^2 \\ne [x]" };
+
+	/** records the requests for font classes */
+	private static class WatchingClassLoader extends URLClassLoader {
+		private final List<String> fontClasses = new ArrayList<String>();
+
+		WatchingClassLoader(URL[] urls) {
+			// without the application class loader: the library is loaded here
+			super(urls, ClassLoader.getSystemClassLoader().getParent());
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (name.startsWith("java.awt.Font") || name.startsWith("java.awt.font.")
+					|| name.startsWith("sun.font."))
+				synchronized (fontClasses) {
+					fontClasses.add(name);
+				}
+			return super.loadClass(name, resolve);
+		}
+
+		List<String> getFontClasses() {
+			synchronized (fontClasses) {
+				return new ArrayList<String>(fontClasses);
+			}
+		}
+	}
+
+	/** creates (and then paints) the boxes, run inside the watching class loader */
+	public static class Layout implements Runnable {
+		private final List<Box> boxes = new ArrayList<Box>();
+
+		public void run() {
+			if (boxes.isEmpty())
+				for (String s : FORMULAS) {
+					Box b = new TeXFormula(s).createBox(new TeXEnvironment(
+							TeXConstants.STYLE_DISPLAY, new DefaultTeXFont(20f)));
+					System.out.println(s + ": " + b.getWidth() + " x " + b.getHeight() + " + "
+							+ b.getDepth());
+					boxes.add(b);
+				}
+			else {
+				BufferedImage img = new BufferedImage(400, 100, BufferedImage.TYPE_INT_ARGB);
+				Graphics2D g2 = img.createGraphics();
+				for (Box b : boxes)
+					b.draw(g2, 10, 50);
+				g2.dispose();
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		List<URL> urls = new ArrayList<URL>();
+		StringTokenizer tok = new StringTokenizer(System.getProperty("java.class.path"),
+				File.pathSeparator);
+		while (tok.hasMoreTokens())
+			urls.add(new File(tok.nextToken()).toURI().toURL());
+		WatchingClassLoader loader = new WatchingClassLoader(urls.toArray(new URL[0]));
+		Runnable layout = (Runnable) loader.loadClass(Layout.class.getName())
+				.getConstructor().newInstance();
+
+		layout.run();
+		List<String> fontClasses = loader.getFontClasses();
+		if (!fontClasses.isEmpty()) {
+			System.out.println("FAILED: the layout loaded " + fontClasses);
+			System.exit(1);
+		}
+		layout.run(); // paint
+		if (loader.getFontClasses().isEmpty()) {
+			System.out.println("FAILED: painting didn't load any font class, check the test");
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+}
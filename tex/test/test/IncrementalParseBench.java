@@ -0,0 +1,65 @@
+package test;
+
+import be.ugent.caagt.jmathtex.IncrementalTeXFormula;
+import be.ugent.caagt.jmathtex.TeXFormula;
+
+import java.util.Random;
+
+/**
+ * 比较编辑器中每次按键的解析时间: 完整重新解析 vs. IncrementalTeXFormula.edit.
+ * Simulates typing in a 5 KB formula: every round inserts or deletes one
+ * character at a random position inside a group and prints the average time of
+ * a full re-parse and of an incremental re-parse of the edited string.
+ */
+public class IncrementalParseBench {
+	private static final int SIZE = 5 * 1024;
+
+	private static final String[] PARTS = { "x^{2}+", "\\frac{a+b}{c-d}", "\\sqrt{x_{i}+1}",
+			"\\sum_{i=1}^{n} i^2", "\\alpha\\beta-", "{a+{b+c}}", "f'(x)=", "\\mathrm{sin}x " };
+
+	public static void main(String[] args) throws Exception {
+		Random rnd = new Random(42);
+		StringBuilder buf = new StringBuilder();
+		while (buf.length() < SIZE)
+			buf.append('{').append(PARTS[rnd.nextInt(PARTS.length)])
+					.append(PARTS[rnd.nextInt(PARTS.length)]).append("}+");
+		buf.append('x');
+		String s = buf.toString();
+
+		// warm up
+		run(s, 2000, new Random(1));
+		Random r = new Random(7);
+		long[] t = run(s, 5000, r);
+		System.out.println(s.length() + " characters, 5000 edits:");
+		System.out.println("  full re-parse: " + t[0] / 1000 + " us/edit");
+		System.out.println("  incremental:   " + t[1] / 1000 + " us/edit");
+	}
+
+	/**
+	 * Applies 'rounds' random single character edits and returns the average
+	 * time in ns of the full and the incremental re-parse.
+	 */
+	private static long[] run(String s, int rounds, Random rnd) throws Exception {
+		IncrementalTeXFormula inc = new IncrementalTeXFormula(s);
+		long full = 0, incremental = 0;
+		for (int i = 0; i < rounds; i++) {
+			String cur = inc.getString();
+			// edit right after an opening brace, so the formula stays valid
+			int offset = cur.indexOf('{', rnd.nextInt(cur.length() - 10)) + 1;
+			if (offset == 0)
+				offset = 1;
+			boolean delete = cur.charAt(offset) == 'y';
+			String next = delete ? cur.substring(0, offset) + cur.substring(offset + 1)
+					: cur.substring(0, offset) + 'y' + cur.substring(offset);
+
+			long start = System.nanoTime();
+			new TeXFormula(next);
+			full += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			inc = delete ? inc.edit(offset, 1, "") : inc.edit(offset, 0, "y");
+			incremental += System.nanoTime() - start;
+		}
+		return new long[] { full / rounds, incremental / rounds };
+	}
+}
@@ -0,0 +1,53 @@
+package test;
+
+import be.ugent.caagt.jmathtex.CharFont;
+import be.ugent.caagt.jmathtex.DefaultTeXFont;
+import be.ugent.caagt.jmathtex.TeXConstants;
+
+/**
+ * 测试 kern/ligature 查找的速度 (RowAtom.createBox 对每对相邻字符都要查找).
+ * Times the kerning pass of RowAtom.createBox on its own: for every pair of adjacent
+ * characters of a text, look up the ligature and the kern in the font. Prints the
+ * time per character pair and the number of pairs that had a kern or a ligature.
+ */
+public class KerningBench {
+	private static final String TEXT = "AVAWAYLTfifflffVaWoTyPAKvFAxyz0123456789abcdefghijklmnopqrstuvwxyz"
+			+ "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+	private static final int ROUNDS = 200000;
+
+	public static void main(String[] args) {
+		DefaultTeXFont font = new DefaultTeXFont(20f);
+		// the characters of the text in the roman and in the italic font
+		CharFont[][] texts = new CharFont[2][TEXT.length()];
+		for (int i = 0; i < TEXT.length(); i++) {
+			texts[0][i] = font.getChar3(TEXT.charAt(i), "mathrm", TeXConstants.STYLE_TEXT)
+					.getCharFont();
+			texts[1][i] = font.getDefaultChar(TEXT.charAt(i), TeXConstants.STYLE_TEXT)
+					.getCharFont();
+		}
+
+		// warm up
+		run(font, texts, ROUNDS / 10);
+		long start = System.nanoTime();
+		int found = run(font, texts, ROUNDS);
+		long time = System.nanoTime() - start;
+		int pairs = 2 * (TEXT.length() - 1);
+		System.out.println(pairs + " pairs, " + found / ROUNDS + " with a kern or ligature: "
+				+ String.format("%.1f", (double) time / ROUNDS / pairs) + " ns/pair");
+	}
+
+	private static int run(DefaultTeXFont font, CharFont[][] texts, int rounds) {
+		int found = 0;
+		for (int r = 0; r < rounds; r++)
+			for (CharFont[] text : texts)
+				for (int i = 0; i + 1 < text.length; i++) {
+					CharFont lig = font.getLigature(text[i], text[i + 1]);
+					if (lig != null)
+						found++;
+					else if (font.getKern(text[i], text[i + 1], TeXConstants.STYLE_TEXT) != 0)
+						found++;
+				}
+		return found;
+	}
+}
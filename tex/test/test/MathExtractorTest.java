@@ -0,0 +1,187 @@
+package test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import be.ugent.caagt.jmathtex.MathExtractor;
+
+/**
+ * 检查从文档中提取的数学公式 (定界符, 转义字符, 注释, 未结束的公式).
+ * Extracts the math segments of small documents and compares them (offset, inline or
+ * display, contents) with the expected ones: all 4 kinds of delimiters, escaped
+ * characters that don't start or end a segment, comments (enabled and disabled), and
+ * segments that aren't closed at the end of the document or within the maximum
+ * segment length (they're reported, and the extraction continues after their opening
+ * delimiter). Every document is also read 1 character at a time, and from behind a
+ * long text (so that a segment crosses the end of the read buffer). Finally a stray
+ * '$' in front of a long text must not hide the math segments after it.
+ */
+public class MathExtractorTest {
+	// { document, expected segments ("offset I|D contents", separated by " | ") }, where
+	// "offset !I|!D" is a segment that isn't closed ("long" if it's too long)
+	private static final String[][] CASES = {
+			{ "no math", "" },
+			{ "a $x$ b", "2 I x" },
+			{ "$$x+y$$", "0 D x+y" },
+			{ "\\(a\\) and \\[b\\]", "0 I a | 10 D b" },
+			{ "$a$$$b$$$c$", "0 I a | 3 D b | 8 I c" },
+			// escapes
+			{ "\\$5 and $x$", "8 I x" },
+			{ "\\\\$x$", "2 I x" },
+			{ "\\\\(x\\)", "" },
+			{ "$a\\$b$", "0 I a\\$b" },
+			{ "\\(a\\]b\\)", "0 I a\\]b" },
+			{ "\\[a\\)b\\]", "0 D a\\)b" },
+			{ "\\(a$b\\)", "0 I a$b" },
+			{ "$$a$b$$", "0 D a$b" },
+			{ "$\\frac{1}{2}\\%$", "0 I \\frac{1}{2}\\%" },
+			// comments
+			{ "$x % comment $\ny$", "0 I x \ny" },
+			{ "$x % comment\r\ny$", "0 I x \ny" },
+			{ "% $a$\n$b$", "6 I b" },
+			{ "50% $x$\n$y$", "8 I y" },
+			// unterminated segments
+			{ "$x", "0 !I" },
+			{ "text $a$ and $b", "5 I a | 13 !I" },
+			{ "$$x$", "0 !D | 3 !I" },
+			{ "\\[x", "0 !D" },
+			{ "\\(x\\]", "0 !I" },
+			{ "$x\\", "0 !I" },
+			{ "\\", "" },
+			{ "$5 and \\(x\\)", "0 !I | 7 I x" } };
+
+	// { document, expected segments } with comments disabled
+	private static final String[][] NO_COMMENTS = { { "50% $x$", "4 I x" },
+			{ "$x % y$", "0 I x % y" }, { "% $a$\n$b$", "2 I a | 6 I b" } };
+
+	// { document, expected segments } with a maximum segment length of LIMIT
+	private static final String[][] LIMITED = {
+			{ "$abcde$ $$abcde$$ \\(abcde\\)", "0 I abcde | 8 D abcde | 18 I abcde" },
+			{ "$abcdef$", "0 !I long | 7 !I" },
+			{ "$abcdef", "0 !I long" },
+			{ "$$x$$ \\[abcdef\\]", "0 D x | 6 !D long" },
+			{ "$a%bcdefgh\nb$", "0 !I long | 12 !I" },
+			{ "\\(a $bcdefgh$ \\)", "0 !I long | 4 !I long | 12 !I" } };
+
+	private static final int LIMIT = 5;
+
+	// text put before every document, longer than the read buffer of MathExtractor
+	private static final int PREFIX = 10000;
+
+	public static void main(String[] args) throws Exception {
+		int errors = 0, n = 0;
+		for (int k = 0; k < 3; k++)
+			for (String[] c : (k == 0 ? CASES : k == 1 ? NO_COMMENTS : LIMITED)) {
+				MathExtractor ex = (k == 2 ? new MathExtractor(LIMIT) : new MathExtractor());
+				ex.setCommentsEnabled(k != 1);
+				errors += check(ex, c[0], new StringReader(c[0]), c[1], 0);
+				errors += check(ex, c[0], new SlowReader(c[0]), c[1], 0);
+				StringBuilder doc = new StringBuilder();
+				for (int i = 0; i < PREFIX; i++)
+					doc.append(i % 80 == 79 ? '\n' : 'x');
+				doc.append(c[0]);
+				errors += check(ex, c[0], new StringReader(doc.toString()), c[1], PREFIX);
+				n++;
+			}
+
+		// a stray '$' in front of more than the maximum segment length
+		StringBuilder doc = new StringBuilder("Costs $5 per unit.");
+		while (doc.length() < 120000)
+			doc.append(" Lorem ipsum dolor sit amet.\n");
+		int math = doc.length();
+		doc.append("$x^2$ and \\[y\\]");
+		errors += check(new MathExtractor(), "Costs $5 per unit. ...", new StringReader(doc
+				.toString()), "6 !I long | " + math + " I x^2 | " + (math + 10) + " D y", 0);
+		try {
+			new MathExtractor(0);
+			System.out.println("FAILED: a maximum length of 0 was accepted");
+			errors++;
+		} catch (IllegalArgumentException e) {
+			// ok
+		}
+
+		System.out.println(n + " documents, " + errors + " failed");
+		System.out.println(errors == 0 ? "OK" : "FAILED");
+		if (errors > 0)
+			System.exit(1);
+	}
+
+	private static int check(MathExtractor ex, String doc, Reader in, String expected,
+			long offset) throws IOException {
+		List<String> found = extract(ex, in);
+		StringBuilder exp = new StringBuilder();
+		if (expected.length() > 0)
+			for (String seg : expected.split(" \\| ")) {
+				int space = seg.indexOf(' ');
+				if (exp.length() > 0)
+					exp.append(" | ");
+				exp.append(Long.parseLong(seg.substring(0, space)) + offset)
+						.append(seg.substring(space));
+			}
+		String res = join(found);
+		if (res.equals(exp.toString()))
+			return 0;
+		System.out.println("FAILED: " + escape(doc) + " (offset " + offset + ")\n  expected: "
+				+ escape(exp.toString()) + "\n  found:    " + escape(res));
+		return 1;
+	}
+
+	private static List<String> extract(MathExtractor ex, Reader in) throws IOException {
+		final List<String> res = new ArrayList<String>();
+		ex.extract(in, new MathExtractor.Handler() {
+			public void handleMath(String tex, long offset, boolean display) {
+				res.add(offset + (display ? " D " : " I ") + tex);
+			}
+		}, new MathExtractor.ErrorHandler() {
+			public void handleError(long offset, boolean display, String message) {
+				res.add(offset + (display ? " !D" : " !I")
+						+ (message.contains("longer than") ? " long" : ""));
+			}
+		});
+		return res;
+	}
+
+	private static String join(List<String> l) {
+		StringBuilder buf = new StringBuilder();
+		for (String s : l) {
+			if (buf.length() > 0)
+				buf.append(" | ");
+			buf.append(s);
+		}
+		return buf.toString();
+	}
+
+	private static String escape(String s) {
+		return s.replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+	/**
+	 * Reads 1 character at a time, returning 0 characters every other call.
+	 */
+	private static class SlowReader extends Reader {
+		private final String s;
+		private int pos = 0;
+		private boolean empty = true;
+
+		SlowReader(String s) {
+			this.s = s;
+		}
+
+		public int read(char[] cbuf, int off, int len) {
+			if (pos == s.length())
+				return -1;
+			empty = !empty;
+			if (empty)
+				return 0;
+			cbuf[off] = s.charAt(pos++);
+			return 1;
+		}
+
+		public void close() {
+			// nothing to close
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package test;
+
+import be.ugent.caagt.jmathtex.TeXFormula;
+
+/**
+ * 测试深度嵌套的公式 (连分数, 上标的上标...) 的解析时间是否随嵌套深度线性增长.
+ * Parses formulas with 10, 100 and 1000 nesting levels (continued fractions,
+ * nested scripts and nested groups) and prints the parse time per level, which
+ * should stay about the same if parsing is linear in the nesting depth. Fails if the
+ * time per level at depth 1000 is more than FACTOR times the time at depth 10.
+ */
+public class NestingBench {
+	private static final int[] DEPTHS = { 10, 100, 1000 };
+
+	// how much larger the time per level at the largest depth may be than at the smallest
+	private static final int FACTOR = 10;
+
+	private static final String[] KINDS = { "fractions", "scripts", "groups" };
+
+	public static void main(String[] args) throws Exception {
+		// warm up
+		for (int d : DEPTHS)
+			for (int k = 0; k < KINDS.length; k++)
+				time(formula(k, d), 20000 / d);
+		long[][] perLevel = new long[DEPTHS.length][KINDS.length];
+		for (int i = 0; i < DEPTHS.length; i++) {
+			int d = DEPTHS[i], rounds = 200000 / d;
+			StringBuilder buf = new StringBuilder("depth " + d + ":");
+			for (int k = 0; k < KINDS.length; k++) {
+				perLevel[i][k] = time(formula(k, d), rounds) / d;
+				buf.append(k == 0 ? " " : ", ").append(KINDS[k]).append(' ')
+						.append(perLevel[i][k]).append(" ns/level");
+			}
+			System.out.println(buf);
+		}
+		int errors = 0;
+		for (int k = 0; k < KINDS.length; k++)
+			if (perLevel[DEPTHS.length - 1][k] > FACTOR * perLevel[0][k]) {
+				System.out.println("FAILED: the parse time of nested " + KINDS[k]
+						+ " grows faster than the nesting depth");
+				errors++;
+			}
+		System.out.println(errors == 0 ? "OK" : "FAILED");
+		if (errors > 0)
+			System.exit(1);
+	}
+
+	private static String formula(int kind, int depth) {
+		return kind == 0 ? fraction(depth) : kind == 1 ? scripts(depth) : groups(depth);
+	}
+
+	/** \frac{1}{1+\frac{1}{1+...x}} */
+	private static String fraction(int depth) {
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < depth; i++)
+			buf.append("\\frac{1}{1+");
+		buf.append('x');
+		for (int i = 0; i < depth; i++)
+			buf.append('}');
+		return buf.toString();
+	}
+
+	/** x^{x^{...x}} */
+	private static String scripts(int depth) {
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < depth; i++)
+			buf.append("x^{");
+		buf.append('x');
+		for (int i = 0; i < depth; i++)
+			buf.append('}');
+		return buf.toString();
+	}
+
+	/** {a+{a+{...a}}} */
+	private static String groups(int depth) {
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < depth; i++)
+			buf.append("{a+");
+		buf.append('a');
+		for (int i = 0; i < depth; i++)
+			buf.append('}');
+		return buf.toString();
+	}
+
+	/** average parse time in ns */
+	private static long time(String s, int rounds) throws Exception {
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++)
+			new TeXFormula(s);
+		return (System.nanoTime() - start) / rounds;
+	}
+}
@@ -0,0 +1,32 @@
+package test;
+
+import be.ugent.caagt.jmathtex.TeXFormula;
+
+/**
+ * 测试解析速度: 大量符号 (\alpha, \infty, \neq ...) 的公式.
+ * Measures the parse throughput of <code>new TeXFormula(String)</code> on
+ * symbol-heavy input. Run it before and after changes to the parser to compare.
+ */
+public class ParseBench {
+	private static final String[] FORMULAS = {
+		"\\alpha\\beta\\gamma\\delta\\epsilon\\zeta\\eta\\theta\\iota\\kappa\\lambda\\mu",
+		"\\int_0^1 x \\in \\infty \\neq \\leq \\geq \\cdot \\times \\div \\pm \\mp",
+		"\\sum_{i=1}^{n} \\alpha_i \\beta_i \\neq \\hbar \\ldots \\cdots \\cong \\models",
+		"\\rightarrow\\Rightarrow\\leftarrow\\Leftarrow\\uparrow\\downarrow\\infty\\in",
+	};
+
+	public static void main(String[] args) throws Exception {
+		int rounds = (args.length > 0 ? Integer.parseInt(args[0]) : 200000);
+		run(rounds / 10); // warm up
+		long start = System.nanoTime();
+		run(rounds);
+		long time = System.nanoTime() - start;
+		System.out.println(rounds + " formulas parsed in " + (time / 1000000) + " ms, "
+				+ (long) (rounds * 1e9 / time) + " formulas/s");
+	}
+
+	private static void run(int rounds) throws Exception {
+		for (int i = 0; i < rounds; i++)
+			new TeXFormula(FORMULAS[i % FORMULAS.length]);
+	}
+}
@@ -0,0 +1,77 @@
+package test;
+
+import be.ugent.caagt.jmathtex.SimpleXmlWriter;
+import be.ugent.caagt.jmathtex.TeXFormula;
+import be.ugent.caagt.jmathtex.TeXFormulaCache;
+
+/**
+ * 检查解析缓存的命中不会改变解析的结果 (包括无效的公式).
+ * Checks that the parse cache never changes the result of parsing: every string is
+ * parsed without the cache, then again with a cache that already contains strings that
+ * differ from it in whitespace only (the "primers"), and both results (the atom tree
+ * as xml, or the message of the ParseException) must be the same. That includes
+ * invalid strings with characters that look like whitespace but aren't skipped by the
+ * parser (Unicode spaces, form feed, ...).
+ */
+public class ParseCacheTest {
+	// { primers..., probe }
+	private static final String[][] CASES = { { "a b", "a  b" }, { "a b", " a\tb\n" },
+			{ "a b", "a\r\nb" }, { "a b", "a\u2003b" }, { "a b", "a\fb" }, { "a b", "a\u00a0b" },
+			{ "a b", "a\u000bb" }, { "x^2 + 1", "x^2\u2009+ 1" }, { "\\alpha b", "\\alpha  b" },
+			{ "\\alpha b", "\\alpha\u2002b" }, { "\\frac{a}{b}", "\\frac {a} {b}" },
+			{ "\\frac{a}{b}", "\\frac{a}\u3000{b}" }, { "x\\", "x\\ " }, { "x\\ y", "x\\  y" },
+			{ "\\mathrm{a b}", "\\mathrm{a \n b}" }, { "\\sqrt{x}", "\\sqrt{x}\u200b" } };
+
+	public static void main(String[] args) {
+		int errors = 0;
+		for (String[] c : CASES) {
+			String probe = c[c.length - 1];
+			TeXFormula.setParseCache(null);
+			String expected = parse(probe);
+
+			TeXFormula.setParseCache(new TeXFormulaCache(100));
+			for (int i = 0; i < c.length - 1; i++)
+				parse(c[i]);
+			String cached = parse(probe);
+			// a second time: now the probe itself may be in the cache
+			String again = parse(probe);
+			TeXFormula.setParseCache(null);
+
+			if (!expected.equals(cached) || !expected.equals(again)) {
+				System.out.println("FAILED: " + escape(probe) + "\n  without cache: " + expected
+						+ "\n  with cache:    " + cached);
+				errors++;
+			}
+		}
+		System.out.println(CASES.length + " cases, " + errors + " failed");
+		System.out.println(errors == 0 ? "OK" : "FAILED");
+		if (errors > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * @return the atom tree of the parsed string as xml, or the error message
+	 */
+	private static String parse(String s) {
+		try {
+			TeXFormula f = new TeXFormula(s);
+			if (f.root == null)
+				return "(empty)";
+			SimpleXmlWriter sxw = new SimpleXmlWriter();
+			f.root.toXml(sxw, null);
+			return sxw.toString();
+		} catch (Exception e) {
+			return e.getClass().getSimpleName() + ": " + e.getMessage();
+		}
+	}
+
+	private static String escape(String s) {
+		StringBuilder buf = new StringBuilder();
+		for (char ch : s.toCharArray())
+			if (ch < ' ' || ch > '~')
+				buf.append(String.format("\\u%04x", (int) ch));
+			else
+				buf.append(ch);
+		return buf.toString();
+	}
+}
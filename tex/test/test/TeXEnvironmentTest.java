@@ -0,0 +1,86 @@
+package test;
+
+import java.awt.Color;
+
+import be.ugent.caagt.jmathtex.DefaultTeXFont;
+import be.ugent.caagt.jmathtex.TeXConstants;
+import be.ugent.caagt.jmathtex.TeXEnvironment;
+
+/**
+ * 检查样式转换和共享环境的修改 (写时复制).
+ * Checks the style changing methods of TeXEnvironment against the tables of the
+ * TeXBook, and that they return shared environments (the same object each time) when
+ * there are no colors. Then checks that the setters still work on a shared environment:
+ * the change is kept by that environment, but the style changing methods return a new
+ * shared environment without the change afterwards.
+ */
+public class TeXEnvironmentTest {
+	// { style, crampStyle, numStyle, denomStyle, subStyle, supStyle, rootStyle }
+	private static final int[][] TRANSITIONS = { { 0, 1, 2, 3, 5, 4, 6 }, { 1, 1, 3, 3, 5, 5, 6 },
+			{ 2, 3, 4, 5, 5, 4, 6 }, { 3, 3, 5, 5, 5, 5, 6 }, { 4, 5, 6, 7, 7, 6, 6 },
+			{ 5, 5, 7, 7, 7, 7, 6 }, { 6, 7, 6, 7, 7, 6, 6 }, { 7, 7, 7, 7, 7, 7, 6 } };
+
+	private static int errors = 0;
+
+	public static void main(String[] args) throws Exception {
+		DefaultTeXFont font = new DefaultTeXFont(20f);
+		TeXEnvironment env = new TeXEnvironment(TeXConstants.STYLE_DISPLAY, font);
+
+		// the transitions, from every style
+		TeXEnvironment[] byStyle = new TeXEnvironment[TRANSITIONS.length];
+		for (int i = 0; i < 2; i++) // the second time from the shared environments
+			for (int[] t : TRANSITIONS) {
+				TeXEnvironment e = (t[0] == 0 ? env : byStyle[t[0]]);
+				TeXEnvironment[] res = { e.crampStyle(), e.numStyle(), e.denomStyle(),
+						e.subStyle(), e.supStyle(), e.rootStyle() };
+				for (int j = 0; j < res.length; j++) {
+					check(res[j].getStyle() == t[j + 1], "style " + t[0] + ", transition " + j
+							+ ": " + res[j].getStyle() + " instead of " + t[j + 1]);
+					check(res[j].isShared(), "style " + t[0] + ", transition " + j
+							+ ": not shared");
+					if (byStyle[t[j + 1]] == null)
+						byStyle[t[j + 1]] = res[j];
+					check(res[j] == byStyle[t[j + 1]], "style " + t[0] + ", transition " + j
+							+ ": not the same shared environment");
+				}
+			}
+
+		// colors are kept, in a new environment
+		TeXEnvironment red = env.copy();
+		red.setColor(Color.RED);
+		TeXEnvironment sub = red.subStyle();
+		check(!sub.isShared() && sub != red.subStyle() && Color.RED.equals(sub.getColor())
+				&& sub.getStyle() == TeXConstants.STYLE_SCRIPT + 1,
+				"the colors weren't kept by a style change");
+
+		// changing a shared environment
+		TeXEnvironment shared = env.subStyle();
+		shared.setColor(Color.BLUE);
+		shared.setBackground(Color.YELLOW);
+		shared.setLastFontId(3);
+		check(Color.BLUE.equals(shared.getColor()) && Color.YELLOW.equals(shared.getBackground())
+				&& shared.getLastFontId() == 3, "the setters of a shared environment don't work");
+		check(!shared.isShared(), "a changed environment is still shared");
+		TeXEnvironment clean = env.subStyle();
+		check(clean != shared && clean.isShared() && clean.getColor() == null
+				&& clean.getBackground() == null && clean.getLastFontId() == font.getMuFontId(),
+				"a change of a shared environment is seen by a later style change");
+		check(byStyle[1].subStyle() == clean, "the new shared environment isn't used by all");
+		shared.reset();
+		check(shared.getColor() == null && shared.getBackground() == null,
+				"reset() didn't reset the colors");
+		check(env.supStyle().getLastFontId() == font.getMuFontId() && env.getColor() == null,
+				"a change of a shared environment is seen by another one");
+
+		System.out.println(errors == 0 ? "OK" : "FAILED");
+		if (errors > 0)
+			System.exit(1);
+	}
+
+	private static void check(boolean ok, String msg) {
+		if (!ok) {
+			System.out.println("FAILED: " + msg);
+			errors++;
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package test;
+
+import java.util.List;
+import java.util.Random;
+
+import be.ugent.caagt.jmathtex.ParseError;
+import be.ugent.caagt.jmathtex.TeXFormula;
+import be.ugent.caagt.jmathtex.ex.ParseException;
+
+/**
+ * 检查 TeXFormula.validate() 与解析器的结果一致, 以及错误的位置.
+ * Checks TeXFormula.validate(CharSequence) against the parser: for a table of strings
+ * the errors (positions and messages) must be the expected ones, and the first one
+ * must be the error of the parser. Then random strings made of the pieces that cause
+ * errors (groups, scripts, primes, commands, unknown control words and characters,
+ * ...) are checked: the validator must find an error exactly when the parser throws
+ * a ParseException (the parser may throw nothing else), the first message must be
+ * the message of the ParseException and the positions must be inside the string.
+ * Finally a character is mapped to a symbol through the deprecated
+ * TeXFormula.symbolMappings array: the parser and the validator must both use it.
+ */
+public class TeXFormulaValidatorTest {
+	// { string, expected errors ("position: message", separated by " | ") }
+	private static final String[][] CASES = {
+			{ "", "" },
+			{ "a+b", "" },
+			{ "x''^2 + \\alpha\\beta", "" },
+			{ "\\frac{a}{b} \\sqrt[3]{x} \\sqrt[]{}", "" },
+			{ "\\mathrm{ab}_1", "" },
+			{ "}", "0: Found a closing '}' without an opening '{'!" },
+			{ "a}b", "1: Found a closing '}' without an opening '{'!" },
+			{ "{a", "0: Illegal end,  missing '}'!" },
+			{ "\\frac{a}{b}{", "11: Illegal end,  missing '}'!" },
+			{ "x^", "2: illegal end, missing script!" },
+			{ "^2", "0: Every script needs a base: \"^\", \"_\" and \"'\" can't be the first character!" },
+			{ "'x", "0: Every script needs a base: \"^\", \"_\" and \"'\" can't be the first character!" },
+			{ "{}^2", "2: Every script needs a base: \"^\", \"_\" and \"'\" can't be the first character!" },
+			{ "x+\\mathrm{}_2", "11: Every script needs a base: \"^\", \"_\" and \"'\" can't be the first character!" },
+			{ "x^2^3", "3: Double scripts found! Try using more braces." },
+			{ "x^{a}_{b}_c", "9: Double scripts found! Try using more braces." },
+			{ "x'^2'", "4: Double scripts found! Try using more braces." },
+			{ "ab\\", "2: The escape-character '\\' can't be the last one!" },
+			{ "a \\foo b", "2: Unknown symbol or command or predefined TeXFormula: 'foo'" },
+			{ "a\\ b", "1: Unknown symbol or command or predefined TeXFormula: ''" },
+			{ "a@b", "1: Unknown character : '@'" },
+			{ "x+\\frac{a}{ }", "2: Both numerator and denominator of a fraction can't be empty!" },
+			{ "\\frac{a}", "8: Illegal end, missing '}'!" },
+			{ "\\frac{a} b", "9: missing '{'!" },
+			{ "\\sqrt", "5: illegal end!" },
+			{ "\\sqrt[3]x", "8: missing '{'!" },
+			{ "\\sqrt[3", "5: Illegal end,  missing ']'! | 7: Illegal end, missing '}'!" },
+			{ "\\mathrm{a", "7: Illegal end,  missing '}'!" },
+			// the check continues after an error
+			{ "a}b}\\foo", "1: Found a closing '}' without an opening '{'! | 3: Found a closing '}' "
+					+ "without an opening '{'! | 4: Unknown symbol or command or predefined "
+					+ "TeXFormula: 'foo'" },
+			{ "{x^}@", "3: illegal end, missing script! | 4: Unknown character : '@'" },
+			{ "\\frac{}{}^^", "0: Both numerator and denominator of a fraction can't be empty! | "
+					+ "10: Every script needs a base: \"^\", \"_\" and \"'\" can't be the first character!" } };
+
+	// the pieces of the random strings: valid ones, and ones that may cause errors
+	private static final String[] VALID = { "a", "b1", "+", " ", "{a}", "x^2", "y_i", "z'",
+			"\\alpha", "\\ne ", "\\frac{a}{b}", "\\sqrt{x}", "\\sqrt[3]{x}", "\\mathrm{ab}",
+			"\\sum" };
+	private static final String[] INVALID = { "{", "}", "{}", "^", "_", "'", "\\", "\\frac",
+			"\\sqrt", "[", "]", "\\mathrm", "\\foo", "@", "\\{", "\\!" };
+
+	private static final int RANDOM_STRINGS = 50000;
+
+	private static final int MAX_PIECES = 10;
+
+	private static int errors = 0;
+
+	@SuppressWarnings("deprecation")
+	public static void main(String[] args) {
+		for (String[] c : CASES) {
+			List<ParseError> found = TeXFormula.validate(c[0]);
+			check(c[0], found);
+			StringBuilder buf = new StringBuilder();
+			for (ParseError e : found) {
+				if (buf.length() > 0)
+					buf.append(" | ");
+				buf.append(e);
+			}
+			if (!buf.toString().equals(c[1])) {
+				System.out.println("FAILED: " + c[0] + "\n  expected: " + c[1] + "\n  found:    "
+						+ buf);
+				errors++;
+			}
+		}
+
+		Random rnd = new Random(20071);
+		int invalid = 0;
+		for (int i = 0; i < RANDOM_STRINGS; i++) {
+			StringBuilder buf = new StringBuilder();
+			for (int n = 1 + rnd.nextInt(MAX_PIECES); n > 0; n--)
+				if (rnd.nextInt(4) == 0)
+					buf.append(INVALID[rnd.nextInt(INVALID.length)]);
+				else
+					buf.append(VALID[rnd.nextInt(VALID.length)]);
+			if (check(buf.toString(), TeXFormula.validate(buf)))
+				invalid++;
+		}
+
+		// a change of the deprecated array of character-to-symbol mappings is used
+		String[] mappings = TeXFormula.symbolMappings;
+		mappings['@'] = "alpha";
+		check("a@b", TeXFormula.validate("a@b"));
+		if (!"alpha".equals(TeXFormula.getSymbolMapping('@'))
+				|| !TeXFormula.validate("a@b").isEmpty()) {
+			System.out.println("FAILED: a change of TeXFormula.symbolMappings isn't used");
+			errors++;
+		}
+		mappings['@'] = null;
+		check("a@b", TeXFormula.validate("a@b"));
+
+		System.out.println(CASES.length + " strings, " + RANDOM_STRINGS + " random strings ("
+				+ invalid + " invalid), " + errors + " failed");
+		System.out.println(errors == 0 ? "OK" : "FAILED");
+		if (errors > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * Compares the errors of the validator with the result of the parser and returns
+	 * whether the string is invalid.
+	 */
+	private static boolean check(String s, List<ParseError> found) {
+		String parser = null;
+		try {
+			new TeXFormula(s);
+		} catch (ParseException e) {
+			parser = e.getMessage();
+		} catch (RuntimeException e) {
+			System.out.println("FAILED: " + s + ": the parser threw " + e);
+			errors++;
+			return true;
+		}
+		if (parser == null ? !found.isEmpty()
+				: found.isEmpty() || !parser.equals(found.get(0).getMessage())) {
+			System.out.println("FAILED: " + s + "\n  parser:    " + (parser == null ? "ok" : parser)
+					+ "\n  validator: " + found);
+			errors++;
+		}
+		for (ParseError e : found)
+			if (e.getPosition() < 0 || e.getPosition() > s.length()) {
+				System.out.println("FAILED: " + s + ": position " + e.getPosition()
+						+ " is outside the string");
+				errors++;
+			}
+		return parser != null;
+	}
+}
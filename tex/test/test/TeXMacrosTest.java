@@ -0,0 +1,195 @@
+package test;
+
+import be.ugent.caagt.jmathtex.SimpleXmlWriter;
+import be.ugent.caagt.jmathtex.TeXFormula;
+import be.ugent.caagt.jmathtex.TeXMacros;
+import be.ugent.caagt.jmathtex.ex.ParseException;
+
+/**
+ * 检查用户定义的宏: 参数, 可选参数, 递归和输出长度的限制, 错误.
+ * Parses formulas with user defined macros and compares them (the atom tree as xml)
+ * with the formulas in which the macros were expanded by hand, as a group: macros with
+ * and without parameters, arguments that are groups, single characters or control
+ * words, the optional first parameter, scripts after a macro and macros replacing a
+ * symbol. Checks that a redefinition is used by the macros that use it (also when
+ * their parse result is shared), that recursive and exploding macros are stopped by
+ * the nesting depth and output length limits (also when the parse result of a macro
+ * is shared), and that invalid definitions and uses throw a ParseException with the
+ * right message.
+ */
+public class TeXMacrosTest {
+	private static final String DEFINITIONS = "% a macro library\n"
+			+ "\\newcommand{\\half}{\\frac{1}{2}}\n"
+			+ "\\newcommand\\quarter{\\half\\half} % uses another macro\n"
+			+ "\\newcommand{\\pair}[2]{(#1,#2)}\n"
+			+ "\\newcommand{\\swap}[2]{#2#1#2}\n"
+			+ "\\newcommand{\\idx}[2][n]{#1_{#2}}\n"
+			+ "\\newcommand { \\sq } [ 1 ] { {#1}^2 }\n"
+			+ "\\newcommand{\\alpha}{a}\n";
+
+	// { formula with macros, the same formula expanded by hand }
+	private static final String[][] EXPANSIONS = {
+			{ "\\half", "{\\frac{1}{2}}" },
+			{ "\\half+x", "{\\frac{1}{2}}+x" },
+			{ "\\quarter", "{{\\frac{1}{2}}{\\frac{1}{2}}}" },
+			{ "\\half^2_i", "{\\frac{1}{2}}^2_i" },
+			{ "\\pair{a}{b}", "{(a,b)}" },
+			{ "\\pair{x+1}{\\frac{a}{b}}", "{(x+1,\\frac{a}{b})}" },
+			{ "\\pair ab", "{(a,b)}" },
+			{ "\\pair a \\beta", "{(a,\\beta)}" },
+			{ "\\pair{\\half}{\\sq x}", "{({\\frac{1}{2}},{{{x}^2}})}" },
+			{ "\\swap{a}{bc}", "{bcabc}" },
+			{ "\\idx{i}", "{n_{i}}" },
+			{ "\\idx[k]{i}", "{k_{i}}" },
+			{ "\\idx [x^2] i", "{x^2_{i}}" },
+			{ "\\idx[\\sqrt{b}]{i}", "{\\sqrt{b}_{i}}" },
+			{ "\\sq{a+b}", "{{{a+b}}^2}" },
+			{ "\\alpha+\\beta", "{a}+\\beta" },
+			{ "\\! \\frac{\\half}{2}", "{,} \\frac{{\\frac{1}{2}}}{2}" } };
+
+	// { formula with macros, part of the message of the ParseException }
+	private static final String[][] ERRORS = { { "\\pair{a}", "needs 2 arguments" },
+			{ "{\\pair{a}}", "needs 2 arguments" }, { "\\sq", "needs 1 arguments" },
+			{ "\\idx[k", "missing ']'" }, { "\\pair{a}{b", "missing '}'" },
+			{ "\\pair{a}\\", "can't be the last one" }, { "\\unknown", "unknown" } };
+
+	private static int errors = 0;
+
+	public static void main(String[] args) throws Exception {
+		TeXMacros macros = new TeXMacros();
+		macros.newCommands(DEFINITIONS);
+		macros.define("\\!", 0, ",");
+		check(macros.size() == 8 && macros.isDefined("half") && macros.isDefined("\\idx")
+				&& !macros.isDefined("beta"), "the macros weren't all defined");
+
+		// expansions
+		for (String[] e : EXPANSIONS)
+			for (int i = 0; i < 2; i++) { // the second time with the shared parse results
+				String expected = xml(e[1], null), found = xml(e[0], macros);
+				check(expected.equals(found), e[0] + " isn't parsed like " + e[1] + ": "
+						+ found);
+			}
+		check(xml("\\half", null).startsWith("ParseException"),
+				"a macro was used without macros");
+
+		// redefinitions
+		macros.newCommands("\\renewcommand{\\half}{h}");
+		check(xml("\\quarter", macros).equals(xml("{{h}{h}}", null)),
+				"a renewed macro isn't used by a shared macro");
+		macros.remove("\\half");
+		check(xml("\\quarter", macros).startsWith("ParseException"),
+				"a removed macro is still used");
+		macros.define("half", 0, "\\frac{1}{2}");
+
+		// recursion and exploding macros
+		TeXMacros limited = new TeXMacros();
+		limited.newCommands("\\newcommand{\\loop}{x\\loop} \\newcommand{\\ping}[1]{\\pong{#1}} "
+				+ "\\newcommand{\\pong}[1]{\\ping{#1}}");
+		error("\\loop", limited, "nested too deep (more than 32 levels)");
+		error("\\ping{a}", limited, "nested too deep (more than 32 levels)");
+		limited.newCommands("\\newcommand{\\a}{xxxxxxxxxx} \\newcommand{\\b}[1]{#1#1#1#1#1}"
+				+ "\\newcommand{\\c}{\\a\\a} \\newcommand{\\d}{\\c\\c}");
+		limited.setMaxOutputLength(49);
+		for (int i = 0; i < 2; i++) { // the second time with the shared parse results
+			check(xml("\\a\\a\\a\\a", limited).startsWith("<"), "40 characters weren't accepted");
+			error("\\a\\a\\a\\a\\a", limited, "produce more than 49 characters");
+			error("\\d", limited, "produce more than 49 characters");
+			error("\\b{\\a}", limited, "produce more than 49 characters");
+			check(xml("\\b{ab}", limited).startsWith("<"), "\\b{ab} wasn't accepted");
+		}
+		limited.setMaxDepth(2);
+		check(xml("\\c", limited).startsWith("<"), "2 levels weren't accepted");
+		error("\\d", limited, "nested too deep (more than 2 levels)");
+		error("\\b{\\c}", limited, "nested too deep (more than 2 levels)");
+
+		// errors
+		for (String[] e : ERRORS)
+			error(e[0], macros, e[1]);
+		defineError("a1", 0, null, "x", "Illegal macro name");
+		defineError("", 0, null, "x", "Illegal macro name");
+		defineError("m", 10, null, "x", "can't have 10 parameters");
+		defineError("m", -1, null, "x", "can't have -1 parameters");
+		defineError("m", 0, "d", "x", "has no parameter for the default value");
+		defineError("m", 2, null, "#1#3",
+				"Illegal parameter in the body of the macro '\\m' at position 2");
+		defineError("m", 1, null, "x#",
+				"Illegal parameter in the body of the macro '\\m' at position 1");
+		newCommandsError("\\newcommand{\\half}{x}", "already defined");
+		newCommandsError("\\def\\x{y}", "Expected '\\newcommand' or '\\renewcommand' at position 0");
+		newCommandsError("\\newcommand{x}{y}", "Missing macro name");
+		newCommandsError("\\newcommand{\\x y}", "Missing '}' after the macro name '\\x'");
+		newCommandsError("\\newcommand{\\x}[two]{#1}", "Illegal number of parameters");
+		newCommandsError("\\newcommand{\\x}[1]", "Missing body of the macro '\\x'");
+		newCommandsError("\\newcommand{\\x}{\\frac{1}{2}", "missing '}'");
+		try {
+			macros.newCommands("\\newcommand{\\ok}{1} \\newcommand{\\x}[1]{#2}");
+			check(false, "a definition with an illegal parameter was accepted");
+		} catch (ParseException e) {
+			check(macros.isDefined("ok") && !macros.isDefined("x"),
+					"the definitions before an error weren't added");
+		}
+		try {
+			macros.setMaxDepth(0);
+			check(false, "a maximum depth of 0 was accepted");
+		} catch (IllegalArgumentException e) {
+			// ok
+		}
+		macros.clear();
+		check(macros.size() == 0 && !macros.isDefined("half"), "the macros weren't removed");
+
+		System.out.println(EXPANSIONS.length + " expansions, " + errors + " failed");
+		System.out.println(errors == 0 ? "OK" : "FAILED");
+		if (errors > 0)
+			System.exit(1);
+	}
+
+	private static void check(boolean ok, String msg) {
+		if (!ok) {
+			System.out.println("FAILED: " + msg);
+			errors++;
+		}
+	}
+
+	private static void error(String s, TeXMacros macros, String msg) {
+		String res = xml(s, macros);
+		check(res.startsWith("ParseException") && res.contains(msg), s + ": expected an error '"
+				+ msg + "', found " + (res.startsWith("<") ? "a formula" : res));
+	}
+
+	private static void defineError(String name, int nrOfParams, String defaultValue,
+			String body, String msg) {
+		try {
+			new TeXMacros().define(name, nrOfParams, defaultValue, body);
+			check(false, "the macro '" + name + "' {" + body + "} was defined");
+		} catch (ParseException e) {
+			check(e.getMessage().contains(msg), "the macro '" + name + "' {" + body
+					+ "}: expected an error '" + msg + "', found " + e.getMessage());
+		}
+	}
+
+	private static void newCommandsError(String definitions, String msg) {
+		TeXMacros macros = new TeXMacros();
+		try {
+			macros.newCommands("\\newcommand{\\half}{h}");
+			macros.newCommands(definitions);
+			check(false, definitions + " was accepted");
+		} catch (ParseException e) {
+			check(e.getMessage().contains(msg), definitions + ": expected an error '" + msg
+					+ "', found " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return the atom tree of the parsed string as xml, or the exception
+	 */
+	private static String xml(String s, TeXMacros macros) {
+		try {
+			TeXFormula f = new TeXFormula(s, macros);
+			SimpleXmlWriter sxw = new SimpleXmlWriter();
+			f.root.toXml(sxw, null);
+			return sxw.toString();
+		} catch (Exception e) {
+			return e.getClass().getSimpleName() + ": " + e.getMessage();
+		}
+	}
+}
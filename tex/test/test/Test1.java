@@ -28,10 +28,10 @@ public class Test1 {
 	
 	private static void test3() {
 		System.out.println("TeXFormula.class = " + TeXFormula.class);
-		for (int i = 0; i < TeXFormula.symbolMappings.length; ++i) {
-			if (TeXFormula.symbolMappings[i] != null)
-				System.out.println("symbolMappings[" + (char)i + "(" + i + ")]=" + 
-					TeXFormula.symbolMappings[i]);
+		for (char c = 0; c < 256; ++c) {
+			if (TeXFormula.getSymbolMapping(c) != null)
+				System.out.println("symbolMappings[" + c + "(" + (int)c + ")]=" + 
+					TeXFormula.getSymbolMapping(c));
 		}
 	}
 	